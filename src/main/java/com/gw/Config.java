@@ -2,6 +2,7 @@ package com.gw;
 
 import java.util.Arrays;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -12,6 +13,9 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.TtlCache;
+
 /**
  * @author jyuan
  *
@@ -30,11 +34,22 @@ public class Config {
         return new PropertySourcesPlaceholderConfigurer();
     }
     
+    /**
+     * Shopify store metadata caches, see ShopifyGraphQLService
+     */
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(
+            @Value("${shopify.metadata.cache.ttl.seconds:900}") long ttlSeconds,
+            @Value("${shopify.metadata.cache.max.entries:500}") int maxEntries,
+            @Value("${shopify.metadata.cache.taxonomy.ttl.seconds:86400}") long taxonomyTtlSeconds) {
         SimpleCacheManager cacheManager = new SimpleCacheManager();
         cacheManager.setCaches(Arrays.asList(
-          new ConcurrentMapCache("PreDefinedCollections")));
+          new ConcurrentMapCache("PreDefinedCollections"),
+          new TtlCache(ShopifyGraphQLService.LOCATIONS_CACHE, ttlSeconds * 1000, maxEntries),
+          new TtlCache(ShopifyGraphQLService.PUBLICATIONS_CACHE, ttlSeconds * 1000, maxEntries),
+          new TtlCache(ShopifyGraphQLService.COLLECTIONS_CACHE, ttlSeconds * 1000, maxEntries),
+          new TtlCache(ShopifyGraphQLService.METAFIELD_DEFINITIONS_CACHE, ttlSeconds * 1000, maxEntries),
+          new TtlCache(ShopifyGraphQLService.TAXONOMY_CACHE, taxonomyTtlSeconds * 1000, maxEntries)));
         return cacheManager;
     }
 
@@ -0,0 +1,147 @@
+package com.gw.domain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Classifies feed items into predefined collections in a single pass.
+ *
+ * - Each item is normalised once (see NormalizedFeedItem) and every CollectionRule is
+ *   evaluated on it; collections that aren't CompiledCollection fall back to accepts()
+ * - The result is a CollectionMask: bit i is predefinedCollections[i]
+ * - classifyAll() classifies a whole feed in parallel
+ * - Hits are counted per rule, explain() reports why each collection did or didn't match
+ *
+ * Thread safe, one instance can be shared for a whole sync run.
+ */
+public class CollectionClassifier {
+
+    private final PredefinedCollection[] collections;
+    private final CollectionRule[] rules;
+    private final LongAdder[] hits;
+
+    public CollectionClassifier(PredefinedCollection[] collections) {
+        if (collections.length > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " predefined collections fit in a mask");
+        }
+        this.collections = collections.clone();
+        this.rules = new CollectionRule[collections.length];
+        this.hits = new LongAdder[collections.length];
+        for (int i = 0; i < collections.length; i++) {
+            if (collections[i] instanceof CompiledCollection) {
+                rules[i] = ((CompiledCollection) collections[i]).getRule();
+            }
+            hits[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Mask of the collections accepting the item, rule failures are thrown
+     */
+    public long classify(FeedItem item) {
+        NormalizedFeedItem normalized = NormalizedFeedItem.of(item);
+        long mask = 0;
+        for (int i = 0; i < rules.length; i++) {
+            if (accepts(i, normalized)) {
+                mask |= 1L << i;
+            }
+        }
+        // Count only complete classifications, a failing rule leaves no hits behind
+        for (int i = 0; i < rules.length; i++) {
+            if (CollectionMask.contains(mask, i)) {
+                hits[i].increment();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Masks of all items in parallel, in list order. An entry is null when a rule fails on its item.
+     */
+    public Long[] classifyAll(List<FeedItem> items) {
+        Long[] masks = new Long[items.size()];
+        IntStream.range(0, items.size()).parallel().forEach(i -> {
+            try {
+                masks[i] = classify(items.get(i));
+            } catch (RuntimeException e) {
+                masks[i] = null;
+            }
+        });
+        return masks;
+    }
+
+    /**
+     * Outcome of every rule on the item, without counting hits
+     */
+    public List<Explanation> explain(FeedItem item) {
+        NormalizedFeedItem normalized = NormalizedFeedItem.of(item);
+        List<Explanation> explanations = new ArrayList<>();
+        for (int i = 0; i < rules.length; i++) {
+            String rule = rules[i] != null ? rules[i].getDescription() : "accepts()";
+            try {
+                explanations.add(new Explanation(collections[i].getTitle(), rule, accepts(i, normalized), null));
+            } catch (RuntimeException e) {
+                explanations.add(new Explanation(collections[i].getTitle(), rule, false, e.toString()));
+            }
+        }
+        return explanations;
+    }
+
+    /**
+     * Accepted items per collection title since creation or the last reset
+     */
+    public Map<String, Long> getHitCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < collections.length; i++) {
+            counts.put(collections[i].getTitle(), hits[i].sum());
+        }
+        return counts;
+    }
+
+    public void resetHitCounts() {
+        for (LongAdder hit : hits) {
+            hit.reset();
+        }
+    }
+
+    public PredefinedCollection[] getCollections() {
+        return collections.clone();
+    }
+
+    private boolean accepts(int index, NormalizedFeedItem item) {
+        return rules[index] != null ? rules[index].test(item) : collections[index].accepts(item.getItem());
+    }
+
+    /**
+     * Outcome of one rule on one item
+     */
+    public static class Explanation {
+        private final String collection;
+        private final String rule;
+        private final boolean accepted;
+        private final String error;
+
+        private Explanation(String collection, String rule, boolean accepted, String error) {
+            this.collection = collection;
+            this.rule = rule;
+            this.accepted = accepted;
+            this.error = error;
+        }
+
+        public String getCollection() { return collection; }
+        public String getRule() { return rule; }
+        public boolean isAccepted() { return accepted; }
+        /** Failure of the rule on this item, null when it evaluated */
+        public String getError() { return error; }
+
+        @Override
+        public String toString() {
+            return (error != null ? "!" : accepted ? "+" : "-") + " " + collection + " [" + rule + "]"
+                + (error != null ? " " + error : "");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.gw.domain;
+
+/**
+ * Collection membership as a bitmask: bit i is set when predefinedCollections[i] accepts the item.
+ *
+ * Bits follow the order of the predefined collections array (the enum declaration order),
+ * so new collections must be appended; reordering them requires clearing the stored masks.
+ */
+public final class CollectionMask {
+
+    private CollectionMask() {
+    }
+
+    /**
+     * Mask of the collections accepting the item, rule failures are thrown
+     */
+    public static long of(FeedItem item, PredefinedCollection[] predefinedCollections) {
+        return new CollectionClassifier(predefinedCollections).classify(item);
+    }
+
+    public static boolean contains(long mask, int index) {
+        return (mask & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,35 @@
+package com.gw.domain;
+
+import java.util.function.Predicate;
+
+/**
+ * Membership rule of a predefined collection, evaluated on a NormalizedFeedItem.
+ * The description is what the explain mode of CollectionClassifier reports.
+ */
+public final class CollectionRule {
+
+    private final String description;
+    private final Predicate<NormalizedFeedItem> predicate;
+
+    private CollectionRule(String description, Predicate<NormalizedFeedItem> predicate) {
+        this.description = description;
+        this.predicate = predicate;
+    }
+
+    public static CollectionRule of(String description, Predicate<NormalizedFeedItem> predicate) {
+        return new CollectionRule(description, predicate);
+    }
+
+    public boolean test(NormalizedFeedItem item) {
+        return predicate.test(item);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,15 @@
+package com.gw.domain;
+
+/**
+ * Predefined collection whose membership is a CollectionRule, so CollectionClassifier
+ * can evaluate it on an item normalised once for all collections
+ */
+public interface CompiledCollection extends PredefinedCollection {
+
+    CollectionRule getRule();
+
+    @Override
+    default boolean accepts(FeedItem feedItem) {
+        return getRule().test(NormalizedFeedItem.of(feedItem));
+    }
+}
@@ -10,7 +10,13 @@ import org.apache.logging.log4j.Logger;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.Objects;
 
 @Entity
 public class FeedItem extends BaseListedItem {
@@ -108,6 +114,13 @@ public class FeedItem extends BaseListedItem {
     @Column
     private String webWatchGeneralDial;
     
+    // Predefined collections accepting the item, one bit per collection (see CollectionMask)
+    @Column
+    private Long collectionMask;
+    // Collections the product was last put in on Shopify, null when unknown
+    @Column
+    private Long appliedCollectionMask;
+    
     
     
     public void copyFrom(FeedItem other) {
@@ -637,6 +650,29 @@ public class FeedItem extends BaseListedItem {
         this.webWatchGeneralDial = webWatchGeneralDial;
     }
 
+    public Long getCollectionMask() {
+        return collectionMask;
+    }
+
+    public void setCollectionMask(Long collectionMask) {
+        this.collectionMask = collectionMask;
+    }
+
+    public Long getAppliedCollectionMask() {
+        return appliedCollectionMask;
+    }
+
+    public void setAppliedCollectionMask(Long appliedCollectionMask) {
+        this.appliedCollectionMask = appliedCollectionMask;
+    }
+
+    /**
+     * Whether some collections the item belongs to were not written to Shopify yet
+     */
+    public boolean hasUnappliedCollections() {
+        return collectionMask != null && !collectionMask.equals(appliedCollectionMask);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -1127,6 +1163,93 @@ public class FeedItem extends BaseListedItem {
         
         return true;
     }
+
+    /**
+     * Field-level counterpart of {@link #equalsForShopify(Object)}: returns which Shopify
+     * update steps are affected by the differences between this item and the other one.
+     * Covers exactly the fields compared by equalsForShopify, so the result is empty
+     * if and only if equalsForShopify returns true.
+     *
+     * Collection membership is not derived here since it depends on the predefined
+     * collection rules; see ChangeClassificationService.
+     */
+    public EnumSet<FeedItemChangeType> getShopifyChangeTypes(FeedItem other) {
+        EnumSet<FeedItemChangeType> changeTypes = EnumSet.noneOf(FeedItemChangeType.class);
+        if (other == null) {
+            return EnumSet.allOf(FeedItemChangeType.class);
+        }
+
+        // Title, vendor, product type and tags
+        if (!Objects.equals(webDesigner, other.webDesigner)
+                || !Objects.equals(webCategory, other.webCategory)) {
+            changeTypes.add(FeedItemChangeType.BASIC_INFO);
+            changeTypes.add(FeedItemChangeType.METADATA);
+        }
+        if (!Objects.equals(webDescriptionShort, other.webDescriptionShort)) {
+            changeTypes.add(FeedItemChangeType.BASIC_INFO);
+        }
+
+        // Only webPriceKeystone is considered for changes, same as equalsForShopify
+        if (!Objects.equals(webPriceKeystone, other.webPriceKeystone)) {
+            changeTypes.add(FeedItemChangeType.PRICE);
+        }
+
+        if (!Objects.equals(webStatus, other.webStatus)) {
+            changeTypes.add(FeedItemChangeType.STATUS);
+        }
+
+        if (!Objects.equals(webImagePath1, other.webImagePath1)
+                || !Objects.equals(webImagePath2, other.webImagePath2)
+                || !Objects.equals(webImagePath3, other.webImagePath3)
+                || !Objects.equals(webImagePath4, other.webImagePath4)
+                || !Objects.equals(webImagePath5, other.webImagePath5)
+                || !Objects.equals(webImagePath6, other.webImagePath6)
+                || !Objects.equals(webImagePath7, other.webImagePath7)
+                || !Objects.equals(webImagePath8, other.webImagePath8)
+                || !Objects.equals(webImagePath9, other.webImagePath9)) {
+            changeTypes.add(FeedItemChangeType.IMAGES);
+        }
+
+        // Option values (Color = dial, Size = diameter, Material = metal) also show up
+        // in the description template, tags and metafields
+        if (!Objects.equals(webMetalType, other.webMetalType)
+                || !Objects.equals(webWatchDial, other.webWatchDial)
+                || !Objects.equals(webWatchDiameter, other.webWatchDiameter)) {
+            changeTypes.add(FeedItemChangeType.OPTIONS);
+            changeTypes.add(FeedItemChangeType.BASIC_INFO);
+            changeTypes.add(FeedItemChangeType.METADATA);
+        }
+
+        // Fields rendered into the description template
+        if (!Objects.equals(webNotes, other.webNotes)) {
+            changeTypes.add(FeedItemChangeType.BASIC_INFO);
+        }
+        if (!Objects.equals(webWatchBoxPapers, other.webWatchBoxPapers)
+                || !Objects.equals(webWatchCondition, other.webWatchCondition)
+                || !Objects.equals(webWatchManufacturerReferenceNumber, other.webWatchManufacturerReferenceNumber)
+                || !Objects.equals(webWatchModel, other.webWatchModel)
+                || !Objects.equals(webWatchMovement, other.webWatchMovement)
+                || !Objects.equals(webWatchStrap, other.webWatchStrap)
+                || !Objects.equals(webWatchYear, other.webWatchYear)) {
+            changeTypes.add(FeedItemChangeType.BASIC_INFO);
+            changeTypes.add(FeedItemChangeType.METADATA);
+        }
+
+        // Remaining descriptive fields only feed metafields
+        if (!Objects.equals(webStyle, other.webStyle)
+                || !Objects.equals(webWatchCase, other.webWatchCase)
+                || !Objects.equals(webWatchCaseCrown, other.webWatchCaseCrown)
+                || !Objects.equals(webSerialNumber, other.webSerialNumber)
+                || !Objects.equals(webWatchDialMarkers, other.webWatchDialMarkers)
+                || !Objects.equals(webWatchBandMaterial, other.webWatchBandMaterial)
+                || !Objects.equals(webWatchBezelType, other.webWatchBezelType)
+                || !Objects.equals(webWatchBandType, other.webWatchBandType)
+                || !Objects.equals(webWatchGeneralDial, other.webWatchGeneralDial)) {
+            changeTypes.add(FeedItemChangeType.METADATA);
+        }
+
+        return changeTypes;
+    }
     
     
     @Override
@@ -1172,17 +1295,72 @@ public class FeedItem extends BaseListedItem {
         }
     };
 
+    /**
+     * Image path by slot number 1..9, null for an empty or unknown slot
+     */
+    public String getWebImagePath(int slot) {
+        switch (slot) {
+            case 1: return webImagePath1;
+            case 2: return webImagePath2;
+            case 3: return webImagePath3;
+            case 4: return webImagePath4;
+            case 5: return webImagePath5;
+            case 6: return webImagePath6;
+            case 7: return webImagePath7;
+            case 8: return webImagePath8;
+            case 9: return webImagePath9;
+            default: return null;
+        }
+    }
+
     public int getImageCount() {
+        return countImages(webImagePath1, webImagePath2, webImagePath3, webImagePath4, webImagePath5,
+            webImagePath6, webImagePath7, webImagePath8, webImagePath9);
+    }
+
+    /**
+     * Number of set image paths. Shared with projections that read the paths without
+     * loading the item (see FeedItemDao.findListingKeys) so both count the same way.
+     */
+    public static int countImages(String... imagePaths) {
         int i = 0;
-        if (!StringUtils.isEmpty(this.webImagePath1)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath2)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath3)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath4)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath5)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath6)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath7)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath8)) i++;
-        if (!StringUtils.isEmpty(this.webImagePath9)) i++;
+        for (String imagePath : imagePaths) {
+            if (!StringUtils.isEmpty(imagePath)) i++;
+        }
         return i;
     }
+
+    /**
+     * SHA-256 over all feed fields (the ones copyFrom copies) and cssHostingBaseUrl, which
+     * ebay-watch.ftl renders, so two items with the same fingerprint render the same
+     * descriptions. Not a bean getter on purpose, it is not stored or serialized.
+     */
+    public String contentFingerprint() {
+        String[] fields = {
+            webTagNumber, webStatus, webPriceRetail, webPriceSale, webPriceEbay, webFlagEbayauction,
+            costInvoiced, webDescriptionShort, webStyle, webDesigner, webWatchModel, webWatchYear, webMetalType,
+            webWatchManufacturerReferenceNumber, webWatchMovement, webWatchCase, webWatchDial, webWatchStrap,
+            webWatchCondition, webWatchDiameter, webWatchBoxPapers, webImagePath1, webImagePath2, webImagePath3,
+            webImagePath4, webImagePath5, webImagePath6, webImagePath7, webImagePath8, webImagePath9,
+            webPriceChronos, webCategory, webNotes, webPriceKeystone, webSerialNumber, webWatchDialMarkers,
+            webWatchBandMaterial, webWatchBezelType, webWatchCaseCrown, webWatchBandType, webPriceWholesale,
+            webWatchGeneralDial, getCssHostingBaseUrl()
+        };
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String field : fields) {
+                // Separate fields and tell null apart from ""
+                if (field == null) {
+                    digest.update((byte) 0);
+                } else {
+                    digest.update((byte) 1);
+                    digest.update(field.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 2);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -1,9 +1,18 @@
 package com.gw.domain;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class FeedItemChange {
 
     private FeedItem fromDb;
     private FeedItem fromFeed;
+    
+    /**
+     * Shopify update steps affected by this change. Defaults to all steps (full update),
+     * which is also what a forced update uses.
+     */
+    private Set<FeedItemChangeType> changeTypes = EnumSet.allOf(FeedItemChangeType.class);
 
     public FeedItemChange(FeedItem fromDb, FeedItem fromFeed) {
         this.fromDb = fromDb;
@@ -25,4 +34,16 @@ public class FeedItemChange {
     public void setFromFeed(FeedItem fromFeed) {
         this.fromFeed = fromFeed;
     }
+
+    public Set<FeedItemChangeType> getChangeTypes() {
+        return changeTypes;
+    }
+
+    public void setChangeTypes(Set<FeedItemChangeType> changeTypes) {
+        this.changeTypes = changeTypes;
+    }
+
+    public boolean hasChange(FeedItemChangeType changeType) {
+        return changeTypes.contains(changeType);
+    }
 }
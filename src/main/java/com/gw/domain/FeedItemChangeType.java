@@ -0,0 +1,33 @@
+package com.gw.domain;
+
+/**
+ * Classifies a difference between the DB copy and the feed copy of a FeedItem
+ * by the Shopify update step it affects.
+ *
+ * The update pipeline uses the set of change types on a {@link FeedItemChange}
+ * to run only the steps that are actually needed, e.g. a price-only change
+ * becomes a single variant update and a status-only change a single inventory set.
+ */
+public enum FeedItemChangeType {
+
+    /** webPriceKeystone changed - variant price */
+    PRICE,
+
+    /** webStatus changed - inventory levels */
+    STATUS,
+
+    /** Fields rendered into title, description html, vendor, product type or tags */
+    BASIC_INFO,
+
+    /** Fields backing the Color / Size / Material product options */
+    OPTIONS,
+
+    /** Fields feeding the SEO, Google and eBay metafields */
+    METADATA,
+
+    /** webImagePath1..9 */
+    IMAGES,
+
+    /** Predefined collection membership */
+    COLLECTIONS
+}
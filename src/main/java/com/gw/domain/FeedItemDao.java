@@ -1,5 +1,7 @@
 package com.gw.domain;
  
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -9,6 +11,7 @@ import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaDelete;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
 import jakarta.persistence.criteria.ParameterExpression;
 import jakarta.persistence.criteria.Root;
 
@@ -156,6 +159,37 @@ public class FeedItemDao extends AbstractDao {
         }
     }
     
+    /**
+     * SKU, Shopify ID and image count of every item, without loading the entities
+     */
+    public List<ListingKey> findListingKeys() {
+        List<Object[]> rows = getEntityManager().createQuery(
+            "select f.webTagNumber, f.shopifyItemId, f.webImagePath1, f.webImagePath2, f.webImagePath3,"
+            + " f.webImagePath4, f.webImagePath5, f.webImagePath6, f.webImagePath7, f.webImagePath8, f.webImagePath9"
+            + " from FeedItem f", Object[].class).getResultList();
+        List<ListingKey> keys = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            String[] imagePaths = Arrays.copyOfRange(row, 2, row.length, String[].class);
+            int imageCount = FeedItem.countImages(imagePaths);
+            keys.add(new ListingKey((String) row[0], (String) row[1], imageCount));
+        }
+        return keys;
+    }
+    
+    /**
+     * Set only the web status of an item, leaving the other columns as they are in the DB
+     */
+    public int updateWebStatus(String webTagNumber, String webStatus) {
+        CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+        CriteriaUpdate<FeedItem> update = cb.createCriteriaUpdate(FeedItem.class);
+        
+        Root<FeedItem> e = update.from(FeedItem.class);
+        update.set(e.<String>get("webStatus"), webStatus);
+        update.set(e.<Date>get("lastUpdatedDate"), new Date());
+        update.where(cb.equal(e.get("webTagNumber"), webTagNumber));
+        return getEntityManager().createQuery(update).executeUpdate();
+    }
+    
     public FeedItem update(FeedItem feedItem){
         feedItem.setLastUpdatedDate(new Date());
         FeedItem mergedItem = getEntityManager().merge(feedItem);
@@ -0,0 +1,34 @@
+package com.gw.domain;
+
+/**
+ * What reconciliation compares per SKU: the Shopify product ID and the number of images.
+ * Built from a DB row (shopifyItemId, image paths) or from a Shopify product (ID, media count).
+ */
+public class ListingKey {
+
+    private final String sku;
+    private final String shopifyId;
+    private final int imageCount;
+
+    public ListingKey(String sku, String shopifyId, int imageCount) {
+        this.sku = sku;
+        this.shopifyId = shopifyId;
+        this.imageCount = imageCount;
+    }
+
+    public String getSku() { return sku; }
+    public String getShopifyId() { return shopifyId; }
+    public int getImageCount() { return imageCount; }
+
+    /**
+     * Equal for a DB row and a Shopify product that are in sync
+     */
+    public String digest() {
+        return (sku == null ? "" : sku) + '\u0000' + (shopifyId == null ? "" : shopifyId) + '\u0000' + imageCount;
+    }
+
+    @Override
+    public String toString() {
+        return sku + " -> " + shopifyId + " (" + imageCount + " images)";
+    }
+}
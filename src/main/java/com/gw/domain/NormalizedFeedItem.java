@@ -0,0 +1,142 @@
+package com.gw.domain;
+
+import java.util.Locale;
+
+/**
+ * Read-only view of a FeedItem prepared once for collection rules:
+ * lower-cased text fields, parsed year and prices.
+ *
+ * Behaves like the raw field checks it replaces - a missing designer or an unparseable
+ * price still fails the rule that needs it, so rule failures keep meaning "unknown".
+ */
+public final class NormalizedFeedItem {
+
+    private final FeedItem item;
+    private final String designer;
+    private final String style;
+    private final String category;
+    private final String model;
+    private final String description;
+    private final String year;
+    private final Integer yearNumber;
+    private final boolean hasRetailPrice;
+    private final String keystonePriceText;
+    private final Double keystonePrice;
+    private final String ebayPriceText;
+    private final Double ebayPrice;
+
+    private NormalizedFeedItem(FeedItem item) {
+        this.item = item;
+        this.designer = item.getWebDesigner();
+        this.style = item.getWebStyle();
+        this.category = lower(item.getWebCategory());
+        this.model = lower(item.getWebWatchModel());
+        this.description = lower(item.getWebDescriptionShort());
+        this.year = lower(item.getWebWatchYear());
+        this.yearNumber = parseInt(item.getWebWatchYear());
+        this.hasRetailPrice = item.getWebPriceRetail() != null;
+        this.keystonePriceText = item.getWebPriceKeystone();
+        this.keystonePrice = parseDouble(keystonePriceText);
+        this.ebayPriceText = item.getWebPriceEbay();
+        this.ebayPrice = parseDouble(ebayPriceText);
+    }
+
+    public static NormalizedFeedItem of(FeedItem item) {
+        return new NormalizedFeedItem(item);
+    }
+
+    public FeedItem getItem() {
+        return item;
+    }
+
+    /**
+     * Exact designer match, fails on an item without designer
+     */
+    public boolean designerIs(String name) {
+        if (designer == null) {
+            throw new NullPointerException("No designer on SKU " + item.getWebTagNumber());
+        }
+        return designer.equals(name);
+    }
+
+    public boolean styleIs(String name) {
+        return name.equals(style);
+    }
+
+    /** Case-insensitive, text arguments must be lower case */
+    public boolean categoryContains(String text) {
+        return category != null && category.contains(text);
+    }
+
+    public boolean modelContains(String text) {
+        return model != null && model.contains(text);
+    }
+
+    public boolean descriptionContains(String text) {
+        return description != null && description.contains(text);
+    }
+
+    public boolean hasYear() {
+        return year != null;
+    }
+
+    public boolean yearContains(String text) {
+        return year != null && year.contains(text);
+    }
+
+    /** Null when the year isn't a number (e.g. "Current") */
+    public Integer getYearNumber() {
+        return yearNumber;
+    }
+
+    public boolean hasRetailPrice() {
+        return hasRetailPrice;
+    }
+
+    /**
+     * Keystone price, fails when missing or not a number
+     */
+    public double getKeystonePrice() {
+        return require(keystonePrice, keystonePriceText);
+    }
+
+    /**
+     * eBay price, fails when missing or not a number
+     */
+    public double getEbayPrice() {
+        return require(ebayPrice, ebayPriceText);
+    }
+
+    @Override
+    public String toString() {
+        return "designer=" + designer + ", category=" + category + ", style=" + style + ", model=" + model
+            + ", year=" + year + ", keystonePrice=" + keystonePriceText + ", ebayPrice=" + ebayPriceText;
+    }
+
+    private double require(Double price, String text) {
+        if (price == null) {
+            throw new NumberFormatException("Invalid price '" + text + "' on SKU " + item.getWebTagNumber());
+        }
+        return price;
+    }
+
+    private static String lower(String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Integer parseInt(String text) {
+        try {
+            return text == null ? null : Integer.valueOf(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Double parseDouble(String text) {
+        try {
+            return text == null ? null : Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.gw.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merkle-style summary of a set of SKU entries, for finding where two sides differ
+ * without comparing every entry.
+ *
+ * The SKU space is split into 2^depth ranges by a 64-bit hash of the SKU (top bits).
+ * A range keeps the count and the sum of the entry hashes, so entries can be added in
+ * any order while streaming; a parent hashes its two children. diff() walks down from
+ * the root and only descends where the hashes differ.
+ */
+public class SkuMerkleTree {
+
+    private final int depth;
+    private final int ranges;
+    private final long[] counts;
+    private final long[] sums;
+    private long[] nodes;
+    private int comparisons;
+
+    public SkuMerkleTree(int depth) {
+        if (depth < 0 || depth > 20) {
+            throw new IllegalArgumentException("depth must be between 0 and 20: " + depth);
+        }
+        this.depth = depth;
+        this.ranges = 1 << depth;
+        this.counts = new long[ranges];
+        this.sums = new long[ranges];
+    }
+
+    /**
+     * Range of a SKU, the same for every tree of this depth
+     */
+    public static int rangeOf(String sku, int depth) {
+        return depth == 0 ? 0 : (int) (hash64(sku == null ? "" : sku) >>> (64 - depth));
+    }
+
+    public int rangeOf(String sku) {
+        return rangeOf(sku, depth);
+    }
+
+    /**
+     * Add an entry: its SKU picks the range, the digest is what has to match on the other side
+     */
+    public void add(String sku, String digest) {
+        int range = rangeOf(sku);
+        counts[range]++;
+        sums[range] += hash64(digest);
+        nodes = null;
+    }
+
+    public void add(ListingKey key) {
+        add(key.getSku(), key.digest());
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getRangeCount() {
+        return ranges;
+    }
+
+    public long getCount(int range) {
+        return counts[range];
+    }
+
+    public long getRootHash() {
+        return nodes()[1];
+    }
+
+    /**
+     * Ranges whose entries differ from the other tree's, in ascending order
+     */
+    public List<Integer> diff(SkuMerkleTree other) {
+        if (other.depth != depth) {
+            throw new IllegalArgumentException("Trees of different depth: " + depth + " and " + other.depth);
+        }
+        List<Integer> differing = new ArrayList<>();
+        comparisons = 0;
+        diff(nodes(), other.nodes(), 1, differing);
+        return differing;
+    }
+
+    /**
+     * Node hashes compared by the last diff()
+     */
+    public int getLastComparisons() {
+        return comparisons;
+    }
+
+    private void diff(long[] mine, long[] theirs, int node, List<Integer> differing) {
+        comparisons++;
+        if (mine[node] == theirs[node]) {
+            return;
+        }
+        if (node >= ranges) {
+            differing.add(node - ranges);
+            return;
+        }
+        diff(mine, theirs, 2 * node, differing);
+        diff(mine, theirs, 2 * node + 1, differing);
+    }
+
+    /**
+     * Heap layout: root at 1, children of n at 2n and 2n+1, range r at ranges + r
+     */
+    private long[] nodes() {
+        if (nodes == null) {
+            long[] built = new long[2 * ranges];
+            for (int range = 0; range < ranges; range++) {
+                built[ranges + range] = mix(counts[range] * 0x9E3779B97F4A7C15L + sums[range]);
+            }
+            for (int node = ranges - 1; node >= 1; node--) {
+                built[node] = mix(built[2 * node] * 31 + mix(built[2 * node + 1]));
+            }
+            nodes = built;
+        }
+        return nodes;
+    }
+
+    /**
+     * FNV-1a over the characters, then mixed so that the top bits are usable as range
+     */
+    static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,121 @@
+package com.gw.domain;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+
+/**
+ * Shopify store objects the bot set up last time (managed collections, eBay metafield
+ * definitions, locations, publications), so a restart doesn't have to list and
+ * validate them again.
+ *
+ * The *Ids columns are JSON objects of label -> ID. configFingerprint covers what the
+ * bot requires (format version, store, collection titles, metafield keys),
+ * storeFingerprint what Shopify returned for the captured IDs.
+ */
+@Entity
+public class StoreMetadataSnapshot {
+
+    // Bump when the stored layout changes, older snapshots are then ignored
+    public static final int FORMAT_VERSION = 1;
+
+    @Id
+    private String storeUrl;
+    @Column
+    private int formatVersion;
+    @Column
+    private String configFingerprint;
+    @Column
+    private String storeFingerprint;
+
+    @Column(length=16384)
+    @Lob
+    private String collectionIds;
+    @Column(length=16384)
+    @Lob
+    private String metafieldDefinitionIds;
+    @Column(length=8192)
+    @Lob
+    private String locationIds;
+    @Column(length=8192)
+    @Lob
+    private String publicationIds;
+
+    @Column
+    private Date capturedDate;
+
+    public String getStoreUrl() {
+        return storeUrl;
+    }
+
+    public void setStoreUrl(String storeUrl) {
+        this.storeUrl = storeUrl;
+    }
+
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    public void setFormatVersion(int formatVersion) {
+        this.formatVersion = formatVersion;
+    }
+
+    public String getConfigFingerprint() {
+        return configFingerprint;
+    }
+
+    public void setConfigFingerprint(String configFingerprint) {
+        this.configFingerprint = configFingerprint;
+    }
+
+    public String getStoreFingerprint() {
+        return storeFingerprint;
+    }
+
+    public void setStoreFingerprint(String storeFingerprint) {
+        this.storeFingerprint = storeFingerprint;
+    }
+
+    public String getCollectionIds() {
+        return collectionIds;
+    }
+
+    public void setCollectionIds(String collectionIds) {
+        this.collectionIds = collectionIds;
+    }
+
+    public String getMetafieldDefinitionIds() {
+        return metafieldDefinitionIds;
+    }
+
+    public void setMetafieldDefinitionIds(String metafieldDefinitionIds) {
+        this.metafieldDefinitionIds = metafieldDefinitionIds;
+    }
+
+    public String getLocationIds() {
+        return locationIds;
+    }
+
+    public void setLocationIds(String locationIds) {
+        this.locationIds = locationIds;
+    }
+
+    public String getPublicationIds() {
+        return publicationIds;
+    }
+
+    public void setPublicationIds(String publicationIds) {
+        this.publicationIds = publicationIds;
+    }
+
+    public Date getCapturedDate() {
+        return capturedDate;
+    }
+
+    public void setCapturedDate(Date capturedDate) {
+        this.capturedDate = capturedDate;
+    }
+}
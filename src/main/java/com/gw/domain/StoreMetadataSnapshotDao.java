@@ -0,0 +1,25 @@
+package com.gw.domain;
+
+import java.util.Date;
+
+import org.springframework.stereotype.Repository;
+
+@Repository("storeMetadataSnapshotDao")
+public class StoreMetadataSnapshotDao extends AbstractDao {
+
+    public StoreMetadataSnapshot find(String storeUrl) {
+        return getEntityManager().find(StoreMetadataSnapshot.class, storeUrl);
+    }
+
+    public StoreMetadataSnapshot save(StoreMetadataSnapshot snapshot) {
+        snapshot.setCapturedDate(new Date());
+        return getEntityManager().merge(snapshot);
+    }
+
+    public void delete(String storeUrl) {
+        StoreMetadataSnapshot snapshot = find(storeUrl);
+        if (snapshot != null) {
+            delete(snapshot);
+        }
+    }
+}
@@ -1,36 +1,43 @@
 package com.gw.domain.gruenbergwatches;
 
-import org.apache.commons.lang3.StringUtils;
-
-import com.gw.domain.FeedItem;
-import com.gw.domain.PredefinedCollection;
+import com.gw.domain.CollectionRule;
+import com.gw.domain.CompiledCollection;
 import com.gw.domain.keystone.KeyStoneCollections;
 
-public enum GruenbergWatchesCollections implements PredefinedCollection {
-    
-    MENS("Men's", false),
-    WOMENS("Women's", false),
-    UNDER_5000("Under $5,000", false),
-    PATEK_PHILIPPE("Patek Philippe", true),
-    VINTAGE_WATCHES("Vintage Watches", false),
-    DIAMOND_WATCHES("Diamond Watches", false),
-    ROLEX("Rolex", true),
-    Audemars_Piguet("Audemars Piguet", true),
-    Piaget("Piaget", true),
-    Cartier("Cartier", true),
-    Hublot("Hublot", true),
-    Paneri("Panerai", true),
-    FPJourne("F.P. Journe", true),
-    VintageJewelry("Vintage Jewelry", false),
-    OtherBrand("Other Brand", false)
+public enum GruenbergWatchesCollections implements CompiledCollection {
+    
+    MENS("Men's", false, CollectionRule.of("category contains watches and style = Gents|Unisex",
+        item -> item.categoryContains("watches") && (item.styleIs("Gents") || item.styleIs("Unisex")))),
+    WOMENS("Women's", false, CollectionRule.of("category contains watches and style = Ladies|Unisex",
+        item -> item.categoryContains("watches") && (item.styleIs("Ladies") || item.styleIs("Unisex")))),
+    UNDER_5000("Under $5,000", false, CollectionRule.of("watch with retail price set and eBay price < 5000",
+        item -> item.categoryContains("watches") && item.hasRetailPrice() && item.getEbayPrice() < 5000)),
+    PATEK_PHILIPPE("Patek Philippe", true, watchBy("Patek Philippe")),
+    VINTAGE_WATCHES("Vintage Watches", false, CollectionRule.of("watch with description containing vintage",
+        item -> item.categoryContains("watches") && item.descriptionContains("vintage"))),
+    DIAMOND_WATCHES("Diamond Watches", false, CollectionRule.of("watch with description containing diamond",
+        item -> item.categoryContains("watches") && item.descriptionContains("diamond"))),
+    ROLEX("Rolex", true, watchBy("Rolex")),
+    Audemars_Piguet("Audemars Piguet", true, watchBy("Audemars Piguet")),
+    Piaget("Piaget", true, watchBy("Piaget")),
+    Cartier("Cartier", true, watchBy("Cartier")),
+    Hublot("Hublot", true, watchBy("Hublot")),
+    Paneri("Panerai", true, watchBy("Panerai")),
+    FPJourne("F.P. Journe", true, watchBy("FP Journe")),
+    VintageJewelry("Vintage Jewelry", false, CollectionRule.of("category doesn't contain watches",
+        item -> !item.categoryContains("watches"))),
+    OtherBrand("Other Brand", false, CollectionRule.of("no KeyStone brand collection",
+        item -> !KeyStoneCollections.isAnyBrand(item)))
     ;
     
     private String title;
     private boolean isBrand;
+    private CollectionRule rule;
     
-    GruenbergWatchesCollections(String title, boolean isBrand){
+    GruenbergWatchesCollections(String title, boolean isBrand, CollectionRule rule){
         this.title = title;
         this.isBrand = isBrand;
+        this.rule = rule;
     }
     
     @Override
@@ -44,158 +51,12 @@ public enum GruenbergWatchesCollections implements PredefinedCollection {
     }
     
     @Override
-    public boolean accepts(FeedItem feedItem) {
-        switch(this)
-        {
-            case MENS:
-                return isMens(feedItem);
-            case DIAMOND_WATCHES:
-                return isDiamond(feedItem);           
-            case UNDER_5000:
-                return isUnder5000(feedItem);
-            case VINTAGE_WATCHES:
-                return isVintage(feedItem);
-            case WOMENS:
-                return isWomens(feedItem);
-            case PATEK_PHILIPPE:
-                return isPatek(feedItem);
-            case ROLEX:
-                return isRolex(feedItem);
-            case Audemars_Piguet:
-                return isAudemarsPiguet(feedItem);
-            case Piaget:
-                return isPiaget(feedItem);
-            case Cartier:
-                return isCartier(feedItem);
-            case Hublot:
-                return isHublot(feedItem);
-            case Paneri:
-                return isPanerai(feedItem);
-            case FPJourne:
-                return isFPJourne(feedItem);
-            case VintageJewelry:
-                return isVintageJewelry(feedItem);
-            case OtherBrand:
-                return isOtherBrand(feedItem);
-            default:
-                return false;
-            
-        }
-    }
-    
-    private boolean isDiamond(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                StringUtils.containsIgnoreCase(feedItem.getWebDescriptionShort(), "diamond" )) {
-            return true;
-        }
-        return false;
-    }
-    
-    private boolean isVintage(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                StringUtils.containsIgnoreCase(feedItem.getWebDescriptionShort(), "vintage" )) {
-            return true;
-        }
-        return false;
-    }
-    
-    private boolean isMens(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebStyle() != null && 
-                (feedItem.getWebStyle().equals("Gents") || feedItem.getWebStyle().equals("Unisex"))
-            )
-            return true;
-        return false;
-    }
-    
-    private boolean isWomens(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebStyle() != null && 
-                (feedItem.getWebStyle().equals("Ladies") || feedItem.getWebStyle().equals("Unisex"))
-            )
-            return true;
-        return false;
-    }
-    
-    private boolean isPatek(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("Patek Philippe"))
-            return true;
-        return false;
-    }
-    
-    private boolean isRolex(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("Rolex"))
-            return true;
-        return false;
-    }
-    
-    private boolean isAudemarsPiguet(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("Audemars Piguet"))
-            return true;
-        return false;
-    }
-    
-    private boolean isPiaget(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("Piaget"))
-            return true;
-        return false;
-    }
-    
-    private boolean isCartier(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("Cartier"))
-            return true;
-        return false;
-    }    
-    
-    private boolean isHublot(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("Hublot"))
-            return true;
-        return false;
-    }
-    
-    private boolean isPanerai(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("Panerai"))
-            return true;
-        return false;
-    }
-    
-    private boolean isFPJourne(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebDesigner().equals("FP Journe"))
-            return true;
-        return false;
-    }
-
-    private boolean isOtherBrand(FeedItem feedItem) {
-        for (KeyStoneCollections collectEnum : KeyStoneCollections.values()) {
-            if (collectEnum.isBrand() && collectEnum.accepts(feedItem))
-                return false;
-        }
-        return true;
-    }
-    
-    private boolean isUnder5000(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebPriceRetail() != null) {
-            double priceSale = Double.parseDouble(feedItem.getWebPriceEbay());
-            if (priceSale < 5000) {
-                return true;
-            }
-        }
-        return false;
+    public CollectionRule getRule() {
+        return rule;
     }
     
-    private boolean isVintageJewelry(FeedItem feedItem) {
-        if (!StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" )) {
-                return true;
-        }
-        return false;
+    private static CollectionRule watchBy(String designer) {
+        return CollectionRule.of("watch with designer = " + designer,
+            item -> item.categoryContains("watches") && item.designerIs(designer));
     }
-}
\ No newline at end of file
+}
@@ -1,36 +1,55 @@
 package com.gw.domain.keystone;
 
-import org.apache.commons.lang3.StringUtils;
+import com.gw.domain.CollectionRule;
+import com.gw.domain.CompiledCollection;
+import com.gw.domain.NormalizedFeedItem;
 
-import com.gw.domain.FeedItem;
-import com.gw.domain.PredefinedCollection;
-
-public enum KeyStoneCollections implements PredefinedCollection {
-    
-    UNDER_5000("Watches Under $5,000", false),
-    ROLEX("Rolex", true),
-    PATEK_PHILIPPE("Patek Philippe", true),
-    Audemars_Piguet("Audemars Piguet", true),
-    Vacheron_Constantin("Vacheron Constantin", true),
-    HEUER("Heuer", true),
-    OMEGA("Omega", true),
-    OtherBrand("Other Brand", false),
-    ROLEX_SPORT_WATCHES("Rolex Sport Watches", false),    
-    SPORT_WATCHES("Sport Watches", false),
-    VINTAGE_WATCHES("Vintage Watches", false),
-    MODERN_WATCHES("Modern Watches", false),
-    CHRONOGRAPHS("Chronograph", false),
-    MENS("Men's", false),
-    WOMENS("Women's", false),
-    JEWELRY("Jewelry", false)
+public enum KeyStoneCollections implements CompiledCollection {
+    
+    UNDER_5000("Watches Under $5,000", false, CollectionRule.of("retail price set and keystone price < 5000",
+        item -> item.hasRetailPrice() && item.getKeystonePrice() < 5000)),
+    ROLEX("Rolex", true, designer("Rolex")),
+    PATEK_PHILIPPE("Patek Philippe", true, designer("Patek Philippe")),
+    Audemars_Piguet("Audemars Piguet", true, designer("Audemars Piguet")),
+    Vacheron_Constantin("Vacheron Constantin", true, designer("Vacheron Constantin")),
+    HEUER("Heuer", true, designer("Heuer")),
+    OMEGA("Omega", true, designer("Omega")),
+    OtherBrand("Other Brand", false, CollectionRule.of("no brand collection",
+        item -> !isAnyBrand(item))),
+    ROLEX_SPORT_WATCHES("Rolex Sport Watches", false, CollectionRule.of(
+        "designer = Rolex and model contains submariner|explorer|gmt|daytona|milgauss|cosmograph|sea-dweller",
+        item -> item.designerIs("Rolex") && modelContainsAny(item,
+            "submariner", "explorer", "gmt", "daytona", "milgauss", "cosmograph", "sea-dweller"))),    
+    SPORT_WATCHES("Sport Watches", false, CollectionRule.of(
+        "designer = Rolex or model contains nautilus|royal oak|speedmaster",
+        item -> item.designerIs("Rolex") || modelContainsAny(item, "nautilus", "royal oak", "speedmaster"))),
+    VINTAGE_WATCHES("Vintage Watches", false, CollectionRule.of(
+        "description contains vintage or year < 2000",
+        item -> item.descriptionContains("vintage")
+            || (item.hasYear() && !item.yearContains("current")
+                && item.getYearNumber() != null && item.getYearNumber() < 2000))),
+    MODERN_WATCHES("Modern Watches", false, CollectionRule.of(
+        "year is current or >= 2000",
+        item -> item.hasYear() && (item.yearContains("current")
+            || (item.getYearNumber() != null && item.getYearNumber() >= 2000)))),
+    CHRONOGRAPHS("Chronograph", false, CollectionRule.of("description contains chronograph",
+        item -> item.descriptionContains("chronograph"))),
+    MENS("Men's", false, CollectionRule.of("category contains watches and style = Gents|Unisex",
+        item -> item.categoryContains("watches") && (item.styleIs("Gents") || item.styleIs("Unisex")))),
+    WOMENS("Women's", false, CollectionRule.of("category contains watches and style = Ladies|Unisex",
+        item -> item.categoryContains("watches") && (item.styleIs("Ladies") || item.styleIs("Unisex")))),
+    JEWELRY("Jewelry", false, CollectionRule.of("category contains jewelry",
+        item -> item.categoryContains("jewelry")))
     ;
 
     private final String title;
     private final boolean isBrand;
+    private final CollectionRule rule;
     
-    KeyStoneCollections(String title, boolean isBrand){
+    KeyStoneCollections(String title, boolean isBrand, CollectionRule rule){
         this.title = title;
         this.isBrand = isBrand;
+        this.rule = rule;
     }
     
     @Override
@@ -44,201 +63,31 @@ public enum KeyStoneCollections implements PredefinedCollection {
     }
     
     @Override
-    public boolean accepts(FeedItem feedItem) {
-        switch(this)
-        {
-            case UNDER_5000:
-                return isUnder5000(feedItem);
-            case VINTAGE_WATCHES:
-                return isVintage(feedItem);
-            case PATEK_PHILIPPE:
-                return isPatek(feedItem);
-            case ROLEX:
-                return isRolex(feedItem);
-            case Audemars_Piguet:
-                return isAudemarsPiguet(feedItem);
-            case OtherBrand:
-                return isOtherBrand(feedItem);
-            case CHRONOGRAPHS:
-                return isChronograph(feedItem);
-            case HEUER:
-                return isHeuer(feedItem);
-            case MODERN_WATCHES:
-                return isModernWatch(feedItem);
-            case OMEGA:
-                return isOmega(feedItem);
-            case ROLEX_SPORT_WATCHES:
-                return isRolexSportWatch(feedItem);
-            case SPORT_WATCHES:
-                return isSportWatch(feedItem);
-            case Vacheron_Constantin:
-                return isVacheronConstantin(feedItem);
-            case MENS:
-                return isMens(feedItem);
-            case WOMENS:
-                return isWomens(feedItem);
-            case JEWELRY:
-                return isJewelry(feedItem);
-            default:
-                break;
-        }
-        return false;
-    }
-
-    private boolean isJewelry(FeedItem feedItem){
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "jewelry" )) {
-            return true;
-        }
-        return false;
+    public CollectionRule getRule() {
+        return rule;
     }
 
-    private boolean isMens(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) && 
-                feedItem.getWebStyle() != null && 
-                (feedItem.getWebStyle().equals("Gents") || feedItem.getWebStyle().equals("Unisex"))
-            )
-            return true;
-        return false;
-    }
-    
-    private boolean isWomens(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebCategory(), "watches" ) &&
-                feedItem.getWebStyle() != null &&
-                (feedItem.getWebStyle().equals("Ladies") || feedItem.getWebStyle().equals("Unisex"))
-            )
-            return true;
-        return false;
-    }
-    
-    private boolean isSportWatch(FeedItem feedItem) {
-        if (isRolex(feedItem)) {
-            return true;
-        }
-        
-        if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Nautilus" )) {
-            return true;
-        } else if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Royal Oak" )) {
-            return true;
-        } else return StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Speedmaster");
-    }
-    
-    private boolean isRolexSportWatch(FeedItem feedItem) {
-        if (isRolex(feedItem)) {
-            if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Submariner" )) {
-                return true;
-            } else if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Explorer" )) {
-                return true;
-            } else if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "GMT" )) {
-                return true;
-            } else if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Daytona" )) {
-                return true;
-            } else if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Milgauss" )) {
-                return true;
-            } else if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Cosmograph" )) {
-                return true;
-            } else if (StringUtils.containsIgnoreCase(feedItem.getWebWatchModel(), "Sea-Dweller" )) {
+    /**
+     * True when one of the brand collections accepts the item
+     */
+    public static boolean isAnyBrand(NormalizedFeedItem item) {
+        for (KeyStoneCollections collectEnum : values()) {
+            if (collectEnum.isBrand() && collectEnum.rule.test(item))
                 return true;
-            }
-        } 
-        return false;
-    }
-    
-    private boolean isChronograph(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebDescriptionShort(), "Chronograph" )) {
-            return true;
         }
         return false;
     }
-    
-    private boolean isVintage(FeedItem feedItem) {
-        if (StringUtils.containsIgnoreCase(feedItem.getWebDescriptionShort(), "vintage" )) {
-            return true;
-        } else if (feedItem.getWebWatchYear() != null){
-            if (StringUtils.containsIgnoreCase(feedItem.getWebWatchYear(), "Current")) {
-                return false;
-            } else {
-                try {
-                    int year = Integer.parseInt(feedItem.getWebWatchYear());
-                    if (year < 2000) {
-                        return true;
-                    }
-                } catch(Exception e) {
-                }
-                return false;
-            }
-        }
-        return false;
-    }
-    
-    private boolean isVacheronConstantin(FeedItem feedItem) {
-        if (feedItem.getWebDesigner().equals("Vacheron Constantin"))
-            return true;
-        return false;
-    }
-    
-    private boolean isHeuer(FeedItem feedItem) {
-        if (feedItem.getWebDesigner().equals("Heuer"))
-            return true;
-        return false;
-    }
-    
-    private boolean isOmega(FeedItem feedItem) {
-        if (feedItem.getWebDesigner().equals("Omega"))
-            return true;
-        return false;
-    }
-    
-    private boolean isModernWatch(FeedItem feedItem) {
-        if (feedItem.getWebWatchYear() != null) {
-            if (StringUtils.containsIgnoreCase(feedItem.getWebWatchYear(), "Current")) {
-                return true;
-            } else {
-                try {
-                    int year = Integer.parseInt(feedItem.getWebWatchYear());
-                    if (year >= 2000) {
-                        return true;
-                    }
-                } catch(Exception e) {
-                }
-                return false;
-            }
-        }
-        return false;
-    }
-    
-    private boolean isPatek(FeedItem feedItem) {
-        if (feedItem.getWebDesigner().equals("Patek Philippe"))
-            return true;
-        return false;
-    }
-    
-    private boolean isRolex(FeedItem feedItem) {
-        if (feedItem.getWebDesigner().equals("Rolex"))
-            return true;
-        return false;
-    }
-    
-    private boolean isAudemarsPiguet(FeedItem feedItem) {
-        if (feedItem.getWebDesigner().equals("Audemars Piguet"))
-            return true;
-        return false;
-    }
 
-    private boolean isOtherBrand(FeedItem feedItem) {
-        for (KeyStoneCollections collectEnum : KeyStoneCollections.values()) {
-            if (collectEnum.isBrand() && collectEnum.accepts(feedItem))
-                return false;
-        }
-        return true;
+    private static CollectionRule designer(String designer) {
+        return CollectionRule.of("designer = " + designer, item -> item.designerIs(designer));
     }
-    
-    private boolean isUnder5000(FeedItem feedItem) {
-        if (feedItem.getWebPriceRetail() != null) {
-            double priceSale = Double.parseDouble(feedItem.getWebPriceKeystone());
-            if (priceSale < 5000) {
+
+    private static boolean modelContainsAny(NormalizedFeedItem item, String... texts) {
+        for (String text : texts) {
+            if (item.modelContains(text)) {
                 return true;
             }
         }
         return false;
     }
-}
\ No newline at end of file
+}
@@ -3,8 +3,14 @@ package com.gw.services;
 import com.gw.domain.FeedItem;
 import com.gw.domain.FeedItemChange;
 import com.gw.domain.FeedItemChangeSet;
+import com.gw.domain.FeedItemChangeType;
 import com.gw.domain.PredefinedCollection;
 import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.sync.ChangeClassificationService;
+import com.gw.services.sync.CollectionManagementService;
+import com.gw.services.sync.InventoryBatchWriter;
+import com.gw.services.sync.PriceSyncService;
+import com.gw.services.sync.SoldStatusService;
 import com.gw.services.sync.ProductUpdatePipeline;
 import com.gw.services.sync.ProductPublishPipeline;
 import com.gw.services.sync.SyncConfigurationService;
@@ -86,6 +92,21 @@ public abstract class BaseShopifySyncService implements IShopifySyncService {
     @Autowired
     private SyncConfigurationService syncConfigurationService;
     
+    @Autowired
+    private ChangeClassificationService changeClassificationService;
+    
+    @Autowired
+    private PriceSyncService priceSyncService;
+    
+    @Autowired
+    private InventoryBatchWriter inventoryBatchWriter;
+    
+    @Autowired
+    private SoldStatusService soldStatusService;
+    
+    @Autowired
+    private CollectionManagementService collectionManagementService;
+    
     @Override 
     public abstract PredefinedCollection[] getPredefinedCollections();
 
@@ -107,6 +128,7 @@ public abstract class BaseShopifySyncService implements IShopifySyncService {
 
     @Override
     public void doSyncForFeedItems(List<FeedItem> feedItems) throws Exception {
+        long observedAtMillis = System.currentTimeMillis();
 		// Check to see if there are dupes.
 		Map<String, FeedItem> itemsBySku = new HashMap<String, FeedItem>();
 		List<FeedItem> dupes = new ArrayList<FeedItem>();
@@ -137,9 +159,17 @@ public abstract class BaseShopifySyncService implements IShopifySyncService {
         
         if (changedItemCount < MAX_TO_DELETE_COUNT 
                 && toDeleteItemCount < MAX_TO_DELETE_COUNT) {
+            // Sold items first so their inventory is zeroed before any slower work
+            List<FeedItemChange> changedItems = handleSoldItems(changeSet.getChangedItems(), observedAtMillis);
             handleDeletedItems(changeSet.getDeletedItems());
-            handleNewItems(changeSet.getNewItems());
-            handleChangedItems(changeSet.getChangedItems());
+            // Collection memberships of all new and changed products are synced together at the end
+            collectionManagementService.begin();
+            try {
+                handleNewItems(changeSet.getNewItems());
+                handleChangedItems(changedItems);
+            } finally {
+                collectionManagementService.end();
+            }
             
         } else {
             logger.error("Skipping delete as more feed changed too much :" +
@@ -149,10 +179,52 @@ public abstract class BaseShopifySyncService implements IShopifySyncService {
                     + MAX_TO_DELETE_COUNT + ".  Confirm with Justin and up the MAX_TO_DELETE_COUNT");
         }
 
+        shopifyGraphQLService.getMetadataCacheStats()
+            .forEach((cacheName, stats) -> logger.info("📦 Metadata cache {}: {}", cacheName, stats));
         logger.info("Finished feed processing. Waiting for the next schedule.");
         return;
     }
     
+    /**
+     * Hot lane: zero inventory of items that turned SOLD.
+     * Returns the changes that still need the update pipeline.
+     */
+    private List<FeedItemChange> handleSoldItems(List<FeedItemChange> changedItems, long observedAtMillis) {
+        List<FeedItem> soldItems = new ArrayList<FeedItem>();
+        for (FeedItemChange change : changedItems) {
+            if (change.hasChange(FeedItemChangeType.STATUS) && SoldStatusService.isSold(change.getFromFeed())
+                    && StringUtils.isNotEmpty(change.getFromDb().getShopifyItemId())) {
+                soldItems.add(change.getFromDb());
+            }
+        }
+        if (soldItems.isEmpty()) {
+            return changedItems;
+        }
+        
+        Set<String> zeroedSkus = soldStatusService.zeroInventory(soldItems, observedAtMillis);
+        
+        List<FeedItemChange> remaining = new ArrayList<FeedItemChange>();
+        for (FeedItemChange change : changedItems) {
+            FeedItem itemFromDb = change.getFromDb();
+            if (zeroedSkus.contains(itemFromDb.getWebTagNumber())) {
+                Set<FeedItemChangeType> changeTypes = EnumSet.noneOf(FeedItemChangeType.class);
+                changeTypes.addAll(change.getChangeTypes());
+                changeTypes.remove(FeedItemChangeType.STATUS);
+                if (changeTypes.isEmpty()) {
+                    // Status was the only change, nothing left to do on Shopify
+                    itemFromDb.copyFrom(change.getFromFeed());
+                    itemFromDb.setStatus(FeedItem.STATUS_UPDATED);
+                    feedItemService.updateAutonomous(itemFromDb);
+                    logger.info(getItemActionLogMessage("SOLD", itemFromDb));
+                    continue;
+                }
+                change.setChangeTypes(changeTypes);
+            }
+            remaining.add(change);
+        }
+        return remaining;
+    }
+    
     private void handleDeletedItems(List<FeedItem> deletedItems) {
         logger.info("Handling deleted items: " + deletedItems.size());
         for (FeedItem itemInDb : deletedItems) {
@@ -189,20 +261,69 @@ public abstract class BaseShopifySyncService implements IShopifySyncService {
     
     private void handleChangedItems(List<FeedItemChange> changedItems) {
         logger.info("Handling changed items: " + changedItems.size());
+        
+        // Price-only changes go through the bulk price lane, anything it can't apply falls back to the pipeline
+        List<FeedItemChange> priceOnlyItems = new ArrayList<FeedItemChange>();
+        List<FeedItemChange> pipelineItems = new ArrayList<FeedItemChange>();
         for (FeedItemChange change : changedItems) {
-            FeedItem itemFromDb = change.getFromDb();
-            FeedItem itemFromFeed = change.getFromFeed();
-            try {
-                logger.info("Changed Item SKU : "+itemFromFeed.getWebTagNumber() 
-                    + " As Product ID: " + itemFromDb.getShopifyItemId()
-                );
-                itemFromDb.copyFrom(itemFromFeed);
-                updateItemOnShopify(itemFromDb);
+            if (PriceSyncService.isPriceOnly(change)) {
+                priceOnlyItems.add(change);
+            } else {
+                pipelineItems.add(change);
+            }
+        }
+        pipelineItems.addAll(priceSyncService.syncPrices(priceOnlyItems));
+        
+        // Inventory writes of the whole loop are sent as multi-item batches
+        Map<String, String> previousWebStatusBySku = new HashMap<String, String>();
+        Map<String, Throwable> inventoryFailures;
+        inventoryBatchWriter.begin();
+        try {
+            for (FeedItemChange change : pipelineItems) {
+                FeedItem itemFromDb = change.getFromDb();
+                FeedItem itemFromFeed = change.getFromFeed();
+                try {
+                    logger.info("Changed Item SKU : "+itemFromFeed.getWebTagNumber() 
+                        + " As Product ID: " + itemFromDb.getShopifyItemId()
+                    );
+                    previousWebStatusBySku.put(itemFromDb.getWebTagNumber(), itemFromDb.getWebStatus());
+                    itemFromDb.copyFrom(itemFromFeed);
+                    updateItemOnShopify(itemFromDb, change.getChangeTypes());
+                }
+                catch (Exception e) {
+                    logger.error("Error updating a changed feedItem: ", e);
+                }
             }
-            catch (Exception e) {
-                logger.error("Error updating a changed feedItem: ", e);
+        } finally {
+            inventoryFailures = inventoryBatchWriter.end();
+        }
+        
+        if (!inventoryFailures.isEmpty()) {
+            markInventoryFailures(pipelineItems, previousWebStatusBySku, inventoryFailures);
+        }
+    }
+    
+    /**
+     * Items whose batched inventory write failed were already saved as UPDATED. Put back
+     * their previous webStatus and mark them UPDATE_FAILED, so the next run sees the status
+     * change again and retries the inventory write.
+     */
+    private void markInventoryFailures(List<FeedItemChange> changes, Map<String, String> previousWebStatusBySku,
+            Map<String, Throwable> inventoryFailures) {
+        for (FeedItemChange change : changes) {
+            FeedItem item = change.getFromDb();
+            Throwable error = inventoryFailures.get(item.getWebTagNumber());
+            if (error == null) {
+                continue;
             }
+            logger.error("❌ Inventory update failed for SKU: {} - {}", item.getWebTagNumber(), error.getMessage());
+            item.setWebStatus(previousWebStatusBySku.get(item.getWebTagNumber()));
+            item.setStatus(FeedItem.STATUS_UPDATE_FAILED);
+            item.setSystemMessages("Inventory update failed: " + error.getMessage());
+            feedItemService.updateAutonomous(item);
         }
+        logService.emailError(logger,
+            "Shopify Bot: Failed to update inventory for Skus: " + inventoryFailures.keySet(), null, null);
     }
     
     /* 
@@ -213,7 +334,11 @@ public abstract class BaseShopifySyncService implements IShopifySyncService {
      */
     @Override
 	public FeedItemChangeSet compareFeedItemWithDB(final List<FeedItem> feedItems){
-        return feedItemService.compareFeedItemWithDB(forceUpdate, feedItems);
+        FeedItemChangeSet changeSet = feedItemService.compareFeedItemWithDB(forceUpdate, feedItems);
+        if (!forceUpdate && changeSet.getChangedItems() != null) {
+            changeClassificationService.classifyAll(changeSet.getChangedItems(), getPredefinedCollections());
+        }
+        return changeSet;
     }
 
     private String getItemActionLogMessage(String action, FeedItem feedItem){
@@ -225,9 +350,16 @@ public abstract class BaseShopifySyncService implements IShopifySyncService {
     
     @Override
     public void updateItemOnShopify(FeedItem item) {
-        logger.info("🔄 Delegating product update to ProductUpdatePipeline for SKU: {}", item.getWebTagNumber());
+        updateItemOnShopify(item, EnumSet.allOf(FeedItemChangeType.class));
+    }
+    
+    /**
+     * Update the product running only the pipeline steps affected by the given change types
+     */
+    public void updateItemOnShopify(FeedItem item, Set<FeedItemChangeType> changeTypes) {
+        logger.info("🔄 Delegating product update to ProductUpdatePipeline for SKU: {} changes: {}", item.getWebTagNumber(), changeTypes);
         
-        ProductUpdatePipeline.ProductUpdateResult result = productUpdatePipeline.executeUpdate(item);
+        ProductUpdatePipeline.ProductUpdateResult result = productUpdatePipeline.executeUpdate(item, changeTypes);
         
         if (result.isSuccess()) {
             // Update item status and finalize
@@ -6,6 +6,8 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.gw.domain.CollectionClassifier;
+import com.gw.domain.CollectionMask;
 import com.gw.domain.FeedItem;
 import com.gw.domain.PredefinedCollection;
 import com.gw.services.shopifyapi.objects.Collect;
@@ -42,12 +44,14 @@ public class CollectionUtility {
     public static List<Collect> getCollectionForProduct(String productId, FeedItem feedItem, 
             Map<PredefinedCollection, CustomCollection> collectionByEnum) {
         List<Collect> collects = new ArrayList<Collect>();
+        PredefinedCollection[] collections = collectionByEnum.keySet().toArray(new PredefinedCollection[0]);
+        long mask = new CollectionClassifier(collections).classify(feedItem);
         
-        for (PredefinedCollection collectionEnum : collectionByEnum.keySet()) {
-            if (collectionEnum.accepts(feedItem)) {
+        for (int i = 0; i < collections.length; i++) {
+            if (CollectionMask.contains(mask, i)) {
                 Collect newCollect = new Collect();
                 newCollect.setProductId(productId);
-                newCollect.setCollectionId(collectionByEnum.get(collectionEnum).getId());
+                newCollect.setCollectionId(collectionByEnum.get(collections[i]).getId());
                 collects.add(newCollect);
             }
         }
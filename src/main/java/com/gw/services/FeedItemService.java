@@ -2,6 +2,7 @@ package com.gw.services;
  
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,7 +18,9 @@ import org.springframework.transaction.annotation.Transactional;
 import com.gw.domain.FeedItem;
 import com.gw.domain.FeedItemChange;
 import com.gw.domain.FeedItemChangeSet;
+import com.gw.domain.FeedItemChangeType;
 import com.gw.domain.FeedItemDao;
+import com.gw.domain.ListingKey;
 @Component
 @Transactional
 public class FeedItemService {
@@ -45,7 +48,18 @@ public class FeedItemService {
                 	logger.info("Force update : " + forceUpdate);
                     logger.info("IN DB  : " + itemFromDb);
                     logger.info("IN FEED: " + itemFromFeed);
-                    changedItems.add(new FeedItemChange(itemFromDb, itemFromFeed));
+                    FeedItemChange change = new FeedItemChange(itemFromDb, itemFromFeed);
+                    if (!forceUpdate) {
+                        change.setChangeTypes(itemFromDb.getShopifyChangeTypes(itemFromFeed));
+                    }
+                    logger.info("Change types: " + change.getChangeTypes());
+                    changedItems.add(change);
+                } else if (itemFromDb.hasUnappliedCollections()) {
+                    // A collection write failed in an earlier run, retry it
+                    logger.info("Unapplied collections for SKU: " + itemFromDb.getWebTagNumber());
+                    FeedItemChange change = new FeedItemChange(itemFromDb, itemFromFeed);
+                    change.setChangeTypes(EnumSet.of(FeedItemChangeType.COLLECTIONS));
+                    changedItems.add(change);
                 }
             } else {
                 newItems.add(itemFromFeed);
@@ -72,6 +86,13 @@ public class FeedItemService {
         return toDelete;
     }
     
+    /**
+     * What reconciliation compares per SKU, read without loading the items
+     */
+    public List<ListingKey> getListingKeys() {
+        return feedItemDao.findListingKeys();
+    }
+    
     public Map<String, FeedItem> getFeedItemBySkuMap(){
         List<FeedItem> allItemsInDb = findAll();
         return allItemsInDb.stream().collect(Collectors.toMap(FeedItem::getWebTagNumber, c->c));
@@ -115,6 +136,11 @@ public class FeedItemService {
         feedItemDao.update(item);
     }
     
+    @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+    public void updateWebStatusAutonomous(String webTagNumber, String webStatus){
+        feedItemDao.updateWebStatus(webTagNumber, webStatus);
+    }
+    
     public FeedItem findByWebTagNumber(String webTagNumber){
         return feedItemDao.findByWebTagNumber(webTagNumber);
     }
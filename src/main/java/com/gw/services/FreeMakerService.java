@@ -2,8 +2,21 @@ package com.gw.services;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import jakarta.annotation.PostConstruct;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -16,26 +29,119 @@ import freemarker.template.TemplateException;
 import freemarker.template.TemplateNotFoundException;
 import freemarker.template.Version;
 
+/**
+ * Renders feed items with the FreeMarker templates on the classpath.
+ *
+ * - One Configuration for the application, templates are parsed once and kept in its cache
+ * - Rendered output is memoised by template name, template version (hash of its source)
+ *   and the item's content fingerprint, so an unchanged item is never rendered twice
+ * - The output cache is an LRU bounded by ftl.render.cache.size (0 disables it)
+ */
 @Component
 public class FreeMakerService {
 
+    private static Logger logger = LogManager.getLogger(FreeMakerService.class);
+
     @Value("${ftl.template.file}")
     private String descriptionBodyTemplateFileName;
-    
-    public String generateFromTemplate(FeedItem feedItem) throws 
+
+    @Value("${ftl.render.cache.size:10000}")
+    private int renderCacheSize;
+
+    private final freemarker.template.Configuration configuration = createConfiguration();
+    private final Map<String, TemplateVersion> templateVersions = new ConcurrentHashMap<>();
+    private Map<String, String> renderCache;
+
+    private final AtomicLong renderCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        renderCache = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > renderCacheSize;
+            }
+        });
+    }
+
+    public String generateFromTemplate(FeedItem feedItem) throws
+        TemplateNotFoundException, MalformedTemplateNameException, ParseException, IOException, TemplateException {
+        return generateFromTemplate(descriptionBodyTemplateFileName, feedItem);
+    }
+
+    public String generateFromTemplate(String templateName, FeedItem feedItem) throws
         TemplateNotFoundException, MalformedTemplateNameException, ParseException, IOException, TemplateException {
-    
-        Template itemBodyTemplate = getConfiguration().getTemplate(descriptionBodyTemplateFileName);
+
+        TemplateVersion template = getTemplate(templateName);
+        String cacheKey = renderCacheSize > 0
+            ? templateName + ":" + template.version + ":" + feedItem.contentFingerprint()
+            : null;
+        if (cacheKey != null) {
+            String cached = renderCache.get(cacheKey);
+            if (cached != null) {
+                cacheHitCount.incrementAndGet();
+                return cached;
+            }
+        }
+
         StringWriter strWriter = new StringWriter();
-        itemBodyTemplate.process(feedItem, strWriter);
-        return strWriter.toString();
+        template.template.process(feedItem, strWriter);
+        String output = strWriter.toString();
+        renderCount.incrementAndGet();
+        if (cacheKey != null) {
+            renderCache.put(cacheKey, output);
+        }
+        return output;
+    }
+
+    public void clearRenderCache() {
+        renderCache.clear();
+    }
+
+    public long getRenderCount() { return renderCount.get(); }
+    public long getCacheHitCount() { return cacheHitCount.get(); }
+
+    /**
+     * Template from the configuration cache with the hash of its source, rehashed only
+     * when the configuration hands out a different (reloaded) template
+     */
+    private TemplateVersion getTemplate(String templateName) throws IOException {
+        Template template = configuration.getTemplate(templateName);
+        TemplateVersion version = templateVersions.get(templateName);
+        if (version == null || version.template != template) {
+            version = new TemplateVersion(template, sha256(template.toString()));
+            templateVersions.put(templateName, version);
+            logger.info("Loaded template " + templateName + " (version " + version.version.substring(0, 12) + ")");
+        }
+        return version;
     }
 
-    private freemarker.template.Configuration getConfiguration() throws IOException {
+    private static freemarker.template.Configuration createConfiguration() {
         freemarker.template.Configuration cfg = new freemarker.template.Configuration(new Version(2, 3, 26));
-        cfg.setClassForTemplateLoading(this.getClass(), "/");
+        cfg.setClassForTemplateLoading(FreeMakerService.class, "/");
         cfg.setDefaultEncoding("UTF-8");
         cfg.setLocale(Locale.US);
+        // Templates ship inside the jar, no need to check them for changes
+        cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
         return cfg;
     }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class TemplateVersion {
+        private final Template template;
+        private final String version;
+
+        private TemplateVersion(Template template, String version) {
+            this.template = template;
+            this.version = version;
+        }
+    }
 }
@@ -0,0 +1,244 @@
+package com.gw.services;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductMediaCount;
+import com.gw.services.sync.ProductImageSyncService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Image Audit Service
+ *
+ * Compares the media count of every Shopify product with the image count of its feed item
+ * and optionally repairs the products with missing images.
+ *
+ * - Product media counts are streamed page by page with a lightweight query
+ *   (ID, first SKU, mediaCount) instead of loading full products
+ * - Each page is compared on a worker pool while the next page is being fetched
+ * - Products with missing images are queued for repair on a bounded repair pool; a repair
+ *   downloads the item's images and runs ProductImageSyncService, which only uploads
+ *   the media that are actually missing
+ */
+@Service
+public class ImageAuditService {
+
+    private static final Logger logger = LogManager.getLogger(ImageAuditService.class);
+
+    @Value("${image.audit.page.size:250}")
+    private int pageSize;
+
+    @Value("${image.audit.concurrency:4}")
+    private int concurrency;
+
+    @Value("${image.audit.repair.concurrency:2}")
+    private int repairConcurrency;
+
+    @Autowired
+    private ShopifyGraphQLService shopifyApiService;
+
+    @Autowired
+    private FeedItemService feedItemService;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ProductImageSyncService productImageSyncService;
+
+    /**
+     * Audit all products
+     *
+     * @param repair True to repair products with missing images, false for a read-only audit
+     */
+    public ImageAuditReport audit(boolean repair) throws Exception {
+        long start = System.currentTimeMillis();
+        logger.info("=== Starting image audit (repair: {}) ===", repair);
+
+        Map<String, FeedItem> feedItemBySku = feedItemService.getFeedItemBySkuMap();
+        logger.info("📊 Loaded {} items from database", feedItemBySku.size());
+
+        ImageAuditReport report = new ImageAuditReport();
+        ExecutorService compareExecutor = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        ExecutorService repairExecutor = repair ? Executors.newFixedThreadPool(Math.max(1, repairConcurrency)) : null;
+        Set<String> queuedSkus = ConcurrentHashMap.newKeySet();
+        List<Future<?>> pages = new ArrayList<>();
+
+        try {
+            shopifyApiService.streamProductMediaCounts(pageSize, page -> pages.add(compareExecutor.submit(() -> {
+                for (ProductMediaCount product : page) {
+                    ImageCountMismatch missing = compare(product, feedItemBySku, report);
+                    if (missing != null && repairExecutor != null && queuedSkus.add(missing.getSku())) {
+                        FeedItem feedItem = feedItemBySku.get(missing.getSku());
+                        repairExecutor.submit(() -> repairQueued(feedItem, missing.getProductId(), report));
+                    }
+                }
+            })));
+
+            for (Future<?> page : pages) {
+                page.get();
+            }
+        } finally {
+            compareExecutor.shutdown();
+            if (repairExecutor != null) {
+                repairExecutor.shutdown();
+                repairExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        report.elapsedMillis = System.currentTimeMillis() - start;
+        logReport(report);
+        return report;
+    }
+
+    /**
+     * Repair the images of one product
+     */
+    public void repair(FeedItem feedItem, String productId) throws Exception {
+        ImageService.ImageProcessingResult downloadResult =
+            imageService.handleImageProcessing(feedItem, feedItem.getWebTagNumber());
+        if (!downloadResult.isSkipped() && !downloadResult.isSuccess()) {
+            logger.warn("⚠️ Image download failed for {}, syncing what is available", feedItem.getWebTagNumber());
+        }
+        productImageSyncService.syncImages(feedItem, productId, true);
+    }
+
+    private ImageCountMismatch compare(ProductMediaCount product, Map<String, FeedItem> feedItemBySku, ImageAuditReport report) {
+        if (product.getSku() == null) {
+            report.productsWithoutSku.incrementAndGet();
+            return null;
+        }
+        FeedItem feedItem = feedItemBySku.get(product.getSku());
+        if (feedItem == null) {
+            report.productsWithoutFeedItem.incrementAndGet();
+            return null;
+        }
+
+        report.productsAnalyzed.incrementAndGet();
+        int expected = feedItem.getImageCount();
+        int actual = product.getMediaCount();
+        report.totalExpectedImages.addAndGet(expected);
+        report.totalActualImages.addAndGet(actual);
+
+        if (actual == expected) {
+            report.productsWithCorrectImages.incrementAndGet();
+            return null;
+        }
+        ImageCountMismatch mismatch = new ImageCountMismatch(product.getSku(), product.getProductId(), expected, actual);
+        if (actual < expected) {
+            report.missingImages.add(mismatch);
+            return mismatch;
+        }
+        report.extraImages.add(mismatch);
+        return null;
+    }
+
+    private void repairQueued(FeedItem feedItem, String productId, ImageAuditReport report) {
+        try {
+            repair(feedItem, productId);
+            report.repaired.incrementAndGet();
+            logger.info("✅ Repaired images for SKU: {}", feedItem.getWebTagNumber());
+        } catch (Exception e) {
+            report.repairFailed.incrementAndGet();
+            logger.error("❌ Failed to repair images for SKU: {} - {}", feedItem.getWebTagNumber(), e.getMessage());
+        }
+    }
+
+    private void logReport(ImageAuditReport report) {
+        logger.info("📊 Image audit finished in {}s", report.elapsedMillis / 1000);
+        logger.info("  - Products analyzed: {}", report.getProductsAnalyzed());
+        logger.info("  - Products with correct images: {}", report.getProductsWithCorrectImages());
+        logger.info("  - Products with missing images: {}", report.getMissingImages().size());
+        logger.info("  - Products with extra images: {}", report.getExtraImages().size());
+        logger.info("  - Total expected / actual images: {} / {}", report.getTotalExpectedImages(), report.getTotalActualImages());
+        if (report.getProductsWithoutSku() > 0) {
+            logger.warn("⚠️ Products without SKU: {}", report.getProductsWithoutSku());
+        }
+        if (report.getProductsWithoutFeedItem() > 0) {
+            logger.warn("⚠️ Products without feed item: {}", report.getProductsWithoutFeedItem());
+        }
+        if (report.getRepaired() > 0 || report.getRepairFailed() > 0) {
+            logger.info("🔧 Repaired: {}, failed: {}", report.getRepaired(), report.getRepairFailed());
+        }
+        report.getMissingImages().stream().limit(20).forEach(mismatch ->
+            logger.info("  ❌ SKU: {} expected {} images, has {}", mismatch.getSku(), mismatch.getExpected(), mismatch.getActual()));
+    }
+
+    /**
+     * Result of an image audit
+     */
+    public static class ImageAuditReport {
+        private final AtomicInteger productsAnalyzed = new AtomicInteger();
+        private final AtomicInteger productsWithCorrectImages = new AtomicInteger();
+        private final AtomicInteger productsWithoutSku = new AtomicInteger();
+        private final AtomicInteger productsWithoutFeedItem = new AtomicInteger();
+        private final AtomicInteger totalExpectedImages = new AtomicInteger();
+        private final AtomicInteger totalActualImages = new AtomicInteger();
+        private final AtomicInteger repaired = new AtomicInteger();
+        private final AtomicInteger repairFailed = new AtomicInteger();
+        private final ConcurrentLinkedQueue<ImageCountMismatch> missingImages = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<ImageCountMismatch> extraImages = new ConcurrentLinkedQueue<>();
+        private long elapsedMillis;
+
+        public int getProductsAnalyzed() { return productsAnalyzed.get(); }
+        public int getProductsWithCorrectImages() { return productsWithCorrectImages.get(); }
+        public int getProductsWithoutSku() { return productsWithoutSku.get(); }
+        public int getProductsWithoutFeedItem() { return productsWithoutFeedItem.get(); }
+        public int getTotalExpectedImages() { return totalExpectedImages.get(); }
+        public int getTotalActualImages() { return totalActualImages.get(); }
+        public int getRepaired() { return repaired.get(); }
+        public int getRepairFailed() { return repairFailed.get(); }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        /** Products with fewer media than feed images, most missing first */
+        public List<ImageCountMismatch> getMissingImages() {
+            return missingImages.stream()
+                .sorted(Comparator.comparingInt(ImageCountMismatch::getMissing).reversed())
+                .collect(Collectors.toList());
+        }
+
+        public List<ImageCountMismatch> getExtraImages() {
+            return new ArrayList<>(extraImages);
+        }
+    }
+
+    /**
+     * One product whose media count differs from its feed item's image count
+     */
+    public static class ImageCountMismatch {
+        private final String sku;
+        private final String productId;
+        private final int expected;
+        private final int actual;
+
+        public ImageCountMismatch(String sku, String productId, int expected, int actual) {
+            this.sku = sku;
+            this.productId = productId;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        public String getSku() { return sku; }
+        public String getProductId() { return productId; }
+        public int getExpected() { return expected; }
+        public int getActual() { return actual; }
+        public int getMissing() { return Math.max(0, expected - actual); }
+    }
+}
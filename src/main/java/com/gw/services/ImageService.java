@@ -1,33 +1,42 @@
 package com.gw.services;
 
-import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Date;
+import java.util.HexFormat;
 import java.util.List;
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.tika.Tika;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.convertapi.client.Config;
+import com.convertapi.client.ConvertApi;
+import com.convertapi.client.Param;
 import com.gw.domain.FeedItem;
 import com.gw.ssl.SSLUtilities;
+import com.gw.services.image.ImageDownloader;
+import com.gw.services.image.ImageManifest;
+import com.gw.services.image.ImageManifestStore;
+import com.gw.services.image.ImageTranscoder;
+import com.gw.services.image.ImageTypeDetector;
 import com.gw.services.shopifyapi.objects.Product;
 
 /**
@@ -52,6 +61,23 @@ public class ImageService {
     protected @Value("${css.hosting.url.base}") String cssHostingUrlBase;
     private @Value("${image.store.dir}") String imageStore;
     private @Value("${skip.image.download:false}") boolean skipImageDownload;
+    private @Value("${image.download.revalidate:true}") boolean revalidateImages;
+    private @Value("${image.transcode.enabled:false}") boolean transcodeImages;
+    private @Value("${convertapi.secret:}") String convertApiSecret;
+    
+    private static final int MAX_IMAGE_SLOTS = 9;
+    
+    @Autowired
+    private ImageManifestStore imageManifestStore;
+    
+    @Autowired
+    private ImageDownloader imageDownloader;
+    
+    @Autowired
+    private ImageTranscoder imageTranscoder;
+    
+    @Autowired
+    private ImageTypeDetector imageTypeDetector;
 
     
     static {
@@ -91,7 +117,12 @@ public class ImageService {
     }
 
     /**
-     * Download images for a feed item with comprehensive validation
+     * Download images for a feed item with comprehensive validation.
+     * 
+     * All slots are fetched concurrently by the ImageDownloader, one request per image.
+     * Images whose source URL is unchanged since the last download and whose stored
+     * bytes still match the recorded digest are revalidated with a conditional GET
+     * (or not requested at all with image.download.revalidate=false).
      */
     public void downloadImages(FeedItem feedItem) throws Exception {
         //Ensure folder exists
@@ -104,166 +135,261 @@ public class ImageService {
             throw new Exception("Can't write to image store folder." + imageStore);
         }
 
-        String image1FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-1.jpg";
-        String image2FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-2.jpg";
-        String image3FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-3.jpg";
-        String image4FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-4.jpg";
-        String image5FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-5.jpg";
-        String image6FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-6.jpg";
-        String image7FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-7.jpg";
-        String image8FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-8.jpg";
-        String image9FileName = imageStore+File.separator+feedItem.getWebTagNumber() + "-9.jpg";
-        
-        downloadImagesIfAvailable(feedItem.getWebImagePath1(), image1FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath2(), image2FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath3(), image3FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath4(), image4FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath5(), image5FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath6(), image6FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath7(), image7FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath8(), image8FileName);
-        downloadImagesIfAvailable(feedItem.getWebImagePath9(), image9FileName);
+        ImageManifest manifest = imageManifestStore.load(feedItem.getWebTagNumber());
+        try {
+            Map<Integer, CompletableFuture<ImageDownloader.Result>> downloads = new TreeMap<>();
+            for (int slot = 1; slot <= MAX_IMAGE_SLOTS; slot++) {
+                String sourceUrl = feedItem.getWebImagePath(slot);
+                if (sourceUrl == null) {
+                    manifest.removeSlot(slot);
+                    continue;
+                }
+                
+                File imageFile = new File(getImageFileName(feedItem.getWebTagNumber(), slot));
+                ImageManifest.Entry entry = manifest.getSlot(slot);
+                boolean unchanged = entry != null && sourceUrl.equals(entry.getSourceUrl()) && entry.getSha256() != null
+                        && entry.getSha256().equals(sha256(imageFile));
+                if (unchanged && !revalidateImages) {
+                    logger.debug("Image unchanged, skipping download: " + imageFile);
+                    continue;
+                }
+                
+                // Only revalidate the file when it still holds what this URL gave us last time
+                String etag = unchanged ? entry.getEtag() : null;
+                String lastModified = !unchanged ? null : entry.getLastModified() != null
+                        ? entry.getLastModified() : DateUtils.formatDate(new Date(imageFile.lastModified()));
+                
+                String urlToUse = replaceIPAddressInUrl(sourceUrl, imageSourceIp);
+                logger.debug("Downloading image from: " + urlToUse);
+                CompletableFuture<ImageDownloader.Result> download = imageDownloader.submit(urlToUse, imageFile, etag, lastModified)
+                    .thenApply(result -> routeIfDownloaded(result, imageFile));
+                if (transcodeImages) {
+                    download = download.thenCompose(result -> transcodeIfDownloaded(result, imageFile));
+                }
+                downloads.put(slot, download);
+            }
+            
+            Exception failure = null;
+            for (Map.Entry<Integer, CompletableFuture<ImageDownloader.Result>> download : downloads.entrySet()) {
+                int slot = download.getKey();
+                try {
+                    ImageDownloader.Result result = download.getValue().join();
+                    ImageManifest.Entry entry = manifest.getSlot(slot);
+                    if (result.isModified()) {
+                        entry = manifest.putSlot(slot, feedItem.getWebImagePath(slot), result.getSha256());
+                        entry.setMimeType(result.getMimeType(), getImageFile(feedItem.getWebTagNumber(), slot));
+                    }
+                    entry.setEtag(result.getEtag());
+                    entry.setLastModified(result.getLastModified());
+                } catch (CompletionException e) {
+                    logger.error("Image failed to download for " + feedItem.getWebTagNumber() + "-" + slot + ": "
+                        + e.getCause().getMessage());
+                    if (failure == null) {
+                        failure = new Exception("Image failed to download: " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            imageManifestStore.save(manifest);
+        }
     }
     
-    private void downloadImagesIfAvailable(String httpUrl, String imageFileName) throws Exception{
-        File imageFile = new File(imageFileName);
-
-        if (httpUrl != null) {
-            String urlToUse = replaceIPAddressInUrl(httpUrl, imageSourceIp);
-            
-            logger.info("Downloading image from: " + urlToUse);
-            
-            URL imageUrl = new URL(urlToUse);
-            HttpURLConnection connection = (HttpURLConnection) imageUrl.openConnection();
-            final int responseCode = connection.getResponseCode();
-            if (responseCode == 200) {
-                InputStream input = new BufferedInputStream(imageUrl.openStream());
-                Files.copy(input, imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                logger.info("Saved image " + imageFileName);
-            } else {
-                logger.error("Image URL returned non 200 code.  Skipping. ");
-                throw new Exception("Image failed to download: " + urlToUse);
+    /**
+     * Sniff a freshly downloaded image once and route it by type: JPEG and other web
+     * formats pass through, HEIC/HEIF is converted to JPEG, anything else is rejected
+     * (and removed so it isn't served as the slot's image).
+     * Conversion is opt-in: without convertapi.secret every image is kept as downloaded.
+     */
+    private ImageDownloader.Result routeIfDownloaded(ImageDownloader.Result result, File imageFile) {
+        if (!result.isModified()) {
+            return result;
+        }
+        try {
+            String mimeType = imageTypeDetector.detect(imageFile);
+            if (StringUtils.isEmpty(convertApiSecret)) {
+                if (ImageTypeDetector.route(mimeType) != ImageTypeDetector.Route.PASSTHROUGH) {
+                    logger.warn("Keeping " + mimeType + " image as is, convertapi.secret is not set: " + imageFile.getName());
+                }
+                return result.withContent(result.getSha256(), mimeType);
+            }
+            switch (ImageTypeDetector.route(mimeType)) {
+                case PASSTHROUGH:
+                    return result.withContent(result.getSha256(), mimeType);
+                case CONVERT:
+                    convertHeicToJpg(imageFile);
+                    return result.withContent(sha256(imageFile), ImageTypeDetector.JPEG);
+                default:
+                    imageFile.delete();
+                    throw new IOException("Unsupported image type " + mimeType + ": " + imageFile.getName());
             }
+        } catch (IOException e) {
+            throw new CompletionException(e);
         }
     }
-
+    
+    /**
+     * Convert a HEIC/HEIF file to JPEG in place with ConvertAPI
+     */
+    private void convertHeicToJpg(File imageFile) throws IOException {
+        long start = System.currentTimeMillis();
+        Path converted = new File(imageFile.getPath() + ".converted.jpg").toPath();
+        try {
+            ConvertApi.convert("heic", "jpg", new Param[] { new Param("File", imageFile.toPath()) },
+                Config.defaults(convertApiSecret)).get().saveFile(converted).get();
+            Files.move(converted, imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("HEIC conversion interrupted: " + imageFile.getName(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("HEIC conversion failed: " + imageFile.getName() + " - " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            Files.deleteIfExists(converted);
+        }
+        logger.info("Converted HEIC to JPEG: " + imageFile.getName() + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+    
     /**
-     * Uses Apache Tika to check if a given file is a HEIC image by analyzing its MIME type.
-     * This provides a more robust detection compared to checking file signatures manually.
+     * Shrink a freshly downloaded image, the manifest then records the digest of the stored bytes
+     */
+    private CompletableFuture<ImageDownloader.Result> transcodeIfDownloaded(ImageDownloader.Result result, File imageFile) {
+        if (!result.isModified()) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return imageTranscoder.submit(imageFile).thenApply(transcoded -> transcoded.isTranscoded()
+            ? result.withContent(transcoded.getSha256(), ImageTypeDetector.JPEG)
+            : result);
+    }
+    
+    /**
+     * Image manifest of the feed item with its slots aligned to the item's image paths.
+     * Slots not downloaded (e.g. skip.image.download) are identified by source URL only.
+     */
+    public ImageManifest getImageManifest(FeedItem feedItem) {
+        ImageManifest manifest = imageManifestStore.load(feedItem.getWebTagNumber());
+        for (int slot = 1; slot <= MAX_IMAGE_SLOTS; slot++) {
+            String sourceUrl = feedItem.getWebImagePath(slot);
+            ImageManifest.Entry entry = manifest.getSlot(slot);
+            if (sourceUrl == null) {
+                manifest.removeSlot(slot);
+            } else if (entry == null || !sourceUrl.equals(entry.getSourceUrl())) {
+                manifest.putSlot(slot, sourceUrl, null);
+            }
+        }
+        return manifest;
+    }
+    
+    public void saveImageManifest(ImageManifest manifest) {
+        imageManifestStore.save(manifest);
+    }
+    
+    /**
+     * Local file of one image slot in the image store
+     */
+    public File getImageFile(String sku, int slot) {
+        return new File(getImageFileName(sku, slot));
+    }
+    
+    private String getImageFileName(String sku, int slot) {
+        return imageStore + File.separator + sku + "-" + slot + ".jpg";
+    }
+    
+    /**
+     * SHA-256 of a file as hex, null if the file doesn't exist
+     */
+    private String sha256(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Checks if a given file is a HEIC/HEIF image from its magic bytes.
      * 
      * @param file Image file to check
      * @return true if the file is HEIC, false otherwise
      */
     public boolean isHeicImage(File file) {
-        try {
-            Tika tika = new Tika();
-            String mimeType = tika.detect(file);
-            
-            // Check for HEIC MIME types
-            return mimeType != null && (
-                mimeType.equals("image/heic") || 
-                mimeType.equals("image/heif") ||
-                mimeType.equals("image/heic-sequence") ||
-                mimeType.equals("image/heif-sequence")
-            );
-            
-        } catch (IOException e) {
-            logger.error("Error checking if file is HEIC using Tika: " + file.getName(), e);
-            return false;
-        }
+        return ImageTypeDetector.isHeic(detectMimeType(file));
     }
 
     /**
-     * Uses Apache Tika to check if a given file is a JPG/JPEG image by analyzing its MIME type.
+     * Checks if a given file is a JPG/JPEG image from its magic bytes.
      * 
      * @param file Image file to check
      * @return true if the file is JPG/JPEG, false otherwise
      */
     public boolean isJpg(File file) {
+        return ImageTypeDetector.JPEG.equals(detectMimeType(file));
+    }
+    
+    /**
+     * Media type of an image slot, from the manifest when the stored file still has the
+     * length and modification time it was detected with, otherwise sniffed and recorded.
+     */
+    public String getMimeType(String sku, int slot) throws IOException {
+        File imageFile = getImageFile(sku, slot);
+        ImageManifest manifest = imageManifestStore.load(sku);
+        ImageManifest.Entry entry = manifest.getSlot(slot);
+        if (entry != null && entry.hasMimeTypeOf(imageFile)) {
+            return entry.getMimeType();
+        }
+        String mimeType = imageTypeDetector.detect(imageFile);
+        if (entry != null) {
+            entry.setMimeType(mimeType, imageFile);
+            imageManifestStore.save(manifest);
+        }
+        return mimeType;
+    }
+    
+    private String detectMimeType(File file) {
         try {
-            Tika tika = new Tika();
-            String mimeType = tika.detect(file);
-            
-            // Check for JPG/JPEG MIME types
-            return mimeType != null && (
-                mimeType.equals("image/jpeg") ||
-                mimeType.equals("image/jpg")
-            );
-            
+            return imageTypeDetector.detect(file);
         } catch (IOException e) {
-            logger.error("Error checking if file is JPG using Tika: " + file.getName(), e);
-            return false;
+            logger.error("Error detecting image type: " + file.getName(), e);
+            return null;
         }
     }
 
     /**
-     * Compresses an image file if it is larger than 1MB.
-     * The compression is done by reducing the JPEG quality iteratively until the file size
-     * is below 1MB or the minimum quality threshold (0.1) is reached.
+     * Compresses an image file if it is larger than the transcode size target
+     * (image.transcode.max.bytes, 1MB by default). See ImageTranscoder.
      * 
      * @param imageFilePath The full path to the image file to compress
      */
     public void assertImageUnder1MB(String imageFilePath){
+        File imageFile = new File(imageFilePath);
+        if (!imageFile.exists()) {
+            logger.warn("Image file does not exist: " + imageFilePath);
+            return;
+        }
         try {
-            File imageFile = new File(imageFilePath);
-            if (!imageFile.exists()) {
-                logger.warn("Image file does not exist: " + imageFilePath);
-                return;
-            }
-
-            // Check if file size is greater than 1MB
-            long fileSize = imageFile.length();
-            if (fileSize > 1024 * 1024) { // 1MB = 1024 * 1024 bytes
-                logger.info("Image size is " + (fileSize/1024/1024) + "MB, compressing: " + imageFilePath);
-                
-                float quality = 0.7f;
-                byte[] compressedBytes;
-                
-                do {
-                    // Read the image
-                    BufferedImage originalImage = ImageIO.read(imageFile);
-                    
-                    // Create output stream
-                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                    
-                    // Compress and write to output stream
-                    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-                    ImageWriter writer = writers.next();
-                    ImageWriteParam params = writer.getDefaultWriteParam();
-                    params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                    params.setCompressionQuality(quality);
-                    
-                    ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream);
-                    writer.setOutput(imageOutputStream);
-                    writer.write(null, new IIOImage(originalImage, null, null), params);
-                    
-                    // Clean up
-                    writer.dispose();
-                    imageOutputStream.close();
-                    
-                    compressedBytes = outputStream.toByteArray();
-                    
-                    // Reduce quality if still too large
-                    if (compressedBytes.length > 1024 * 1024) {
-                        quality -= 0.1f;
-                        if (quality < 0.1f) {
-                            logger.warn("Could not compress image below 1MB even at lowest quality: " + imageFilePath);
-                            return;
-                        }
-                    }
-                    logger.info("Compressed to: " + ((double)compressedBytes.length/1024/1024));
-                } while (compressedBytes.length > 1024 * 1024);
-                
-                // Write compressed image back to file
-                Files.write(imageFile.toPath(), compressedBytes);
-                
-                logger.info("Successfully compressed image to " + ((double)compressedBytes.length/1024/1024) + "MB with quality " + quality + ": " + imageFilePath);
-            }
+            imageTranscoder.transcode(imageFile);
         } catch (Exception e) {
             logger.error("Error compressing image: " + imageFilePath, e);
         }
     }
     
+    /**
+     * CSS-hosted external image URL of one image slot
+     */
+    public String getExternalImagePathByCSS(String sku, int slot) {
+        return cssHostingUrlBase + "/images/watches/" + sku + "-" + slot + ".jpg";
+    }
+    
     /**
      * Generate CSS-hosted external image URLs for a feed item
      * Used by ProductImageService for Shopify image upload
@@ -1,9 +1,15 @@
 package com.gw.services;
 
 import com.gw.domain.FeedItem;
+import com.gw.domain.ListingKey;
+import com.gw.domain.SkuMerkleTree;
 import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.SkuIdIndex;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductMediaCount;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductSku;
 import com.gw.services.shopifyapi.objects.Product;
 import com.gw.services.shopifyapi.objects.Variant;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +19,13 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -26,6 +39,11 @@ import java.util.stream.Collectors;
  * 1. ANALYSIS: Read-only analysis that reports differences without making changes
  * 2. RECONCILIATION: Actually performs the reconciliation work
  * 
+ * The analysis splits the SKU space into ranges and keeps a hash per range for each
+ * side (see SkuMerkleTree), built from a light Shopify product listing, a DB projection
+ * and the feed SKUs. Only ranges whose hashes differ are compared entry by entry, a
+ * catalog in sync is verified without loading full products or DB items.
+ * 
  * @author jyuan
  */
 @Service
@@ -45,6 +63,23 @@ public class ReconciliationService {
     @Autowired(required = false)
     private IFeedService feedService;
     
+    @Value("${reconciliation.merkle.enabled:true}")
+    private boolean merkleEnabled;
+    
+    // 2^depth SKU ranges
+    @Value("${reconciliation.merkle.depth:8}")
+    private int merkleDepth;
+    
+    private static final int PRODUCT_PAGE_SIZE = 250;
+    
+    // Shared deadline for reading Shopify, the DB and the feed concurrently
+    @Value("${reconciliation.source.timeout.seconds:900}")
+    private long sourceTimeoutSeconds;
+    
+    // Deadline of the comparison phases, counted from when all sources arrived
+    @Value("${reconciliation.analysis.timeout.seconds:300}")
+    private long analysisTimeoutSeconds;
+    
     /**
      * Analysis result containing all discrepancies found
      */
@@ -63,6 +98,14 @@ public class ReconciliationService {
         private boolean exceedsDeleteThreshold;
         private String deleteThresholdMessage;
         
+        // SKU ranges compared and the ones that had to be looked into (range analysis only)
+        private int rangeCount;
+        private int differingRangeCount;
+        private int newInFeedCount;
+        private int missingFromFeedCount;
+        // False when a source couldn't be read, the discrepancy lists are then empty
+        private boolean complete = true;
+        
         public ReconciliationAnalysis() {
             this.analysisTime = LocalDateTime.now();
             this.extraInShopify = new ArrayList<>();
@@ -100,11 +143,35 @@ public class ReconciliationService {
         public boolean isExceedsDeleteThreshold() { return exceedsDeleteThreshold; }
         public String getDeleteThresholdMessage() { return deleteThresholdMessage; }
         
+        public int getRangeCount() { return rangeCount; }
+        public int getDifferingRangeCount() { return differingRangeCount; }
+        /** SKUs in the feed but not yet in the DB, picked up by the next sync */
+        public int getNewInFeedCount() { return newInFeedCount; }
+        /** SKUs in the DB that left the feed, removed by the next sync */
+        public int getMissingFromFeedCount() { return missingFromFeedCount; }
+        
         public void setExceedsDeleteThreshold(boolean exceeds, String message) {
             this.exceedsDeleteThreshold = exceeds;
             this.deleteThresholdMessage = message;
         }
         
+        public boolean isComplete() { return complete; }
+        
+        public void markIncomplete(String reason) {
+            this.complete = false;
+            this.errors.add(reason);
+        }
+        
+        public void setRangeSummary(int rangeCount, int differingRangeCount) {
+            this.rangeCount = rangeCount;
+            this.differingRangeCount = differingRangeCount;
+        }
+        
+        public void setFeedDelta(int newInFeedCount, int missingFromFeedCount) {
+            this.newInFeedCount = newInFeedCount;
+            this.missingFromFeedCount = missingFromFeedCount;
+        }
+        
         public boolean hasDiscrepancies() {
             return !extraInShopify.isEmpty() || !extraInDB.isEmpty() || 
                    !mismatchedShopifyIds.isEmpty() || !imageCountMismatches.isEmpty();
@@ -168,33 +235,116 @@ public class ReconciliationService {
     /**
      * Performs comprehensive analysis of discrepancies between DB, Shopify, and Feed
      * This is READ-ONLY and makes no changes to any system
+     * 
+     * Compares SKU range hashes and only looks into the ranges that differ; with
+     * reconciliation.merkle.enabled=false every product and item is loaded and compared.
      */
     public ReconciliationAnalysis analyzeDiscrepancies() {
+        return merkleEnabled ? analyzeDiscrepanciesByRange() : analyzeDiscrepanciesFullScan();
+    }
+    
+    /**
+     * Range analysis: Shopify is read as ID / SKU / title / media count pages and the DB
+     * as a projection, each folded into a SkuMerkleTree while kept in compact per-range
+     * lists. Duplicate and SKU-less Shopify products are reported as extra in Shopify
+     * (performReconciliation removes them), nothing is deleted here.
+     */
+    public ReconciliationAnalysis analyzeDiscrepanciesByRange() {
+        logger.info("=== STARTING RECONCILIATION ANALYSIS (READ-ONLY, BY SKU RANGE) ===");
+        logger.info("Analysis started at: {}", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        
+        ExecutorService executor = newExecutor();
+        try {
+            logger.info("Summarizing all sources into {} SKU ranges...", 1 << merkleDepth);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(sourceTimeoutSeconds);
+            Future<ShopifySummary> shopifyFuture = executor.submit(this::summarizeShopify);
+            Future<DbSummary> dbFuture = executor.submit(this::summarizeDb);
+            Future<List<FeedItem>> feedFuture = submitFeed(executor);
+            
+            List<String> sourceErrors = new ArrayList<>();
+            ShopifySummary shopify = await(shopifyFuture, "Shopify products", deadline, sourceErrors);
+            DbSummary db = await(dbFuture, "DB items", deadline, sourceErrors);
+            List<FeedItem> feedItems = awaitFeed(feedFuture, deadline);
+            
+            ReconciliationAnalysis analysis = new ReconciliationAnalysis(
+                shopify != null ? shopify.count : 0,
+                db != null ? db.keys.size() : 0,
+                feedItems != null ? feedItems.size() : 0);
+            
+            logger.info("Data summarized:");
+            logger.info("  - Shopify products: {}", analysis.getTotalProductsInShopify());
+            logger.info("  - DB items: {}", analysis.getTotalItemsInDB());
+            logger.info("  - Feed items: {}", analysis.getTotalItemsInFeed());
+            
+            if (!sourceErrors.isEmpty()) {
+                return incomplete(analysis, sourceErrors);
+            }
+            
+            checkDeleteThreshold(analysis, shopify.count, db.keys.size());
+            
+            List<Integer> differingRanges = shopify.tree.diff(db.tree);
+            analysis.setRangeSummary(shopify.tree.getRangeCount(), differingRanges.size());
+            logger.info("{} of {} SKU ranges differ between Shopify and DB ({} hashes compared)",
+                differingRanges.size(), shopify.tree.getRangeCount(), shopify.tree.getLastComparisons());
+            
+            // Both phases only read the summaries and write to different parts of the analysis
+            List<Future<?>> phases = new ArrayList<>();
+            phases.add(executor.submit(() -> {
+                for (Integer range : differingRanges) {
+                    compareRange(analysis,
+                        shopify.byRange.getOrDefault(range, List.of()),
+                        db.byRange.getOrDefault(range, Map.of()));
+                }
+            }));
+            if (feedItems != null) {
+                phases.add(executor.submit(() -> compareFeedWithDB(analysis, feedItems, db.skuTree, db.byRange)));
+            }
+            List<String> phaseErrors = awaitPhases(phases);
+            if (!phaseErrors.isEmpty()) {
+                return incomplete(analysis, phaseErrors);
+            }
+            
+            generateAnalysisReport(analysis);
+            
+            return analysis;
+            
+        } catch (Exception e) {
+            logger.error("❌ Analysis failed with exception", e);
+            ReconciliationAnalysis errorAnalysis = new ReconciliationAnalysis();
+            errorAnalysis.markIncomplete("Analysis failed: " + e.getMessage());
+            return errorAnalysis;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Analysis loading every Shopify product, DB item and feed item. Like the range
+     * analysis it only reads: duplicate and SKU-less Shopify products are reported as
+     * extra in Shopify and removed by performReconciliation.
+     */
+    public ReconciliationAnalysis analyzeDiscrepanciesFullScan() {
         logger.info("=== STARTING RECONCILIATION ANALYSIS (READ-ONLY) ===");
         logger.info("Analysis started at: {}", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         
+        ExecutorService executor = newExecutor();
         try {
             // Get all data sources
             logger.info("Fetching data from all sources...");
-            Map<String, Product> allProductBySku = shopifyApiService.unlistDupeListings();
-            Map<String, FeedItem> allItemsInDBBySku = feedItemService.getFeedItemBySkuMap();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(sourceTimeoutSeconds);
+            Future<ShopifyProducts> shopifyFuture = executor.submit(this::loadShopifyProducts);
+            Future<Map<String, FeedItem>> dbFuture = executor.submit(feedItemService::getFeedItemBySkuMap);
+            Future<List<FeedItem>> feedFuture = submitFeed(executor);
             
-            // Get feed data if available
-            List<FeedItem> feedItems = null;
-            try {
-                if (feedService != null) {
-                    feedItems = feedService.getItemsFromFeed();
-                    logger.info("Retrieved {} items from feed", feedItems != null ? feedItems.size() : 0);
-                } else {
-                    logger.warn("Feed service not available - skipping feed analysis");
-                }
-            } catch (Exception e) {
-                logger.warn("Failed to retrieve feed data: {}", e.getMessage());
-            }
+            List<String> sourceErrors = new ArrayList<>();
+            ShopifyProducts shopifyProducts = await(shopifyFuture, "Shopify products", deadline, sourceErrors);
+            Map<String, FeedItem> allItemsInDBBySku = await(dbFuture, "DB items", deadline, sourceErrors);
+            List<FeedItem> feedItems = awaitFeed(feedFuture, deadline);
+            Map<String, Product> allProductBySku = shopifyProducts != null ? shopifyProducts.bySku : null;
             
             ReconciliationAnalysis analysis = new ReconciliationAnalysis(
-                allProductBySku.size(), 
-                allItemsInDBBySku.size(), 
+                allProductBySku != null ? allProductBySku.size() : 0, 
+                allItemsInDBBySku != null ? allItemsInDBBySku.size() : 0, 
                 feedItems != null ? feedItems.size() : 0
             );
             
@@ -203,13 +353,25 @@ public class ReconciliationService {
             logger.info("  - DB items: {}", analysis.getTotalItemsInDB());
             logger.info("  - Feed items: {}", analysis.getTotalItemsInFeed());
             
+            if (!sourceErrors.isEmpty()) {
+                return incomplete(analysis, sourceErrors);
+            }
+            
             // Check delete threshold
             checkDeleteThreshold(analysis, allProductBySku, allItemsInDBBySku);
             
-            // Analyze discrepancies
-            analyzeExtraShopifyListings(analysis, allProductBySku, allItemsInDBBySku);
-            analyzeExtraDBItems(analysis, allProductBySku, allItemsInDBBySku);
-            analyzeImageCountMismatches(analysis, allProductBySku, allItemsInDBBySku);
+            // Duplicates and SKU-less products, reported before the phases add to the same list
+            reportUnindexedProducts(analysis, shopifyProducts);
+            
+            // Analyze discrepancies, in parallel: each phase reads the shared maps and
+            // fills its own lists of the analysis
+            List<String> phaseErrors = awaitPhases(List.of(
+                executor.submit(() -> analyzeExtraShopifyListings(analysis, allProductBySku, allItemsInDBBySku)),
+                executor.submit(() -> analyzeExtraDBItems(analysis, allProductBySku, allItemsInDBBySku)),
+                executor.submit(() -> analyzeImageCountMismatches(analysis, allProductBySku, shopifyProducts.mediaCountById, allItemsInDBBySku))));
+            if (!phaseErrors.isEmpty()) {
+                return incomplete(analysis, phaseErrors);
+            }
             
             // Generate comprehensive report
             generateAnalysisReport(analysis);
@@ -219,9 +381,197 @@ public class ReconciliationService {
         } catch (Exception e) {
             logger.error("❌ Analysis failed with exception", e);
             ReconciliationAnalysis errorAnalysis = new ReconciliationAnalysis();
-            errorAnalysis.getErrors().add("Analysis failed: " + e.getMessage());
+            errorAnalysis.markIncomplete("Analysis failed: " + e.getMessage());
             return errorAnalysis;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    // Concurrent source acquisition
+    
+    /**
+     * Full Shopify products by SKU, with the duplicates and SKU-less products left out
+     */
+    private static class ShopifyProducts {
+        private final SkuIdIndex index = new SkuIdIndex();
+        private final Map<String, Product> bySku = new HashMap<>();
+        private final List<Product> unindexed = new ArrayList<>();
+        // Uncapped media count, the one the range analysis compares
+        private final Map<String, Integer> mediaCountById = new HashMap<>();
+    }
+    
+    /**
+     * Read every product without changing the store. Which product is kept for a SKU is
+     * decided by a SkuIdIndex, the same way unlistDupeListingIds decides what to remove.
+     */
+    private ShopifyProducts loadShopifyProducts() throws Exception {
+        ShopifyProducts products = new ShopifyProducts();
+        for (Product product : shopifyApiService.getAllProducts()) {
+            List<Variant> variants = product.getVariants();
+            String sku = variants == null || variants.isEmpty() ? null : variants.get(0).getSku();
+            if (products.index.add(new ProductSku(product.getId(), sku, product.getUpdatedAt()))) {
+                products.bySku.put(sku, product);
+            } else {
+                products.unindexed.add(product);
+            }
+        }
+        // getAllProducts reads at most 10 images per product
+        shopifyApiService.streamProductMediaCounts(PRODUCT_PAGE_SIZE, page -> 
+            page.forEach(product -> products.mediaCountById.put(product.getProductId(), product.getMediaCount())));
+        return products;
+    }
+    
+    private void reportUnindexedProducts(ReconciliationAnalysis analysis, ShopifyProducts products) {
+        for (Product product : products.unindexed) {
+            String sku = product.getVariants() == null || product.getVariants().isEmpty()
+                ? null : product.getVariants().get(0).getSku();
+            if (StringUtils.isEmpty(sku)) {
+                analysis.getExtraInShopify().add(new ProductDiscrepancy(
+                    sku,
+                    product.getId(),
+                    "EXTRA_IN_SHOPIFY",
+                    "Product has no SKU"
+                ).withDetail("title", product.getTitle()));
+            } else {
+                analysis.getExtraInShopify().add(new ProductDiscrepancy(
+                    sku,
+                    product.getId(),
+                    "EXTRA_IN_SHOPIFY",
+                    "Duplicate listing of the SKU"
+                ).withDetail("title", product.getTitle())
+                 .withDetail("keptProductId", products.index.getId(sku)));
+            }
+        }
+    }
+    
+    private static class ShopifySummary {
+        private final SkuMerkleTree tree;
+        private final Map<Integer, List<ProductMediaCount>> byRange = new HashMap<>();
+        private int count;
+        
+        private ShopifySummary(int depth) {
+            this.tree = new SkuMerkleTree(depth);
+        }
+    }
+    
+    private static class DbSummary {
+        private final SkuMerkleTree tree;
+        private final SkuMerkleTree skuTree;
+        private final Map<Integer, Map<String, ListingKey>> byRange = new HashMap<>();
+        private List<ListingKey> keys;
+        
+        private DbSummary(int depth) {
+            this.tree = new SkuMerkleTree(depth);
+            this.skuTree = new SkuMerkleTree(depth);
+        }
+    }
+    
+    private ShopifySummary summarizeShopify() throws Exception {
+        ShopifySummary summary = new ShopifySummary(merkleDepth);
+        shopifyApiService.streamProductMediaCounts(PRODUCT_PAGE_SIZE, page -> {
+            for (ProductMediaCount product : page) {
+                summary.tree.add(new ListingKey(product.getSku(), product.getProductId(), product.getMediaCount()));
+                summary.byRange.computeIfAbsent(summary.tree.rangeOf(product.getSku()), r -> new ArrayList<>()).add(product);
+                summary.count++;
+            }
+        });
+        return summary;
+    }
+    
+    private DbSummary summarizeDb() {
+        DbSummary summary = new DbSummary(merkleDepth);
+        summary.keys = feedItemService.getListingKeys();
+        for (ListingKey key : summary.keys) {
+            summary.tree.add(key);
+            summary.skuTree.add(key.getSku(), key.getSku());
+            summary.byRange.computeIfAbsent(summary.tree.rangeOf(key.getSku()), r -> new HashMap<>()).put(key.getSku(), key);
+        }
+        return summary;
+    }
+    
+    private ExecutorService newExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    private Future<List<FeedItem>> submitFeed(ExecutorService executor) {
+        if (feedService == null) {
+            logger.warn("Feed service not available - skipping feed analysis");
+            return null;
         }
+        return executor.submit(feedService::getItemsFromFeed);
+    }
+    
+    /**
+     * Result of a source, or null with the reason added to errors when it failed or
+     * didn't finish before the source deadline (then it is cancelled)
+     */
+    private <T> T await(Future<T> future, String source, long deadline, List<String> errors) throws InterruptedException {
+        return await(future, source, deadline, sourceTimeoutSeconds, errors);
+    }
+    
+    private <T> T await(Future<T> future, String source, long deadline, long timeoutSeconds, List<String> errors) throws InterruptedException {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            errors.add(source + ": not retrieved within " + timeoutSeconds + "s");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("❌ Failed to retrieve {}", source, cause);
+            errors.add(source + ": " + cause.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * The feed is optional, without it the analysis only skips the feed part
+     */
+    private List<FeedItem> awaitFeed(Future<List<FeedItem>> feedFuture, long deadline) throws InterruptedException {
+        if (feedFuture == null) {
+            return null;
+        }
+        List<String> errors = new ArrayList<>();
+        List<FeedItem> feedItems = await(feedFuture, "Feed", deadline, errors);
+        if (!errors.isEmpty()) {
+            logger.warn("Failed to retrieve feed data: {}", errors.get(0));
+        } else {
+            logger.info("Retrieved {} items from feed", feedItems != null ? feedItems.size() : 0);
+        }
+        return feedItems;
+    }
+    
+    /**
+     * Wait for the comparison phases. They get their own time budget, a slow source
+     * fetch doesn't cut into it.
+     */
+    private List<String> awaitPhases(List<? extends Future<?>> phases) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(analysisTimeoutSeconds);
+        List<String> errors = new ArrayList<>();
+        for (Future<?> phase : phases) {
+            await(phase, "Analysis", deadline, analysisTimeoutSeconds, errors);
+        }
+        return errors;
+    }
+    
+    /**
+     * Analysis without discrepancy lists because a source or phase is missing;
+     * performReconciliation never acts on it
+     */
+    private ReconciliationAnalysis incomplete(ReconciliationAnalysis analysis, List<String> errors) {
+        errors.forEach(analysis::markIncomplete);
+        analysis.getExtraInShopify().clear();
+        analysis.getExtraInDB().clear();
+        analysis.getMismatchedShopifyIds().clear();
+        analysis.getImageCountMismatches().clear();
+        logger.error("❌ Analysis incomplete: {}", errors);
+        generateAnalysisReport(analysis);
+        return analysis;
     }
     
     /**
@@ -235,6 +585,11 @@ public class ReconciliationService {
         // First run analysis to determine what needs to be done
         ReconciliationAnalysis analysis = analyzeDiscrepancies();
         
+        if (!analysis.isComplete()) {
+            logger.error("❌ Reconciliation aborted: analysis incomplete {}", analysis.getErrors());
+            return new ReconciliationResult(false, "Reconciliation aborted: analysis incomplete " + analysis.getErrors(), analysis);
+        }
+        
         if (!force && analysis.isExceedsDeleteThreshold()) {
             logger.error("❌ Reconciliation aborted: {}", analysis.getDeleteThresholdMessage());
             return new ReconciliationResult(false, "Reconciliation aborted: " + analysis.getDeleteThresholdMessage(), analysis);
@@ -248,12 +603,12 @@ public class ReconciliationService {
         logger.info("🔧 Performing reconciliation for {} discrepancies...", analysis.getTotalDiscrepancies());
         
         try {
-            Map<String, Product> allProductBySku = shopifyApiService.unlistDupeListings();
+            SkuIdIndex shopifyIndex = shopifyApiService.unlistDupeListingIds();
             Map<String, FeedItem> allItemsInDBBySku = feedItemService.getFeedItemBySkuMap();
             
             // Perform actual reconciliation work
-            removeExtraListingsNotInDB(allProductBySku, allItemsInDBBySku);
-            removeExtraItemsNotListedInShopify(allProductBySku, allItemsInDBBySku);
+            removeExtraListingsNotInDB(shopifyIndex, allItemsInDBBySku);
+            removeExtraItemsNotListedInShopify(shopifyIndex, allItemsInDBBySku);
             
             logger.info("✅ Reconciliation completed successfully");
             return new ReconciliationResult(true, 
@@ -290,7 +645,11 @@ public class ReconciliationService {
     private void checkDeleteThreshold(ReconciliationAnalysis analysis, 
                                     Map<String, Product> allProductBySku, 
                                     Map<String, FeedItem> allItemsInDBBySku) {
-        int difference = Math.abs(allProductBySku.size() - allItemsInDBBySku.size());
+        checkDeleteThreshold(analysis, allProductBySku.size(), allItemsInDBBySku.size());
+    }
+    
+    private void checkDeleteThreshold(ReconciliationAnalysis analysis, int shopifyCount, int dbCount) {
+        int difference = Math.abs(shopifyCount - dbCount);
         if (difference > maxToDeleteCount) {
             String message = String.format("Difference of %d items exceeds threshold of %d", 
                 difference, maxToDeleteCount);
@@ -302,6 +661,107 @@ public class ReconciliationService {
         }
     }
     
+    /**
+     * Entry by entry comparison of one SKU range whose hashes differ
+     */
+    private void compareRange(ReconciliationAnalysis analysis,
+                              List<ProductMediaCount> products,
+                              Map<String, ListingKey> dbBySku) {
+        Map<String, ProductMediaCount> productBySku = new LinkedHashMap<>();
+        for (ProductMediaCount product : products) {
+            if (StringUtils.isEmpty(product.getSku())) {
+                analysis.getExtraInShopify().add(new ProductDiscrepancy(
+                    product.getSku(),
+                    product.getProductId(),
+                    "EXTRA_IN_SHOPIFY",
+                    "Product has no SKU"
+                ).withDetail("title", product.getTitle()));
+                continue;
+            }
+            ProductMediaCount kept = productBySku.putIfAbsent(product.getSku(), product);
+            if (kept != null) {
+                analysis.getExtraInShopify().add(new ProductDiscrepancy(
+                    product.getSku(),
+                    product.getProductId(),
+                    "EXTRA_IN_SHOPIFY",
+                    "Duplicate listing of the SKU"
+                ).withDetail("title", product.getTitle())
+                 .withDetail("keptProductId", kept.getProductId()));
+            }
+        }
+        
+        for (ProductMediaCount product : productBySku.values()) {
+            ListingKey fromDb = dbBySku.get(product.getSku());
+            if (fromDb == null) {
+                analysis.getExtraInShopify().add(new ProductDiscrepancy(
+                    product.getSku(),
+                    product.getProductId(),
+                    "EXTRA_IN_SHOPIFY",
+                    "Product exists in Shopify but not tracked in DB"
+                ).withDetail("title", product.getTitle()));
+                continue;
+            }
+            if (fromDb.getShopifyId() == null || !fromDb.getShopifyId().equals(product.getProductId())) {
+                analysis.getMismatchedShopifyIds().add(new ProductDiscrepancy(
+                    product.getSku(),
+                    product.getProductId(),
+                    fromDb.getShopifyId(),
+                    "MISMATCHED_SHOPIFY_ID",
+                    "Shopify ID mismatch between DB and Shopify"
+                ));
+            }
+            if (product.getMediaCount() != fromDb.getImageCount()) {
+                analysis.getImageCountMismatches().add(new ProductDiscrepancy(
+                    product.getSku(),
+                    product.getProductId(),
+                    "IMAGE_COUNT_MISMATCH",
+                    String.format("Shopify has %d images but DB expects %d", product.getMediaCount(), fromDb.getImageCount())
+                ).withDetail("shopifyImageCount", product.getMediaCount())
+                 .withDetail("dbImageCount", fromDb.getImageCount()));
+            }
+        }
+        
+        for (ListingKey fromDb : dbBySku.values()) {
+            if (!productBySku.containsKey(fromDb.getSku())) {
+                // Only the items that are reported are loaded
+                FeedItem itemFromDb = feedItemService.findByWebTagNumber(fromDb.getSku());
+                analysis.getExtraInDB().add(new ProductDiscrepancy(
+                    fromDb.getSku(),
+                    fromDb.getShopifyId(),
+                    "EXTRA_IN_DB",
+                    "Item exists in DB but not in Shopify"
+                ).withDetail("title", itemFromDb != null ? itemFromDb.getWebDescriptionShort() : null)
+                 .withDetail("status", itemFromDb != null ? itemFromDb.getStatus() : null));
+            }
+        }
+    }
+    
+    /**
+     * SKUs the next sync will add or remove, looked up only in the ranges where feed and DB differ
+     */
+    private void compareFeedWithDB(ReconciliationAnalysis analysis,
+                                   List<FeedItem> feedItems,
+                                   SkuMerkleTree dbSkuTree,
+                                   Map<Integer, Map<String, ListingKey>> dbByRange) {
+        SkuMerkleTree feedSkuTree = new SkuMerkleTree(dbSkuTree.getDepth());
+        Map<Integer, Set<String>> feedSkusByRange = new HashMap<>();
+        for (FeedItem feedItem : feedItems) {
+            String sku = feedItem.getWebTagNumber();
+            feedSkuTree.add(sku, sku);
+            feedSkusByRange.computeIfAbsent(feedSkuTree.rangeOf(sku), r -> new HashSet<>()).add(sku);
+        }
+        
+        int newInFeed = 0;
+        int missingFromFeed = 0;
+        for (Integer range : feedSkuTree.diff(dbSkuTree)) {
+            Set<String> feedSkus = feedSkusByRange.getOrDefault(range, Set.of());
+            Set<String> dbSkus = dbByRange.getOrDefault(range, Map.of()).keySet();
+            newInFeed += (int) feedSkus.stream().filter(sku -> !dbSkus.contains(sku)).count();
+            missingFromFeed += (int) dbSkus.stream().filter(sku -> !feedSkus.contains(sku)).count();
+        }
+        analysis.setFeedDelta(newInFeed, missingFromFeed);
+    }
+    
     private void analyzeExtraShopifyListings(ReconciliationAnalysis analysis,
                                            Map<String, Product> allProductBySku,
                                            Map<String, FeedItem> allItemsInDBBySku) {
@@ -367,6 +827,7 @@ public class ReconciliationService {
     
     private void analyzeImageCountMismatches(ReconciliationAnalysis analysis,
                                            Map<String, Product> allProductBySku,
+                                           Map<String, Integer> mediaCountById,
                                            Map<String, FeedItem> allItemsInDBBySku) {
         logger.info("Analyzing image count mismatches...");
         
@@ -378,8 +839,9 @@ public class ReconciliationService {
             String currentProductSku = currentProduct.getVariants().get(0).getSku();
             FeedItem feedItemFromDb = allItemsInDBBySku.get(currentProductSku);
             
-            if (feedItemFromDb != null) {
-                int currentImageCount = currentProduct.getImages() == null ? 0 : currentProduct.getImages().size();
+            Integer mediaCount = mediaCountById.get(currentProduct.getId());
+            if (feedItemFromDb != null && mediaCount != null) {
+                int currentImageCount = mediaCount;
                 int dbImageCount = feedItemFromDb.getImageCount();
                 
                 if (currentImageCount != dbImageCount) {
@@ -406,6 +868,11 @@ public class ReconciliationService {
         logger.info("  Shopify Products: {}", analysis.getTotalProductsInShopify());
         logger.info("  Database Items: {}", analysis.getTotalItemsInDB());
         logger.info("  Feed Items: {}", analysis.getTotalItemsInFeed());
+        if (analysis.getRangeCount() > 0) {
+            logger.info("  SKU ranges differing: {} of {}", analysis.getDifferingRangeCount(), analysis.getRangeCount());
+            logger.info("  Feed vs DB (pending sync): {} new, {} gone from feed",
+                analysis.getNewInFeedCount(), analysis.getMissingFromFeedCount());
+        }
         logger.info("");
         
         if (analysis.isExceedsDeleteThreshold()) {
@@ -485,46 +952,40 @@ public class ReconciliationService {
     
     // Actual reconciliation methods (extracted from BaseShopifySyncService)
     
-    private void removeExtraListingsNotInDB(Map<String, Product> allProductBySku,
+    private void removeExtraListingsNotInDB(SkuIdIndex shopifyIndex,
                                           Map<String, FeedItem> allItemsInDBBySku) {
         logger.info("Removing extra Shopify listings that are not in the DB...");
         
-        for (Product currentProduct : allProductBySku.values()) {
-            List<Variant> variants = currentProduct.getVariants();
-            if (variants == null || variants.isEmpty()) {
-                logger.error("Product {} has no variants - skipping", currentProduct.getId());
-                continue;
-            }
-            
-            String currentProductSku = variants.get(0).getSku();
+        for (Map.Entry<String, String> listing : shopifyIndex.getIdBySku().entrySet()) {
+            String currentProductSku = listing.getKey();
+            String productId = listing.getValue();
             FeedItem feedItemFromDb = allItemsInDBBySku.get(currentProductSku);
             
             if (feedItemFromDb == null) {
                 logger.info("Removing SKU {} (Product ID: {}) from Shopify - not tracked in DB", 
-                    currentProductSku, currentProduct.getId());
-                shopifyApiService.deleteProductByIdOrLogFailure(currentProduct.getId());
+                    currentProductSku, productId);
+                shopifyApiService.deleteProductByIdOrLogFailure(productId);
             } else {
                 // Check if the item in DB has matching Shopify ID
                 if (feedItemFromDb.getShopifyItemId() == null ||
-                    !feedItemFromDb.getShopifyItemId().equals(currentProduct.getId())) {
+                    !feedItemFromDb.getShopifyItemId().equals(productId)) {
                     logger.info("Updating DB Shopify ID for SKU {} from {} to {}", 
-                        currentProductSku, feedItemFromDb.getShopifyItemId(), currentProduct.getId());
-                    feedItemFromDb.setShopifyItemId(currentProduct.getId());
+                        currentProductSku, feedItemFromDb.getShopifyItemId(), productId);
+                    feedItemFromDb.setShopifyItemId(productId);
                     feedItemService.updateAutonomous(feedItemFromDb);
                 }
             }
         }
     }
     
-    private void removeExtraItemsNotListedInShopify(Map<String, Product> allProductBySku,
+    private void removeExtraItemsNotListedInShopify(SkuIdIndex shopifyIndex,
                                                   Map<String, FeedItem> allItemsInDBBySku) {
         logger.info("Removing items in DB that don't exist on Shopify...");
         
         List<FeedItem> allFeedItems = allItemsInDBBySku.values().stream().collect(Collectors.toList());
         
         for (FeedItem itemFromDb : allFeedItems) {
-            Product productFromShopify = allProductBySku.get(itemFromDb.getWebTagNumber());
-            if (productFromShopify == null) {
+            if (!shopifyIndex.containsSku(itemFromDb.getWebTagNumber())) {
                 logger.info("Removing SKU {} from DB - not listed in Shopify", itemFromDb.getWebTagNumber());
                 feedItemService.deleteAutonomous(itemFromDb);
             }
@@ -0,0 +1,220 @@
+package com.gw.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.sync.SoldStatusService;
+import com.gw.ssl.SSLUtilities;
+
+/**
+ * Polls a narrow FileMaker layout holding only web_tag_number, web_status and a
+ * modification stamp, like FeedReadynessService does with CHECK_WEB_REFRESH.
+ *
+ * Status transitions to SOLD found by diffing against the last seen statuses are
+ * handed straight to the SoldStatusService inventory fast path, without waiting for
+ * the next full feed download. The first poll only records the current statuses.
+ */
+@Component
+public class SoldStatusPoller {
+
+    static {
+        SSLUtilities.disableSslVerification();
+    }
+
+    private static Logger logger = LogManager.getLogger(SoldStatusPoller.class);
+
+    @Value("${sold.poller.enabled:false}") boolean enabled;
+    @Value("${GW_SOLD_STATUS_URL:}") String soldStatusUrl;
+    @Value("${sold.poller.stamp.field:web_modified_timestamp}") String stampField;
+    @Value("${sold.poller.stamp.format:MM/dd/yyyy HH:mm:ss}") String stampFormat;
+    @Value("${cron.zone}") String zone;
+
+    @Autowired
+    private FeedItemService feedItemService;
+
+    @Autowired
+    private SoldStatusService soldStatusService;
+
+    private final Map<String, String> lastSeenStatusBySku = new ConcurrentHashMap<>();
+    private volatile boolean initialized = false;
+
+    @Scheduled(fixedDelayString = "${sold.poller.interval.ms:5000}")
+    public void poll() {
+        if (!enabled || StringUtils.isEmpty(soldStatusUrl)) {
+            return;
+        }
+
+        try {
+            List<StatusRecord> soldRecords = fetchNewlySold();
+            if (soldRecords.isEmpty()) {
+                return;
+            }
+
+            long observedAtMillis = Long.MAX_VALUE;
+            List<FeedItem> soldItems = new ArrayList<>();
+            for (StatusRecord record : soldRecords) {
+                FeedItem itemFromDb = feedItemService.findByWebTagNumber(record.getWebTagNumber());
+                if (itemFromDb == null || StringUtils.isEmpty(itemFromDb.getShopifyItemId())
+                        || SoldStatusService.isSold(itemFromDb)) {
+                    continue;
+                }
+                soldItems.add(itemFromDb);
+                observedAtMillis = Math.min(observedAtMillis, record.getModifiedAtMillis());
+            }
+            if (soldItems.isEmpty()) {
+                return;
+            }
+
+            logger.info("Sold status poller: " + soldItems.size() + " items turned SOLD");
+            Set<String> zeroedSkus = soldStatusService.zeroInventory(soldItems, observedAtMillis);
+
+            // Record the status so the next full sync doesn't treat it as a change again.
+            // Only the status column is written: the sync may have saved the item meanwhile
+            for (String sku : zeroedSkus) {
+                feedItemService.updateWebStatusAutonomous(sku, "SOLD");
+            }
+        } catch (Exception e) {
+            logger.error("Sold status poller failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Download the narrow layout and return the records whose status changed to SOLD
+     * since the previous call.
+     */
+    public List<StatusRecord> fetchNewlySold() throws IOException, ParserConfigurationException, SAXException {
+        List<StatusRecord> records = download();
+
+        List<StatusRecord> newlySold = new ArrayList<>();
+        for (StatusRecord record : records) {
+            String previousStatus = lastSeenStatusBySku.put(record.getWebTagNumber(), StringUtils.defaultString(record.getWebStatus()));
+            if (initialized && "SOLD".equalsIgnoreCase(record.getWebStatus())
+                    && !"SOLD".equalsIgnoreCase(previousStatus)) {
+                newlySold.add(record);
+            }
+        }
+
+        if (!initialized) {
+            logger.info("Sold status poller: initialized with " + records.size() + " records");
+            initialized = true;
+        }
+        return newlySold;
+    }
+
+    private List<StatusRecord> download() throws IOException, ParserConfigurationException, SAXException {
+        SSLUtilities.trustAllHostnames();
+        SSLUtilities.trustAllHttpsCertificates();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(soldStatusUrl).openConnection();
+        connection.setConnectTimeout(30 * 1000);
+        connection.setReadTimeout(30 * 1000);
+        try (InputStream in = connection.getInputStream()) {
+            return parseRecords(getDocument(in));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private List<StatusRecord> parseRecords(Document doc) {
+        List<StatusRecord> records = new ArrayList<>();
+        NodeList recordNodeList = doc.getElementsByTagName("record");
+        for (int r = 0; r < recordNodeList.getLength(); r++) {
+            StatusRecord record = new StatusRecord();
+            NodeList fieldNodeList = recordNodeList.item(r).getChildNodes();
+            for (int i = 0; i < fieldNodeList.getLength(); i++) {
+                Node fieldNode = fieldNodeList.item(i);
+                if (!"field".equals(fieldNode.getNodeName())) {
+                    continue;
+                }
+                String fieldName = fieldNode.getAttributes().getNamedItem("name").getNodeValue();
+                String dataValue = getData(fieldNode);
+                if ("web_tag_number".equals(fieldName)) {
+                    record.webTagNumber = dataValue;
+                } else if ("web_status".equals(fieldName)) {
+                    record.webStatus = dataValue;
+                } else if (stampField.equals(fieldName)) {
+                    record.modifiedAtMillis = parseStamp(dataValue);
+                }
+            }
+            if (StringUtils.isNotEmpty(record.webTagNumber)) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private String getData(Node fieldNode) {
+        for (Node child = fieldNode.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if ("data".equals(child.getNodeName())) {
+                return child.getTextContent();
+            }
+        }
+        return null;
+    }
+
+    private long parseStamp(String stamp) {
+        if (StringUtils.isEmpty(stamp)) {
+            return System.currentTimeMillis();
+        }
+        try {
+            return LocalDateTime.parse(stamp, DateTimeFormatter.ofPattern(stampFormat))
+                .atZone(ZoneId.of(zone)).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    private Document getDocument(InputStream in) throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        dbFactory.setValidating(false);
+        dbFactory.setNamespaceAware(true);
+        dbFactory.setFeature("http://xml.org/sax/features/namespaces", false);
+        dbFactory.setFeature("http://xml.org/sax/features/validation", false);
+        dbFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
+        dbFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        return dBuilder.parse(in);
+    }
+
+    /**
+     * One row of the narrow status layout
+     */
+    public static class StatusRecord {
+        private String webTagNumber;
+        private String webStatus;
+        private long modifiedAtMillis = System.currentTimeMillis();
+
+        public String getWebTagNumber() { return webTagNumber; }
+        public String getWebStatus() { return webStatus; }
+        public long getModifiedAtMillis() { return modifiedAtMillis; }
+    }
+}
@@ -0,0 +1,212 @@
+package com.gw.services.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustAllStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Downloads images over one pooled HTTP client shared by the whole application.
+ *
+ * - Connections are kept alive and limited per host (image.download.max.per.host)
+ * - Downloads run concurrently on a bounded pool (image.download.concurrency)
+ * - One conditional GET per image: If-None-Match / If-Modified-Since from the stored
+ *   validators, a 304 leaves the local file as is
+ * - The body is streamed to a temp file while hashing, then moved over the target
+ *
+ * Certificates are not verified, like the rest of the image/feed downloads (SSLUtilities).
+ */
+@Component
+public class ImageDownloader {
+
+    private static Logger logger = LogManager.getLogger(ImageDownloader.class);
+
+    private @Value("${image.download.concurrency:6}") int concurrency;
+    private @Value("${image.download.max.per.host:4}") int maxPerHost;
+    private @Value("${image.download.timeout.ms:30000}") int timeoutMs;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() throws Exception {
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(
+            new SSLContextBuilder().loadTrustMaterial(null, TrustAllStrategy.INSTANCE).build(),
+            NoopHostnameVerifier.INSTANCE);
+
+        connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", sslSocketFactory)
+            .build());
+        connectionManager.setMaxTotal(Math.max(1, concurrency));
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, maxPerHost));
+
+        httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(timeoutMs)
+                .setConnectionRequestTimeout(timeoutMs)
+                .setSocketTimeout(timeoutMs)
+                .build())
+            .build();
+
+        executor = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "image-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        executor.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * Queue a download on the download pool
+     */
+    public CompletableFuture<Result> submit(String url, File target, String etag, String lastModified) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return download(url, target, etag, lastModified);
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Download url to target with a single GET, conditional when validators are given
+     * and the target exists. Pass null validators when the target holds other content.
+     */
+    public Result download(String url, File target, String etag, String lastModified) throws IOException {
+        HttpGet get = new HttpGet(url);
+        if (target.exists()) {
+            if (etag != null) {
+                get.setHeader("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                get.setHeader("If-Modified-Since", lastModified);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        try (CloseableHttpResponse response = httpClient.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == 304) {
+                logger.debug("Image not modified: " + url);
+                return Result.notModified(etag, lastModified);
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (status != 200 || entity == null) {
+                throw new IOException("Image failed to download (" + status + "): " + url);
+            }
+
+            File tmpFile = new File(target.getPath() + ".part");
+            String sha256;
+            try (InputStream in = new DigestInputStream(entity.getContent(), newSha256())) {
+                Files.copy(in, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                sha256 = HexFormat.of().formatHex(((DigestInputStream) in).getMessageDigest().digest());
+            } catch (IOException e) {
+                tmpFile.delete();
+                throw e;
+            }
+            Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            logger.info("Saved image " + target + " (" + target.length() / 1024 + "KB in "
+                + (System.currentTimeMillis() - start) + "ms)");
+            return Result.downloaded(sha256, headerValue(response.getFirstHeader("ETag")),
+                headerValue(response.getFirstHeader("Last-Modified")));
+        }
+    }
+
+    private static String headerValue(Header header) {
+        return header != null ? header.getValue() : null;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Outcome of one download
+     */
+    public static class Result {
+        private final boolean modified;
+        private final String sha256;
+        private final String etag;
+        private final String lastModified;
+        private final String mimeType;
+
+        private Result(boolean modified, String sha256, String etag, String lastModified, String mimeType) {
+            this.modified = modified;
+            this.sha256 = sha256;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.mimeType = mimeType;
+        }
+
+        public static Result downloaded(String sha256, String etag, String lastModified) {
+            return new Result(true, sha256, etag, lastModified, null);
+        }
+
+        public static Result notModified(String etag, String lastModified) {
+            return new Result(false, null, etag, lastModified, null);
+        }
+
+        /**
+         * Same download with the digest and media type of the stored file after it was
+         * checked and possibly converted or re-encoded
+         */
+        public Result withContent(String sha256, String mimeType) {
+            return new Result(modified, sha256, etag, lastModified, mimeType);
+        }
+
+        /** False when the server answered 304 and the local file was kept */
+        public boolean isModified() { return modified; }
+        /** SHA-256 of the downloaded bytes, null when not modified */
+        public String getSha256() { return sha256; }
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        /** Media type of the stored file, null until detected */
+        public String getMimeType() { return mimeType; }
+    }
+}
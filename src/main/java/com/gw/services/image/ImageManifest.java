@@ -0,0 +1,143 @@
+package com.gw.services.image;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Per SKU record of the images in the local store and on Shopify.
+ *
+ * Each image slot (1..9, matching webImagePath1..9 and {sku}-{n}.jpg) records
+ * the source URL it was downloaded from, the SHA-256 digest of the stored bytes
+ * and the Shopify media ID that was uploaded for that content. An image is only
+ * downloaded again when its source URL changes, and only uploaded again when its
+ * content key differs from the one its media was created from. The ETag and
+ * Last-Modified of the last download are kept to revalidate with a conditional GET,
+ * and the detected media type is kept, with the stored file's length and modification
+ * time, so stored files aren't sniffed again.
+ */
+public class ImageManifest {
+
+    private String sku;
+    private Map<Integer, Entry> slots = new TreeMap<>();
+
+    public ImageManifest() {
+    }
+
+    public ImageManifest(String sku) {
+        this.sku = sku;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+
+    public Map<Integer, Entry> getSlots() {
+        return slots;
+    }
+
+    public void setSlots(Map<Integer, Entry> slots) {
+        this.slots = new TreeMap<>(slots);
+    }
+
+    public Entry getSlot(int slot) {
+        return slots.get(slot);
+    }
+
+    /**
+     * Record the source and content of a slot. The uploaded media is kept, it is
+     * detected as stale by comparing its media key with the new content key.
+     */
+    public Entry putSlot(int slot, String sourceUrl, String sha256) {
+        Entry entry = slots.computeIfAbsent(slot, k -> new Entry());
+        entry.setSourceUrl(sourceUrl);
+        entry.setSha256(sha256);
+        return entry;
+    }
+
+    public void removeSlot(int slot) {
+        slots.remove(slot);
+    }
+
+    public static class Entry {
+        private String sourceUrl;
+        private String sha256;
+        private String mediaId;
+        private String mediaKey;
+        private String etag;
+        private String lastModified;
+        private String mimeType;
+        private Long fileLength;
+        private Long fileModified;
+
+        public String getSourceUrl() { return sourceUrl; }
+        public void setSourceUrl(String sourceUrl) { this.sourceUrl = sourceUrl; }
+
+        public String getSha256() { return sha256; }
+        public void setSha256(String sha256) { this.sha256 = sha256; }
+
+        public String getMediaId() { return mediaId; }
+        public void setMediaId(String mediaId) { this.mediaId = mediaId; }
+
+        /** Content key the uploaded media was created from */
+        public String getMediaKey() { return mediaKey; }
+        public void setMediaKey(String mediaKey) { this.mediaKey = mediaKey; }
+
+        /** HTTP validators of the last download, sent back on the next conditional GET */
+        public String getEtag() { return etag; }
+        public void setEtag(String etag) { this.etag = etag; }
+
+        public String getLastModified() { return lastModified; }
+        public void setLastModified(String lastModified) { this.lastModified = lastModified; }
+
+        /** Media type sniffed from the stored bytes, see hasMimeTypeOf */
+        public String getMimeType() { return mimeType; }
+        public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+
+        /** Length and modification time of the file the media type was sniffed from */
+        public Long getFileLength() { return fileLength; }
+        public void setFileLength(Long fileLength) { this.fileLength = fileLength; }
+
+        public Long getFileModified() { return fileModified; }
+        public void setFileModified(Long fileModified) { this.fileModified = fileModified; }
+
+        /**
+         * Record the media type sniffed from the stored file
+         */
+        public void setMimeType(String mimeType, File file) {
+            this.mimeType = mimeType;
+            this.fileLength = file.length();
+            this.fileModified = file.lastModified();
+        }
+
+        /**
+         * True when the media type was sniffed from the file as it is now
+         */
+        public boolean hasMimeTypeOf(File file) {
+            return mimeType != null && file.exists()
+                && Objects.equals(fileLength, file.length()) && Objects.equals(fileModified, file.lastModified());
+        }
+
+        /**
+         * Identity of the image content: the digest when the bytes are known locally,
+         * otherwise the source URL (e.g. with skip.image.download)
+         */
+        @JsonIgnore
+        public String getContentKey() {
+            return sha256 != null ? sha256 : sourceUrl;
+        }
+
+        /** True when the uploaded media still shows the current content */
+        @JsonIgnore
+        public boolean isUploaded() {
+            return mediaId != null && Objects.equals(mediaKey, getContentKey());
+        }
+    }
+}
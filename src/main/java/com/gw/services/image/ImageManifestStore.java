@@ -0,0 +1,64 @@
+package com.gw.services.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Stores one ImageManifest JSON file per SKU.
+ *
+ * Defaults to a hidden folder in the image store so manifests travel with the images.
+ */
+@Component
+public class ImageManifestStore {
+
+    private static Logger logger = LogManager.getLogger(ImageManifestStore.class);
+
+    private @Value("${image.manifest.dir:${image.store.dir}/.manifest}") String manifestDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Load the manifest for a SKU, an empty one if none was stored yet or it can't be read
+     */
+    public ImageManifest load(String sku) {
+        File file = getFile(sku);
+        if (file.exists()) {
+            try {
+                return objectMapper.readValue(file, ImageManifest.class);
+            } catch (IOException e) {
+                logger.warn("Unreadable image manifest, starting over: " + file + " - " + e.getMessage());
+            }
+        }
+        return new ImageManifest(sku);
+    }
+
+    public void save(ImageManifest manifest) {
+        File file = getFile(manifest.getSku());
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            // Write then move so a crash never leaves a half written manifest
+            File tmpFile = new File(file.getPath() + ".tmp");
+            objectMapper.writeValue(tmpFile, manifest);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to save image manifest: " + file, e);
+        }
+    }
+
+    public void delete(String sku) {
+        getFile(sku).delete();
+    }
+
+    private File getFile(String sku) {
+        return new File(manifestDir, sku + ".json");
+    }
+}
@@ -0,0 +1,211 @@
+package com.gw.services.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Serves the image store at /images/watches/{sku}-{n}.jpg, the same paths as
+ * css.hosting.url.base, so Shopify and eBay can fetch photos straight from the bot.
+ *
+ * Enable with image.server.enabled=true and point css.hosting.url.base at the bot.
+ * - Strong ETag (SHA-256 of the file, computed once per file version) and Last-Modified,
+ *   answering If-None-Match / If-Modified-Since with 304
+ * - Content-Type sniffed from the file once per version, since PNG, GIF and WebP downloads
+ *   are stored as is under the .jpg name
+ * - Single byte ranges (206), honouring If-Range
+ * - Bodies go out with Tomcat sendfile when the connector supports it, otherwise with
+ *   FileChannel.transferTo
+ */
+@Controller
+@ConditionalOnProperty(name = "image.server.enabled", havingValue = "true")
+public class ImageServingController {
+
+    private static Logger logger = LogManager.getLogger(ImageServingController.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9_-]+\\.jpg");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    // Tomcat request attributes used by its DefaultServlet for sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private @Value("${image.store.dir}") String imageStore;
+    private @Value("${image.server.max.age.seconds:3600}") long maxAgeSeconds;
+
+    @Autowired
+    private ImageTypeDetector imageTypeDetector;
+
+    private final Map<String, FileDigest> digestByPath = new ConcurrentHashMap<>();
+
+    @RequestMapping(value = "/images/watches/{fileName:.+}", method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void serveImage(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        File file = new File(imageStore, fileName);
+        if (!FILE_NAME.matcher(fileName).matches() || !file.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        FileDigest digest = getDigest(file, length, lastModified);
+        String etag = digest.sha256;
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAgeSeconds);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Sets ETag and Last-Modified, and the 304 when the client copy is current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setContentType(digest.mimeType);
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && isIfRangeCurrent(request, etag, lastModified)) {
+            Matcher matcher = RANGE.matcher(range.trim());
+            // Multiple ranges aren't worth it for images, those get the whole file
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                if (matcher.group(1).isEmpty()) {
+                    start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+                } else {
+                    start = Long.parseLong(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(matcher.group(2)));
+                    }
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long contentLength = end - start + 1;
+        response.setContentLengthLong(contentLength);
+        if (RequestMethod.HEAD.name().equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = contentLength;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * If-Range holds either an ETag or an HTTP date, the range only applies if it still matches
+     */
+    private boolean isIfRangeCurrent(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals("\"" + etag + "\"");
+        }
+        try {
+            return lastModified / 1000 <= request.getDateHeader(HttpHeaders.IF_RANGE) / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * SHA-256 and media type of the file, recomputed only when its size or modification time changes
+     */
+    private FileDigest getDigest(File file, long length, long lastModified) throws IOException {
+        String path = file.getPath();
+        FileDigest digest = digestByPath.get(path);
+        if (digest == null || digest.length != length || digest.lastModified != lastModified) {
+            digest = new FileDigest(length, lastModified, sha256(file), mimeType(file));
+            digestByPath.put(path, digest);
+            logger.debug("Computed ETag for " + path);
+        }
+        return digest;
+    }
+
+    /**
+     * Detected type for the image formats we store, JPEG (what the name says) otherwise
+     */
+    private String mimeType(File file) throws IOException {
+        String mimeType = imageTypeDetector.detect(file);
+        return ImageTypeDetector.route(mimeType) == ImageTypeDetector.Route.REJECT ? ImageTypeDetector.JPEG : mimeType;
+    }
+
+    private static String sha256(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class FileDigest {
+        private final long length;
+        private final long lastModified;
+        private final String sha256;
+        private final String mimeType;
+
+        private FileDigest(long length, long lastModified, String sha256, String mimeType) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+            this.mimeType = mimeType;
+        }
+    }
+}
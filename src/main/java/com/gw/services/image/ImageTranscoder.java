@@ -0,0 +1,255 @@
+package com.gw.services.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Re-encodes oversized images as JPEG under a size target.
+ *
+ * The image is decoded once, optionally downscaled so its longest edge is at most
+ * image.transcode.max.edge, then the highest JPEG quality that fits is found by a
+ * binary search over [min.quality, max.quality] on the in-memory image. One JPEG
+ * writer serves all encodes of a transcode and is disposed afterwards. Work runs on
+ * a bounded pool sized by image.transcode.threads so large decodes can't exhaust
+ * the heap.
+ */
+@Component
+public class ImageTranscoder {
+
+    private static Logger logger = LogManager.getLogger(ImageTranscoder.class);
+
+    private @Value("${image.transcode.max.bytes:1048576}") long maxBytes;
+    private @Value("${image.transcode.max.edge:0}") int maxEdge;
+    private @Value("${image.transcode.min.quality:0.1}") float minQuality;
+    private @Value("${image.transcode.max.quality:0.9}") float maxQuality;
+    private @Value("${image.transcode.search.steps:6}") int searchSteps;
+    private @Value("${image.transcode.threads:2}") int threads;
+
+    private final AtomicLong transcodedCount = new AtomicLong();
+    private final AtomicLong totalBytesSaved = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "image-transcode");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue a transcode on the transcoding pool
+     */
+    public CompletableFuture<Result> submit(File imageFile) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return transcode(imageFile);
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Re-encode the file in place if it is over the size target.
+     * Files under the target and formats ImageIO can't decode are left as is.
+     */
+    public Result transcode(File imageFile) throws IOException {
+        long start = System.currentTimeMillis();
+        long originalBytes = imageFile.length();
+        if (originalBytes <= maxBytes) {
+            return Result.unchanged(originalBytes);
+        }
+
+        BufferedImage image = ImageIO.read(imageFile);
+        if (image == null) {
+            logger.warn("Can't decode image for transcoding, leaving as is: " + imageFile);
+            return Result.unchanged(originalBytes);
+        }
+        image = prepare(image);
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        float quality = maxQuality;
+        byte[] best;
+        try {
+            best = encode(writer, image, maxQuality);
+            if (best.length > maxBytes) {
+                // Highest quality that fits. Invariant: hi never fits (max quality didn't),
+                // lo fits once it has moved off the floor; the floor itself is only tried last
+                float lo = minQuality;
+                float hi = maxQuality;
+                byte[] fitting = null;
+                float fittingQuality = minQuality;
+                for (int step = 0; step < searchSteps; step++) {
+                    float mid = (lo + hi) / 2;
+                    byte[] bytes = encode(writer, image, mid);
+                    if (bytes.length <= maxBytes) {
+                        fitting = bytes;
+                        fittingQuality = mid;
+                        lo = mid;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                if (fitting == null) {
+                    fitting = encode(writer, image, minQuality);
+                    if (fitting.length > maxBytes) {
+                        logger.warn("Could not compress image below " + maxBytes / 1024 + "KB even at lowest quality: " + imageFile);
+                    }
+                }
+                best = fitting;
+                quality = fittingQuality;
+            }
+        } finally {
+            writer.dispose();
+        }
+
+        if (best.length >= originalBytes) {
+            logger.warn("Transcoding doesn't make image smaller, leaving as is: " + imageFile);
+            return Result.unchanged(originalBytes);
+        }
+
+        File tmpFile = new File(imageFile.getPath() + ".tmp");
+        Files.write(tmpFile.toPath(), best);
+        Files.move(tmpFile.toPath(), imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long millis = System.currentTimeMillis() - start;
+        Result result = Result.transcoded(originalBytes, best.length, quality, millis, sha256(best));
+        transcodedCount.incrementAndGet();
+        totalBytesSaved.addAndGet(result.getBytesSaved());
+        totalMillis.addAndGet(millis);
+        logger.info("Transcoded " + imageFile.getName() + ": " + originalBytes / 1024 + "KB -> " + best.length / 1024
+            + "KB (saved " + result.getBytesSaved() / 1024 + "KB, quality " + String.format("%.2f", quality)
+            + ") in " + millis + "ms");
+        return result;
+    }
+
+    /**
+     * Flatten to RGB (the JPEG writer rejects alpha) and downscale to max edge
+     */
+    private BufferedImage prepare(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = 1.0;
+        if (maxEdge > 0 && Math.max(width, height) > maxEdge) {
+            scale = (double) maxEdge / Math.max(width, height);
+        }
+        if (scale == 1.0 && !image.getColorModel().hasAlpha()) {
+            return image;
+        }
+
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage rgb = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private byte[] encode(ImageWriter writer, BufferedImage image, float quality) throws IOException {
+        ImageWriteParam params = writer.getDefaultWriteParam();
+        params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        params.setCompressionQuality(quality);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), params);
+        } finally {
+            writer.reset();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getTranscodedCount() { return transcodedCount.get(); }
+    public long getTotalBytesSaved() { return totalBytesSaved.get(); }
+    public long getTotalMillis() { return totalMillis.get(); }
+
+    /**
+     * Outcome of one transcode
+     */
+    public static class Result {
+        private final boolean transcoded;
+        private final long originalBytes;
+        private final long finalBytes;
+        private final float quality;
+        private final long millis;
+        private final String sha256;
+
+        private Result(boolean transcoded, long originalBytes, long finalBytes, float quality, long millis, String sha256) {
+            this.transcoded = transcoded;
+            this.originalBytes = originalBytes;
+            this.finalBytes = finalBytes;
+            this.quality = quality;
+            this.millis = millis;
+            this.sha256 = sha256;
+        }
+
+        public static Result unchanged(long bytes) {
+            return new Result(false, bytes, bytes, 0, 0, null);
+        }
+
+        public static Result transcoded(long originalBytes, long finalBytes, float quality, long millis, String sha256) {
+            return new Result(true, originalBytes, finalBytes, quality, millis, sha256);
+        }
+
+        public boolean isTranscoded() { return transcoded; }
+        public long getOriginalBytes() { return originalBytes; }
+        public long getFinalBytes() { return finalBytes; }
+        public long getBytesSaved() { return originalBytes - finalBytes; }
+        public float getQuality() { return quality; }
+        public long getMillis() { return millis; }
+        /** SHA-256 of the re-encoded file, null when unchanged */
+        public String getSha256() { return sha256; }
+    }
+}
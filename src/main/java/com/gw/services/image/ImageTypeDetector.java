@@ -0,0 +1,131 @@
+package com.gw.services.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+
+import org.apache.tika.Tika;
+import org.springframework.stereotype.Component;
+
+/**
+ * Detects the media type of image files from their magic bytes.
+ *
+ * Only the first bytes of a file are read, once per detection. The formats we see in
+ * the feed (JPEG, PNG, GIF, WebP, HEIC/HEIF) are recognized directly, anything else
+ * falls back to one shared Tika instance on the same header bytes. The result drives
+ * how a downloaded image is handled, see route().
+ */
+@Component
+public class ImageTypeDetector {
+
+    public static final String JPEG = "image/jpeg";
+    public static final String PNG = "image/png";
+    public static final String GIF = "image/gif";
+    public static final String WEBP = "image/webp";
+    public static final String HEIC = "image/heic";
+    public static final String HEIF = "image/heif";
+
+    private static final int HEADER_LENGTH = 64;
+
+    private static final Set<String> HEIC_BRANDS = Set.of("heic", "heix", "hevc", "hevx", "heim", "heis", "hevm", "hevs");
+    private static final Set<String> HEIF_BRANDS = Set.of("mif1", "msf1");
+    private static final Set<String> PASSTHROUGH_TYPES = Set.of(JPEG, PNG, GIF, WEBP);
+    private static final Set<String> CONVERT_TYPES = Set.of(HEIC, HEIF, "image/heic-sequence", "image/heif-sequence");
+
+    /**
+     * What to do with an image of a given type
+     */
+    public enum Route {
+        /** Shopify takes it as is */
+        PASSTHROUGH,
+        /** Needs converting to JPEG first (HEIC/HEIF) */
+        CONVERT,
+        /** Not an image we can use */
+        REJECT
+    }
+
+    // Tika is thread safe, building one loads its detector configuration
+    private final Tika tika = new Tika();
+
+    public String detect(File file) throws IOException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            header = in.readNBytes(HEADER_LENGTH);
+        }
+        return detect(header);
+    }
+
+    public String detect(byte[] header) {
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(header, 0, 0x89, 'P', 'N', 'G')) {
+            return PNG;
+        }
+        if (startsWith(header, 0, 'G', 'I', 'F', '8')) {
+            return GIF;
+        }
+        if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return WEBP;
+        }
+        if (startsWith(header, 4, 'f', 't', 'y', 'p') && header.length >= 12) {
+            String brand = new String(header, 8, 4, StandardCharsets.US_ASCII);
+            if (HEIC_BRANDS.contains(brand)) {
+                return HEIC;
+            }
+            if (HEIF_BRANDS.contains(brand)) {
+                return HEIF;
+            }
+        }
+        return tika.detect(header);
+    }
+
+    public static Route route(String mimeType) {
+        if (mimeType == null) {
+            return Route.REJECT;
+        }
+        if (PASSTHROUGH_TYPES.contains(mimeType)) {
+            return Route.PASSTHROUGH;
+        }
+        if (CONVERT_TYPES.contains(mimeType)) {
+            return Route.CONVERT;
+        }
+        return Route.REJECT;
+    }
+
+    /**
+     * File extension for a media type, jpg for types we don't name
+     */
+    public static String extension(String mimeType) {
+        if (mimeType == null) {
+            return "jpg";
+        }
+        switch (mimeType) {
+            case PNG: return "png";
+            case GIF: return "gif";
+            case WEBP: return "webp";
+            case HEIC: return "heic";
+            case HEIF: return "heif";
+            default: return "jpg";
+        }
+    }
+
+    public static boolean isHeic(String mimeType) {
+        return mimeType != null && CONVERT_TYPES.contains(mimeType);
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int... magic) {
+        if (bytes.length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((bytes[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
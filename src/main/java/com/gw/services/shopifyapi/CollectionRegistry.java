@@ -0,0 +1,145 @@
+package com.gw.services.shopifyapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import com.gw.domain.PredefinedCollection;
+import com.gw.services.shopifyapi.objects.CustomCollection;
+
+/**
+ * In-memory index of the Shopify collections the bot knows about:
+ * ID, title and, for managed collections, the PredefinedCollection.
+ *
+ * Filled by ShopifyGraphQLService when collections are listed, ensured or created,
+ * entries are dropped when a collection is deleted. Lookups never go to Shopify, an
+ * unknown ID resolves to a placeholder name.
+ */
+@Component
+public class CollectionRegistry {
+
+    private static Logger logger = LogManager.getLogger(CollectionRegistry.class);
+
+    private final Map<String, CustomCollection> byId = new ConcurrentHashMap<>();
+    private final Map<String, CustomCollection> byTitle = new ConcurrentHashMap<>();
+    private final Map<PredefinedCollection, CustomCollection> byPredefined = new ConcurrentHashMap<>();
+    private final Map<String, PredefinedCollection> predefinedById = new ConcurrentHashMap<>();
+
+    /**
+     * Index a collection by ID and title
+     */
+    public synchronized void register(CustomCollection collection) {
+        if (collection == null || collection.getId() == null) {
+            return;
+        }
+        CustomCollection previous = byId.put(collection.getId(), collection);
+        if (previous != null && previous.getTitle() != null && !previous.getTitle().equals(collection.getTitle())) {
+            byTitle.remove(previous.getTitle(), previous);
+        }
+        if (collection.getTitle() != null) {
+            byTitle.put(collection.getTitle(), collection);
+        }
+        PredefinedCollection predefined = predefinedById.get(collection.getId());
+        if (predefined != null) {
+            byPredefined.put(predefined, collection);
+        }
+    }
+
+    /**
+     * Index a managed collection, also by its PredefinedCollection
+     */
+    public synchronized void register(PredefinedCollection predefined, CustomCollection collection) {
+        if (collection == null || collection.getId() == null) {
+            return;
+        }
+        CustomCollection previous = byPredefined.put(predefined, collection);
+        if (previous != null && !previous.getId().equals(collection.getId())) {
+            predefinedById.remove(previous.getId(), predefined);
+        }
+        predefinedById.put(collection.getId(), predefined);
+        register(collection);
+    }
+
+    public synchronized void registerAll(Map<PredefinedCollection, CustomCollection> collectionByEnum) {
+        collectionByEnum.forEach(this::register);
+        logger.debug("Registered {} managed collections", collectionByEnum.size());
+    }
+
+    /**
+     * Forget a deleted collection
+     */
+    public synchronized void remove(String collectionId) {
+        CustomCollection removed = byId.remove(collectionId);
+        if (removed != null && removed.getTitle() != null) {
+            byTitle.remove(removed.getTitle(), removed);
+        }
+        PredefinedCollection predefined = predefinedById.remove(collectionId);
+        if (predefined != null) {
+            byPredefined.remove(predefined);
+        }
+    }
+
+    public synchronized void clear() {
+        byId.clear();
+        byTitle.clear();
+        byPredefined.clear();
+        predefinedById.clear();
+    }
+
+    public CustomCollection getById(String collectionId) {
+        return collectionId == null ? null : byId.get(collectionId);
+    }
+
+    public CustomCollection getByTitle(String title) {
+        return title == null ? null : byTitle.get(title);
+    }
+
+    public CustomCollection get(PredefinedCollection predefined) {
+        return byPredefined.get(predefined);
+    }
+
+    public PredefinedCollection getPredefined(String collectionId) {
+        return collectionId == null ? null : predefinedById.get(collectionId);
+    }
+
+    /**
+     * Title of the collection, or a placeholder with the ID when it isn't known
+     */
+    public String getTitle(String collectionId) {
+        CustomCollection collection = getById(collectionId);
+        if (collection != null && collection.getTitle() != null) {
+            return collection.getTitle();
+        }
+        return "Unknown Collection (ID: " + collectionId + ")";
+    }
+
+    /**
+     * True when every given collection has a registered Shopify collection
+     */
+    public boolean containsAll(PredefinedCollection[] predefinedCollections) {
+        for (PredefinedCollection predefined : predefinedCollections) {
+            if (!byPredefined.containsKey(predefined)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registered Shopify collections of the given collections, in array order
+     */
+    public Map<PredefinedCollection, CustomCollection> getMappings(PredefinedCollection[] predefinedCollections) {
+        Map<PredefinedCollection, CustomCollection> mappings = new LinkedHashMap<>();
+        for (PredefinedCollection predefined : predefinedCollections) {
+            CustomCollection collection = byPredefined.get(predefined);
+            if (collection != null) {
+                mappings.put(predefined, collection);
+            }
+        }
+        return mappings;
+    }
+}
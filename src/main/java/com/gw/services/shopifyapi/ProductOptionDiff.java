@@ -0,0 +1,167 @@
+package com.gw.services.shopifyapi;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.shopifyapi.objects.Option;
+
+/**
+ * Difference between a product's current options and the ones its feed item asks for.
+ *
+ * A watch has a single variant, so each option has a single value:
+ * Color (webWatchDial), Size (webWatchDiameter) and Material (webMetalType), in that order.
+ * - Options the item no longer has (and the default "Title" option) are deleted
+ * - Kept options whose value or position differ are updated in place, renaming the value
+ * - Missing options are created
+ * An empty diff means the product is already right and no mutation is needed.
+ */
+public class ProductOptionDiff {
+
+    static final String DEFAULT_OPTION_NAME = "Title";
+
+    private final List<String> optionIdsToDelete = new ArrayList<>();
+    private final List<OptionUpdate> optionsToUpdate = new ArrayList<>();
+    private final List<Map<String, Object>> optionsToCreate = new ArrayList<>();
+
+    /**
+     * Options for the item as name -> value, in position order
+     */
+    public static Map<String, String> getDesiredOptions(FeedItem feedItem) {
+        Map<String, String> options = new LinkedHashMap<>();
+        putIfPresent(options, "Color", feedItem.getWebWatchDial());
+        putIfPresent(options, "Size", feedItem.getWebWatchDiameter());
+        putIfPresent(options, "Material", feedItem.getWebMetalType());
+        return options;
+    }
+
+    private static void putIfPresent(Map<String, String> options, String name, String value) {
+        if (value != null && !value.trim().isEmpty()) {
+            options.put(name, value);
+        }
+    }
+
+    public static ProductOptionDiff compute(List<Option> currentOptions, FeedItem feedItem) {
+        return compute(currentOptions, getDesiredOptions(feedItem));
+    }
+
+    public static ProductOptionDiff compute(List<Option> currentOptions, Map<String, String> desired) {
+        ProductOptionDiff diff = new ProductOptionDiff();
+        List<Option> current = currentOptions == null ? new ArrayList<>() : currentOptions.stream()
+            .sorted(Comparator.comparingInt(ProductOptionDiff::positionOf))
+            .collect(Collectors.toList());
+
+        // The default option only goes away when real options replace it
+        List<Option> kept = new ArrayList<>();
+        for (Option option : current) {
+            boolean isDefault = DEFAULT_OPTION_NAME.equals(option.getName()) && current.size() == 1;
+            if (desired.containsKey(option.getName()) || (isDefault && desired.isEmpty())) {
+                kept.add(option);
+            } else {
+                diff.optionIdsToDelete.add("gid://shopify/ProductOption/" + option.getId());
+            }
+        }
+
+        List<String> desiredNames = new ArrayList<>(desired.keySet());
+        List<String> keptNames = kept.stream().map(Option::getName).collect(Collectors.toList());
+        // Kept options must already be in the right relative order, created ones are inserted around them
+        List<String> keptInOrder = desiredNames.stream().filter(keptNames::contains).collect(Collectors.toList());
+        List<String> recreated = new ArrayList<>();
+        for (int i = 0; i < kept.size(); i++) {
+            Option option = kept.get(i);
+            String value = desired.get(option.getName());
+            if (value == null) {
+                continue; // default option on a product without options
+            }
+            int position = keptInOrder.indexOf(option.getName()) + 1;
+            boolean positionChanged = position != i + 1;
+            List<String> values = option.getValues() == null ? List.of() : option.getValues();
+            boolean valueChanged = !values.contains(value);
+            if (!valueChanged && !positionChanged) {
+                continue;
+            }
+
+            String valueId = option.getValueIds() != null && !option.getValueIds().isEmpty() ? option.getValueIds().get(0) : null;
+            if (valueChanged && valueId == null) {
+                // Can't rename a value without its ID, recreate the option instead
+                diff.optionIdsToDelete.add("gid://shopify/ProductOption/" + option.getId());
+                recreated.add(option.getName());
+                continue;
+            }
+
+            Map<String, Object> optionInput = new HashMap<>();
+            optionInput.put("id", "gid://shopify/ProductOption/" + option.getId());
+            if (positionChanged) {
+                optionInput.put("position", position);
+            }
+            List<Map<String, Object>> valuesToUpdate = new ArrayList<>();
+            if (valueChanged) {
+                Map<String, Object> valueInput = new HashMap<>();
+                valueInput.put("id", "gid://shopify/ProductOptionValue/" + valueId);
+                valueInput.put("name", value);
+                valuesToUpdate.add(valueInput);
+            }
+            diff.optionsToUpdate.add(new OptionUpdate(optionInput, valuesToUpdate));
+        }
+
+        for (int i = 0; i < desiredNames.size(); i++) {
+            String name = desiredNames.get(i);
+            if (keptNames.contains(name) && !recreated.contains(name)) {
+                continue;
+            }
+            Map<String, Object> optionInput = new HashMap<>();
+            optionInput.put("name", name);
+            optionInput.put("position", i + 1);
+            Map<String, Object> valueInput = new HashMap<>();
+            valueInput.put("name", desired.get(name));
+            optionInput.put("values", List.of(valueInput));
+            diff.optionsToCreate.add(optionInput);
+        }
+        return diff;
+    }
+
+    private static int positionOf(Option option) {
+        try {
+            return option.getPosition() == null ? Integer.MAX_VALUE : Integer.parseInt(option.getPosition());
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    public boolean isEmpty() {
+        return optionIdsToDelete.isEmpty() && optionsToUpdate.isEmpty() && optionsToCreate.isEmpty();
+    }
+
+    public List<String> getOptionIdsToDelete() { return optionIdsToDelete; }
+    public List<OptionUpdate> getOptionsToUpdate() { return optionsToUpdate; }
+    /** OptionCreateInput maps */
+    public List<Map<String, Object>> getOptionsToCreate() { return optionsToCreate; }
+
+    @Override
+    public String toString() {
+        return "delete " + optionIdsToDelete.size() + ", update " + optionsToUpdate.size() + ", create " + optionsToCreate.size();
+    }
+
+    /**
+     * Input of one productOptionUpdate
+     */
+    public static class OptionUpdate {
+        private final Map<String, Object> option;
+        private final List<Map<String, Object>> valuesToUpdate;
+
+        private OptionUpdate(Map<String, Object> option, List<Map<String, Object>> valuesToUpdate) {
+            this.option = option;
+            this.valuesToUpdate = valuesToUpdate;
+        }
+
+        /** OptionUpdateInput map */
+        public Map<String, Object> getOption() { return option; }
+        /** OptionValueUpdateInput maps */
+        public List<Map<String, Object>> getValuesToUpdate() { return valuesToUpdate; }
+    }
+}
@@ -0,0 +1,85 @@
+package com.gw.services.shopifyapi;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Client side view of the Shopify GraphQL cost bucket (leaky bucket).
+ *
+ * Every GraphQL response carries extensions.cost.throttleStatus with the points
+ * currently available and the restore rate. The throttle keeps the last reported
+ * status and, before a request is sent, blocks the calling thread until the
+ * estimated available points cover the estimated request cost. This lets several
+ * threads fire requests concurrently without running into THROTTLED errors.
+ */
+@Component
+public class ShopifyCostThrottle {
+
+    private static Logger logger = LogManager.getLogger(ShopifyCostThrottle.class);
+
+    /** Estimated cost reserved per request until the actual cost is reported */
+    @Value("${shopify.throttle.request.cost:50}")
+    private double requestCost;
+
+    private double maximumAvailable = 1000;
+    private double currentlyAvailable = 1000;
+    private double restoreRate = 50;
+    private long lastUpdateMillis = System.currentTimeMillis();
+
+    /**
+     * Block until the bucket is estimated to hold enough points for one request.
+     */
+    public void acquire() throws InterruptedException {
+        long waitMillis;
+        while ((waitMillis = getWaitMillis()) > 0) {
+            logger.debug("Shopify cost throttle: waiting {} ms", waitMillis);
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * Record the throttle status from a GraphQL response's extensions node.
+     */
+    public synchronized void update(JsonNode extensions) {
+        if (extensions == null || !extensions.has("cost")) {
+            return;
+        }
+        JsonNode throttleStatus = extensions.get("cost").get("throttleStatus");
+        if (throttleStatus == null) {
+            return;
+        }
+        maximumAvailable = throttleStatus.path("maximumAvailable").asDouble(maximumAvailable);
+        currentlyAvailable = throttleStatus.path("currentlyAvailable").asDouble(currentlyAvailable);
+        restoreRate = throttleStatus.path("restoreRate").asDouble(restoreRate);
+        lastUpdateMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Record a THROTTLED response: the bucket is empty as far as we know.
+     */
+    public synchronized void onThrottled() {
+        currentlyAvailable = 0;
+        lastUpdateMillis = System.currentTimeMillis();
+        logger.warn("Shopify cost throttle: request was throttled, backing off");
+    }
+
+    private synchronized long getWaitMillis() {
+        double available = getEstimatedAvailable();
+        if (available >= requestCost) {
+            // Reserve the points for this request so concurrent callers spread out
+            currentlyAvailable = available - requestCost;
+            lastUpdateMillis = System.currentTimeMillis();
+            return 0;
+        }
+        return (long) Math.ceil((requestCost - available) / restoreRate * 1000);
+    }
+
+    private double getEstimatedAvailable() {
+        double restored = (System.currentTimeMillis() - lastUpdateMillis) / 1000.0 * restoreRate;
+        return Math.min(maximumAvailable, currentlyAvailable + restored);
+    }
+}
@@ -1,9 +1,14 @@
 package com.gw.services.shopifyapi;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.Set;
@@ -13,6 +18,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -82,6 +89,42 @@ public class ShopifyGraphQLService {
     @Value("${SHOPIFY_ADMIN_API_VERSION:2025-04}") 
     private String apiVersion;
     
+    @Autowired
+    private ShopifyCostThrottle costThrottle;
+    
+    @Autowired
+    private CollectionRegistry collectionRegistry;
+    
+    // Store metadata caches (TtlCache, see Config.cacheManager)
+    public static final String LOCATIONS_CACHE = "shopifyLocations";
+    public static final String PUBLICATIONS_CACHE = "shopifyPublications";
+    public static final String COLLECTIONS_CACHE = "shopifyCollections";
+    public static final String METAFIELD_DEFINITIONS_CACHE = "shopifyMetafieldDefinitions";
+    public static final String TAXONOMY_CACHE = "shopifyTaxonomy";
+    private static final List<String> METADATA_CACHES = List.of(
+        LOCATIONS_CACHE, PUBLICATIONS_CACHE, COLLECTIONS_CACHE, METAFIELD_DEFINITIONS_CACHE, TAXONOMY_CACHE);
+    
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+    
+    // Local copy of the product taxonomy, loaded on first use (see TaxonomyIndex)
+    @Value("${shopify.taxonomy.index.file:taxonomy/taxonomy-index.json}")
+    private String taxonomyIndexFile;
+    
+    @Value("${shopify.taxonomy.index.max.age.days:30}")
+    private int taxonomyIndexMaxAgeDays;
+    
+    private volatile TaxonomyIndex taxonomyIndex;
+    private long taxonomyIndexRetryAt = 0;
+    private static final long TAXONOMY_INDEX_RETRY_MILLIS = 10 * 60 * 1000;
+    
+    private static final int MAX_THROTTLED_ATTEMPTS = 5;
+    
+    // Products per nodes() collection read (each returns up to 50 collections) and
+    // per collectionAddProducts / collectionRemoveProducts call (Shopify's limit)
+    private static final int COLLECTION_READ_BATCH_SIZE = 25;
+    private static final int COLLECTION_WRITE_BATCH_SIZE = 250;
+    
     private ObjectMapper objectMapper = new ObjectMapper();
     
     /**
@@ -123,23 +166,155 @@ public class ShopifyGraphQLService {
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, createHeaders());
         
         try {
-            String response = restTemplate.postForObject(getGraphQLEndpoint(), entity, String.class);
-            JsonNode jsonResponse = objectMapper.readTree(response);
-            
-            // Check for GraphQL errors
-            if (jsonResponse.has("errors")) {
-                JsonNode errors = jsonResponse.get("errors");
-                logger.error("GraphQL errors: " + errors.toString());
-                throw new RuntimeException("GraphQL query failed: " + errors.toString());
+            for (int attempt = 1; ; attempt++) {
+                costThrottle.acquire();
+                String response = restTemplate.postForObject(getGraphQLEndpoint(), entity, String.class);
+                JsonNode jsonResponse = objectMapper.readTree(response);
+                costThrottle.update(jsonResponse.get("extensions"));
+                
+                // Check for GraphQL errors
+                if (jsonResponse.has("errors")) {
+                    JsonNode errors = jsonResponse.get("errors");
+                    if (isThrottled(errors) && attempt < MAX_THROTTLED_ATTEMPTS) {
+                        costThrottle.onThrottled();
+                        continue;
+                    }
+                    logger.error("GraphQL errors: " + errors.toString());
+                    throw new RuntimeException("GraphQL query failed: " + errors.toString());
+                }
+                
+                return jsonResponse.get("data");
             }
-            
-            return jsonResponse.get("data");
         } catch (HttpClientErrorException e) {
             logger.error("HTTP error: " + e.getResponseBodyAsString());
             throw e;
         }
     }
     
+    private boolean isThrottled(JsonNode errors) {
+        for (JsonNode error : errors) {
+            if ("THROTTLED".equals(error.path("extensions").path("code").asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Value of the given metadata cache, loaded once per TTL. Loader failures are
+     * not cached and are rethrown to the caller.
+     */
+    private <T> T cachedMetadata(String cacheName, Object key, Callable<T> loader) throws Exception {
+        Cache cache = cacheManager == null ? null : cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return loader.call();
+        }
+        try {
+            return cache.get(key, loader);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Drop everything in one metadata cache, e.g. after the store was changed
+     */
+    public void evictMetadataCache(String cacheName) {
+        Cache cache = cacheManager == null ? null : cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+    
+    public void invalidateMetadataCaches() {
+        METADATA_CACHES.forEach(this::evictMetadataCache);
+        logger.info("🧹 Shopify metadata caches cleared");
+    }
+    
+    /**
+     * Hit / miss / load statistics of the metadata caches, by cache name
+     */
+    public Map<String, TtlCache.Stats> getMetadataCacheStats() {
+        Map<String, TtlCache.Stats> stats = new LinkedHashMap<>();
+        if (cacheManager != null) {
+            for (String cacheName : METADATA_CACHES) {
+                if (cacheManager.getCache(cacheName) instanceof TtlCache ttlCache) {
+                    stats.put(cacheName, ttlCache.getStats());
+                }
+            }
+        }
+        return stats;
+    }
+    
+    /**
+     * Put an already known value into a metadata cache, e.g. from the warm-start snapshot
+     */
+    public void primeMetadataCache(String cacheName, Object key, Object value) {
+        Cache cache = cacheManager == null ? null : cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.put(key, value);
+        }
+    }
+    
+    public String getStoreUrl() {
+        return shopifyStoreUrl;
+    }
+    
+    /**
+     * Labels of the given store objects in as few nodes() calls as possible, by GID:
+     * title for collections, namespace.key for metafield definitions, name for
+     * locations and publications. Objects that no longer exist are left out.
+     * Also returns the number of locations and publications under "count:locations"
+     * and "count:publications", so added ones are noticed too.
+     */
+    public Map<String, String> getStoreMetadataLabels(List<String> gids) throws Exception {
+        String query = """
+            query storeMetadata($ids: [ID!]!, $withCounts: Boolean!) {
+                nodes(ids: $ids) {
+                    id
+                    ... on Collection { title }
+                    ... on MetafieldDefinition { namespace key }
+                    ... on Location { name }
+                    ... on Publication { name }
+                }
+                locationsCount @include(if: $withCounts) { count }
+                publicationsCount @include(if: $withCounts) { count }
+            }
+            """;
+        
+        Map<String, String> labels = new LinkedHashMap<>();
+        int batchSize = 250;
+        for (int start = 0; start == 0 || start < gids.size(); start += batchSize) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("ids", gids.subList(start, Math.min(gids.size(), start + batchSize)));
+            variables.put("withCounts", start == 0);
+            JsonNode data = executeGraphQLQuery(query, variables);
+            
+            for (JsonNode node : data.path("nodes")) {
+                if (node == null || node.isNull()) {
+                    continue;
+                }
+                String label;
+                if (node.has("title")) {
+                    label = node.get("title").asText();
+                } else if (node.has("key")) {
+                    label = node.path("namespace").asText() + "." + node.get("key").asText();
+                } else {
+                    label = node.path("name").asText();
+                }
+                labels.put(node.get("id").asText(), label);
+            }
+            if (start == 0) {
+                labels.put("count:locations", data.path("locationsCount").path("count").asText());
+                labels.put("count:publications", data.path("publicationsCount").path("count").asText());
+            }
+        }
+        return labels;
+    }
+    
     /**
      * Get product count using GraphQL
      */
@@ -753,9 +928,18 @@ public class ShopifyGraphQLService {
     }
     
     /**
-     * Get all locations using GraphQL
+     * Get all locations using GraphQL, cached in LOCATIONS_CACHE
      */
     public List<Location> getAllLocations() {
+        try {
+            return new ArrayList<>(cachedMetadata(LOCATIONS_CACHE, "all", this::fetchAllLocations));
+        } catch (Exception e) {
+            logger.error("Error getting all locations", e);
+            return new ArrayList<>();
+        }
+    }
+    
+    private List<Location> fetchAllLocations() throws Exception {
         String query = """
             query {
                 locations(first: 250) {
@@ -777,23 +961,18 @@ public class ShopifyGraphQLService {
             }
             """;
         
-        try {
-            JsonNode data = executeGraphQLQuery(query);
-            JsonNode locationsNode = data.get("locations");
-            JsonNode edges = locationsNode.get("edges");
-            
-            List<Location> locations = new ArrayList<>();
-            for (JsonNode edge : edges) {
-                JsonNode locationNode = edge.get("node");
-                Location location = convertJsonToLocation(locationNode);
-                locations.add(location);
-            }
-            
-            return locations;
-        } catch (Exception e) {
-            logger.error("Error getting all locations", e);
-            return new ArrayList<>();
+        JsonNode data = executeGraphQLQuery(query);
+        JsonNode locationsNode = data.get("locations");
+        JsonNode edges = locationsNode.get("edges");
+        
+        List<Location> locations = new ArrayList<>();
+        for (JsonNode edge : edges) {
+            JsonNode locationNode = edge.get("node");
+            Location location = convertJsonToLocation(locationNode);
+            locations.add(location);
         }
+        
+        return locations;
     }
     
     /**
@@ -889,25 +1068,38 @@ public class ShopifyGraphQLService {
             }
         }
         
+        Map<Integer, String> errorsByIndex = setInventoryQuantities(inventoryLevels);
+        if (!errorsByIndex.isEmpty()) {
+            logger.error("❌ Inventory absolute setting failed with user errors: {}", errorsByIndex);
+            throw new RuntimeException("Inventory absolute setting failed: " + errorsByIndex);
+        }
+    }
+    
+    /**
+     * Set many inventory levels (any number of inventory items and locations) in one
+     * inventorySetQuantities call.
+     * 
+     * User errors that point at a specific quantity (field input.quantities.N...) are
+     * returned by the index of the level in the given list so callers can map them back
+     * to their items. Errors that can't be attributed to a quantity fail the whole call.
+     * The mutation is all or nothing: when any error is returned no level was applied.
+     * 
+     * @return Error message by index into inventoryLevels, empty when all were applied
+     */
+    public Map<Integer, String> setInventoryQuantities(List<InventoryLevel> inventoryLevels) throws Exception {
         List<Map<String, Object>> quantities = new ArrayList<>();
         
         for (InventoryLevel level : inventoryLevels) {
             Map<String, Object> quantity = new HashMap<>();
-            String inventoryItemGid = "gid://shopify/InventoryItem/" + level.getInventoryItemId();
-            String locationGid = "gid://shopify/Location/" + level.getLocationId();
-            Integer quantityValue = Integer.valueOf(level.getAvailable());
-            
-            quantity.put("inventoryItemId", inventoryItemGid);
-            quantity.put("locationId", locationGid);
-            quantity.put("quantity", quantityValue);
+            quantity.put("inventoryItemId", "gid://shopify/InventoryItem/" + level.getInventoryItemId());
+            quantity.put("locationId", "gid://shopify/Location/" + level.getLocationId());
+            quantity.put("quantity", Integer.valueOf(level.getAvailable()));
             // Note: Not setting compareQuantity to bypass compare-and-set validation
             // This allows absolute setting regardless of current value
             quantities.add(quantity);
             
-            logger.debug("✅ Prepared inventory quantity input:");
-            logger.debug("  - InventoryItem GID: {}", inventoryItemGid);
-            logger.debug("  - Location GID: {}", locationGid);
-            logger.debug("  - Quantity: {}", quantityValue);
+            logger.debug("Prepared inventory quantity: inventoryItemId={}, locationId={}, quantity={}", 
+                level.getInventoryItemId(), level.getLocationId(), level.getAvailable());
         }
         
         String mutation = """
@@ -942,64 +1134,67 @@ public class ShopifyGraphQLService {
         Map<String, Object> variables = new HashMap<>();
         variables.put("input", input);
         
-        // Log the complete request details
-        logger.info("🚀 Executing inventorySetQuantities mutation:");
-        logger.info("  - API Version: {}", apiVersion);
-        logger.info("  - Endpoint: {}", getGraphQLEndpoint());
-        logger.info("  - Number of quantities: {}", quantities.size());
-        logger.info("  - Mutation input:");
-        logger.info("    - name: {}", input.get("name"));
-        logger.info("    - reason: {}", input.get("reason"));
-        logger.info("    - ignoreCompareQuantity: {}", input.get("ignoreCompareQuantity"));
-        logger.info("    - quantities count: {}", quantities.size());
-        
-        // Log each quantity for debugging
-        for (int i = 0; i < quantities.size(); i++) {
-            Map<String, Object> qty = quantities.get(i);
-            logger.info("    - Quantity #{}: inventoryItemId={}, locationId={}, quantity={}", 
-                i + 1, qty.get("inventoryItemId"), qty.get("locationId"), qty.get("quantity"));
-        }
+        logger.debug("Executing inventorySetQuantities with {} quantities", quantities.size());
         
         try {
             JsonNode data = executeGraphQLQuery(mutation, variables);
             JsonNode inventorySet = data.get("inventorySetQuantities");
             
-            // Check for user errors
+            Map<Integer, String> errorsByIndex = new HashMap<>();
             JsonNode userErrors = inventorySet.get("userErrors");
-            if (userErrors != null && userErrors.size() > 0) {
-                logger.error("❌ Inventory absolute setting failed with user errors: {}", userErrors.toString());
-                throw new RuntimeException("Inventory absolute setting failed: " + userErrors.toString());
+            if (userErrors != null) {
+                for (JsonNode userError : userErrors) {
+                    Integer index = getQuantityIndex(userError.get("field"));
+                    if (index == null) {
+                        logger.error("❌ Inventory absolute setting failed with user errors: {}", userErrors.toString());
+                        throw new RuntimeException("Inventory absolute setting failed: " + userErrors.toString());
+                    }
+                    errorsByIndex.put(index, userError.get("message").asText());
+                }
             }
             
-            // Log successful changes
             JsonNode adjustmentGroup = inventorySet.get("inventoryAdjustmentGroup");
-            if (adjustmentGroup != null && adjustmentGroup.has("changes")) {
-                JsonNode changes = adjustmentGroup.get("changes");
-                logger.info("✅ Inventory absolute setting successful - {} changes applied:", changes.size());
-                for (JsonNode change : changes) {
-                    logger.info("  - Name: {}, Delta: {}, Final Quantity: {}", 
-                        change.get("name").asText(),
-                        change.get("delta").asInt(),
-                        change.has("quantityAfterChange") ? change.get("quantityAfterChange").asInt() : "N/A");
-                }
-            }
+            int changeCount = adjustmentGroup != null && adjustmentGroup.has("changes") ? adjustmentGroup.get("changes").size() : 0;
+            logger.info("✅ inventorySetQuantities: {} quantities sent, {} changes applied, {} rejected", 
+                quantities.size(), changeCount, errorsByIndex.size());
+            
+            return errorsByIndex;
             
         } catch (Exception e) {
-            logger.error("❌ Error setting absolute inventory levels", e);
-            logger.error("❌ Request details that failed:");
-            logger.error("  - API Version: {}", apiVersion);
-            logger.error("  - Endpoint: {}", getGraphQLEndpoint());
-            logger.error("  - Input: {}", input);
+            logger.error("❌ Error setting absolute inventory levels for {} quantities", quantities.size(), e);
             throw e;
         }
     }
     
+    /**
+     * Extract N from a user error field path like ["input", "quantities", "N", "locationId"]
+     */
+    private Integer getQuantityIndex(JsonNode field) {
+        if (field == null || !field.isArray() || field.size() < 3 || !"quantities".equals(field.get(1).asText())) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(field.get(2).asText());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
 
     
     /**
-     * Get all custom collections using GraphQL
+     * Get all custom collections using GraphQL, cached in COLLECTIONS_CACHE
      */
     public List<CustomCollection> getAllCustomCollections() {
+        try {
+            return new ArrayList<>(cachedMetadata(COLLECTIONS_CACHE, "all", this::fetchAllCustomCollections));
+        } catch (Exception e) {
+            logger.error("Error getting all custom collections", e);
+            return new ArrayList<>();
+        }
+    }
+    
+    private List<CustomCollection> fetchAllCustomCollections() throws Exception {
         String query = """
             query {
                 collections(first: 250) {
@@ -1017,23 +1212,19 @@ public class ShopifyGraphQLService {
             }
             """;
         
-        try {
-            JsonNode data = executeGraphQLQuery(query);
-            JsonNode collectionsNode = data.get("collections");
-            JsonNode edges = collectionsNode.get("edges");
-            
-            List<CustomCollection> collections = new ArrayList<>();
-            for (JsonNode edge : edges) {
-                JsonNode collectionNode = edge.get("node");
-                CustomCollection collection = convertJsonToCustomCollection(collectionNode);
-                collections.add(collection);
-            }
-            
-            return collections;
-        } catch (Exception e) {
-            logger.error("Error getting all custom collections", e);
-            return new ArrayList<>();
+        JsonNode data = executeGraphQLQuery(query);
+        JsonNode collectionsNode = data.get("collections");
+        JsonNode edges = collectionsNode.get("edges");
+        
+        List<CustomCollection> collections = new ArrayList<>();
+        for (JsonNode edge : edges) {
+            JsonNode collectionNode = edge.get("node");
+            CustomCollection collection = convertJsonToCustomCollection(collectionNode);
+            collectionRegistry.register(collection);
+            collections.add(collection);
         }
+        
+        return collections;
     }
     
     /**
@@ -1077,7 +1268,10 @@ public class ShopifyGraphQLService {
             }
             
             JsonNode collectionNode = collectionCreate.get("collection");
-            return convertJsonToCustomCollection(collectionNode);
+            CustomCollection collection = convertJsonToCustomCollection(collectionNode);
+            collectionRegistry.register(collectionEnum, collection);
+            evictMetadataCache(COLLECTIONS_CACHE);
+            return collection;
             
         } catch (Exception e) {
             logger.error("Error creating custom collection", e);
@@ -1085,6 +1279,13 @@ public class ShopifyGraphQLService {
         }
     }
     
+    /**
+     * Index of the known collections, filled as collections are listed, ensured and created
+     */
+    public CollectionRegistry getCollectionRegistry() {
+        return collectionRegistry;
+    }
+    
     /**
      * Delete custom collection by ID using GraphQL
      */
@@ -1117,6 +1318,8 @@ public class ShopifyGraphQLService {
                 logger.error("Collection deletion failed with user errors: " + userErrors.toString());
                 throw new RuntimeException("Collection deletion failed: " + userErrors.toString());
             }
+            collectionRegistry.remove(id);
+            evictMetadataCache(COLLECTIONS_CACHE);
             
         } catch (Exception e) {
             logger.error("Error deleting collection: " + id, e);
@@ -1391,6 +1594,7 @@ public class ShopifyGraphQLService {
         
         // Handle both GraphQL response formats for option values
         List<String> values = new ArrayList<>();
+        List<String> valueIds = new ArrayList<>();
         
         // GraphQL API format: optionValues array with objects containing id and name
         if (optionNode.has("optionValues")) {
@@ -1399,9 +1603,11 @@ public class ShopifyGraphQLService {
                 for (JsonNode valueNode : optionValuesNode) {
                     if (valueNode.has("name")) {
                         values.add(valueNode.get("name").asText());
+                        valueIds.add(valueNode.has("id") ? extractIdFromGid(valueNode.get("id").asText()) : null);
                     }
                 }
             }
+            option.setValueIds(valueIds);
         }
         // REST API format: values array with string values
         else if (optionNode.has("values")) {
@@ -1621,7 +1827,9 @@ public class ShopifyGraphQLService {
     }
     
     /**
-     * Find and remove duplicate listings (compatibility method)
+     * Find and remove duplicate listings, returning the remaining products by SKU.
+     * Downloads every full product; when only SKUs and IDs are needed use
+     * unlistDupeListingIds.
      */
     public Map<String, Product> unlistDupeListings() {
         List<Product> allProducts = getAllProducts();
@@ -1647,6 +1855,33 @@ public class ShopifyGraphQLService {
         return cleanMapOfProductBySku;
     }
     
+    /**
+     * Find and remove duplicate listings and listings without a SKU, reading only
+     * product ID, first SKU and updatedAt. The first product listed for a SKU is kept,
+     * as in unlistDupeListings.
+     *
+     * @return Index of the remaining products
+     */
+    public SkuIdIndex unlistDupeListingIds() throws Exception {
+        SkuIdIndex index = new SkuIdIndex();
+        streamProductSkus(250, index::addAll);
+
+        // Deleted after paging so the cursor never points at a removed product
+        for (ProductSku product : index.getWithoutSku()) {
+            logger.error("Product id: " + product.getProductId() + " has no Variant! Can't resolve Sku deleting from shopify.");
+            deleteProductByIdOrLogFailure(product.getProductId());
+        }
+        for (ProductSku product : index.getDuplicates()) {
+            logger.error("Found duplicate product ID: " + product.getProductId() + " SKU: " + product.getSku()
+                + " (updated " + product.getUpdatedAt() + ", keeping " + index.getId(product.getSku())
+                + " updated " + index.getUpdatedAt(product.getSku()) + ") Removing from shopify!");
+            deleteProductByIdOrLogFailure(product.getProductId());
+        }
+        logger.info("🔎 Indexed {} SKUs, removed {} duplicates and {} products without SKU",
+            index.size(), index.getDuplicates().size(), index.getWithoutSku().size());
+        return index;
+    }
+    
     /**
      * Ensure configured collections exist (compatibility method)
      */
@@ -1655,8 +1890,9 @@ public class ShopifyGraphQLService {
         Map<String, CustomCollection> collectionByTitleFromShopify = 
                 allCollectionsFromShopify.stream().collect(Collectors.toMap(CustomCollection::getTitle, Function.identity()));
         
+        // In the order of the predefined collections
         HashMap<PredefinedCollection, CustomCollection> customCollectionByEnum 
-            = new HashMap<>(); 
+            = new LinkedHashMap<>(); 
         
         for (PredefinedCollection collectionEnum : predefinedCollections) {
             if (!collectionByTitleFromShopify.containsKey(collectionEnum.getTitle())) {
@@ -1677,6 +1913,7 @@ public class ShopifyGraphQLService {
             }
         }
         
+        collectionRegistry.registerAll(customCollectionByEnum);
         return customCollectionByEnum;
     }
     
@@ -1736,15 +1973,17 @@ public class ShopifyGraphQLService {
      * Delete images using GraphQL
      */
     public void deleteImages(String productId, List<Image> images) {
-        for (Image img : images) {
-            deleteImageById(productId, img.getId());
-        }
+        deleteMediaByIds(productId, images.stream().map(Image::getId).collect(Collectors.toList()));
     }
     
     /**
-     * Delete a single image by ID using GraphQL
+     * Delete several media of a product in one productDeleteMedia call
      */
-    private void deleteImageById(String productId, String imageId) {
+    public void deleteMediaByIds(String productId, List<String> imageIds) {
+        if (imageIds == null || imageIds.isEmpty()) {
+            return;
+        }
+        
         String mutation = """
             mutation productDeleteMedia($productId: ID!, $mediaIds: [ID!]!) {
                 productDeleteMedia(productId: $productId, mediaIds: $mediaIds) {
@@ -1759,7 +1998,7 @@ public class ShopifyGraphQLService {
         
         Map<String, Object> variables = new HashMap<>();
         variables.put("productId", "gid://shopify/Product/" + productId);
-        variables.put("mediaIds", List.of("gid://shopify/MediaImage/" + imageId));
+        variables.put("mediaIds", imageIds.stream().map(id -> "gid://shopify/MediaImage/" + id).collect(Collectors.toList()));
         
         try {
             JsonNode data = executeGraphQLQuery(mutation, variables);
@@ -1771,14 +2010,53 @@ public class ShopifyGraphQLService {
                 logger.error("Media deletion failed with user errors: " + userErrors.toString());
             } else {
                 JsonNode deletedIds = mediaDelete.get("deletedProductImageIds");
-                if (deletedIds != null && deletedIds.size() > 0) {
-                    logger.info("Successfully deleted image ID: " + deletedIds.get(0).asText());
-                }
+                logger.info("Successfully deleted " + (deletedIds != null ? deletedIds.size() : 0) + " images of product: " + productId);
             }
             
         } catch (Exception e) {
             logger.error("Got error while trying to delete Media By Product Id:" 
-                + productId + " Image Id: " + imageId, e);
+                + productId + " Image Ids: " + imageIds, e);
+        }
+    }
+    
+    /**
+     * Put the product media in the given order using productReorderMedia
+     */
+    public void reorderMedia(String productId, List<String> imageIds) {
+        String mutation = """
+            mutation productReorderMedia($id: ID!, $moves: [MoveInput!]!) {
+                productReorderMedia(id: $id, moves: $moves) {
+                    job {
+                        id
+                    }
+                    mediaUserErrors {
+                        field
+                        message
+                    }
+                }
+            }
+            """;
+        
+        List<Map<String, Object>> moves = new ArrayList<>();
+        for (int i = 0; i < imageIds.size(); i++) {
+            Map<String, Object> move = new HashMap<>();
+            move.put("id", "gid://shopify/MediaImage/" + imageIds.get(i));
+            move.put("newPosition", String.valueOf(i));
+            moves.add(move);
+        }
+        
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("id", "gid://shopify/Product/" + productId);
+        variables.put("moves", moves);
+        
+        try {
+            JsonNode data = executeGraphQLQuery(mutation, variables);
+            JsonNode userErrors = data.get("productReorderMedia").get("mediaUserErrors");
+            if (userErrors != null && userErrors.size() > 0) {
+                logger.error("Media reorder failed with user errors: " + userErrors.toString());
+            }
+        } catch (Exception e) {
+            logger.error("Got error while trying to reorder Media of Product Id:" + productId, e);
         }
     }
     
@@ -1791,18 +2069,22 @@ public class ShopifyGraphQLService {
     
     /**
      * Add images to an existing product using GraphQL
+     * 
+     * @return Media IDs of the created images, in the order of the given images
      */
-    public void addImagesToProduct(String productId, List<Image> images) {
+    public List<String> addImagesToProduct(String productId, List<Image> images) {
+        List<String> mediaIds = new ArrayList<>();
         for (Image image : images) {
-            addImageToProduct(productId, image);
+            mediaIds.add(addImageToProduct(productId, image));
         }
+        return mediaIds;
     }
     
     /**
      * Add a single image to an existing product using GraphQL
      * Updated to use productCreateMedia mutation for API version 2025-04+
      */
-    private void addImageToProduct(String productId, Image image) {
+    private String addImageToProduct(String productId, Image image) {
         String mutation = """
             mutation productCreateMedia($productId: ID!, $media: [CreateMediaInput!]!) {
                 productCreateMedia(productId: $productId, media: $media) {
@@ -1856,6 +2138,9 @@ public class ShopifyGraphQLService {
             
             logger.debug("Successfully added image to product: " + productId + ", image src: " + image.getSrc());
             
+            JsonNode media = mediaCreate.get("media");
+            return media != null && media.size() > 0 ? extractIdFromGid(media.get(0).get("id").asText()) : null;
+            
         } catch (Exception e) {
             logger.error("Error adding image to product: " + productId + ", image src: " + image.getSrc(), e);
             throw new RuntimeException("Failed to add image to product", e);
@@ -2019,11 +2304,133 @@ public class ShopifyGraphQLService {
     }
     
     /**
-     * Add product and collections associations using GraphQL
+     * Manual collection IDs of several products, read with nodes() queries of
+     * COLLECTION_READ_BATCH_SIZE products each. Smart collections are filtered out
+     * like in getCollectsForProductId.
+     * 
+     * @return Collection IDs by product ID, products that no longer exist are left out
+     */
+    public Map<String, Set<String>> getCollectionIdsForProducts(List<String> productIds) throws Exception {
+        String query = """
+            query getProductsCollections($ids: [ID!]!) {
+                nodes(ids: $ids) {
+                    ... on Product {
+                        id
+                        collections(first: 50) {
+                            edges {
+                                node {
+                                    id
+                                    ruleSet {
+                                        rules {
+                                            column
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            """;
+        
+        Map<String, Set<String>> collectionIdsByProduct = new HashMap<>();
+        for (int start = 0; start < productIds.size(); start += COLLECTION_READ_BATCH_SIZE) {
+            List<String> ids = productIds.subList(start, Math.min(productIds.size(), start + COLLECTION_READ_BATCH_SIZE))
+                .stream()
+                .map(id -> "gid://shopify/Product/" + id)
+                .collect(Collectors.toList());
+            
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("ids", ids);
+            JsonNode data = executeGraphQLQuery(query, variables);
+            
+            for (JsonNode productNode : data.get("nodes")) {
+                if (productNode == null || productNode.isNull() || !productNode.has("collections")) {
+                    continue;
+                }
+                Set<String> collectionIds = new HashSet<>();
+                for (JsonNode edge : productNode.get("collections").get("edges")) {
+                    JsonNode ruleSet = edge.get("node").get("ruleSet");
+                    boolean isSmartCollection = ruleSet != null && !ruleSet.isNull() && 
+                                              ruleSet.has("rules") && ruleSet.get("rules").size() > 0;
+                    if (!isSmartCollection) {
+                        collectionIds.add(extractIdFromGid(edge.get("node").get("id").asText()));
+                    }
+                }
+                collectionIdsByProduct.put(extractIdFromGid(productNode.get("id").asText()), collectionIds);
+            }
+        }
+        logger.debug("📊 Read collections of {} products", collectionIdsByProduct.size());
+        return collectionIdsByProduct;
+    }
+    
+    /**
+     * Add products to one collection, COLLECTION_WRITE_BATCH_SIZE products per collectionAddProducts call
+     */
+    public void addProductsToCollection(String collectionId, List<String> productIds) throws Exception {
+        String mutation = """
+            mutation collectionAddProducts($id: ID!, $productIds: [ID!]!) {
+                collectionAddProducts(id: $id, productIds: $productIds) {
+                    userErrors {
+                        field
+                        message
+                    }
+                }
+            }
+            """;
+        sendCollectionBatches(mutation, "collectionAddProducts", collectionId, productIds);
+    }
+    
+    /**
+     * Remove products from one collection, COLLECTION_WRITE_BATCH_SIZE products per collectionRemoveProducts call
+     */
+    public void removeProductsFromCollection(String collectionId, List<String> productIds) throws Exception {
+        String mutation = """
+            mutation collectionRemoveProducts($id: ID!, $productIds: [ID!]!) {
+                collectionRemoveProducts(id: $id, productIds: $productIds) {
+                    userErrors {
+                        field
+                        message
+                    }
+                }
+            }
+            """;
+        sendCollectionBatches(mutation, "collectionRemoveProducts", collectionId, productIds);
+    }
+    
+    private void sendCollectionBatches(String mutation, String field, String collectionId, List<String> productIds) throws Exception {
+        for (int start = 0; start < productIds.size(); start += COLLECTION_WRITE_BATCH_SIZE) {
+            List<String> ids = productIds.subList(start, Math.min(productIds.size(), start + COLLECTION_WRITE_BATCH_SIZE))
+                .stream()
+                .map(id -> "gid://shopify/Product/" + id)
+                .collect(Collectors.toList());
+            
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("id", "gid://shopify/Collection/" + collectionId);
+            variables.put("productIds", ids);
+            
+            JsonNode data = executeGraphQLQuery(mutation, variables);
+            JsonNode userErrors = data.get(field).get("userErrors");
+            if (userErrors != null && userErrors.size() > 0) {
+                logger.error(field + " failed for collection '" + collectionRegistry.getTitle(collectionId) + "' (" 
+                    + collectionId + ") with user errors: " + userErrors.toString());
+                throw new RuntimeException(field + " failed for collection " + collectionId + ": " + userErrors.toString());
+            }
+            logger.debug("✅ {} {} products for collection '{}' ({})", field, ids.size(), 
+                collectionRegistry.getTitle(collectionId), collectionId);
+        }
+    }
+    
+    /**
+     * Add product and collections associations using GraphQL, one call per collection
      */
-    public void addProductAndCollectionsAssociations(List<Collect> collects) {
+    public void addProductAndCollectionsAssociations(List<Collect> collects) throws Exception {
+        Map<String, List<String>> productIdsByCollection = new LinkedHashMap<>();
         for (Collect collect : collects) {
-            addProductToCollection(collect.getProductId(), collect.getCollectionId());
+            productIdsByCollection.computeIfAbsent(collect.getCollectionId(), id -> new ArrayList<>()).add(collect.getProductId());
+        }
+        for (Map.Entry<String, List<String>> entry : productIdsByCollection.entrySet()) {
+            addProductsToCollection(entry.getKey(), entry.getValue());
         }
     }
     
@@ -2031,8 +2438,7 @@ public class ShopifyGraphQLService {
      * Add a product to a collection using GraphQL
      */
     public void addProductToCollection(String productId, String collectionId) {
-        // First, get collection name for better logging
-        String collectionName = getCollectionName(collectionId);
+        String collectionName = collectionRegistry.getTitle(collectionId);
         
         logger.debug("🔗 Adding product {} to collection '{}' (ID: {})", productId, collectionName, collectionId);
         
@@ -2080,40 +2486,8 @@ public class ShopifyGraphQLService {
     }
     
     /**
-     * Helper method to get collection name by ID for better logging
-     * Returns collection title if found, otherwise returns a fallback with ID
-     */
-    private String getCollectionName(String collectionId) {
-        try {
-            String query = """
-                query getCollectionName($id: ID!) {
-                    collection(id: $id) {
-                        id
-                        title
-                    }
-                }
-                """;
-            
-            Map<String, Object> variables = new HashMap<>();
-            variables.put("id", "gid://shopify/Collection/" + collectionId);
-            
-            JsonNode data = executeGraphQLQuery(query, variables);
-            JsonNode collectionNode = data.get("collection");
-            
-            if (collectionNode != null && !collectionNode.isNull() && collectionNode.has("title")) {
-                return collectionNode.get("title").asText();
-            }
-        } catch (Exception e) {
-            logger.debug("Could not fetch collection name for ID: {} - {}", collectionId, e.getMessage());
-        }
-        
-        // Fallback if we can't get the name
-        return "Unknown Collection (ID: " + collectionId + ")";
-    }
-    
-    /**
-     * Delete collect (remove product from collection) using GraphQL
-     * Note: This method is deprecated - use deleteCollectByProductAndCollection instead
+     * Delete collect (remove product from collection) using GraphQL
+     * Note: This method is deprecated - use deleteCollectByProductAndCollection instead
      */
     public void deleteCollect(String collectId) throws Exception {
         logger.warn("deleteCollect method is deprecated - use deleteCollectByProductAndCollection instead");
@@ -2260,9 +2634,18 @@ public class ShopifyGraphQLService {
     }
     
     /**
-     * Get all available publications/sales channels using GraphQL
+     * Get all available publications/sales channels using GraphQL, cached in PUBLICATIONS_CACHE
      */
     public List<Map<String, String>> getAllPublications() {
+        try {
+            return new ArrayList<>(cachedMetadata(PUBLICATIONS_CACHE, "all", this::fetchAllPublications));
+        } catch (Exception e) {
+            logger.error("Error getting all publications", e);
+            return new ArrayList<>();
+        }
+    }
+    
+    private List<Map<String, String>> fetchAllPublications() throws Exception {
         String query = """
             query {
                 publications(first: 250) {
@@ -2277,26 +2660,21 @@ public class ShopifyGraphQLService {
             }
             """;
         
-        try {
-            JsonNode data = executeGraphQLQuery(query);
-            JsonNode publicationsNode = data.get("publications");
-            JsonNode edges = publicationsNode.get("edges");
-            
-            List<Map<String, String>> publications = new ArrayList<>();
-            for (JsonNode edge : edges) {
-                JsonNode publicationNode = edge.get("node");
-                Map<String, String> publication = new HashMap<>();
-                publication.put("id", extractIdFromGid(publicationNode.get("id").asText()));
-                publication.put("name", publicationNode.get("name").asText());
-                publication.put("supportsFuturePublishing", publicationNode.get("supportsFuturePublishing").asText());
-                publications.add(publication);
-            }
-            
-            return publications;
-        } catch (Exception e) {
-            logger.error("Error getting all publications", e);
-            return new ArrayList<>();
+        JsonNode data = executeGraphQLQuery(query);
+        JsonNode publicationsNode = data.get("publications");
+        JsonNode edges = publicationsNode.get("edges");
+        
+        List<Map<String, String>> publications = new ArrayList<>();
+        for (JsonNode edge : edges) {
+            JsonNode publicationNode = edge.get("node");
+            Map<String, String> publication = new HashMap<>();
+            publication.put("id", extractIdFromGid(publicationNode.get("id").asText()));
+            publication.put("name", publicationNode.get("name").asText());
+            publication.put("supportsFuturePublishing", publicationNode.get("supportsFuturePublishing").asText());
+            publications.add(publication);
         }
+        
+        return publications;
     }
     
     /**
@@ -2674,6 +3052,7 @@ public class ShopifyGraphQLService {
         try {
             JsonNode data = executeGraphQLQuery(mutation, variables);
             JsonNode definitionCreate = data.get("metafieldDefinitionCreate");
+            evictMetadataCache(METAFIELD_DEFINITIONS_CACHE);
             
             // Check for user errors
             JsonNode userErrors = definitionCreate.get("userErrors");
@@ -2810,6 +3189,7 @@ public class ShopifyGraphQLService {
         try {
             JsonNode data = executeGraphQLQuery(mutation, variables);
             JsonNode definitionCreate = data.get("metafieldDefinitionCreate");
+            evictMetadataCache(METAFIELD_DEFINITIONS_CACHE);
             
             // Check for user errors
             JsonNode userErrors = definitionCreate.get("userErrors");
@@ -2867,6 +3247,7 @@ public class ShopifyGraphQLService {
         try {
             JsonNode data = executeGraphQLQuery(mutation, variables);
             JsonNode definitionPin = data.get("metafieldDefinitionPin");
+            evictMetadataCache(METAFIELD_DEFINITIONS_CACHE);
             
             // Check for user errors
             JsonNode userErrors = definitionPin.get("userErrors");
@@ -2892,8 +3273,13 @@ public class ShopifyGraphQLService {
     
     /**
      * Get all metafield definitions for a specific namespace
+     * Cached in METAFIELD_DEFINITIONS_CACHE, evicted when definitions are created, pinned or deleted
      */
     public List<Map<String, String>> getMetafieldDefinitions(String namespace) throws Exception {
+        return new ArrayList<>(cachedMetadata(METAFIELD_DEFINITIONS_CACHE, namespace, () -> fetchMetafieldDefinitions(namespace)));
+    }
+    
+    private List<Map<String, String>> fetchMetafieldDefinitions(String namespace) throws Exception {
         String query = """
             query getMetafieldDefinitions($namespace: String!, $first: Int!) {
                 metafieldDefinitions(ownerType: PRODUCT, namespace: $namespace, first: $first) {
@@ -2977,6 +3363,7 @@ public class ShopifyGraphQLService {
         try {
             JsonNode data = executeGraphQLQuery(mutation, variables);
             JsonNode definitionDelete = data.get("metafieldDefinitionDelete");
+            evictMetadataCache(METAFIELD_DEFINITIONS_CACHE);
             
             // Check for user errors
             JsonNode userErrors = definitionDelete.get("userErrors");
@@ -3019,10 +3406,142 @@ public class ShopifyGraphQLService {
         logger.info("🗑️ Removed " + removed + " existing eBay metafield definitions");
     }
     
+    /**
+     * Local taxonomy index, read from shopify.taxonomy.index.file on first use. Downloaded
+     * when the file is missing, of another API version or older than the max age; a stale
+     * file is still used when the download fails. Null when neither works, callers then
+     * query Shopify (retried after a pause).
+     */
+    public TaxonomyIndex getTaxonomyIndex() {
+        TaxonomyIndex index = taxonomyIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            if (taxonomyIndex != null || System.currentTimeMillis() < taxonomyIndexRetryAt) {
+                return taxonomyIndex;
+            }
+            File file = new File(taxonomyIndexFile);
+            TaxonomyIndex fromFile = null;
+            if (file.isFile()) {
+                try {
+                    fromFile = TaxonomyIndex.read(file);
+                } catch (Exception e) {
+                    logger.warn("⚠️ Could not read taxonomy index " + file + ": " + e.getMessage());
+                }
+            }
+            long maxAgeMillis = taxonomyIndexMaxAgeDays * 24L * 60 * 60 * 1000;
+            if (fromFile != null && apiVersion.equals(fromFile.getApiVersion())
+                    && System.currentTimeMillis() - fromFile.getDownloadedAt() < maxAgeMillis) {
+                logger.info("📚 Loaded taxonomy index: " + fromFile.size() + " categories from " + file);
+                taxonomyIndex = fromFile;
+                return taxonomyIndex;
+            }
+            try {
+                return refreshTaxonomyIndex();
+            } catch (Exception e) {
+                if (fromFile != null) {
+                    logger.warn("⚠️ Taxonomy index download failed, using the stale index from " + file + ": " + e.getMessage());
+                    taxonomyIndex = fromFile;
+                } else {
+                    logger.warn("⚠️ Taxonomy index not available, using remote taxonomy lookups: " + e.getMessage());
+                    taxonomyIndexRetryAt = System.currentTimeMillis() + TAXONOMY_INDEX_RETRY_MILLIS;
+                }
+                return taxonomyIndex;
+            }
+        }
+    }
+    
+    /**
+     * Download the whole taxonomy, write it to shopify.taxonomy.index.file and use it
+     */
+    public synchronized TaxonomyIndex refreshTaxonomyIndex() throws Exception {
+        long start = System.currentTimeMillis();
+        List<TaxonomyIndex.Category> categories = new ArrayList<>();
+        List<TaxonomyIndex.Category> roots = fetchTaxonomyCategoryPage(null);
+        categories.addAll(roots);
+        for (TaxonomyIndex.Category root : roots) {
+            categories.addAll(fetchTaxonomyCategoryPage(root.getId()));
+        }
+        TaxonomyIndex index = new TaxonomyIndex(apiVersion, System.currentTimeMillis(), categories);
+        File file = new File(taxonomyIndexFile);
+        try {
+            index.write(file);
+        } catch (Exception e) {
+            logger.warn("⚠️ Could not write taxonomy index " + file + ": " + e.getMessage());
+        }
+        logger.info("📚 Downloaded taxonomy index: " + index.size() + " categories in " + (System.currentTimeMillis() - start) + "ms");
+        taxonomyIndex = index;
+        evictMetadataCache(TAXONOMY_CACHE);
+        return index;
+    }
+    
+    /**
+     * Top-level categories (descendantsOf null) or all descendants of a category, every page
+     */
+    private List<TaxonomyIndex.Category> fetchTaxonomyCategoryPage(String descendantsOf) throws Exception {
+        String query = """
+            query taxonomyCategories($after: String, $descendantsOf: ID) {
+                taxonomy {
+                    categories(first: 250, after: $after, descendantsOf: $descendantsOf) {
+                        nodes {
+                            id
+                            name
+                            fullName
+                            parentId
+                            level
+                            isLeaf
+                            isArchived
+                        }
+                        pageInfo {
+                            hasNextPage
+                            endCursor
+                        }
+                    }
+                }
+            }
+            """;
+        
+        List<TaxonomyIndex.Category> categories = new ArrayList<>();
+        String cursor = null;
+        boolean hasNextPage = true;
+        while (hasNextPage) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("after", cursor);
+            variables.put("descendantsOf", descendantsOf);
+            JsonNode categoriesNode = executeGraphQLQuery(query, variables).path("taxonomy").path("categories");
+            for (JsonNode node : categoriesNode.path("nodes")) {
+                if (node.path("isArchived").asBoolean(false)) {
+                    continue;
+                }
+                categories.add(new TaxonomyIndex.Category(
+                    node.get("id").asText(),
+                    node.get("name").asText(),
+                    node.path("fullName").isNull() ? null : node.path("fullName").asText(null),
+                    node.path("parentId").isNull() ? null : node.path("parentId").asText(null),
+                    node.path("level").asInt(),
+                    node.path("isLeaf").asBoolean()));
+            }
+            JsonNode pageInfo = categoriesNode.path("pageInfo");
+            hasNextPage = pageInfo.path("hasNextPage").asBoolean(false);
+            cursor = pageInfo.path("endCursor").asText(null);
+        }
+        return categories;
+    }
+    
     /**
      * Get all taxonomy categories from Shopify's product taxonomy
+     * From the local taxonomy index, or cached in TAXONOMY_CACHE when the index isn't available
      */
     public List<Map<String, Object>> getAllTaxonomyCategories() throws Exception {
+        TaxonomyIndex index = getTaxonomyIndex();
+        if (index != null) {
+            return index.getAll().stream().map(TaxonomyIndex.Category::toMap).collect(Collectors.toList());
+        }
+        return new ArrayList<>(cachedMetadata(TAXONOMY_CACHE, "all", () -> fetchAllTaxonomyCategories()));
+    }
+    
+    private List<Map<String, Object>> fetchAllTaxonomyCategories() throws Exception {
         String query = """
             query {
                 productTaxonomyNodes(first: 250) {
@@ -3065,8 +3584,17 @@ public class ShopifyGraphQLService {
     
     /**
      * Get children categories of a specific taxonomy category
+     * From the local taxonomy index, or cached in TAXONOMY_CACHE when the index isn't available
      */
     public List<Map<String, Object>> getTaxonomyCategoryChildren(String categoryId) throws Exception {
+        TaxonomyIndex index = getTaxonomyIndex();
+        if (index != null && index.get(categoryId) != null) {
+            return index.getChildren(categoryId).stream().map(TaxonomyIndex.Category::toMap).collect(Collectors.toList());
+        }
+        return new ArrayList<>(cachedMetadata(TAXONOMY_CACHE, "children:" + categoryId, () -> fetchTaxonomyCategoryChildren(categoryId)));
+    }
+    
+    private List<Map<String, Object>> fetchTaxonomyCategoryChildren(String categoryId) throws Exception {
         String query = """
             query getTaxonomyChildren($id: ID!) {
                 productTaxonomyNode(id: $id) {
@@ -3119,8 +3647,18 @@ public class ShopifyGraphQLService {
     /**
      * Search for a taxonomy category by name using Shopify's official Taxonomy API
      * Based on https://shopify.dev/docs/api/admin-graphql/latest/objects/Taxonomy
+     * From the local taxonomy index, or cached in TAXONOMY_CACHE when the index isn't available
      */
     public String searchTaxonomyCategory(String searchTerm) throws Exception {
+        TaxonomyIndex index = getTaxonomyIndex();
+        if (index != null) {
+            TaxonomyIndex.Category category = index.search(searchTerm);
+            return category == null ? null : category.getId();
+        }
+        return cachedMetadata(TAXONOMY_CACHE, "search:" + searchTerm, () -> fetchTaxonomyCategorySearch(searchTerm));
+    }
+    
+    private String fetchTaxonomyCategorySearch(String searchTerm) throws Exception {
         String query = """
             query searchTaxonomyCategory($search: String!) {
                 taxonomy {
@@ -3197,8 +3735,21 @@ public class ShopifyGraphQLService {
     
     /**
      * Get detailed information about a specific taxonomy category
+     * From the local taxonomy index (with level, parentId and childrenIds, without attributes),
+     * or with attributes from Shopify, cached in TAXONOMY_CACHE, when the category isn't indexed
      */
     public Map<String, Object> getTaxonomyCategoryDetails(String categoryId) throws Exception {
+        TaxonomyIndex index = getTaxonomyIndex();
+        TaxonomyIndex.Category category = index == null ? null : index.get(categoryId);
+        if (category != null) {
+            Map<String, Object> details = category.toMap();
+            details.put("childrenIds", index.getChildren(categoryId).stream().map(TaxonomyIndex.Category::getId).collect(Collectors.toList()));
+            return details;
+        }
+        return cachedMetadata(TAXONOMY_CACHE, "details:" + categoryId, () -> fetchTaxonomyCategoryDetails(categoryId));
+    }
+    
+    private Map<String, Object> fetchTaxonomyCategoryDetails(String categoryId) throws Exception {
         String query = """
             query getTaxonomyCategoryDetails($id: ID!) {
                 taxonomyCategory(id: $id) {
@@ -3258,8 +3809,17 @@ public class ShopifyGraphQLService {
     
     /**
      * Get all top-level taxonomy categories
+     * From the local taxonomy index, or cached in TAXONOMY_CACHE when the index isn't available
      */
     public List<Map<String, Object>> getTaxonomyTopLevelCategories() throws Exception {
+        TaxonomyIndex index = getTaxonomyIndex();
+        if (index != null) {
+            return index.getRoots().stream().map(TaxonomyIndex.Category::toMap).collect(Collectors.toList());
+        }
+        return new ArrayList<>(cachedMetadata(TAXONOMY_CACHE, "top", () -> fetchTaxonomyTopLevelCategories()));
+    }
+    
+    private List<Map<String, Object>> fetchTaxonomyTopLevelCategories() throws Exception {
         String query = """
             query {
                 taxonomy {
@@ -3448,44 +4008,96 @@ public class ShopifyGraphQLService {
     }
 
     /**
-     * Update existing product options using GraphQL by removing all existing options and recreating them
-     * This is the most reliable approach since there's always exactly one variant per product
-     * and all option values belong to that single variant
+     * Update existing product options to match the feed item, fetching the product first
      * 
      * @param productId The Shopify product ID
      * @param feedItem The feed item containing the updated option data
-     * @return true if options were successfully updated
+     * @return true if options were changed, false if they were already up to date or the update failed
      */
     public boolean updateProductOptions(String productId, FeedItem feedItem) {
         try {
-            logger.info("🔄 Updating product options for product ID: {} by removing and recreating all options", productId);
-            
-            // Remove all existing options
-            boolean optionsRemoved = removeProductOptions(productId);
-            if (!optionsRemoved) {
-                logger.error("Failed to remove existing options for product ID: {}", productId);
-                return false;
-            }
-            
-            // Create new options using the same logic as product creation
-            boolean optionsCreated = createProductOptions(productId, feedItem);
-            if (!optionsCreated) {
-                logger.error("Failed to create new options for product ID: {}", productId);
+            Product currentProduct = getProductByProductId(productId);
+            if (currentProduct == null) {
+                logger.error("No product found to update options for product ID: {}", productId);
                 return false;
             }
-            
-            logger.info("✅ Successfully updated product options for product ID: {} (removed and recreated)", productId);
-            return true;
-            
+            return reconcileProductOptions(currentProduct, feedItem);
         } catch (Exception e) {
             logger.error("Failed to update product options for product ID: " + productId, e);
             return false;
         }
     }
     
+    /**
+     * Bring the product's options in line with the feed item, sending only what differs.
+     * 
+     * The options already on the product (as returned by getProductByProductId) are diffed
+     * against the item (see ProductOptionDiff). Deletes, in-place updates (value renames and
+     * positions) and creates all go out in one GraphQL request, or no request at all when
+     * nothing differs.
+     * 
+     * @param product The product with its current options
+     * @param feedItem The feed item containing the option data
+     * @return true if options were changed, false if they were already up to date
+     */
+    public boolean reconcileProductOptions(Product product, FeedItem feedItem) throws Exception {
+        ProductOptionDiff diff = ProductOptionDiff.compute(product.getOptions(), feedItem);
+        if (diff.isEmpty()) {
+            logger.debug("Options up to date for product ID: {}", product.getId());
+            return false;
+        }
+        logger.info("🔄 Updating product options for product ID: {} ({})", product.getId(), diff);
+        
+        // Root mutation fields run in order: delete, update, create - like the old remove and recreate
+        String userErrorFields = " { userErrors { field message code } }";
+        StringBuilder declarations = new StringBuilder("$productId: ID!");
+        StringBuilder fields = new StringBuilder();
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("productId", "gid://shopify/Product/" + product.getId());
+        
+        if (!diff.getOptionIdsToDelete().isEmpty()) {
+            declarations.append(", $deleteOptions: [ID!]!");
+            fields.append("  deleteOptions: productOptionsDelete(productId: $productId, options: $deleteOptions)")
+                .append(userErrorFields).append("\n");
+            variables.put("deleteOptions", diff.getOptionIdsToDelete());
+        }
+        for (int i = 0; i < diff.getOptionsToUpdate().size(); i++) {
+            ProductOptionDiff.OptionUpdate update = diff.getOptionsToUpdate().get(i);
+            declarations.append(", $option").append(i).append(": OptionUpdateInput!")
+                .append(", $values").append(i).append(": [OptionValueUpdateInput!]");
+            fields.append("  update").append(i).append(": productOptionUpdate(productId: $productId, option: $option").append(i)
+                .append(", optionValuesToUpdate: $values").append(i).append(")").append(userErrorFields).append("\n");
+            variables.put("option" + i, update.getOption());
+            variables.put("values" + i, update.getValuesToUpdate());
+        }
+        if (!diff.getOptionsToCreate().isEmpty()) {
+            declarations.append(", $createOptions: [OptionCreateInput!]!");
+            fields.append("  createOptions: productOptionsCreate(productId: $productId, options: $createOptions)")
+                .append(userErrorFields).append("\n");
+            variables.put("createOptions", diff.getOptionsToCreate());
+        }
+        
+        String mutation = "mutation reconcileProductOptions(" + declarations + ") {\n" + fields + "}";
+        JsonNode data = executeGraphQLQuery(mutation, variables);
+        
+        List<String> errors = new ArrayList<>();
+        data.fields().forEachRemaining(field -> {
+            JsonNode userErrors = field.getValue().get("userErrors");
+            if (userErrors != null && userErrors.size() > 0) {
+                errors.add(field.getKey() + ": " + userErrors);
+            }
+        });
+        if (!errors.isEmpty()) {
+            logger.error("Product options update failed with user errors: " + errors);
+            throw new RuntimeException("Product options update failed: " + errors);
+        }
+        
+        logger.info("✅ Successfully updated product options for product ID: {}", product.getId());
+        return true;
+    }
+    
     /**
      * Remove all options from a product using GraphQL productOptionsDelete mutation
-     * This is used when updating products where options need to be recreated
      * 
      * @param productId The Shopify product ID
      * @return true if options were successfully removed
@@ -3637,6 +4249,40 @@ public class ShopifyGraphQLService {
         }
     }
     
+    /**
+     * Read one product metafield by namespace and key. Unlike the metafields page of
+     * getProductByProductId this can't miss the metafield on products with many others.
+     *
+     * @return The metafield value, null if the product or metafield doesn't exist
+     */
+    public String getProductMetafieldValue(String productId, String namespace, String key) throws Exception {
+        String query = """
+            query getProductMetafield($id: ID!, $namespace: String!, $key: String!) {
+                product(id: $id) {
+                    metafield(namespace: $namespace, key: $key) {
+                        value
+                    }
+                }
+            }
+            """;
+        
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("id", "gid://shopify/Product/" + productId);
+        variables.put("namespace", namespace);
+        variables.put("key", key);
+        
+        JsonNode data = executeGraphQLQuery(query, variables);
+        JsonNode productNode = data.get("product");
+        if (productNode == null || productNode.isNull()) {
+            return null;
+        }
+        JsonNode metafieldNode = productNode.get("metafield");
+        if (metafieldNode == null || metafieldNode.isNull()) {
+            return null;
+        }
+        return metafieldNode.get("value").asText();
+    }
+    
     /**
      * Update product title separately using GraphQL
      * This is useful when product update is skipped but title still needs to be updated
@@ -3898,4 +4544,465 @@ public class ShopifyGraphQLService {
             return false;
         }
     }
-} 
\ No newline at end of file
+    /**
+     * Update variant prices using productVariantsBulkUpdate mutation.
+     * Only id and price are sent, so options, inventory and SKU are left untouched.
+     *
+     * @param productId The product ID owning the variants
+     * @param variants Variants carrying the ID and the new price
+     */
+    public void updateVariantPrices(String productId, List<Variant> variants) throws Exception {
+        if (variants == null || variants.isEmpty()) {
+            logger.debug("No variant prices to update for product: {}", productId);
+            return;
+        }
+
+        String mutation = """
+            mutation productVariantsBulkUpdate($productId: ID!, $variants: [ProductVariantsBulkInput!]!) {
+                productVariantsBulkUpdate(productId: $productId, variants: $variants) {
+                    productVariants {
+                        id
+                        price
+                    }
+                    userErrors {
+                        field
+                        message
+                    }
+                }
+            }
+            """;
+
+        List<Map<String, Object>> variantsInput = new ArrayList<>();
+        for (Variant variant : variants) {
+            Map<String, Object> variantInput = new HashMap<>();
+            variantInput.put("id", "gid://shopify/ProductVariant/" + variant.getId());
+            variantInput.put("price", variant.getPrice());
+            variantsInput.add(variantInput);
+        }
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("productId", "gid://shopify/Product/" + productId);
+        variables.put("variants", variantsInput);
+
+        try {
+            JsonNode data = executeGraphQLQuery(mutation, variables);
+            JsonNode userErrors = data.get("productVariantsBulkUpdate").get("userErrors");
+            if (userErrors != null && userErrors.size() > 0) {
+                logger.error("Variant price update failed with user errors: " + userErrors.toString());
+                throw new RuntimeException("Variant price update failed: " + userErrors.toString());
+            }
+
+            logger.info("💲 Updated price on {} variants for product ID: {}", variants.size(), productId);
+
+        } catch (Exception e) {
+            logger.error("Error updating variant prices for product: " + productId, e);
+            throw e;
+        }
+    }
+    /**
+     * Look up variants for many SKUs with a single productVariants search query.
+     * Returned variants carry ID, SKU, price and the owning product ID.
+     *
+     * @param skus SKUs to look up (at most 250 per call)
+     * @return Variants by SKU; SKUs not found on Shopify are absent
+     */
+    public Map<String, Variant> getVariantsBySkus(List<String> skus) throws Exception {
+        Map<String, Variant> variantsBySku = new HashMap<>();
+        if (skus == null || skus.isEmpty()) {
+            return variantsBySku;
+        }
+
+        String query = """
+            query getVariantsBySkus($first: Int!, $query: String!) {
+                productVariants(first: $first, query: $query) {
+                    edges {
+                        node {
+                            id
+                            sku
+                            price
+                            product {
+                                id
+                            }
+                        }
+                    }
+                }
+            }
+            """;
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("first", 250);
+        variables.put("query", skus.stream().map(sku -> "sku:" + sku).collect(Collectors.joining(" OR ")));
+
+        JsonNode data = executeGraphQLQuery(query, variables);
+        for (JsonNode edge : data.get("productVariants").get("edges")) {
+            JsonNode node = edge.get("node");
+            Variant variant = new Variant();
+            variant.setId(extractIdFromGid(node.get("id").asText()));
+            variant.setSku(node.get("sku").asText());
+            variant.setPrice(node.get("price").asText());
+            variant.setProductId(extractIdFromGid(node.get("product").get("id").asText()));
+            variantsBySku.put(variant.getSku(), variant);
+        }
+
+        logger.debug("Found {} variants for {} SKUs", variantsBySku.size(), skus.size());
+        return variantsBySku;
+    }
+    /**
+     * Look up the inventory levels (item and location IDs plus available quantity) for
+     * many SKUs with a single productVariants search query.
+     *
+     * @param skus SKUs to look up (at most 250 per call)
+     * @return Inventory levels and owning product ID by SKU; SKUs not found on Shopify are absent
+     */
+    public Map<String, InventoryLevelsBySku> getInventoryLevelsBySkus(List<String> skus) throws Exception {
+        Map<String, InventoryLevelsBySku> levelsBySku = new HashMap<>();
+        if (skus == null || skus.isEmpty()) {
+            return levelsBySku;
+        }
+
+        String query = """
+            query getInventoryLevelsBySkus($first: Int!, $query: String!) {
+                productVariants(first: $first, query: $query) {
+                    edges {
+                        node {
+                            sku
+                            product {
+                                id
+                            }
+                            inventoryItem {
+                                id
+                                inventoryLevels(first: 10) {
+                                    edges {
+                                        node {
+                                            location {
+                                                id
+                                            }
+                                            quantities(names: ["available"]) {
+                                                name
+                                                quantity
+                                            }
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            """;
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("first", 250);
+        variables.put("query", skus.stream().map(sku -> "sku:" + sku).collect(Collectors.joining(" OR ")));
+
+        JsonNode data = executeGraphQLQuery(query, variables);
+        for (JsonNode edge : data.get("productVariants").get("edges")) {
+            JsonNode node = edge.get("node");
+            String inventoryItemId = extractIdFromGid(node.get("inventoryItem").get("id").asText());
+            List<InventoryLevel> levels = new ArrayList<>();
+            for (JsonNode levelEdge : node.get("inventoryItem").get("inventoryLevels").get("edges")) {
+                JsonNode levelNode = levelEdge.get("node");
+                InventoryLevel level = new InventoryLevel();
+                level.setInventoryItemId(inventoryItemId);
+                level.setLocationId(extractIdFromGid(levelNode.get("location").get("id").asText()));
+                for (JsonNode quantity : levelNode.get("quantities")) {
+                    if ("available".equals(quantity.get("name").asText())) {
+                        level.setAvailable(quantity.get("quantity").asText());
+                    }
+                }
+                levels.add(level);
+            }
+            String sku = node.get("sku").asText();
+            levelsBySku.put(sku, new InventoryLevelsBySku(sku, extractIdFromGid(node.get("product").get("id").asText()), levels));
+        }
+
+        logger.debug("Found inventory levels for {} of {} SKUs", levelsBySku.size(), skus.size());
+        return levelsBySku;
+    }
+
+    /**
+     * Inventory levels of the variant matching a SKU
+     */
+    public static class InventoryLevelsBySku {
+        private final String sku;
+        private final String productId;
+        private final List<InventoryLevel> levels;
+
+        public InventoryLevelsBySku(String sku, String productId, List<InventoryLevel> levels) {
+            this.sku = sku;
+            this.productId = productId;
+            this.levels = levels;
+        }
+
+        public String getSku() { return sku; }
+        public String getProductId() { return productId; }
+        public List<InventoryLevel> getLevels() { return levels; }
+    }
+    /**
+     * Reserve Shopify storage for local image files with stagedUploadsCreate.
+     * The bytes are then POSTed to each target (see ShopifyStagedUploader) and the
+     * resource URL is used as originalSource of productCreateMedia.
+     *
+     * @return One upload target per file, in the order of the given files
+     */
+    public List<StagedUploadTarget> createStagedUploads(List<StagedUploadFile> files) throws Exception {
+        List<StagedUploadTarget> targets = new ArrayList<>();
+        if (files == null || files.isEmpty()) {
+            return targets;
+        }
+
+        String mutation = """
+            mutation stagedUploadsCreate($input: [StagedUploadInput!]!) {
+                stagedUploadsCreate(input: $input) {
+                    stagedTargets {
+                        url
+                        resourceUrl
+                        parameters {
+                            name
+                            value
+                        }
+                    }
+                    userErrors {
+                        field
+                        message
+                    }
+                }
+            }
+            """;
+
+        List<Map<String, Object>> input = new ArrayList<>();
+        for (StagedUploadFile file : files) {
+            Map<String, Object> upload = new HashMap<>();
+            upload.put("filename", file.getFilename());
+            upload.put("mimeType", file.getMimeType());
+            upload.put("httpMethod", "POST");
+            upload.put("resource", "IMAGE");
+            upload.put("fileSize", String.valueOf(file.getFile().length()));
+            input.add(upload);
+        }
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("input", input);
+
+        JsonNode data = executeGraphQLQuery(mutation, variables);
+        JsonNode result = data.get("stagedUploadsCreate");
+        JsonNode userErrors = result.get("userErrors");
+        if (userErrors != null && userErrors.size() > 0) {
+            logger.error("Staged upload creation failed with user errors: " + userErrors.toString());
+            throw new RuntimeException("Staged upload creation failed: " + userErrors.toString());
+        }
+
+        for (JsonNode target : result.get("stagedTargets")) {
+            // Form parameters must be sent in the given order, before the file
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (JsonNode parameter : target.get("parameters")) {
+                parameters.put(parameter.get("name").asText(), parameter.get("value").asText());
+            }
+            targets.add(new StagedUploadTarget(target.get("url").asText(), target.get("resourceUrl").asText(), parameters));
+        }
+        if (targets.size() != files.size()) {
+            throw new RuntimeException("Expected " + files.size() + " staged targets, got " + targets.size());
+        }
+        return targets;
+    }
+
+    /**
+     * A local file to stage, with the name and media type Shopify stores it under
+     */
+    public static class StagedUploadFile {
+        private final File file;
+        private final String filename;
+        private final String mimeType;
+
+        public StagedUploadFile(File file, String filename, String mimeType) {
+            this.file = file;
+            this.filename = filename;
+            this.mimeType = mimeType;
+        }
+
+        public File getFile() { return file; }
+        public String getFilename() { return filename; }
+        public String getMimeType() { return mimeType; }
+    }
+
+    /**
+     * Where to POST one staged upload and the URL to reference it by afterwards
+     */
+    public static class StagedUploadTarget {
+        private final String url;
+        private final String resourceUrl;
+        private final Map<String, String> parameters;
+
+        public StagedUploadTarget(String url, String resourceUrl, Map<String, String> parameters) {
+            this.url = url;
+            this.resourceUrl = resourceUrl;
+            this.parameters = parameters;
+        }
+
+        public String getUrl() { return url; }
+        public String getResourceUrl() { return resourceUrl; }
+        public Map<String, String> getParameters() { return parameters; }
+    }
+    /**
+     * Page through all products fetching only ID, title, first SKU and media count, handing each
+     * page to the consumer as soon as it arrives. Much lighter than getAllProducts.
+     *
+     * @param pageSize Products per page (at most 250)
+     * @param pageConsumer Called on the calling thread once per page
+     */
+    public void streamProductMediaCounts(int pageSize, Consumer<List<ProductMediaCount>> pageConsumer) throws Exception {
+        String query = """
+            query getProductMediaCounts($first: Int!, $cursor: String) {
+                products(first: $first, after: $cursor) {
+                    edges {
+                        node {
+                            id
+                            title
+                            mediaCount {
+                                count
+                            }
+                            variants(first: 1) {
+                                edges {
+                                    node {
+                                        sku
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    pageInfo {
+                        hasNextPage
+                        endCursor
+                    }
+                }
+            }
+            """;
+
+        String cursor = null;
+        boolean hasNextPage = true;
+        while (hasNextPage) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("first", pageSize);
+            if (cursor != null) {
+                variables.put("cursor", cursor);
+            }
+
+            JsonNode productsNode = executeGraphQLQuery(query, variables).get("products");
+            List<ProductMediaCount> page = new ArrayList<>();
+            for (JsonNode edge : productsNode.get("edges")) {
+                JsonNode node = edge.get("node");
+                JsonNode variantEdges = node.path("variants").path("edges");
+                String sku = variantEdges.size() > 0 ? variantEdges.get(0).path("node").path("sku").asText(null) : null;
+                page.add(new ProductMediaCount(extractIdFromGid(node.get("id").asText()), sku,
+                    node.path("mediaCount").path("count").asInt(0), node.path("title").asText(null)));
+            }
+            pageConsumer.accept(page);
+
+            JsonNode pageInfo = productsNode.get("pageInfo");
+            hasNextPage = pageInfo.get("hasNextPage").asBoolean();
+            cursor = hasNextPage ? pageInfo.get("endCursor").asText() : null;
+        }
+    }
+
+    /**
+     * Page through all products fetching only ID, first SKU and updatedAt, handing each
+     * page to the consumer as soon as it arrives.
+     *
+     * @param pageSize Products per page (at most 250)
+     * @param pageConsumer Called on the calling thread once per page
+     */
+    public void streamProductSkus(int pageSize, Consumer<List<ProductSku>> pageConsumer) throws Exception {
+        String query = """
+            query getProductSkus($first: Int!, $cursor: String) {
+                products(first: $first, after: $cursor) {
+                    edges {
+                        node {
+                            id
+                            updatedAt
+                            variants(first: 1) {
+                                edges {
+                                    node {
+                                        sku
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    pageInfo {
+                        hasNextPage
+                        endCursor
+                    }
+                }
+            }
+            """;
+
+        String cursor = null;
+        boolean hasNextPage = true;
+        while (hasNextPage) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("first", pageSize);
+            if (cursor != null) {
+                variables.put("cursor", cursor);
+            }
+
+            JsonNode productsNode = executeGraphQLQuery(query, variables).get("products");
+            List<ProductSku> page = new ArrayList<>();
+            for (JsonNode edge : productsNode.get("edges")) {
+                JsonNode node = edge.get("node");
+                JsonNode variantEdges = node.path("variants").path("edges");
+                String sku = variantEdges.size() > 0 ? variantEdges.get(0).path("node").path("sku").asText(null) : null;
+                page.add(new ProductSku(extractIdFromGid(node.get("id").asText()), sku, node.path("updatedAt").asText(null)));
+            }
+            pageConsumer.accept(page);
+
+            JsonNode pageInfo = productsNode.get("pageInfo");
+            hasNextPage = pageInfo.get("hasNextPage").asBoolean();
+            cursor = hasNextPage ? pageInfo.get("endCursor").asText() : null;
+        }
+    }
+
+    /**
+     * First variant's SKU of one product
+     */
+    public static class ProductSku {
+        private final String productId;
+        private final String sku;
+        private final String updatedAt;
+
+        public ProductSku(String productId, String sku, String updatedAt) {
+            this.productId = productId;
+            this.sku = sku;
+            this.updatedAt = updatedAt;
+        }
+
+        public String getProductId() { return productId; }
+        public String getSku() { return sku; }
+        public String getUpdatedAt() { return updatedAt; }
+    }
+
+    /**
+     * Media count of one product, keyed by its first variant's SKU
+     */
+    public static class ProductMediaCount {
+        private final String productId;
+        private final String sku;
+        private final int mediaCount;
+        private final String title;
+
+        public ProductMediaCount(String productId, String sku, int mediaCount) {
+            this(productId, sku, mediaCount, null);
+        }
+
+        public ProductMediaCount(String productId, String sku, int mediaCount, String title) {
+            this.productId = productId;
+            this.sku = sku;
+            this.mediaCount = mediaCount;
+            this.title = title;
+        }
+
+        public String getProductId() { return productId; }
+        public String getSku() { return sku; }
+        public int getMediaCount() { return mediaCount; }
+        public String getTitle() { return title; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.gw.services.shopifyapi;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import com.gw.services.image.ImageTypeDetector;
+
+/**
+ * Pushes local image files straight to Shopify's storage.
+ *
+ * stagedUploadsCreate reserves one target per file, the file is POSTed as a multipart
+ * form (the target's parameters first, then the file) and the returned resource URLs
+ * can be used as originalSource for productCreateMedia. Shopify then doesn't have to
+ * fetch the images back from css.hosting.url.base.
+ */
+@Component
+public class ShopifyStagedUploader {
+
+    private static Logger logger = LogManager.getLogger(ShopifyStagedUploader.class);
+
+    @Autowired
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    /**
+     * Upload the files with their media types. The staged filename gets the extension of
+     * the media type, unknown types are sent as JPEG.
+     *
+     * @param mimeTypes Media type of each file, in the order of the files
+     * @return Resource URLs in the order of the given files
+     */
+    public List<String> upload(List<File> files, List<String> mimeTypes) throws Exception {
+        List<String> resourceUrls = new ArrayList<>();
+        if (files.isEmpty()) {
+            return resourceUrls;
+        }
+
+        List<ShopifyGraphQLService.StagedUploadFile> stagedFiles = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            String mimeType = mimeTypes.get(i) != null ? mimeTypes.get(i) : ImageTypeDetector.JPEG;
+            stagedFiles.add(new ShopifyGraphQLService.StagedUploadFile(files.get(i), filename(files.get(i), mimeType), mimeType));
+        }
+
+        List<ShopifyGraphQLService.StagedUploadTarget> targets = shopifyGraphQLService.createStagedUploads(stagedFiles);
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            ShopifyGraphQLService.StagedUploadTarget target = targets.get(i);
+            long start = System.currentTimeMillis();
+            post(target, stagedFiles.get(i));
+            logger.debug("Staged upload of " + file.getName() + " (" + file.length() / 1024 + "KB) in "
+                + (System.currentTimeMillis() - start) + "ms");
+            resourceUrls.add(target.getResourceUrl());
+        }
+        logger.info("Staged " + files.size() + " images on Shopify");
+        return resourceUrls;
+    }
+
+    /**
+     * Local name with the extension of the media type, e.g. 1001-1.jpg stored as PNG -> 1001-1.png
+     */
+    private static String filename(File file, String mimeType) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return base + "." + ImageTypeDetector.extension(mimeType);
+    }
+
+    private void post(ShopifyGraphQLService.StagedUploadTarget target, ShopifyGraphQLService.StagedUploadFile stagedFile) {
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        target.getParameters().forEach(form::add);
+
+        HttpHeaders fileHeaders = new HttpHeaders();
+        fileHeaders.setContentType(MediaType.parseMediaType(stagedFile.getMimeType()));
+        FileSystemResource resource = new FileSystemResource(stagedFile.getFile()) {
+            @Override
+            public String getFilename() {
+                return stagedFile.getFilename();
+            }
+        };
+        form.add("file", new HttpEntity<>(resource, fileHeaders));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        restTemplate.postForEntity(target.getUrl(), new HttpEntity<>(form, headers), String.class);
+    }
+}
@@ -0,0 +1,94 @@
+package com.gw.services.shopifyapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductSku;
+
+/**
+ * SKU -> product ID index of a Shopify store, built in a single pass over the
+ * products as they are paged in.
+ *
+ * The first product seen for a SKU is kept, later products with the same SKU are
+ * duplicates; products without a SKU can't be matched to the DB at all. Both are
+ * collected for removal instead of being indexed.
+ */
+public class SkuIdIndex {
+
+    private final Map<String, String> idBySku = new HashMap<>();
+    private final Map<String, String> skuById = new HashMap<>();
+    private final Map<String, String> updatedAtBySku = new HashMap<>();
+    private final List<ProductSku> duplicates = new ArrayList<>();
+    private final List<ProductSku> withoutSku = new ArrayList<>();
+
+    /**
+     * Index a product, false when it is a duplicate or has no SKU
+     */
+    public boolean add(ProductSku product) {
+        String sku = product.getSku();
+        if (sku == null || sku.isEmpty()) {
+            withoutSku.add(product);
+            return false;
+        }
+        String existing = idBySku.putIfAbsent(sku, product.getProductId());
+        if (existing != null) {
+            duplicates.add(product);
+            return false;
+        }
+        skuById.put(product.getProductId(), sku);
+        updatedAtBySku.put(sku, product.getUpdatedAt());
+        return true;
+    }
+
+    public void addAll(List<ProductSku> products) {
+        for (ProductSku product : products) {
+            add(product);
+        }
+    }
+
+    public String getId(String sku) {
+        return sku == null ? null : idBySku.get(sku);
+    }
+
+    public String getSku(String productId) {
+        return productId == null ? null : skuById.get(productId);
+    }
+
+    public String getUpdatedAt(String sku) {
+        return sku == null ? null : updatedAtBySku.get(sku);
+    }
+
+    public boolean containsSku(String sku) {
+        return sku != null && idBySku.containsKey(sku);
+    }
+
+    public Set<String> getSkus() {
+        return Collections.unmodifiableSet(idBySku.keySet());
+    }
+
+    /**
+     * Kept products, SKU -> product ID
+     */
+    public Map<String, String> getIdBySku() {
+        return Collections.unmodifiableMap(idBySku);
+    }
+
+    /**
+     * Products whose SKU was already indexed, in the order they were seen
+     */
+    public List<ProductSku> getDuplicates() {
+        return Collections.unmodifiableList(duplicates);
+    }
+
+    public List<ProductSku> getWithoutSku() {
+        return Collections.unmodifiableList(withoutSku);
+    }
+
+    public int size() {
+        return idBySku.size();
+    }
+}
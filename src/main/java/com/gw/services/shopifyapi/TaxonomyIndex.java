@@ -0,0 +1,275 @@
+package com.gw.services.shopifyapi;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * In-memory copy of Shopify's product taxonomy for category lookups without API calls.
+ *
+ * Categories are kept in arrays, parent and children by array position, with maps
+ * ID -> position and lower-cased name -> positions. Written to / read from a JSON
+ * file; formatVersion and apiVersion tell whether a file can still be used.
+ */
+public class TaxonomyIndex {
+
+    // Bump when the file layout changes, older files are then downloaded again
+    public static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int[] NONE = new int[0];
+
+    private final String apiVersion;
+    private final long downloadedAt;
+    private final Category[] categories;
+    private final int[] parent;
+    private final int[][] children;
+    private final int[] roots;
+    private final Map<String, Integer> positionById = new HashMap<>();
+    private final Map<String, int[]> positionsByName = new HashMap<>();
+    private final String[] lowerNames;
+    private final String[] lowerFullNames;
+
+    public TaxonomyIndex(String apiVersion, long downloadedAt, List<Category> categories) {
+        this.apiVersion = apiVersion;
+        this.downloadedAt = downloadedAt;
+        this.categories = categories.toArray(new Category[0]);
+        int size = this.categories.length;
+        this.parent = new int[size];
+        this.lowerNames = new String[size];
+        this.lowerFullNames = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            Category category = this.categories[i];
+            positionById.put(category.getId(), i);
+            lowerNames[i] = category.getName().toLowerCase(Locale.ROOT);
+            lowerFullNames[i] = category.getFullName() == null ? lowerNames[i] : category.getFullName().toLowerCase(Locale.ROOT);
+            positionsByName.merge(lowerNames[i], new int[] { i }, TaxonomyIndex::append);
+        }
+
+        Map<Integer, int[]> childrenByParent = new HashMap<>();
+        List<Integer> rootPositions = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Integer parentPosition = categories.get(i).getParentId() == null ? null : positionById.get(categories.get(i).getParentId());
+            parent[i] = parentPosition == null ? -1 : parentPosition;
+            if (parentPosition == null) {
+                rootPositions.add(i);
+            } else {
+                childrenByParent.merge(parentPosition, new int[] { i }, TaxonomyIndex::append);
+            }
+        }
+        this.children = new int[size][];
+        for (int i = 0; i < size; i++) {
+            children[i] = childrenByParent.getOrDefault(i, NONE);
+        }
+        this.roots = rootPositions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static TaxonomyIndex read(File file) throws IOException {
+        IndexFile indexFile = objectMapper.readValue(file, IndexFile.class);
+        if (indexFile.formatVersion != FORMAT_VERSION) {
+            throw new IOException("Taxonomy index format " + indexFile.formatVersion + " instead of " + FORMAT_VERSION);
+        }
+        return new TaxonomyIndex(indexFile.apiVersion, indexFile.downloadedAt, indexFile.categories);
+    }
+
+    public void write(File file) throws IOException {
+        IndexFile indexFile = new IndexFile();
+        indexFile.formatVersion = FORMAT_VERSION;
+        indexFile.apiVersion = apiVersion;
+        indexFile.downloadedAt = downloadedAt;
+        indexFile.categories = List.of(categories);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        // Write next to the target first so readers never see half a file
+        File tmp = new File(file.getPath() + ".tmp");
+        objectMapper.writeValue(tmp, indexFile);
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+    public String getApiVersion() {
+        return apiVersion;
+    }
+
+    public long getDownloadedAt() {
+        return downloadedAt;
+    }
+
+    public int size() {
+        return categories.length;
+    }
+
+    public Category get(String id) {
+        Integer position = id == null ? null : positionById.get(id);
+        return position == null ? null : categories[position];
+    }
+
+    public Category getParent(String id) {
+        Integer position = id == null ? null : positionById.get(id);
+        return position == null || parent[position] < 0 ? null : categories[parent[position]];
+    }
+
+    public List<Category> getChildren(String id) {
+        Integer position = id == null ? null : positionById.get(id);
+        return position == null ? List.of() : toCategories(children[position]);
+    }
+
+    public List<Category> getRoots() {
+        return toCategories(roots);
+    }
+
+    public List<Category> getAll() {
+        return List.of(categories);
+    }
+
+    /**
+     * IDs of the categories with exactly this name, ignoring case
+     */
+    public List<String> getIdsByName(String name) {
+        int[] positions = name == null ? null : positionsByName.get(name.toLowerCase(Locale.ROOT));
+        List<String> ids = new ArrayList<>();
+        for (int position : positions == null ? NONE : positions) {
+            ids.add(categories[position].getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Best category for a search term: an exact name match, otherwise a category whose
+     * name or full name contains the term. The least deep category wins, then the
+     * shortest name. Null when nothing matches.
+     */
+    public Category search(String term) {
+        if (term == null || term.isBlank()) {
+            return null;
+        }
+        String lowerTerm = term.trim().toLowerCase(Locale.ROOT);
+        int[] exact = positionsByName.get(lowerTerm);
+        if (exact != null) {
+            return categories[best(exact, exact.length)];
+        }
+
+        int[] nameMatches = new int[categories.length];
+        int nameCount = 0;
+        int[] fullNameMatches = new int[categories.length];
+        int fullNameCount = 0;
+        for (int i = 0; i < categories.length; i++) {
+            if (lowerNames[i].contains(lowerTerm)) {
+                nameMatches[nameCount++] = i;
+            } else if (lowerFullNames[i].contains(lowerTerm)) {
+                fullNameMatches[fullNameCount++] = i;
+            }
+        }
+        if (nameCount > 0) {
+            return categories[best(nameMatches, nameCount)];
+        }
+        return fullNameCount > 0 ? categories[best(fullNameMatches, fullNameCount)] : null;
+    }
+
+    private int best(int[] positions, int count) {
+        int best = positions[0];
+        for (int i = 1; i < count; i++) {
+            Category candidate = categories[positions[i]];
+            Category current = categories[best];
+            if (candidate.getLevel() < current.getLevel()
+                    || (candidate.getLevel() == current.getLevel() && candidate.getName().length() < current.getName().length())) {
+                best = positions[i];
+            }
+        }
+        return best;
+    }
+
+    private List<Category> toCategories(int[] positions) {
+        List<Category> result = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            result.add(categories[position]);
+        }
+        return result;
+    }
+
+    private static int[] append(int[] existing, int[] added) {
+        int[] merged = new int[existing.length + added.length];
+        System.arraycopy(existing, 0, merged, 0, existing.length);
+        System.arraycopy(added, 0, merged, existing.length, added.length);
+        return merged;
+    }
+
+    /**
+     * One taxonomy category, as stored in the index file
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Category {
+        private String id;
+        private String name;
+        private String fullName;
+        private String parentId;
+        private int level;
+        private boolean leaf;
+
+        public Category() {
+        }
+
+        public Category(String id, String name, String fullName, String parentId, int level, boolean leaf) {
+            this.id = id;
+            this.name = name;
+            this.fullName = fullName;
+            this.parentId = parentId;
+            this.level = level;
+            this.leaf = leaf;
+        }
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public String getFullName() { return fullName; }
+        public void setFullName(String fullName) { this.fullName = fullName; }
+        public String getParentId() { return parentId; }
+        public void setParentId(String parentId) { this.parentId = parentId; }
+        public int getLevel() { return level; }
+        public void setLevel(int level) { this.level = level; }
+        public boolean isLeaf() { return leaf; }
+        public void setLeaf(boolean leaf) { this.leaf = leaf; }
+
+        public boolean isRoot() {
+            return parentId == null;
+        }
+
+        /**
+         * Same keys the remote taxonomy lookups return
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("name", name);
+            map.put("fullName", fullName);
+            map.put("isLeaf", leaf);
+            map.put("isRoot", isRoot());
+            map.put("level", level);
+            map.put("parentId", parentId);
+            return map;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class IndexFile {
+        public int formatVersion;
+        public String apiVersion;
+        public long downloadedAt;
+        public List<Category> categories = new ArrayList<>();
+    }
+}
@@ -0,0 +1,245 @@
+package com.gw.services.shopifyapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+/**
+ * Spring Cache with a time to live per entry, a bound on the number of entries
+ * (least recently used entries go first) and hit / miss / load statistics.
+ *
+ * Used for Shopify store metadata (locations, publications, collections, metafield
+ * definitions, taxonomy) that rarely changes but is read by many code paths.
+ * get(key, loader) loads each key once even when several threads ask for it: the first
+ * caller registers a future for the key and loads, the others wait for that future.
+ */
+public class TtlCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<Object, Entry> entries;
+    // Loads in progress by key, removed once the value is stored
+    private final Map<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TtlCache(String name, long ttlMillis, int maxEntries) {
+        this(name, ttlMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * With a custom millisecond clock, for tests
+     */
+    public TtlCache(String name, long ttlMillis, int maxEntries, LongSupplier clock) {
+        super(true);
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() > TtlCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return entries;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= clock.getAsLong()) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> load = loading.computeIfAbsent(key, k -> created);
+        if (load != created) {
+            return (T) await(load);
+        }
+        try {
+            // A load that finished between the lookup and registering this one already stored the value
+            Object value = peek(key);
+            if (value != null) {
+                T stored = (T) fromStoreValue(value);
+                load.complete(stored);
+                return stored;
+            }
+            long start = System.nanoTime();
+            T loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                loadFailures.incrementAndGet();
+                ValueRetrievalException failure = new ValueRetrievalException(key, valueLoader, e);
+                load.completeExceptionally(failure);
+                throw failure;
+            } finally {
+                totalLoadNanos.addAndGet(System.nanoTime() - start);
+            }
+            loads.incrementAndGet();
+            put(key, loaded);
+            load.complete(loaded);
+            return loaded;
+        } finally {
+            // Only after the value is stored, so a later caller finds it instead of loading again
+            loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Value of another thread's load, with its failure rethrown as is
+     */
+    private static Object await(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        synchronized (entries) {
+            entries.put(key, new Entry(toStoreValue(value), clock.getAsLong() + ttlMillis));
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), loads.get(), loadFailures.get(), totalLoadNanos.get(), evictions.get(), size());
+    }
+
+    /**
+     * Stored value when present and not expired, without touching the statistics
+     */
+    private Object peek(Object key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.expiresAt > clock.getAsLong() ? entry.value : null;
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Counters since the cache was created
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long loads;
+        private final long loadFailures;
+        private final long totalLoadNanos;
+        private final long evictions;
+        private final int size;
+
+        private Stats(long hits, long misses, long loads, long loadFailures, long totalLoadNanos, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.loadFailures = loadFailures;
+            this.totalLoadNanos = totalLoadNanos;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getLoads() { return loads; }
+        public long getLoadFailures() { return loadFailures; }
+        /** Expired and size-evicted entries */
+        public long getEvictions() { return evictions; }
+        public int getSize() { return size; }
+
+        public double getHitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        public long getAverageLoadMillis() {
+            long attempts = loads + loadFailures;
+            return attempts == 0 ? 0 : totalLoadNanos / attempts / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d (%.0f%%) loads=%d failed=%d avgLoad=%dms evictions=%d size=%d",
+                hits, misses, getHitRate() * 100, loads, loadFailures, getAverageLoadMillis(), evictions, size);
+        }
+    }
+}
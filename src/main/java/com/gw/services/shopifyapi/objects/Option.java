@@ -2,6 +2,7 @@ package com.gw.services.shopifyapi.objects;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -26,6 +27,10 @@ public class Option {
     @JsonProperty("values")
     private List<String> values;
 
+    // GraphQL option value IDs, same order as values
+    @JsonIgnore
+    private List<String> valueIds;
+
     public String getId() {
         return id;
     }
@@ -66,5 +71,11 @@ public class Option {
         this.values = values;
     }
 
-    
+    public List<String> getValueIds() {
+        return valueIds;
+    }
+
+    public void setValueIds(List<String> valueIds) {
+        this.valueIds = valueIds;
+    }
 }
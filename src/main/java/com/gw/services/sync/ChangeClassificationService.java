@@ -0,0 +1,109 @@
+package com.gw.services.sync;
+
+import com.gw.domain.CollectionClassifier;
+import com.gw.domain.FeedItem;
+import com.gw.domain.FeedItemChange;
+import com.gw.domain.FeedItemChangeType;
+import com.gw.domain.PredefinedCollection;
+import com.gw.services.product.ProductCreationService;
+import com.gw.services.shopifyapi.objects.Product;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Change Classification Service
+ *
+ * Completes the field-level change types of a FeedItemChange with the
+ * consequences that depend on business rules rather than on single fields:
+ * - COLLECTIONS when the collections accepting the feed item differ from the ones last
+ *   applied to the product (stored as bitmasks on the FeedItem), or from the ones accepting
+ *   the stored item when nothing was applied yet
+ * - BASIC_INFO when a price change moves the item into another price tag bucket
+ */
+@Service
+public class ChangeClassificationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeClassificationService.class);
+
+    @Autowired
+    @Qualifier("keyStoneShopifyProductFactoryService")
+    private ProductCreationService productCreationService;
+
+    /**
+     * Classify all changes, the collections of the feed items are evaluated in one parallel pass
+     */
+    public void classifyAll(List<FeedItemChange> changes, PredefinedCollection[] predefinedCollections) {
+        CollectionClassifier classifier = new CollectionClassifier(predefinedCollections);
+        List<FeedItem> fromFeed = changes.stream().map(FeedItemChange::getFromFeed).collect(Collectors.toList());
+        Long[] feedMasks = classifier.classifyAll(fromFeed);
+        for (int i = 0; i < changes.size(); i++) {
+            classify(changes.get(i), classifier, feedMasks[i]);
+        }
+        logger.debug("Collection hits for {} changed items: {}", changes.size(), classifier.getHitCounts());
+    }
+
+    /**
+     * Add rule-derived change types to the change. Forced changes already carry all types.
+     */
+    public void classify(FeedItemChange change, PredefinedCollection[] predefinedCollections) {
+        CollectionClassifier classifier = new CollectionClassifier(predefinedCollections);
+        classify(change, classifier, classifyOrNull(classifier, change.getFromFeed()));
+    }
+
+    private void classify(FeedItemChange change, CollectionClassifier classifier, Long feedMask) {
+        FeedItem fromDb = change.getFromDb();
+        FeedItem fromFeed = change.getFromFeed();
+        Set<FeedItemChangeType> changeTypes = EnumSet.noneOf(FeedItemChangeType.class);
+        changeTypes.addAll(change.getChangeTypes());
+
+        fromDb.setCollectionMask(feedMask);
+        if (!changeTypes.contains(FeedItemChangeType.COLLECTIONS)) {
+            Long appliedMask = fromDb.getAppliedCollectionMask() != null
+                ? fromDb.getAppliedCollectionMask()
+                : classifyOrNull(classifier, fromDb);
+            // Unknown membership (a rule failed) - let collections be recomputed
+            if (feedMask == null || !feedMask.equals(appliedMask)) {
+                changeTypes.add(FeedItemChangeType.COLLECTIONS);
+            }
+        }
+
+        if (changeTypes.contains(FeedItemChangeType.PRICE)
+                && !changeTypes.contains(FeedItemChangeType.BASIC_INFO)) {
+            String tagsFromDb = getTags(fromDb);
+            if (tagsFromDb == null || !tagsFromDb.equals(getTags(fromFeed))) {
+                changeTypes.add(FeedItemChangeType.BASIC_INFO);
+            }
+        }
+
+        logger.debug("Change types for SKU {}: {}", fromFeed.getWebTagNumber(), changeTypes);
+        change.setChangeTypes(changeTypes);
+    }
+
+    private static Long classifyOrNull(CollectionClassifier classifier, FeedItem item) {
+        try {
+            return classifier.classify(item);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private String getTags(FeedItem item) {
+        try {
+            Product product = new Product();
+            productCreationService.addTags(item, product);
+            return product.getTags();
+        } catch (Exception e) {
+            // Unparseable price - let the basic field update run
+            return null;
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package com.gw.services.sync;
 
+import com.gw.domain.CollectionMask;
 import com.gw.domain.FeedItem;
 import com.gw.domain.PredefinedCollection;
-import com.gw.services.CollectionUtility;
+import com.gw.services.FeedItemService;
+import com.gw.services.LogService;
 import com.gw.services.shopifyapi.ShopifyGraphQLService;
-import com.gw.services.shopifyapi.objects.Collect;
 import com.gw.services.shopifyapi.objects.CustomCollection;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,6 +26,19 @@ import java.util.Set;
  * - Product-collection associations
  * - Collection updates and validation
  * 
+ * Memberships are kept as bitmasks on the FeedItem (see CollectionMask): collectionMask is
+ * what the predefined collections accept, appliedCollectionMask what was last written to
+ * Shopify. When the two match nothing is read or written; otherwise only the XOR of the
+ * two is sent. Products without an applied mask yet have their current memberships read
+ * once from Shopify.
+ * 
+ * Changes are sent per collection rather than per product, as one collectionRemoveProducts /
+ * collectionAddProducts call per collection (250 products each). Between begin() and end()
+ * the products of a whole sync run are collected and reconciled together on end(), so 16
+ * collections cost about 32 writes however many products changed. Batches belong to the
+ * thread that began them. Outside of a batch each product is reconciled immediately.
+ * Products whose collections couldn't be written in a batch are marked failed on end().
+ * 
  * Benefits:
  * - Centralized collection logic
  * - Reusable across sync operations
@@ -31,7 +47,7 @@ import java.util.Set;
 @Service
 public class CollectionManagementService {
     
-    private static final Logger logger = LoggerFactory.getLogger(CollectionManagementService.class);
+    private static final Logger logger = LogManager.getLogger(CollectionManagementService.class);
     
     @Autowired
     private ShopifyGraphQLService shopifyGraphQLService;
@@ -39,283 +55,244 @@ public class CollectionManagementService {
     @Autowired
     private SyncConfigurationService syncConfigurationService;
     
-    /**
-     * Update product collection associations
-     */
-    public void updateProductCollections(FeedItem item) throws Exception {
-        try {
-            Map<PredefinedCollection, CustomCollection> collectionMappings = 
-                syncConfigurationService.getCollectionMappings();
-            
-            // Get current managed collections for this product
-            List<Collect> currentManagedCollections = getCurrentManagedCollections(item.getShopifyItemId(), collectionMappings);
-            
-            // Determine which collections the product should be in
-            List<Collect> collectsToAdd = CollectionUtility.getCollectionForProduct(
-                item.getShopifyItemId(), item, collectionMappings);
-            
-            // Step 3: Compare current vs desired collections
-            if (collectionsMatch(currentManagedCollections, collectsToAdd, collectionMappings)) {
-                logger.debug("✅ Product {} (SKU: {}) collections already match desired state - no changes needed", 
-                    item.getShopifyItemId(), item.getWebTagNumber());
-                logCurrentCollections(currentManagedCollections, collectionMappings, "Current collections");
-                return; // No changes needed
-            }
-            
-            // Step 4: Collections don't match - perform remove and re-add
-            logger.debug("🔄 Product {} (SKU: {}) collections differ from desired state - updating", 
-                item.getShopifyItemId(), item.getWebTagNumber());
-            logCurrentCollections(currentManagedCollections, collectionMappings, "Current collections");
-            logDesiredCollections(collectsToAdd, collectionMappings, "Desired collections");
-            
-            // Remove from ALL managed collections first (clean state)
-            removeProductFromManagedCollections(item.getShopifyItemId(), item.getWebTagNumber(), collectionMappings);
-            
-            // Add to desired collections using bulk API
-            if (!collectsToAdd.isEmpty()) {
-                logger.debug("🏷️ Adding product {} (SKU: {}) to {} collections using bulk API", 
-                    item.getShopifyItemId(), item.getWebTagNumber(), collectsToAdd.size());
-                
-                try {
-                    // Use bulk API for better performance
-                    shopifyGraphQLService.addProductAndCollectionsAssociations(collectsToAdd);
-                    logger.debug("✅ Successfully added product to {} collections using bulk API", collectsToAdd.size());
-                    
-                } catch (Exception e) {
-                    logger.error("❌ Bulk collection addition failed, falling back to individual operations", e);
-                    
-                    // Fallback to individual operations if bulk fails
-                    addCollectionsIndividually(collectsToAdd, collectionMappings);
-                }
-                
-            } else {
-                logger.debug("⚠️ No collections found for product SKU: {} (product will remain in no managed collections)", item.getWebTagNumber());
-            }
-            
-        } catch (Exception e) {
-            logger.error("❌ Failed to update collections for SKU: {}", item.getWebTagNumber(), e);
-            throw e;
-        }
-    }
+    @Autowired
+    private FeedItemService feedItemService;
     
+    @Autowired
+    private LogService logService;
+    
+    private final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
     
     /**
-     * Helper method to find collection name by ID from the mappings
+     * Start collecting membership changes of the calling thread. Calls nest; only the
+     * outermost end() reconciles.
      */
-    private String findCollectionNameById(String collectionId, Map<PredefinedCollection, CustomCollection> collectionMappings) {
-        return collectionMappings.values().stream()
-            .filter(collection -> collectionId.equals(collection.getId()))
-            .map(CustomCollection::getTitle)
-            .findFirst()
-            .orElse("Unknown Collection (ID: " + collectionId + ")");
+    public void begin() {
+        Batch batch = currentBatch.get();
+        if (batch == null) {
+            batch = new Batch();
+            currentBatch.set(batch);
+        }
+        batch.depth++;
     }
     
     /**
-     * Remove product from all managed collections with detailed logging
-     * This provides better debugging information than the base ShopifyGraphQLService method
+     * Stop collecting, reconcile everything pending and store the applied masks. Products
+     * whose collections weren't all written are marked failed, like a failed pipeline step.
      */
-    private void removeProductFromManagedCollections(String productId, String sku, 
-                                                   Map<PredefinedCollection, CustomCollection> collectionMappings) {
-        if (collectionMappings == null || collectionMappings.isEmpty()) {
-            logger.debug("🔍 No managed collections defined, skipping removal for product: {} (SKU: {})", productId, sku);
+    public void end() {
+        Batch batch = currentBatch.get();
+        if (batch == null || --batch.depth > 0) {
             return;
         }
-        
-        // Get current collections for this product
-        List<Collect> currentCollections = shopifyGraphQLService.getCollectsForProductId(productId);
-        
-        // Create a map of managed collection IDs to their titles for easy lookup
-        Map<String, String> managedCollectionTitles = collectionMappings.values().stream()
-            .collect(java.util.stream.Collectors.toMap(CustomCollection::getId, CustomCollection::getTitle));
-        
-        Set<String> managedCollectionIds = managedCollectionTitles.keySet();
-        
-        // Filter to only managed collections that the product is currently in
-        List<Collect> managedCollectionsToRemove = currentCollections.stream()
-            .filter(collect -> managedCollectionIds.contains(collect.getCollectionId()))
-            .collect(java.util.stream.Collectors.toList());
-        
-        if (managedCollectionsToRemove.isEmpty()) {
-            logger.debug("🔍 Product {} (SKU: {}) is not in any managed collections, no removal needed", productId, sku);
+        currentBatch.remove();
+        if (batch.pending.isEmpty()) {
             return;
         }
         
-        logger.debug("🧹 Removing product {} (SKU: {}) from {} managed collections", 
-            productId, sku, managedCollectionsToRemove.size());
-        
-        // Remove from each managed collection individually
-        int removalSuccessCount = 0;
-        int removalFailCount = 0;
-        StringBuilder failedRemovals = new StringBuilder();
+        Exception failure = null;
+        try {
+            reconcileMemberships(batch.pending);
+        } catch (Exception e) {
+            logger.error("❌ Collection membership sync failed for {} products - {}", batch.pending.size(), e.getMessage());
+            failure = e;
+        }
         
-        for (Collect collect : managedCollectionsToRemove) {
-            String collectionId = collect.getCollectionId();
-            String collectionTitle = managedCollectionTitles.get(collectionId);
-            
+        // The items were saved by the sync before end(), persist the masks applied since
+        List<String> failedSkus = new ArrayList<>();
+        for (PendingMembership membership : batch.pending.values()) {
+            FeedItem item = membership.item;
+            if (failure != null && !membership.isApplied()) {
+                item.setStatus(FeedItem.STATUS_PUBLISHED.equals(item.getStatus()) 
+                    ? FeedItem.STATUS_PUBLISHED_FAILED : FeedItem.STATUS_UPDATE_FAILED);
+                item.setSystemMessages(failure.getMessage());
+                failedSkus.add(item.getWebTagNumber());
+            }
             try {
-                logger.debug("  🗑️ Removing from collection: '{}' (ID: {})", collectionTitle, collectionId);
-                shopifyGraphQLService.deleteCollectByProductAndCollection(productId, collectionId);
-                logger.debug("  ✅ Successfully removed from collection: '{}'", collectionTitle);
-                removalSuccessCount++;
-                
+                feedItemService.updateAutonomous(item);
             } catch (Exception e) {
-                logger.warn("  ❌ Failed to remove from collection: '{}' (ID: {}) - {}", 
-                    collectionTitle, collectionId, e.getMessage());
-                removalFailCount++;
-                
-                if (failedRemovals.length() > 0) {
-                    failedRemovals.append(", ");
-                }
-                failedRemovals.append("'").append(collectionTitle).append("'");
-                
-                // Continue with other collections instead of failing completely
+                logger.warn("⚠️ Failed to store collection mask for SKU: {} - {}", 
+                    item.getWebTagNumber(), e.getMessage());
             }
         }
-        
-        // Summary logging for removals
-        if (removalSuccessCount > 0) {
-            logger.debug("✅ Successfully removed product from {}/{} managed collections", 
-                removalSuccessCount, managedCollectionsToRemove.size());
-        }
-        
-        if (removalFailCount > 0) {
-            logger.warn("⚠️ Failed to remove product from {}/{} managed collections: {}", 
-                removalFailCount, managedCollectionsToRemove.size(), failedRemovals.toString());
-        }
-        
-        // Log info about non-managed collections we're leaving untouched
-        long untouchedCount = currentCollections.stream()
-            .filter(collect -> !managedCollectionIds.contains(collect.getCollectionId()))
-            .count();
-        
-        if (untouchedCount > 0) {
-            logger.debug("ℹ️ Left product in {} non-managed collections (not removed)", untouchedCount);
+        if (!failedSkus.isEmpty()) {
+            logService.emailError(logger,
+                "Shopify Bot: Failed to update collections for Skus: " + failedSkus + " with exception: " + failure.getMessage(),
+                null, failure);
         }
     }
     
     /**
-     * Get current managed collections for a product
-     * Returns only collections that are defined in our collection mappings
+     * Update product collection associations. The item's collection masks are updated;
+     * outside of a batch the caller saves the item.
      */
-    private List<Collect> getCurrentManagedCollections(String productId, 
-                                                     Map<PredefinedCollection, CustomCollection> collectionMappings) {
-        List<Collect> allCurrentCollections = shopifyGraphQLService.getCollectsForProductId(productId);
-        Set<String> managedCollectionIds = collectionMappings.values().stream()
-            .map(CustomCollection::getId)
-            .collect(java.util.stream.Collectors.toSet());
-        
-        return allCurrentCollections.stream()
-            .filter(collect -> managedCollectionIds.contains(collect.getCollectionId()))
-            .collect(java.util.stream.Collectors.toList());
-    }
-    
-    /**
-     * Compare current collections with desired collections
-     * Returns true if they match (same collections), false if they differ
-     */
-    private boolean collectionsMatch(List<Collect> currentCollections, List<Collect> desiredCollections, 
-                                   Map<PredefinedCollection, CustomCollection> collectionMappings) {
-        // Convert to sets of collection IDs for easy comparison
-        Set<String> currentCollectionIds = currentCollections.stream()
-            .map(Collect::getCollectionId)
-            .collect(java.util.stream.Collectors.toSet());
+    public void updateProductCollections(FeedItem item) throws Exception {
+        PredefinedCollection[] collections = syncConfigurationService.getPredefinedCollections();
+        Map<PredefinedCollection, CustomCollection> collectionMappings = 
+            syncConfigurationService.getCollectionMappings();
         
-        Set<String> desiredCollectionIds = desiredCollections.stream()
-            .map(Collect::getCollectionId)
-            .collect(java.util.stream.Collectors.toSet());
+        // Determine which collections the product should be in, among the ones that exist
+        long desiredMask = CollectionMask.of(item, collections) & mappedMask(collections, collectionMappings);
+        item.setCollectionMask(desiredMask);
+        if (item.getAppliedCollectionMask() != null && item.getAppliedCollectionMask() == desiredMask) {
+            logger.debug("✅ Collections of SKU: {} already applied - no changes needed", item.getWebTagNumber());
+            return;
+        }
+        PendingMembership membership = new PendingMembership(item, desiredMask);
         
-        return currentCollectionIds.equals(desiredCollectionIds);
-    }
-    
-    /**
-     * Log current collections for debugging
-     */
-    private void logCurrentCollections(List<Collect> collections, 
-                                     Map<PredefinedCollection, CustomCollection> collectionMappings, 
-                                     String label) {
-        if (collections.isEmpty()) {
-            logger.debug("📋 {}: None", label);
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            logger.debug("🏷️ Queued {} collections for product {} (SKU: {})", 
+                Long.bitCount(desiredMask), item.getShopifyItemId(), item.getWebTagNumber());
+            batch.pending.put(item.getShopifyItemId(), membership);
             return;
         }
         
-        logger.debug("📋 {}: {} collections", label, collections.size());
-        for (Collect collect : collections) {
-            String collectionName = findCollectionNameById(collect.getCollectionId(), collectionMappings);
-            logger.debug("  - '{}' (ID: {})", collectionName, collect.getCollectionId());
+        try {
+            Map<String, PendingMembership> single = new LinkedHashMap<>();
+            single.put(item.getShopifyItemId(), membership);
+            reconcileMemberships(single);
+        } catch (Exception e) {
+            logger.error("❌ Failed to update collections for SKU: {}", item.getWebTagNumber(), e);
+            throw e;
         }
     }
     
     /**
-     * Log desired collections for debugging
+     * Compare desired and current masks of the products and send the differences per collection
      */
-    private void logDesiredCollections(List<Collect> collections, 
-                                     Map<PredefinedCollection, CustomCollection> collectionMappings, 
-                                     String label) {
-        if (collections.isEmpty()) {
-            logger.debug("📋 {}: None", label);
+    private void reconcileMemberships(Map<String, PendingMembership> memberships) throws Exception {
+        PredefinedCollection[] collections = syncConfigurationService.getPredefinedCollections();
+        Map<PredefinedCollection, CustomCollection> collectionMappings = 
+            syncConfigurationService.getCollectionMappings();
+        if (collectionMappings == null || collectionMappings.isEmpty()) {
+            logger.debug("🔍 No managed collections defined, skipping collection sync");
             return;
         }
         
-        logger.debug("📋 {}: {} collections", label, collections.size());
-        for (Collect collect : collections) {
-            String collectionName = findCollectionNameById(collect.getCollectionId(), collectionMappings);
-            logger.debug("  - '{}' (ID: {})", collectionName, collect.getCollectionId());
+        // Current memberships: the applied mask when known, otherwise read from Shopify
+        Map<String, Long> currentByProduct = new LinkedHashMap<>();
+        List<String> unknown = new ArrayList<>();
+        memberships.forEach((productId, membership) -> {
+            if (membership.item.getAppliedCollectionMask() != null) {
+                currentByProduct.put(productId, membership.item.getAppliedCollectionMask());
+            } else {
+                unknown.add(productId);
+            }
+        });
+        if (!unknown.isEmpty()) {
+            Map<String, Set<String>> collectionIdsByProduct = shopifyGraphQLService.getCollectionIdsForProducts(unknown);
+            for (String productId : unknown) {
+                Set<String> collectionIds = collectionIdsByProduct.get(productId);
+                if (collectionIds == null) {
+                    logger.warn("⚠️ Product {} (SKU: {}) not found on Shopify, skipping collections", 
+                        productId, memberships.get(productId).item.getWebTagNumber());
+                    continue;
+                }
+                currentByProduct.put(productId, toMask(collectionIds, collections, collectionMappings));
+            }
         }
-    }
-    
-    /**
-     * Add collections individually with detailed error handling
-     * Used as fallback when bulk API fails
-     */
-    private void addCollectionsIndividually(List<Collect> collectsToAdd, 
-                                          Map<PredefinedCollection, CustomCollection> collectionMappings) throws Exception {
-        logger.debug("🔄 Adding {} collections individually", collectsToAdd.size());
         
-        int successCount = 0;
-        int failCount = 0;
-        StringBuilder failedCollections = new StringBuilder();
+        // Bit i of a product's delta means collection i must change for it
+        List<List<String>> toAddByBit = new ArrayList<>();
+        List<List<String>> toRemoveByBit = new ArrayList<>();
+        for (int i = 0; i < collections.length; i++) {
+            toAddByBit.add(new ArrayList<>());
+            toRemoveByBit.add(new ArrayList<>());
+        }
+        currentByProduct.forEach((productId, current) -> {
+            long desired = memberships.get(productId).desiredMask;
+            long delta = desired ^ current;
+            for (int i = 0; i < collections.length; i++) {
+                if (CollectionMask.contains(delta, i)) {
+                    (CollectionMask.contains(desired, i) ? toAddByBit : toRemoveByBit).get(i).add(productId);
+                }
+            }
+        });
         
-        for (Collect collect : collectsToAdd) {
-            String collectionId = collect.getCollectionId();
-            String collectionName = findCollectionNameById(collectionId, collectionMappings);
+        long succeededBits = 0;
+        int additions = 0;
+        int removals = 0;
+        List<String> failedCollections = new ArrayList<>();
+        for (int i = 0; i < collections.length; i++) {
+            List<String> toRemove = toRemoveByBit.get(i);
+            List<String> toAdd = toAddByBit.get(i);
+            CustomCollection collection = collectionMappings.get(collections[i]);
+            if (toRemove.isEmpty() && toAdd.isEmpty()) {
+                succeededBits |= 1L << i;
+                continue;
+            }
+            if (collection == null) {
+                continue;
+            }
             
+            logger.debug("🏷️ Collection '{}': removing {} products, adding {} products", 
+                collection.getTitle(), toRemove.size(), toAdd.size());
             try {
-                logger.debug("  🔗 Adding to collection: '{}' (ID: {})", collectionName, collectionId);
-                
-                // Perform individual ShopifyQL operation for this collection
-                shopifyGraphQLService.addProductToCollection(collect.getProductId(), collectionId);
-                
-                logger.debug("  ✅ Successfully added to collection: '{}'", collectionName);
-                successCount++;
-                
-            } catch (Exception e) {
-                logger.warn("  ❌ Failed to add to collection: '{}' (ID: {}) - {}", 
-                    collectionName, collectionId, e.getMessage());
-                failCount++;
-                
-                if (failedCollections.length() > 0) {
-                    failedCollections.append(", ");
+                if (!toRemove.isEmpty()) {
+                    shopifyGraphQLService.removeProductsFromCollection(collection.getId(), toRemove);
                 }
-                failedCollections.append("'").append(collectionName).append("'");
-                
+                if (!toAdd.isEmpty()) {
+                    shopifyGraphQLService.addProductsToCollection(collection.getId(), toAdd);
+                }
+                succeededBits |= 1L << i;
+                additions += toAdd.size();
+                removals += toRemove.size();
+            } catch (Exception e) {
                 // Continue with other collections instead of failing completely
+                logger.warn("  ❌ Failed to update collection: '{}' (ID: {}) - {}", 
+                    collection.getTitle(), collection.getId(), e.getMessage());
+                failedCollections.add("'" + collection.getTitle() + "'");
             }
         }
         
-        // Summary logging
-        if (successCount > 0) {
-            logger.debug("✅ Successfully added product to {}/{} collections", successCount, collectsToAdd.size());
+        // Only the bits whose collection was written become applied
+        for (Map.Entry<String, Long> entry : currentByProduct.entrySet()) {
+            PendingMembership membership = memberships.get(entry.getKey());
+            long current = entry.getValue();
+            long delta = membership.desiredMask ^ current;
+            membership.item.setAppliedCollectionMask(current ^ (delta & succeededBits));
         }
         
-        if (failCount > 0) {
-            logger.warn("⚠️ Failed to add product to {}/{} collections: {}", 
-                failCount, collectsToAdd.size(), failedCollections.toString());
-            
-            // Only throw exception if ALL collections failed
-            if (successCount == 0) {
-                throw new Exception("Failed to add product to any collections. Failed collections: " + failedCollections.toString());
+        if (additions == 0 && removals == 0 && failedCollections.isEmpty()) {
+            logger.debug("✅ Collections of {} products already match desired state - no changes needed", memberships.size());
+            return;
+        }
+        logger.info("🏷️ Collections synced for {} products: {} additions, {} removals across {} collections", 
+            memberships.size(), additions, removals, collectionMappings.size());
+        
+        if (!failedCollections.isEmpty()) {
+            throw new Exception("Failed to update collections: " + String.join(", ", failedCollections));
+        }
+    }
+    
+    /**
+     * Bits of the predefined collections that have a Shopify collection
+     */
+    private static long mappedMask(PredefinedCollection[] collections, 
+            Map<PredefinedCollection, CustomCollection> collectionMappings) {
+        long mask = 0;
+        for (int i = 0; i < collections.length; i++) {
+            if (collectionMappings != null && collectionMappings.containsKey(collections[i])) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Managed collections among the given collection IDs as a mask, others are ignored
+     */
+    private static long toMask(Set<String> collectionIds, PredefinedCollection[] collections, 
+            Map<PredefinedCollection, CustomCollection> collectionMappings) {
+        long mask = 0;
+        for (int i = 0; i < collections.length; i++) {
+            CustomCollection collection = collectionMappings.get(collections[i]);
+            if (collection != null && collectionIds.contains(collection.getId())) {
+                mask |= 1L << i;
             }
         }
+        return mask;
     }
     
     /**
@@ -344,4 +321,26 @@ public class CollectionManagementService {
             throw e; // Re-throw to maintain pipeline error handling
         }
     }
+    
+    /**
+     * Desired memberships by product ID collected by one thread, waiting for end()
+     */
+    private static class Batch {
+        private final Map<String, PendingMembership> pending = new LinkedHashMap<>();
+        private int depth = 0;
+    }
+    
+    private static class PendingMembership {
+        private final FeedItem item;
+        private final long desiredMask;
+        
+        private PendingMembership(FeedItem item, long desiredMask) {
+            this.item = item;
+            this.desiredMask = desiredMask;
+        }
+        
+        private boolean isApplied() {
+            return item.getAppliedCollectionMask() != null && item.getAppliedCollectionMask() == desiredMask;
+        }
+    }
 }
@@ -0,0 +1,262 @@
+package com.gw.services.sync;
+
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.InventoryLevel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inventory Batch Writer
+ *
+ * Buffers absolute inventory writes across SKUs and flushes them as multi-item
+ * inventorySetQuantities calls:
+ * - A flush happens when the buffer reaches the batch size, when the oldest
+ *   pending write is older than the flush latency, or when the batch ends
+ * - Each write gets a future that completes with its own result, user errors
+ *   are mapped back to the SKU they belong to
+ *
+ * Batches belong to the thread that began them, so the sync and the sold poller
+ * can batch at the same time without flushing or waiting on each other's writes.
+ * Outside of a batch (begin/end) writes are sent immediately, so single item
+ * callers keep read-after-write behaviour. The outermost end() waits for every
+ * write of the batch and returns the failures by SKU, so callers can retry them.
+ */
+@Service
+public class InventoryBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryBatchWriter.class);
+
+    @Value("${shopify.inventory.batch.size:250}")
+    private int batchSize;
+
+    @Value("${shopify.inventory.flush.latency.ms:2000}")
+    private long flushLatencyMs;
+
+    @Autowired
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    private final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+    // Open batches of all threads, for the latency flush
+    private final Set<Batch> openBatches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Start buffering writes of the calling thread. Calls nest; only the outermost end() flushes.
+     */
+    public void begin() {
+        Batch batch = currentBatch.get();
+        if (batch == null) {
+            batch = new Batch();
+            currentBatch.set(batch);
+            openBatches.add(batch);
+        }
+        batch.depth++;
+    }
+
+    /**
+     * Stop buffering. The outermost end() flushes the calling thread's batch and waits
+     * for all writes queued since begin().
+     *
+     * @return Failed writes of the batch by SKU, empty for nested calls
+     */
+    public Map<String, Throwable> end() {
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        Batch batch = currentBatch.get();
+        if (batch == null || --batch.depth > 0) {
+            return failures;
+        }
+        currentBatch.remove();
+        openBatches.remove(batch);
+        flush(batch);
+
+        for (PendingWrite write : batch.writes) {
+            try {
+                write.result.join();
+            } catch (CompletionException e) {
+                failures.put(write.sku, e.getCause() != null ? e.getCause() : e);
+            } catch (CancellationException e) {
+                failures.put(write.sku, e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            logger.error("❌ {} of {} batched inventory writes failed: {}", failures.size(), batch.writes.size(), failures.keySet());
+        }
+        return failures;
+    }
+
+    /**
+     * Queue absolute inventory levels for one SKU.
+     *
+     * @return Future completing when the levels are applied, or exceptionally with the Shopify error
+     */
+    public CompletableFuture<Void> write(String sku, List<InventoryLevel> levels) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        PendingWrite write = new PendingWrite(sku, new ArrayList<>(levels), result);
+        Batch batch = currentBatch.get();
+        if (batch == null) {
+            send(List.of(write));
+            return result;
+        }
+
+        boolean flushNow;
+        synchronized (batch) {
+            if (batch.pending.isEmpty()) {
+                batch.oldestPendingMillis = System.currentTimeMillis();
+            }
+            batch.pending.add(write);
+            batch.writes.add(write);
+            batch.pendingLevelCount += levels.size();
+            flushNow = batch.pendingLevelCount >= batchSize || batch.isDue(flushLatencyMs);
+        }
+        if (flushNow) {
+            flush(batch);
+        }
+        return result;
+    }
+
+    /**
+     * Flush writes that have waited longer than the flush latency
+     */
+    @Scheduled(fixedDelayString = "${shopify.inventory.flush.latency.ms:2000}")
+    public void flushIfDue() {
+        for (Batch batch : openBatches) {
+            boolean due;
+            synchronized (batch) {
+                due = !batch.pending.isEmpty() && batch.isDue(flushLatencyMs);
+            }
+            if (due) {
+                flush(batch);
+            }
+        }
+    }
+
+    /**
+     * Send the calling thread's pending writes
+     */
+    public void flush() {
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * Send all pending writes of a batch, batchSize levels per inventorySetQuantities call
+     */
+    private void flush(Batch batch) {
+        List<PendingWrite> toFlush;
+        synchronized (batch) {
+            if (batch.pending.isEmpty()) {
+                return;
+            }
+            toFlush = new ArrayList<>(batch.pending);
+            batch.pending.clear();
+            batch.pendingLevelCount = 0;
+        }
+
+        List<PendingWrite> chunk = new ArrayList<>();
+        int chunkLevelCount = 0;
+        for (PendingWrite write : toFlush) {
+            if (!chunk.isEmpty() && chunkLevelCount + write.levels.size() > batchSize) {
+                send(chunk);
+                chunk = new ArrayList<>();
+                chunkLevelCount = 0;
+            }
+            chunk.add(write);
+            chunkLevelCount += write.levels.size();
+        }
+        send(chunk);
+    }
+
+    /**
+     * One inventorySetQuantities call. The mutation is all or nothing: when any quantity
+     * is rejected nothing is applied, so the SKUs with errors fail and the others are
+     * sent again without them.
+     */
+    private void send(List<PendingWrite> batch) {
+        List<InventoryLevel> levels = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            levels.addAll(write.levels);
+        }
+        logger.info("📦 Flushing inventory batch: {} SKUs, {} levels", batch.size(), levels.size());
+
+        Map<Integer, String> errorsByIndex;
+        try {
+            errorsByIndex = shopifyGraphQLService.setInventoryQuantities(levels);
+        } catch (Exception e) {
+            logger.error("❌ Inventory batch of {} SKUs failed: {}", batch.size(), e.getMessage());
+            batch.forEach(write -> write.result.completeExceptionally(e));
+            return;
+        }
+        if (errorsByIndex.isEmpty()) {
+            batch.forEach(write -> write.result.complete(null));
+            return;
+        }
+
+        List<PendingWrite> retry = new ArrayList<>();
+        int index = 0;
+        for (PendingWrite write : batch) {
+            List<String> errors = new ArrayList<>();
+            for (int i = 0; i < write.levels.size(); i++, index++) {
+                if (errorsByIndex.containsKey(index)) {
+                    errors.add(errorsByIndex.get(index));
+                }
+            }
+            if (errors.isEmpty()) {
+                retry.add(write);
+            } else {
+                logger.error("❌ Inventory update rejected for SKU: {} - {}", write.sku, errors);
+                write.result.completeExceptionally(
+                    new RuntimeException("Inventory update rejected for SKU: " + write.sku + " - " + errors));
+            }
+        }
+        if (retry.size() == batch.size()) {
+            // Errors didn't point at any quantity we sent, nothing to leave out
+            RuntimeException e = new RuntimeException("Inventory batch rejected: " + errorsByIndex);
+            retry.forEach(write -> write.result.completeExceptionally(e));
+        } else if (!retry.isEmpty()) {
+            send(retry);
+        }
+    }
+
+    /**
+     * Writes buffered by one thread between begin() and end()
+     */
+    private static class Batch {
+        private final List<PendingWrite> pending = new ArrayList<>();
+        private final List<PendingWrite> writes = new ArrayList<>();
+        private int pendingLevelCount = 0;
+        private long oldestPendingMillis = 0;
+        private int depth = 0;
+
+        private boolean isDue(long flushLatencyMs) {
+            return System.currentTimeMillis() - oldestPendingMillis >= flushLatencyMs;
+        }
+    }
+
+    private static class PendingWrite {
+        private final String sku;
+        private final List<InventoryLevel> levels;
+        private final CompletableFuture<Void> result;
+
+        private PendingWrite(String sku, List<InventoryLevel> levels, CompletableFuture<Void> result) {
+            this.sku = sku;
+            this.levels = levels;
+            this.result = result;
+        }
+    }
+}
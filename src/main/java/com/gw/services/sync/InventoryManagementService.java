@@ -14,6 +14,8 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Reusable Inventory Management Service
@@ -39,6 +41,9 @@ public class InventoryManagementService {
     @Autowired
     private InventoryLevelService inventoryLevelService;
     
+    @Autowired
+    private InventoryBatchWriter inventoryBatchWriter;
+    
     /**
      * Update inventory after product update
      */
@@ -237,13 +242,15 @@ public class InventoryManagementService {
         logger.info("🔄 Updating inventory for SKU: {} to quantity: {} (status: {})", 
             item.getWebTagNumber(), newQuantity, item.getWebStatus());
         
-        updateVariantInventoryQuantity(variant, newQuantity);
+        updateVariantInventoryQuantity(item.getWebTagNumber(), variant, newQuantity);
     }
 
     /**
-     * Update the inventory quantity for a specific variant
+     * Update the inventory quantity for a specific variant.
+     * Goes through the InventoryBatchWriter: applied immediately outside of a batch,
+     * otherwise sent with the next flush and failures are returned by InventoryBatchWriter.end().
      */
-    private void updateVariantInventoryQuantity(Variant variant, String newQuantity) throws Exception {
+    private void updateVariantInventoryQuantity(String sku, Variant variant, String newQuantity) throws Exception {
         if (variant.getInventoryLevels() == null || variant.getInventoryLevels().get() == null) {
             logger.warn("No inventory levels found for quantity update");
             return;
@@ -258,9 +265,18 @@ public class InventoryManagementService {
         
         // Update on Shopify using absolute value setting
         if (validateInventoryLevels(levelsToUpdate)) {
-            shopifyGraphQLService.setInventoryLevelsAbsolute(levelsToUpdate);
-            logger.info("✅ Updated inventory levels to {} for {} locations using absolute values", 
-                newQuantity, levelsToUpdate.size());
+            CompletableFuture<Void> result = inventoryBatchWriter.write(sku, levelsToUpdate);
+            if (result.isDone()) {
+                try {
+                    result.join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                logger.info("✅ Updated inventory levels to {} for {} locations using absolute values", 
+                    newQuantity, levelsToUpdate.size());
+            } else {
+                logger.debug("Queued inventory levels {} for {} locations of SKU: {}", newQuantity, levelsToUpdate.size(), sku);
+            }
         } else {
             logger.warn("⚠️ Skipping inventory update due to invalid inventory level data");
         }
@@ -0,0 +1,155 @@
+package com.gw.services.sync;
+
+import com.gw.domain.FeedItem;
+import com.gw.domain.FeedItemChange;
+import com.gw.domain.FeedItemChangeType;
+import com.gw.services.FeedItemService;
+import com.gw.services.pricing.PricingStrategy;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.Variant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Price Sync Service
+ *
+ * Fast lane for price-only changes of a sync run:
+ * 1. Resolve variant IDs for all SKUs with batched productVariants lookups
+ * 2. Group the new prices per product
+ * 3. Push each product's prices with productVariantsBulkUpdate, concurrently
+ *    (the Shopify cost throttle in ShopifyGraphQLService paces the requests)
+ * 4. Mark the items updated in the DB
+ *
+ * Changes that cannot be resolved or fail are handed back to the caller so they
+ * go through the regular ProductUpdatePipeline.
+ */
+@Service
+public class PriceSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceSyncService.class);
+
+    private static final EnumSet<FeedItemChangeType> PRICE_ONLY = EnumSet.of(FeedItemChangeType.PRICE);
+
+    @Value("${shopify.price.sync.concurrency:4}")
+    private int concurrency;
+
+    @Value("${shopify.price.sync.lookup.batch.size:50}")
+    private int lookupBatchSize;
+
+    @Autowired
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    @Autowired
+    private PricingStrategy pricingStrategy;
+
+    @Autowired
+    private FeedItemService feedItemService;
+
+    /**
+     * True when the change only affects the variant price
+     */
+    public static boolean isPriceOnly(FeedItemChange change) {
+        return PRICE_ONLY.equals(change.getChangeTypes());
+    }
+
+    /**
+     * Push all price-only changes of a run.
+     *
+     * @param priceChanges Changes for which isPriceOnly is true
+     * @return Changes that were not applied and need the full update pipeline
+     */
+    public List<FeedItemChange> syncPrices(List<FeedItemChange> priceChanges) {
+        List<FeedItemChange> notApplied = new ArrayList<>();
+        if (priceChanges.isEmpty()) {
+            return notApplied;
+        }
+        logger.info("💲 Price fast lane: {} price-only changes", priceChanges.size());
+        long start = System.currentTimeMillis();
+
+        // Step 1: resolve variants and group the new prices per product
+        Map<String, List<FeedItemChange>> changesByProductId = new LinkedHashMap<>();
+        Map<String, List<Variant>> variantsByProductId = new LinkedHashMap<>();
+        for (int i = 0; i < priceChanges.size(); i += lookupBatchSize) {
+            List<FeedItemChange> batch = priceChanges.subList(i, Math.min(i + lookupBatchSize, priceChanges.size()));
+            Map<String, Variant> variantsBySku;
+            try {
+                variantsBySku = shopifyGraphQLService.getVariantsBySkus(
+                    batch.stream().map(c -> c.getFromFeed().getWebTagNumber()).toList());
+            } catch (Exception e) {
+                logger.warn("⚠️ Variant lookup failed for {} SKUs - using full pipeline: {}", batch.size(), e.getMessage());
+                notApplied.addAll(batch);
+                continue;
+            }
+
+            for (FeedItemChange change : batch) {
+                FeedItem itemFromDb = change.getFromDb();
+                Variant variant = variantsBySku.get(itemFromDb.getWebTagNumber());
+                if (variant == null || !variant.getProductId().equals(itemFromDb.getShopifyItemId())) {
+                    logger.warn("⚠️ No matching variant for SKU: {} - using full pipeline", itemFromDb.getWebTagNumber());
+                    notApplied.add(change);
+                    continue;
+                }
+
+                Variant priceUpdate = new Variant();
+                priceUpdate.setId(variant.getId());
+                priceUpdate.setPrice(pricingStrategy.getPrice(change.getFromFeed()));
+                changesByProductId.computeIfAbsent(variant.getProductId(), k -> new ArrayList<>()).add(change);
+                variantsByProductId.computeIfAbsent(variant.getProductId(), k -> new ArrayList<>()).add(priceUpdate);
+            }
+        }
+
+        // Step 2: push prices per product concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, List<Variant>> entry : variantsByProductId.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(() -> {
+                    shopifyGraphQLService.updateVariantPrices(entry.getKey(), entry.getValue());
+                    return null;
+                }));
+            }
+
+            // Step 3: record results on the calling thread
+            int updated = 0;
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                List<FeedItemChange> changes = changesByProductId.get(entry.getKey());
+                try {
+                    entry.getValue().get();
+                    for (FeedItemChange change : changes) {
+                        FeedItem itemFromDb = change.getFromDb();
+                        itemFromDb.copyFrom(change.getFromFeed());
+                        itemFromDb.setStatus(FeedItem.STATUS_UPDATED);
+                        feedItemService.updateAutonomous(itemFromDb);
+                        updated++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    notApplied.addAll(changes);
+                } catch (Exception e) {
+                    logger.warn("⚠️ Price update failed for product ID: {} - using full pipeline: {}", entry.getKey(), e.getMessage());
+                    notApplied.addAll(changes);
+                }
+            }
+
+            logger.info("✅ Price fast lane: {} prices updated on {} products in {} ms, {} left for full pipeline",
+                updated, variantsByProductId.size(), System.currentTimeMillis() - start, notApplied.size());
+        } finally {
+            executor.shutdown();
+        }
+
+        return notApplied;
+    }
+}
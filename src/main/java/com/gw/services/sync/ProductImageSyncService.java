@@ -0,0 +1,142 @@
+package com.gw.services.sync;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.ImageService;
+import com.gw.services.image.ImageManifest;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.ShopifyStagedUploader;
+import com.gw.services.shopifyapi.objects.Image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Product Image Sync Service
+ *
+ * Brings the media of a Shopify product in line with the feed item's images using
+ * the SKU's ImageManifest instead of delete-all-and-re-add:
+ * - Slots whose uploaded media still shows the current content are kept
+ * - Only new or changed images are uploaded
+ * - Only media no longer wanted are deleted (one call)
+ * - Media are reordered to slot order only when something changed
+ *
+ * New media are created from the CSS hosted image URLs, or with image.upload.mode=staged
+ * from the local files pushed to Shopify storage with staged uploads.
+ *
+ * Products without a manifest (published before manifests existed) get all
+ * their media replaced once, after which the manifest is in place.
+ */
+@Service
+public class ProductImageSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImageSyncService.class);
+
+    @Autowired
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ShopifyStagedUploader shopifyStagedUploader;
+
+    @Value("${image.upload.mode:css}")
+    private String uploadMode;
+
+    private static final String STAGED_MODE = "staged";
+
+    /**
+     * Sync the product media with the feed item's images
+     *
+     * @param item Feed item with image paths (images already processed to the local store)
+     * @param productId Shopify product ID
+     * @param existingProduct True to read and diff the current media, false for a product just created
+     */
+    public void syncImages(FeedItem item, String productId, boolean existingProduct) throws Exception {
+        ImageManifest manifest = imageService.getImageManifest(item);
+        List<Image> currentImages = existingProduct ? shopifyGraphQLService.getImagesByProduct(productId) : new ArrayList<>();
+        List<String> currentIds = currentImages.stream().map(Image::getId).collect(Collectors.toList());
+
+        Set<String> keepIds = new LinkedHashSet<>();
+        List<Integer> slotsToUpload = new ArrayList<>();
+        for (Map.Entry<Integer, ImageManifest.Entry> slot : manifest.getSlots().entrySet()) {
+            ImageManifest.Entry entry = slot.getValue();
+            if (entry.isUploaded() && currentIds.contains(entry.getMediaId()) && !keepIds.contains(entry.getMediaId())) {
+                keepIds.add(entry.getMediaId());
+            } else {
+                slotsToUpload.add(slot.getKey());
+            }
+        }
+
+        List<String> toDelete = currentIds.stream().filter(id -> !keepIds.contains(id)).collect(Collectors.toList());
+        if (slotsToUpload.isEmpty() && toDelete.isEmpty()) {
+            logger.debug("⏭️ Images unchanged for SKU: {}", item.getWebTagNumber());
+            return;
+        }
+        logger.info("🖼️ Images for SKU: {} - keeping {}, uploading {}, deleting {}",
+            item.getWebTagNumber(), keepIds.size(), slotsToUpload.size(), toDelete.size());
+
+        shopifyGraphQLService.deleteMediaByIds(productId, toDelete);
+
+        try {
+            List<String> sources = getUploadSources(item.getWebTagNumber(), slotsToUpload);
+            List<Image> uploads = new ArrayList<>();
+            for (String source : sources) {
+                Image image = new Image();
+                image.setSrc(source);
+                image.addAltTag(item.getWebDescriptionShort());
+                uploads.add(image);
+            }
+
+            List<String> uploadedIds = shopifyGraphQLService.addImagesToProduct(productId, uploads);
+            for (int i = 0; i < slotsToUpload.size(); i++) {
+                ImageManifest.Entry entry = manifest.getSlot(slotsToUpload.get(i));
+                entry.setMediaId(uploadedIds.get(i));
+                entry.setMediaKey(entry.getContentKey());
+            }
+        } finally {
+            // Keep the recorded digests even if an upload failed, media not recorded here are replaced next sync
+            imageService.saveImageManifest(manifest);
+        }
+
+        // New media are appended, put everything back in slot order if kept media exist
+        if (!keepIds.isEmpty() && !slotsToUpload.isEmpty()) {
+            List<String> slotOrder = manifest.getSlots().values().stream()
+                .map(ImageManifest.Entry::getMediaId).filter(Objects::nonNull).collect(Collectors.toList());
+            shopifyGraphQLService.reorderMedia(productId, slotOrder);
+        }
+    }
+
+    /**
+     * URLs Shopify creates the media from: the CSS hosted images, or with image.upload.mode=staged
+     * the local files pushed to Shopify storage. Falls back to CSS when a local file is missing.
+     */
+    private List<String> getUploadSources(String sku, List<Integer> slots) throws Exception {
+        if (STAGED_MODE.equalsIgnoreCase(uploadMode)) {
+            List<File> files = slots.stream().map(slot -> imageService.getImageFile(sku, slot)).collect(Collectors.toList());
+            if (files.stream().allMatch(File::exists)) {
+                List<String> mimeTypes = new ArrayList<>();
+                for (int slot : slots) {
+                    mimeTypes.add(imageService.getMimeType(sku, slot));
+                }
+                return shopifyStagedUploader.upload(files, mimeTypes);
+            }
+            logger.warn("⚠️ Local images missing for SKU: {}, uploading from CSS host", sku);
+        }
+        return slots.stream()
+            .map(slot -> imageService.getCorrectedImageUrl(imageService.getExternalImagePathByCSS(sku, slot)))
+            .collect(Collectors.toList());
+    }
+}
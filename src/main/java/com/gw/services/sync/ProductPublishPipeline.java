@@ -10,7 +10,6 @@ import com.gw.services.ImageService;
 import com.gw.services.LogService;
 import com.gw.services.shopifyapi.ShopifyGraphQLService;
 import com.gw.services.shopifyapi.objects.Product;
-import com.gw.services.shopifyapi.objects.Image;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,8 +18,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
-import java.util.List;
-import java.util.ArrayList;
 
 /**
  * Reusable Product Publish Pipeline
@@ -83,6 +80,9 @@ public class ProductPublishPipeline {
     @Autowired
     private InventoryManagementService inventoryManagementService;
     
+    @Autowired
+    private ProductImageSyncService productImageSyncService;
+    
     /**
      * Execute the complete product publish pipeline
      * 
@@ -264,23 +264,8 @@ public class ProductPublishPipeline {
         logger.debug("🖼️ Handling image upload for product: {}", productId);
         
         try {
-            // Get external image URLs from feed item
-            String[] externalImageUrls = imageService.getAvailableExternalImagePathByCSS(feedItem);
-            if (externalImageUrls == null || externalImageUrls.length == 0) {
-                logger.debug("⏭️ Skipping image upload - no images available for SKU: {}", feedItem.getWebTagNumber());
-                return;
-            }
-            
-            // Create Image objects from URLs
-            List<Image> images = createImagesFromUrls(externalImageUrls, feedItem);
-            
-            if (!images.isEmpty()) {
-                logger.info("Uploading {} images to product {}", images.size(), productId);
-                shopifyGraphQLService.addImagesToProduct(productId, images);
-                logger.debug("✅ Images uploaded successfully");
-            } else {
-                logger.debug("⏭️ Skipping image upload - no valid images for SKU: {}", feedItem.getWebTagNumber());
-            }
+            // Uploads every slot of the manifest and records the media IDs for later updates
+            productImageSyncService.syncImages(feedItem, productId, false);
         } catch (Exception e) {
             logger.error("❌ Failed to upload images to product ID: {} for SKU: {} - {}", 
                 productId, feedItem.getWebTagNumber(), e.getMessage());
@@ -288,51 +273,6 @@ public class ProductPublishPipeline {
         }
     }
     
-    /**
-     * Creates Image objects from external image URLs
-     * 
-     * @param imageUrls Array of external image URLs
-     * @param feedItem Feed item for context
-     * @return List of Image objects
-     */
-    private List<Image> createImagesFromUrls(String[] imageUrls, FeedItem feedItem) {
-        List<Image> images = new ArrayList<>();
-        
-        for (int i = 0; i < imageUrls.length; i++) {
-            String imageUrl = imageUrls[i];
-            if (isValidImageUrl(imageUrl)) {
-                Image image = new Image();
-                image.setSrc(imageService.getCorrectedImageUrl(imageUrl));
-                image.addAltTag(feedItem.getWebDescriptionShort()); // Use description as alt text
-                image.setPosition(String.valueOf(i + 1));
-                images.add(image);
-                
-                logger.debug("Created image {} for SKU: {} - URL: {}", 
-                    i + 1, feedItem.getWebTagNumber(), imageUrl);
-            } else {
-                logger.warn("Skipping invalid image URL for SKU: {} - URL: {}", 
-                    feedItem.getWebTagNumber(), imageUrl);
-            }
-        }
-        
-        return images;
-    }
-    
-    /**
-     * Validates that an image URL is properly formatted and accessible
-     * 
-     * @param imageUrl The URL to validate
-     * @return true if valid, false otherwise
-     */
-    private boolean isValidImageUrl(String imageUrl) {
-        if (imageUrl == null || imageUrl.trim().isEmpty()) {
-            return false;
-        }
-        
-        String trimmedUrl = imageUrl.trim();
-        return trimmedUrl.startsWith("http://") || trimmedUrl.startsWith("https://");
-    }
-    
     /**
      * Result wrapper for product publish operations
      */
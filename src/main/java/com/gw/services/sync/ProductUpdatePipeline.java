@@ -1,12 +1,15 @@
 package com.gw.services.sync;
 
 import com.gw.domain.FeedItem;
+import com.gw.domain.FeedItemChangeType;
 import com.gw.services.product.ProductCreationService;
 import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.Metafield;
 import com.gw.services.shopifyapi.objects.Product;
-import com.gw.services.shopifyapi.objects.Image;
+import com.gw.services.shopifyapi.objects.Variant;
 import com.gw.services.ImageService;
 import com.gw.services.product.MetadataUpdateService;
+import com.gw.services.pricing.PricingStrategy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,20 +17,34 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Simple Product Update Pipeline
  * 
  * Clear step-by-step flow:
- * 1. Compare & update basic fields (title, description, etc.) if changed
+ * 1. Compare & update basic fields (title, description, etc.) if changed - by a digest of
+ *    the fields stored in a product metafield with each update
  * 2. Check & update inventory levels if changed
- * 3. Check & update options/variants if changed
- * 4. Check & update metafields if changed
- * 5. Handle images (always recreate)
- * 6. Update collections
+ * 3. Check & update variant price if changed
+ * 4. Check & update options/variants if changed
+ * 5. Check & update metafields if changed
+ * 6. Handle images (upload/delete only what changed)
+ * 7. Update collections
+ * 
+ * Each step only runs when the FeedItemChangeType set passed in says it is affected,
+ * e.g. a price-only change is a single variant update. Without a change set all steps run.
  * 
  * Benefits:
  * - Simple linear flow
@@ -40,6 +57,10 @@ public class ProductUpdatePipeline {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductUpdatePipeline.class);
     
+    // Digest of the basic fields last written, saved with the same productUpdate
+    static final String BASIC_DIGEST_NAMESPACE = "keystone";
+    static final String BASIC_DIGEST_KEY = "basic_fields_digest";
+    
     @Autowired
     private ShopifyGraphQLService shopifyGraphQLService;
     
@@ -59,39 +80,67 @@ public class ProductUpdatePipeline {
     @Autowired
     private MetadataUpdateService metadataUpdateService;
     
-
+    @Autowired
+    private PricingStrategy pricingStrategy;
+    
+    @Autowired
+    private ProductImageSyncService productImageSyncService;
     
     /**
-     * Execute simple product update pipeline
+     * Execute simple product update pipeline running every step
      */
     public ProductUpdateResult executeUpdate(FeedItem item) {
-        logger.info("🔄 Starting simple update pipeline for SKU: {}", item.getWebTagNumber());
+        return executeUpdate(item, EnumSet.allOf(FeedItemChangeType.class));
+    }
+    
+    /**
+     * Execute product update pipeline running only the steps affected by the change types
+     */
+    public ProductUpdateResult executeUpdate(FeedItem item, Set<FeedItemChangeType> changeTypes) {
+        logger.info("🔄 Starting simple update pipeline for SKU: {} changes: {}", item.getWebTagNumber(), changeTypes);
         
         try {
             // Step 1: Get existing product
             Product existingProduct = getExistingProduct(item);
             
-            // Step 2: Create updated product template (only for comparison)
-            Product updatedTemplate = createUpdatedTemplate(item);
+            if (changeTypes.contains(FeedItemChangeType.BASIC_INFO)) {
+                // Step 2: Create updated product template (only for comparison)
+                Product updatedTemplate = createUpdatedTemplate(item);
+                
+                // Step 3: Update basic fields if changed
+                updateBasicFieldsIfChanged(existingProduct, updatedTemplate);
+            }
             
-            // Step 3: Update basic fields if changed
-            updateBasicFieldsIfChanged(existingProduct, updatedTemplate);
+            if (changeTypes.contains(FeedItemChangeType.STATUS)) {
+                // Use inventory management service to handle the status change
+                inventoryManagementService.handleInventoryStatusChange(item, existingProduct);
+            }
             
-            // Use inventory management service to handle the status change
-            inventoryManagementService.handleInventoryStatusChange(item, existingProduct);
+            if (changeTypes.contains(FeedItemChangeType.PRICE)) {
+                // Step 4: Update variant price if changed
+                updatePriceIfChanged(item, existingProduct);
+            }
             
-            // Step 5: Update options/variants if changed
-            updateOptionsIfChanged(item, existingProduct);
+            if (changeTypes.contains(FeedItemChangeType.OPTIONS)) {
+                // Step 5: Update options/variants if changed
+                updateOptionsIfChanged(item, existingProduct);
+            }
             
-            // Step 6: Update metafields and SEO metadata if changed
-            updateMetafieldsIfChanged(existingProduct, item);
+            if (changeTypes.contains(FeedItemChangeType.METADATA)) {
+                // Step 6: Update metafields and SEO metadata if changed
+                updateMetafieldsIfChanged(existingProduct, item);
+            }
             
-            // Step 7: Handle images (download first, then recreate)
-            handleImageProcessing(item);
-            updateImages(item);
+            if (changeTypes.contains(FeedItemChangeType.IMAGES)) {
+                // Step 7: Handle images (download first, then recreate)
+                handleImageProcessing(item);
+                updateImages(item);
+            }
             
-            // Step 8: Update collections
-            collectionManagementService.updateProductCollectionsForPipeline(item, existingProduct.getId());
+            if (changeTypes.contains(FeedItemChangeType.COLLECTIONS)) {
+                // Step 8: Update collections
+                collectionManagementService.updateProductCollectionsForPipeline(item, existingProduct.getId());
+            }
             
             logger.info("✅ Simple update pipeline completed for SKU: {}", item.getWebTagNumber());
             return ProductUpdateResult.success(existingProduct);
@@ -146,41 +195,84 @@ public class ProductUpdatePipeline {
     
     /**
      * Step 3: Update basic fields if they have changed
+     * 
+     * The product query doesn't return the description HTML (and tags come back as a list),
+     * so the fields can't be compared with the existing product directly. Instead a digest of
+     * the normalised fields is written to a metafield with every update and compared here.
      */
     private void updateBasicFieldsIfChanged(Product existing, Product updated) throws Exception {
         logger.debug("📝 Step 3: Checking basic fields for changes");
         
-        // For now, always update basic fields - comparison logic can be added later
+        String digest = basicFieldsDigest(updated);
+        if (digest.equals(getStoredBasicFieldsDigest(existing))) {
+            logger.debug("⏭️ Basic fields unchanged - skipping");
+            return;
+        }
         logger.info("🔄 Updating basic fields");
         
         // Copy basic fields from updated to existing (preserve existing ID)
         copyBasicFields(updated, existing);
         
-        // Update via API (only basic fields, no variants/options)
-        shopifyGraphQLService.updateProduct(createBasicProduct(existing));
+        // Update via API (only basic fields and their digest, no variants/options)
+        Product basic = createBasicProduct(existing);
+        Metafield digestMetafield = new Metafield();
+        digestMetafield.setNamespace(BASIC_DIGEST_NAMESPACE);
+        digestMetafield.setKey(BASIC_DIGEST_KEY);
+        digestMetafield.setValue(digest);
+        digestMetafield.setType("single_line_text_field");
+        basic.addMetafield(digestMetafield);
+        shopifyGraphQLService.updateProduct(basic);
         logger.debug("✅ Basic fields updated");
     }
     
+    /**
+     * Step 4: Update variant price if it differs from the pricing strategy
+     */
+    private void updatePriceIfChanged(FeedItem item, Product existing) throws Exception {
+        logger.debug("💲 Step 4: Checking variant price for changes");
+        
+        String price = pricingStrategy.getPrice(item);
+        if (price == null || existing.getVariants() == null) {
+            logger.debug("⏭️ No price or variants - skipping");
+            return;
+        }
+        
+        List<Variant> toUpdate = new ArrayList<>();
+        for (Variant variant : existing.getVariants()) {
+            if (!isSamePrice(price, variant.getPrice())) {
+                Variant priceUpdate = new Variant();
+                priceUpdate.setId(variant.getId());
+                priceUpdate.setPrice(price);
+                toUpdate.add(priceUpdate);
+            }
+        }
+        
+        if (toUpdate.isEmpty()) {
+            logger.debug("⏭️ Price unchanged - skipping");
+            return;
+        }
+        
+        shopifyGraphQLService.updateVariantPrices(existing.getId(), toUpdate);
+        logger.debug("✅ Variant price updated to {}", price);
+    }
+    
     /**
      * Step 5: Update options/variants if they have changed
      */
     private void updateOptionsIfChanged(FeedItem item, Product existing) {
         logger.debug("🎛️ Step 5: Checking options for changes");
         
-        if (hasVariantOptions(item)) {
-            try {
-                boolean updated = shopifyGraphQLService.updateProductOptions(existing.getId(), item);
-                if (updated) {
-                    logger.debug("✅ Options/variants updated");
-                } else {
-                    logger.debug("⏭️ Options unchanged - skipping");
-                }
-            } catch (Exception e) {
-                logger.warn("⚠️ Options update failed: {}", e.getMessage());
-                // Continue - don't fail entire update
+        try {
+            // Diffed against the options fetched in step 1, no mutation when unchanged
+            boolean updated = shopifyGraphQLService.reconcileProductOptions(existing, item);
+            if (updated) {
+                logger.debug("✅ Options/variants updated");
+            } else {
+                logger.debug("⏭️ Options unchanged - skipping");
             }
-        } else {
-            logger.debug("⏭️ No variant options - skipping");
+        } catch (Exception e) {
+            logger.warn("⚠️ Options update failed: {}", e.getMessage());
+            // Continue - don't fail entire update
         }
     }
     
@@ -210,27 +302,13 @@ public class ProductUpdatePipeline {
     }
     
     /**
-     * Step 7b: Update images on Shopify (recreate for consistency)
+     * Step 7b: Update images on Shopify, only uploading and deleting what changed
      */
     private void updateImages(FeedItem item) {
         logger.debug("🖼️ Step 7b: Updating images on Shopify");
         
         try {
-            String[] imageUrls = imageService.getAvailableExternalImagePathByCSS(item);
-            if (imageUrls == null || imageUrls.length == 0) {
-                logger.debug("⏭️ No images to update");
-                return;
-            }
-            
-            // Simple approach: delete all, add new ones
-            shopifyGraphQLService.deleteAllImageByProductId(item.getShopifyItemId());
-            
-            // Create and add new images
-            List<Image> images = createImages(imageUrls, item);
-            if (!images.isEmpty()) {
-                shopifyGraphQLService.addImagesToProduct(item.getShopifyItemId(), images);
-                logger.debug("✅ {} images updated", images.size());
-            }
+            productImageSyncService.syncImages(item, item.getShopifyItemId(), true);
         } catch (Exception e) {
             logger.warn("⚠️ Image update failed: {}", e.getMessage());
             // Continue - images are not critical
@@ -249,14 +327,60 @@ public class ProductUpdatePipeline {
         to.setStatus(from.getStatus());
     }
     
-    private boolean hasVariantOptions(FeedItem item) {
-        String color = item.getWebWatchDial();
-        String size = item.getWebWatchDiameter();
-        String material = item.getWebMetalType();
-        
-        return (color != null && !color.trim().isEmpty()) ||
-               (size != null && !size.trim().isEmpty()) ||
-               (material != null && !material.trim().isEmpty());
+    private String getStoredBasicFieldsDigest(Product existing) throws Exception {
+        return shopifyGraphQLService.getProductMetafieldValue(existing.getId(), BASIC_DIGEST_NAMESPACE, BASIC_DIGEST_KEY);
+    }
+    
+    /**
+     * SHA-256 of the fields sent by the basic update, normalised so formatting-only
+     * differences (whitespace, tag order and case) don't count as changes
+     */
+    static String basicFieldsDigest(Product product) {
+        String[] fields = {
+            normalise(product.getTitle()),
+            normalise(product.getBodyHtml()),
+            normalise(product.getVendor()),
+            normalise(product.getProductType()),
+            normalise(product.getHandle()),
+            normaliseTags(product.getTags()),
+            normalise(product.getStatus())
+        };
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String field : fields) {
+                digest.update((field == null ? "\u0000" : field + "\u0001").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String normalise(String value) {
+        return value == null ? null : value.trim().replaceAll("\\s+", " ");
+    }
+    
+    private static String normaliseTags(String tags) {
+        if (tags == null) {
+            return null;
+        }
+        return Arrays.stream(tags.split(","))
+            .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+            .filter(tag -> !tag.isEmpty())
+            .distinct()
+            .sorted()
+            .collect(Collectors.joining(","));
+    }
+    
+    private boolean isSamePrice(String price, String existingPrice) {
+        if (existingPrice == null) {
+            return false;
+        }
+        try {
+            return new BigDecimal(price).compareTo(new BigDecimal(existingPrice)) == 0;
+        } catch (NumberFormatException e) {
+            return price.equals(existingPrice);
+        }
     }
     
     private Product createBasicProduct(Product source) {
@@ -272,25 +396,6 @@ public class ProductUpdatePipeline {
         return basic;
     }
     
-    private List<Image> createImages(String[] urls, FeedItem item) {
-        // Implementation similar to existing createImagesFromUrls
-        // Simplified for clarity
-        return Arrays.stream(urls)
-            .filter(this::isValidImageUrl)
-            .map(url -> {
-                Image image = new Image();
-                image.setSrc(imageService.getCorrectedImageUrl(url));
-                image.addAltTag(item.getWebDescriptionShort());
-                return image;
-            })
-            .collect(Collectors.toList());
-    }
-    
-    private boolean isValidImageUrl(String url) {
-        return url != null && !url.trim().isEmpty() && 
-               (url.startsWith("http://") || url.startsWith("https://"));
-    }
-    
     /**
      * Simple result wrapper
      */
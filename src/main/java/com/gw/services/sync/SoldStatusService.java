@@ -0,0 +1,149 @@
+package com.gw.services.sync;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.InventoryLevelsBySku;
+import com.gw.services.shopifyapi.objects.InventoryLevel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sold Status Service
+ *
+ * Hot lane for items that turned SOLD: their inventory is zeroed on all locations
+ * before any other sync work, to keep the oversell window as short as possible.
+ * 1. Resolve inventory levels for all sold SKUs with batched productVariants lookups
+ * 2. Write 0 to every location through the InventoryBatchWriter (one or two calls)
+ * 3. Record the latency from when the change was observed until Shopify is at 0
+ */
+@Service
+public class SoldStatusService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SoldStatusService.class);
+
+    @Value("${shopify.sold.lookup.batch.size:50}")
+    private int lookupBatchSize;
+
+    @Autowired
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    @Autowired
+    private InventoryBatchWriter inventoryBatchWriter;
+
+    private final LatencyStats latencyStats = new LatencyStats();
+
+    public static boolean isSold(FeedItem item) {
+        return item.getWebStatus() != null && item.getWebStatus().equalsIgnoreCase("SOLD");
+    }
+
+    /**
+     * Zero the inventory of the given items on all locations.
+     *
+     * @param soldItems Items with SKU and Shopify product ID
+     * @param observedAtMillis When the SOLD status was observed, used for the latency metric
+     * @return SKUs whose inventory is confirmed at 0
+     */
+    public Set<String> zeroInventory(List<FeedItem> soldItems, long observedAtMillis) {
+        Set<String> zeroed = new HashSet<>();
+        if (soldItems.isEmpty()) {
+            return zeroed;
+        }
+        logger.info("🔥 Sold hot lane: zeroing inventory for {} SKUs", soldItems.size());
+
+        Map<String, CompletableFuture<Void>> writesBySku = new LinkedHashMap<>();
+        inventoryBatchWriter.begin();
+        try {
+            for (int i = 0; i < soldItems.size(); i += lookupBatchSize) {
+                List<FeedItem> batch = soldItems.subList(i, Math.min(i + lookupBatchSize, soldItems.size()));
+                Map<String, InventoryLevelsBySku> levelsBySku;
+                try {
+                    levelsBySku = shopifyGraphQLService.getInventoryLevelsBySkus(
+                        batch.stream().map(FeedItem::getWebTagNumber).toList());
+                } catch (Exception e) {
+                    logger.error("❌ Inventory lookup failed for {} sold SKUs: {}", batch.size(), e.getMessage());
+                    continue;
+                }
+
+                for (FeedItem item : batch) {
+                    InventoryLevelsBySku current = levelsBySku.get(item.getWebTagNumber());
+                    if (current == null || !current.getProductId().equals(item.getShopifyItemId())) {
+                        logger.warn("⚠️ No matching variant for sold SKU: {}", item.getWebTagNumber());
+                        continue;
+                    }
+
+                    List<InventoryLevel> toZero = new ArrayList<>();
+                    for (InventoryLevel level : current.getLevels()) {
+                        if (!"0".equals(level.getAvailable())) {
+                            level.setAvailable("0");
+                            toZero.add(level);
+                        }
+                    }
+                    if (toZero.isEmpty()) {
+                        zeroed.add(item.getWebTagNumber());
+                    } else {
+                        writesBySku.put(item.getWebTagNumber(), inventoryBatchWriter.write(item.getWebTagNumber(), toZero));
+                    }
+                }
+            }
+        } finally {
+            inventoryBatchWriter.end();
+        }
+
+        for (Map.Entry<String, CompletableFuture<Void>> entry : writesBySku.entrySet()) {
+            try {
+                entry.getValue().join();
+                zeroed.add(entry.getKey());
+                latencyStats.record(System.currentTimeMillis() - observedAtMillis);
+            } catch (Exception e) {
+                logger.error("❌ Failed to zero inventory for sold SKU: {} - {}", entry.getKey(), e.getMessage());
+            }
+        }
+
+        logger.info("✅ Sold hot lane: {} of {} SKUs at 0 ({} written) - latency {}",
+            zeroed.size(), soldItems.size(), writesBySku.size(), latencyStats);
+        return zeroed;
+    }
+
+    public LatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    /**
+     * Latency from SOLD observed to Shopify inventory at 0
+     */
+    public static class LatencyStats {
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+        private long lastMillis;
+
+        public synchronized void record(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            lastMillis = millis;
+        }
+
+        public synchronized long getCount() { return count; }
+        public synchronized long getMaxMillis() { return maxMillis; }
+        public synchronized long getLastMillis() { return lastMillis; }
+        public synchronized long getAverageMillis() { return count == 0 ? 0 : totalMillis / count; }
+
+        @Override
+        public synchronized String toString() {
+            return "count=" + count + ", last=" + lastMillis + "ms, avg=" + getAverageMillis() + "ms, max=" + maxMillis + "ms";
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.gw.services.sync;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gw.domain.EbayMetafieldDefinition;
+import com.gw.domain.PredefinedCollection;
+import com.gw.domain.StoreMetadataSnapshot;
+import com.gw.domain.StoreMetadataSnapshotDao;
+import com.gw.services.shopifyapi.CollectionRegistry;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.CustomCollection;
+import com.gw.services.shopifyapi.objects.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Warm start of the sync configuration across restarts
+ *
+ * After SyncConfigurationService has ensured collections and eBay metafield definitions,
+ * the IDs of those, of the locations and of the publications are saved in the DB.
+ * On the next start the snapshot is checked with a single nodes() query: when every
+ * captured object still exists with the same title / key / name and no location or
+ * publication was added, the mappings come from the snapshot and the bootstrap
+ * listing, validation and creation queries are skipped.
+ */
+@Service
+public class StoreMetadataSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreMetadataSnapshotService.class);
+
+    private static final TypeReference<LinkedHashMap<String, String>> ID_MAP = new TypeReference<>() {};
+
+    @Autowired
+    private StoreMetadataSnapshotDao snapshotDao;
+
+    @Autowired
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    @Autowired
+    private CollectionRegistry collectionRegistry;
+
+    @Value("${shopify.metadata.snapshot.enabled:true}")
+    private boolean enabled;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Collection mappings from the snapshot when it is still valid for the store,
+     * null when the configuration has to be ensured from Shopify. A valid snapshot
+     * also covers the eBay metafield definitions and primes the location and
+     * publication caches.
+     */
+    @Transactional
+    public Map<PredefinedCollection, CustomCollection> restore(PredefinedCollection[] requiredCollections) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            StoreMetadataSnapshot snapshot = snapshotDao.find(shopifyGraphQLService.getStoreUrl());
+            if (snapshot == null) {
+                logger.info("ℹ️ No store metadata snapshot yet");
+                return null;
+            }
+            if (snapshot.getFormatVersion() != StoreMetadataSnapshot.FORMAT_VERSION
+                    || !configFingerprint(requiredCollections).equals(snapshot.getConfigFingerprint())) {
+                logger.info("🔄 Store metadata snapshot is for another configuration - ignoring it");
+                return null;
+            }
+
+            Map<String, String> collectionIds = readIds(snapshot.getCollectionIds());
+            Map<String, String> metafieldDefinitionIds = readIds(snapshot.getMetafieldDefinitionIds());
+            Map<String, String> locationIds = readIds(snapshot.getLocationIds());
+            Map<String, String> publicationIds = readIds(snapshot.getPublicationIds());
+
+            String storeFingerprint = storeFingerprint(
+                collectionIds, metafieldDefinitionIds, locationIds, publicationIds);
+            if (!storeFingerprint.equals(snapshot.getStoreFingerprint())) {
+                logger.info("🔄 Store changed since the metadata snapshot of {} - ensuring configuration", snapshot.getCapturedDate());
+                return null;
+            }
+
+            Map<PredefinedCollection, CustomCollection> collectionByEnum = new LinkedHashMap<>();
+            for (PredefinedCollection collectionEnum : requiredCollections) {
+                CustomCollection collection = new CustomCollection();
+                collection.setId(collectionIds.get(collectionEnum.getTitle()));
+                collection.setTitle(collectionEnum.getTitle());
+                collectionByEnum.put(collectionEnum, collection);
+            }
+            collectionRegistry.registerAll(collectionByEnum);
+
+            List<Location> locations = new ArrayList<>();
+            locationIds.forEach((name, id) -> {
+                Location location = new Location();
+                location.setId(id);
+                location.setName(name);
+                locations.add(location);
+            });
+            shopifyGraphQLService.primeMetadataCache(ShopifyGraphQLService.LOCATIONS_CACHE, "all", locations);
+
+            List<Map<String, String>> publications = new ArrayList<>();
+            publicationIds.forEach((name, id) -> {
+                Map<String, String> publication = new LinkedHashMap<>();
+                publication.put("id", id);
+                publication.put("name", name);
+                publications.add(publication);
+            });
+            shopifyGraphQLService.primeMetadataCache(ShopifyGraphQLService.PUBLICATIONS_CACHE, "all", publications);
+
+            logger.info("⚡ Warm start from store metadata snapshot of {}: {} collections, {} metafield definitions, {} locations, {} publications",
+                snapshot.getCapturedDate(), collectionByEnum.size(), metafieldDefinitionIds.size(), locations.size(), publications.size());
+            return collectionByEnum;
+
+        } catch (Exception e) {
+            logger.warn("⚠️ Could not use the store metadata snapshot: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save the configuration that was just ensured from Shopify. Skipped when an
+     * expected eBay metafield definition is missing, the next start then ensures again.
+     */
+    @Transactional
+    public void capture(Map<PredefinedCollection, CustomCollection> collectionByEnum, PredefinedCollection[] requiredCollections) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Map<String, String> collectionIds = new TreeMap<>();
+            for (PredefinedCollection collectionEnum : requiredCollections) {
+                CustomCollection collection = collectionByEnum.get(collectionEnum);
+                if (collection == null || collection.getId() == null) {
+                    logger.warn("⚠️ No collection for {} - store metadata snapshot not saved", collectionEnum.getTitle());
+                    return;
+                }
+                collectionIds.put(collectionEnum.getTitle(), collection.getId());
+            }
+
+            Map<String, String> metafieldDefinitionIds = new TreeMap<>();
+            for (Map<String, String> definition : shopifyGraphQLService.getMetafieldDefinitions("ebay")) {
+                metafieldDefinitionIds.put(definition.get("key"), definition.get("id"));
+            }
+            if (!metafieldDefinitionIds.keySet().containsAll(EbayMetafieldDefinition.getAllKeys())) {
+                logger.warn("⚠️ eBay metafield definitions incomplete - store metadata snapshot not saved");
+                return;
+            }
+
+            // Keep the order of the locations, inventory is assigned by position
+            Map<String, String> locationIds = new LinkedHashMap<>();
+            for (Location location : shopifyGraphQLService.getAllLocations()) {
+                locationIds.put(location.getName(), location.getId());
+            }
+            Map<String, String> publicationIds = new LinkedHashMap<>();
+            for (Map<String, String> publication : shopifyGraphQLService.getAllPublications()) {
+                publicationIds.put(publication.get("name"), publication.get("id"));
+            }
+
+            StoreMetadataSnapshot snapshot = new StoreMetadataSnapshot();
+            snapshot.setStoreUrl(shopifyGraphQLService.getStoreUrl());
+            snapshot.setFormatVersion(StoreMetadataSnapshot.FORMAT_VERSION);
+            snapshot.setConfigFingerprint(configFingerprint(requiredCollections));
+            snapshot.setStoreFingerprint(storeFingerprint(collectionIds, metafieldDefinitionIds, locationIds, publicationIds));
+            snapshot.setCollectionIds(objectMapper.writeValueAsString(collectionIds));
+            snapshot.setMetafieldDefinitionIds(objectMapper.writeValueAsString(metafieldDefinitionIds));
+            snapshot.setLocationIds(objectMapper.writeValueAsString(locationIds));
+            snapshot.setPublicationIds(objectMapper.writeValueAsString(publicationIds));
+            snapshotDao.save(snapshot);
+            logger.info("💾 Saved store metadata snapshot: {} collections, {} metafield definitions, {} locations, {} publications",
+                collectionIds.size(), metafieldDefinitionIds.size(), locationIds.size(), publicationIds.size());
+
+        } catch (Exception e) {
+            logger.warn("⚠️ Could not save the store metadata snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Forget the snapshot, the next start ensures the configuration from Shopify
+     */
+    @Transactional
+    public void invalidate() {
+        try {
+            snapshotDao.delete(shopifyGraphQLService.getStoreUrl());
+        } catch (Exception e) {
+            logger.warn("⚠️ Could not delete the store metadata snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Hash of what the bot expects of the store
+     */
+    static String configFingerprint(String storeUrl, PredefinedCollection[] requiredCollections, List<String> metafieldKeys) {
+        StringBuilder config = new StringBuilder()
+            .append("v").append(StoreMetadataSnapshot.FORMAT_VERSION).append('\n')
+            .append(storeUrl).append('\n');
+        for (PredefinedCollection collectionEnum : requiredCollections) {
+            config.append("collection=").append(collectionEnum.getTitle()).append('\n');
+        }
+        for (String key : metafieldKeys) {
+            config.append("metafield=").append(key).append('\n');
+        }
+        return sha256(config.toString());
+    }
+
+    /**
+     * Hash of the store's answer for the captured IDs, sorted by GID
+     */
+    static String storeFingerprint(Map<String, String> labelsByGid) {
+        StringBuilder store = new StringBuilder();
+        new TreeMap<>(labelsByGid).forEach((gid, label) -> store.append(gid).append('=').append(label).append('\n'));
+        return sha256(store.toString());
+    }
+
+    private String configFingerprint(PredefinedCollection[] requiredCollections) {
+        return configFingerprint(shopifyGraphQLService.getStoreUrl(), requiredCollections, EbayMetafieldDefinition.getAllKeys());
+    }
+
+    /**
+     * One nodes() query for all captured IDs
+     */
+    private String storeFingerprint(Map<String, String> collectionIds, Map<String, String> metafieldDefinitionIds,
+            Map<String, String> locationIds, Map<String, String> publicationIds) throws Exception {
+        List<String> gids = new ArrayList<>();
+        collectionIds.values().forEach(id -> gids.add("gid://shopify/Collection/" + id));
+        metafieldDefinitionIds.values().forEach(id -> gids.add("gid://shopify/MetafieldDefinition/" + id));
+        locationIds.values().forEach(id -> gids.add("gid://shopify/Location/" + id));
+        publicationIds.values().forEach(id -> gids.add("gid://shopify/Publication/" + id));
+        return storeFingerprint(shopifyGraphQLService.getStoreMetadataLabels(gids));
+    }
+
+    private Map<String, String> readIds(String json) throws Exception {
+        return json == null ? new LinkedHashMap<>() : objectMapper.readValue(json, ID_MAP);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.gw.services.sync;
 
 import com.gw.domain.EbayMetafieldDefinition;
 import com.gw.domain.PredefinedCollection;
+import com.gw.services.shopifyapi.CollectionRegistry;
 import com.gw.services.shopifyapi.ShopifyGraphQLService;
 import com.gw.services.shopifyapi.objects.CustomCollection;
 import com.gw.domain.keystone.KeyStoneCollections;
@@ -10,7 +11,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -24,6 +25,13 @@ import java.util.stream.Collectors;
  * - Metafield definitions setup
  * - Configuration caching and validation
  * 
+ * Collection mappings are also held in the CollectionRegistry; when a managed
+ * collection is deleted from the registry the mappings are ensured again.
+ * 
+ * After a restart the configuration comes from the StoreMetadataSnapshotService
+ * when the store hasn't changed, otherwise it is ensured from Shopify and saved
+ * for the next start.
+ * 
  * Benefits:
  * - Centralized configuration logic
  * - Thread-safe initialization
@@ -37,26 +45,57 @@ public class SyncConfigurationService {
     @Autowired
     private ShopifyGraphQLService shopifyGraphQLService;
     
+    @Autowired
+    private CollectionRegistry collectionRegistry;
+    
+    @Autowired
+    private StoreMetadataSnapshotService snapshotService;
+    
     // Cached mappings
     private Map<PredefinedCollection, CustomCollection> cachedCollectionByEnum;
+    private PredefinedCollection[] cachedPredefinedCollections;
     private boolean collectionsInitialized = false;
     private boolean metafieldDefinitionsInitialized = false;
+    // Collections were ensured from Shopify, snapshot to be saved once metafield definitions are ensured too
+    private boolean snapshotPending = false;
     
     /**
      * Get collection mappings (cached)
      */
     public synchronized Map<PredefinedCollection, CustomCollection> getCollectionMappings() throws Exception {
+        invalidateIfCollectionsRemoved();
         if (!collectionsInitialized || cachedCollectionByEnum == null) {
             ensureCollections();
         }
         return cachedCollectionByEnum;
     }
     
+    /**
+     * Predefined collections in mask bit order (see CollectionMask)
+     */
+    public synchronized PredefinedCollection[] getPredefinedCollections() throws Exception {
+        invalidateIfCollectionsRemoved();
+        if (!collectionsInitialized || cachedPredefinedCollections == null) {
+            ensureCollections();
+        }
+        return cachedPredefinedCollections;
+    }
+    
     /**
      * Ensure collections are configured
      */
     public void ensureCollections(PredefinedCollection[] requiredCollections) throws Exception {
         if (!collectionsInitialized || cachedCollectionByEnum == null) {
+            Map<PredefinedCollection, CustomCollection> restored = metafieldDefinitionsInitialized
+                ? null : snapshotService.restore(requiredCollections);
+            if (restored != null) {
+                cachedCollectionByEnum = restored;
+                cachedPredefinedCollections = requiredCollections.clone();
+                collectionsInitialized = true;
+                metafieldDefinitionsInitialized = true;
+                return;
+            }
+            
             logger.info("🔍 Checking collection configuration status...");
             
             try {
@@ -76,19 +115,25 @@ public class SyncConfigurationService {
                 if (allCollectionsExist) {
                     logger.info("✅ All {} required collections already exist", requiredCollections.length);
                     
-                    cachedCollectionByEnum = new HashMap<>();
+                    cachedCollectionByEnum = new LinkedHashMap<>();
                     for (PredefinedCollection collectionEnum : requiredCollections) {
                         CustomCollection existingCollection = collectionByTitleFromShopify.get(collectionEnum.getTitle());
                         cachedCollectionByEnum.put(collectionEnum, existingCollection);
                     }
+                    collectionRegistry.registerAll(cachedCollectionByEnum);
                 } else {
                     logger.info("🔧 Missing collections detected ({}/{}) - ensuring configuration...", existingCount, requiredCollections.length);
                     cachedCollectionByEnum = shopifyGraphQLService.ensureConfiguredCollections(requiredCollections);
                     logger.info("✅ Successfully ensured {} collection mappings", cachedCollectionByEnum.size());
                 }
                 
+                cachedPredefinedCollections = requiredCollections.clone();
                 collectionsInitialized = true;
+                snapshotPending = true;
                 logger.info("📊 Cached {} collection mappings", cachedCollectionByEnum.size());
+                if (metafieldDefinitionsInitialized) {
+                    captureSnapshotIfPending();
+                }
                 
             } catch (Exception e) {
                 logger.error("❌ Error ensuring collections: {}", e.getMessage(), e);
@@ -97,12 +142,26 @@ public class SyncConfigurationService {
         }
     }
     
+    /**
+     * Drop the cached mappings when one of their collections was deleted
+     */
+    private void invalidateIfCollectionsRemoved() {
+        if (collectionsInitialized && cachedPredefinedCollections != null
+                && !collectionRegistry.containsAll(cachedPredefinedCollections)) {
+            logger.info("🔄 Managed collections were deleted - collection mappings will be ensured again");
+            cachedCollectionByEnum = null;
+            collectionsInitialized = false;
+            snapshotService.invalidate();
+        }
+    }
+    
     /**
      * Simplified version for internal use when we don't have the collections array
      */
     private void ensureCollections() throws Exception {
-        // Get the predefined collections from the sync service
-        PredefinedCollection[] requiredCollections = KeyStoneCollections.values();
+        // The collections ensured last, or the default ones
+        PredefinedCollection[] requiredCollections = cachedPredefinedCollections != null
+            ? cachedPredefinedCollections : KeyStoneCollections.values();
         ensureCollections(requiredCollections);
     }
     
@@ -125,6 +184,7 @@ public class SyncConfigurationService {
                     if (structureValid) {
                         logger.info("✅ All {} eBay metafield definitions already exist with correct structure", expectedCount);
                         metafieldDefinitionsInitialized = true;
+                        captureSnapshotIfPending();
                         return;
                     } else {
                         logger.info("🔧 eBay metafield definitions exist but structure is invalid - will recreate");
@@ -136,6 +196,7 @@ public class SyncConfigurationService {
                 shopifyGraphQLService.createEbayMetafieldDefinitions();
                 metafieldDefinitionsInitialized = true;
                 logger.info("✅ eBay metafield definitions ensured and cached");
+                captureSnapshotIfPending();
                 
             } catch (Exception e) {
                 logger.info("ℹ️ eBay metafield definitions status check completed: {}", e.getMessage());
@@ -144,6 +205,13 @@ public class SyncConfigurationService {
         }
     }
     
+    private void captureSnapshotIfPending() {
+        if (snapshotPending && collectionsInitialized && cachedCollectionByEnum != null) {
+            snapshotService.capture(cachedCollectionByEnum, cachedPredefinedCollections);
+            snapshotPending = false;
+        }
+    }
+    
     /**
      * Validate metafield structure
      */
@@ -180,6 +248,8 @@ public class SyncConfigurationService {
         cachedCollectionByEnum = null;
         collectionsInitialized = false;
         metafieldDefinitionsInitialized = false;
+        snapshotPending = false;
+        snapshotService.invalidate();
         logger.info("🗑️ Configuration cache cleared");
     }
 } 
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.gw.diagnostics.benchmark;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.gw.domain.CollectionClassifier;
+import com.gw.domain.FeedItem;
+import com.gw.domain.PredefinedCollection;
+import com.gw.domain.keystone.KeyStoneCollections;
+import com.gw.services.BaseFeedService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Collection classification benchmark
+ *
+ * Compares classifying a feed one collection at a time (accepts() per collection, the
+ * item is looked at again for every collection) with CollectionClassifier: one pass
+ * per item over the normalised fields, then the same pass in parallel over the whole feed.
+ *
+ * Runs over the feed file -Dbenchmark.feed.file (default the bundled tmpFeed/tmpFeed2.xml).
+ * Plain timing loop with warmup, results are logged.
+ *
+ * mvn test -P collection-classification-benchmark -Dbenchmark.feed.file=/path/to/tmpFeed1.xml
+ */
+public class CollectionClassificationBenchmarkTest {
+
+    private static final Logger logger = LogManager.getLogger(CollectionClassificationBenchmarkTest.class);
+
+    private static final int WARMUP_ROUNDS = Integer.getInteger("benchmark.warmup", 2);
+    private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 5);
+    private static final String FEED_FILE = System.getProperty("benchmark.feed.file", "tmpFeed/tmpFeed2.xml");
+
+    @Test
+    public void compareClassification() throws Exception {
+        File feedFile = new File(FEED_FILE);
+        if (!feedFile.isFile()) {
+            logger.info("Feed file not found, skipping: " + feedFile.getAbsolutePath());
+            return;
+        }
+        List<FeedItem> items = new BaseFeedService().loadFromXmlFile(feedFile.getPath());
+        PredefinedCollection[] collections = KeyStoneCollections.values();
+        CollectionClassifier classifier = new CollectionClassifier(collections);
+
+        // Same memberships both ways
+        Long[] masks = classifier.classifyAll(items);
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(perCollection(items.get(i), collections), masks[i], items.get(i).getWebTagNumber());
+        }
+        classifier.resetHitCounts();
+
+        long perCollectionNanos = time(() -> {
+            for (FeedItem item : items) {
+                perCollection(item, collections);
+            }
+        });
+        long singlePassNanos = time(() -> {
+            for (FeedItem item : items) {
+                try {
+                    classifier.classify(item);
+                } catch (RuntimeException e) {
+                    // Counted as unknown, like classifyAll
+                }
+            }
+        });
+        long parallelNanos = time(() -> classifier.classifyAll(items));
+
+        logger.info("=== Collection classification benchmark ===");
+        logger.info("Items: " + items.size() + ", collections: " + collections.length + ", feed: " + FEED_FILE);
+        logger.info("accepts() per collection: " + perCollectionNanos / Math.max(1, items.size()) + " ns/item");
+        logger.info("Single pass:              " + singlePassNanos / Math.max(1, items.size()) + " ns/item");
+        logger.info("Single pass, parallel:    " + parallelNanos / Math.max(1, items.size()) + " ns/item");
+        logger.info("Hits per collection (" + (WARMUP_ROUNDS + ROUNDS) * 2 + " passes): " + classifier.getHitCounts());
+        if (!items.isEmpty()) {
+            logger.info("Explain " + items.get(0).getWebTagNumber() + ":");
+            classifier.explain(items.get(0)).forEach(explanation -> logger.info("  " + explanation));
+        }
+    }
+
+    /**
+     * Average nanos of one round, after warmup
+     */
+    private static long time(Runnable round) {
+        long total = 0;
+        for (int i = 0; i < WARMUP_ROUNDS + ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            if (i >= WARMUP_ROUNDS) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / ROUNDS;
+    }
+
+    /**
+     * Mask the way callers built it before, one accepts() per collection, null when a rule fails
+     */
+    private static Long perCollection(FeedItem item, PredefinedCollection[] collections) {
+        try {
+            long mask = 0;
+            for (int i = 0; i < collections.length; i++) {
+                if (collections[i].accepts(item)) {
+                    mask |= 1L << i;
+                }
+            }
+            return mask;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
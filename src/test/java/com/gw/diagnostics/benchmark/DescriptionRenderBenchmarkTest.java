@@ -0,0 +1,135 @@
+package com.gw.diagnostics.benchmark;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.FreeMakerService;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.Version;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Description rendering benchmark
+ *
+ * Compares the old rendering (a new FreeMarker Configuration and a fresh parse of the
+ * template for every item) with FreeMakerService: the first render of each item on the
+ * shared configuration, then the memoised render of unchanged items.
+ *
+ * Runs over -Dbenchmark.items generated feed items (default 500) with
+ * -Dbenchmark.template (default keystone.ftl). Plain timing loop with warmup, results are logged.
+ *
+ * mvn test -P description-render-benchmark -Dbenchmark.items=5000
+ */
+public class DescriptionRenderBenchmarkTest {
+
+    private static final Logger logger = LogManager.getLogger(DescriptionRenderBenchmarkTest.class);
+
+    private static final int WARMUP_ROUNDS = Integer.getInteger("benchmark.warmup", 2);
+    private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 5);
+    private static final int ITEMS = Integer.getInteger("benchmark.items", 500);
+    private static final String TEMPLATE = System.getProperty("benchmark.template", "keystone.ftl");
+
+    @Test
+    public void compareRendering() throws Exception {
+        List<FeedItem> items = getSampleItems();
+        FreeMakerService service = new FreeMakerService();
+        ReflectionTestUtils.setField(service, "descriptionBodyTemplateFileName", TEMPLATE);
+        ReflectionTestUtils.setField(service, "renderCacheSize", ITEMS);
+        service.init();
+
+        // Same output both ways
+        for (FeedItem item : items) {
+            assertEquals(renderPerCall(item), service.generateFromTemplate(item), item.getWebTagNumber());
+        }
+
+        long perCallNanos = time(items, this::renderPerCall, null);
+        long sharedNanos = time(items, service::generateFromTemplate, service);
+        long memoisedNanos = time(items, service::generateFromTemplate, null);
+
+        logger.info("=== Description render benchmark ===");
+        logger.info("Items: " + items.size() + ", template: " + TEMPLATE);
+        logger.info("New Configuration per call:         " + perCallNanos / items.size() / 1000 + " us/item");
+        logger.info("Shared Configuration, first render: " + sharedNanos / items.size() / 1000 + " us/item");
+        logger.info("Memoised, unchanged item:           " + memoisedNanos / items.size() / 1000 + " us/item");
+        logger.info(String.format("Throughput: %.0f / %.0f / %.0f renders/s",
+            perSecond(perCallNanos, items.size()), perSecond(sharedNanos, items.size()), perSecond(memoisedNanos, items.size())));
+    }
+
+    private interface RenderTask {
+        String render(FeedItem item) throws Exception;
+    }
+
+    /**
+     * Average nanos of one round over all items, after warmup.
+     * With a service given, its output cache is cleared before each round.
+     */
+    private long time(List<FeedItem> items, RenderTask task, FreeMakerService clearEachRound) throws Exception {
+        long total = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            if (clearEachRound != null) {
+                clearEachRound.clearRenderCache();
+            }
+            long start = System.nanoTime();
+            for (FeedItem item : items) {
+                task.render(item);
+            }
+            if (round >= WARMUP_ROUNDS) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / ROUNDS;
+    }
+
+    private static double perSecond(long nanos, int count) {
+        return count * 1_000_000_000.0 / Math.max(1, nanos);
+    }
+
+    /**
+     * What FreeMakerService used to do for every item
+     */
+    private String renderPerCall(FeedItem item) throws Exception {
+        Configuration cfg = new Configuration(new Version(2, 3, 26));
+        cfg.setClassForTemplateLoading(FreeMakerService.class, "/");
+        cfg.setDefaultEncoding("UTF-8");
+        cfg.setLocale(Locale.US);
+        Template template = cfg.getTemplate(TEMPLATE);
+        StringWriter writer = new StringWriter();
+        template.process(item, writer);
+        return writer.toString();
+    }
+
+    private static List<FeedItem> getSampleItems() {
+        String[] designers = { "Rolex", "Omega", "Cartier", "Patek Philippe" };
+        String[] movements = { "Automatic", "Manual", "Quartz" };
+        List<FeedItem> items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            FeedItem item = new FeedItem();
+            item.setWebTagNumber(String.valueOf(100000 + i));
+            item.setWebDesigner(designers[i % designers.length]);
+            item.setWebWatchModel("Model " + i);
+            item.setWebWatchYear(String.valueOf(1960 + i % 60));
+            item.setWebWatchMovement(movements[i % movements.length]);
+            item.setWebMetalType("Stainless Steel");
+            item.setWebWatchManufacturerReferenceNumber("REF-" + i);
+            item.setWebWatchDial("Black");
+            item.setWebWatchStrap("Bracelet");
+            item.setWebWatchCondition("Excellent");
+            item.setWebWatchDiameter("40mm");
+            item.setWebWatchBoxPapers("Box and papers");
+            item.setWebNotes("Serviced in " + (2000 + i % 25) + ", keeps excellent time.");
+            items.add(item);
+        }
+        return items;
+    }
+}
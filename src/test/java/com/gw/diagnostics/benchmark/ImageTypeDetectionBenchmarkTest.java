@@ -0,0 +1,127 @@
+package com.gw.diagnostics.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.imageio.ImageIO;
+
+import org.apache.tika.Tika;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gw.services.image.ImageTypeDetector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Image type detection benchmark
+ *
+ * Compares the old per-call detection (a new Tika for isHeicImage and again for isJpg,
+ * each reading the file) with the shared ImageTypeDetector reading the header once.
+ *
+ * Runs over -Dbenchmark.image.dir (e.g. a copy of image.store.dir), or over a few
+ * generated samples when not set. Plain timing loop with warmup, results are logged.
+ *
+ * mvn test -P image-type-benchmark -Dbenchmark.image.dir=/path/to/images
+ */
+public class ImageTypeDetectionBenchmarkTest {
+
+    private static final Logger logger = LogManager.getLogger(ImageTypeDetectionBenchmarkTest.class);
+
+    private static final int WARMUP_ROUNDS = Integer.getInteger("benchmark.warmup", 2);
+    private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 5);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void compareDetection() throws Exception {
+        List<File> files = getSampleFiles();
+        assertFalse(files.isEmpty(), "No sample images");
+        ImageTypeDetector detector = new ImageTypeDetector();
+
+        // Both ways must agree on what is a JPEG
+        for (File file : files) {
+            assertEquals(isJpgPerCall(file), ImageTypeDetector.JPEG.equals(detector.detect(file)), file.getName());
+        }
+
+        long perCallNanos = time(files, file -> {
+            isHeicPerCall(file);
+            isJpgPerCall(file);
+        });
+        long sharedNanos = time(files, file -> ImageTypeDetector.route(detector.detect(file)));
+
+        Map<String, Long> types = new TreeMap<>();
+        for (File file : files) {
+            types.merge(detector.detect(file), 1L, Long::sum);
+        }
+
+        logger.info("=== Image type detection benchmark ===");
+        logger.info("Files: " + files.size() + " " + types);
+        logger.info("Per-call Tika (isHeicImage + isJpg): " + perCallNanos / files.size() / 1000 + " us/file");
+        logger.info("Shared detector (one header read):   " + sharedNanos / files.size() / 1000 + " us/file");
+        logger.info(String.format("Speedup: %.1fx", (double) perCallNanos / Math.max(1, sharedNanos)));
+    }
+
+    private interface FileTask {
+        void run(File file) throws IOException;
+    }
+
+    /**
+     * Average nanos of one round over all files, after warmup
+     */
+    private long time(List<File> files, FileTask task) throws IOException {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (File file : files) {
+                task.run(file);
+            }
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (File file : files) {
+                task.run(file);
+            }
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+
+    private static boolean isHeicPerCall(File file) throws IOException {
+        String mimeType = new Tika().detect(file);
+        return mimeType != null && mimeType.startsWith("image/hei");
+    }
+
+    private static boolean isJpgPerCall(File file) throws IOException {
+        String mimeType = new Tika().detect(file);
+        return "image/jpeg".equals(mimeType) || "image/jpg".equals(mimeType);
+    }
+
+    private List<File> getSampleFiles() throws IOException {
+        String dir = System.getProperty("benchmark.image.dir");
+        if (dir != null && !dir.isEmpty()) {
+            File[] files = new File(dir).listFiles(File::isFile);
+            return files == null ? List.of() : Arrays.stream(files).sorted().collect(Collectors.toList());
+        }
+
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        File jpg = tempDir.resolve("sample-1.jpg").toFile();
+        File png = tempDir.resolve("sample-2.jpg").toFile();
+        ImageIO.write(image, "jpg", jpg);
+        ImageIO.write(image, "png", png);
+        File heic = tempDir.resolve("sample-3.jpg").toFile();
+        Files.write(heic.toPath(), "\0\0\0\u0018ftypheic\0\0\0\0mif1heic".getBytes(StandardCharsets.ISO_8859_1));
+        File html = tempDir.resolve("sample-4.jpg").toFile();
+        Files.writeString(html.toPath(), "<html><body>Not found</body></html>");
+        return List.of(jpg, png, heic, html);
+    }
+}
@@ -0,0 +1,128 @@
+package com.gw.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.gw.domain.CollectionClassifier;
+import com.gw.domain.CollectionMask;
+import com.gw.domain.FeedItem;
+import com.gw.domain.gruenbergwatches.GruenbergWatchesCollections;
+import com.gw.domain.keystone.KeyStoneCollections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the single-pass classification of feed items into the predefined collections.
+ */
+public class CollectionClassifierTest {
+
+    private static FeedItem watch(String sku, String designer, String model, String year, String price) {
+        FeedItem item = new FeedItem();
+        item.setWebTagNumber(sku);
+        item.setWebCategory("Watches");
+        item.setWebStyle("Gents");
+        item.setWebDesigner(designer);
+        item.setWebWatchModel(model);
+        item.setWebWatchYear(year);
+        item.setWebDescriptionShort(designer + " " + model + " Chronograph");
+        item.setWebPriceRetail(price);
+        item.setWebPriceKeystone(price);
+        item.setWebPriceEbay(price);
+        return item;
+    }
+
+    private static long bits(KeyStoneCollections... collections) {
+        long mask = 0;
+        for (KeyStoneCollections collection : collections) {
+            mask |= 1L << collection.ordinal();
+        }
+        return mask;
+    }
+
+    @Test
+    public void classifiesKeystoneItemInOnePass() {
+        CollectionClassifier classifier = new CollectionClassifier(KeyStoneCollections.values());
+
+        long mask = classifier.classify(watch("1", "Rolex", "GMT-Master II", "1995", "4500"));
+
+        assertEquals(bits(KeyStoneCollections.UNDER_5000, KeyStoneCollections.ROLEX,
+            KeyStoneCollections.ROLEX_SPORT_WATCHES, KeyStoneCollections.SPORT_WATCHES,
+            KeyStoneCollections.VINTAGE_WATCHES, KeyStoneCollections.CHRONOGRAPHS, KeyStoneCollections.MENS), mask);
+    }
+
+    @Test
+    public void matchesAcceptsOfEveryCollection() {
+        List<FeedItem> items = List.of(
+            watch("1", "Omega", "Speedmaster", "Current", "12000"),
+            watch("2", "Cartier", "Tank", "2008", "3000"),
+            watch("3", "Patek Philippe", "Nautilus", "abc", "90000"));
+        KeyStoneCollections[] collections = KeyStoneCollections.values();
+        CollectionClassifier classifier = new CollectionClassifier(collections);
+        for (FeedItem item : items) {
+            long expected = 0;
+            for (int i = 0; i < collections.length; i++) {
+                if (collections[i].accepts(item)) {
+                    expected |= 1L << i;
+                }
+            }
+            assertEquals(expected, classifier.classify(item), item.getWebTagNumber());
+        }
+        CollectionClassifier gruenberg = new CollectionClassifier(GruenbergWatchesCollections.values());
+        long cartier = gruenberg.classify(items.get(1));
+        assertTrue(CollectionMask.contains(cartier, GruenbergWatchesCollections.Cartier.ordinal()));
+        assertTrue(CollectionMask.contains(cartier, GruenbergWatchesCollections.UNDER_5000.ordinal()));
+        assertTrue(CollectionMask.contains(cartier, GruenbergWatchesCollections.OtherBrand.ordinal()));
+    }
+
+    @Test
+    public void classifyAllIsParallelAndKeepsOrder() {
+        CollectionClassifier classifier = new CollectionClassifier(KeyStoneCollections.values());
+        FeedItem noDesigner = watch("2", null, "Tank", "2008", "3000");
+
+        Long[] masks = classifier.classifyAll(List.of(
+            watch("1", "Rolex", "Daytona", "2019", "30000"), noDesigner, watch("3", "Heuer", "Monaco", "1970", "bad")));
+
+        assertTrue(CollectionMask.contains(masks[0], KeyStoneCollections.ROLEX.ordinal()));
+        assertNull(masks[1], "a failing rule leaves the membership unknown");
+        assertNull(masks[2], "unparseable price");
+        assertThrows(RuntimeException.class, () -> classifier.classify(noDesigner));
+    }
+
+    @Test
+    public void countsHitsPerRule() {
+        CollectionClassifier classifier = new CollectionClassifier(KeyStoneCollections.values());
+        classifier.classifyAll(List.of(
+            watch("1", "Rolex", "Daytona", "2019", "30000"),
+            watch("2", "Rolex", "Datejust", "1980", "4000"),
+            watch("3", "Omega", "Seamaster", "2001", "3000")));
+
+        Map<String, Long> hits = classifier.getHitCounts();
+        assertEquals(2L, hits.get("Rolex"));
+        assertEquals(1L, hits.get("Omega"));
+        assertEquals(1L, hits.get("Rolex Sport Watches"));
+        assertEquals(2L, hits.get("Watches Under $5,000"));
+        assertEquals(0L, hits.get("Jewelry"));
+
+        classifier.resetHitCounts();
+        assertEquals(0L, classifier.getHitCounts().get("Rolex"));
+    }
+
+    @Test
+    public void explainsEachRule() {
+        CollectionClassifier classifier = new CollectionClassifier(KeyStoneCollections.values());
+
+        List<CollectionClassifier.Explanation> explanations =
+            classifier.explain(watch("1", "Rolex", "Daytona", "2019", "n/a"));
+
+        assertEquals(KeyStoneCollections.values().length, explanations.size());
+        CollectionClassifier.Explanation rolex = explanations.get(KeyStoneCollections.ROLEX.ordinal());
+        assertTrue(rolex.isAccepted());
+        assertEquals("designer = Rolex", rolex.getRule());
+        CollectionClassifier.Explanation under5000 = explanations.get(KeyStoneCollections.UNDER_5000.ordinal());
+        assertFalse(under5000.isAccepted());
+        assertNotNull(under5000.getError());
+        assertEquals(0L, classifier.getHitCounts().get("Rolex"), "explain doesn't count hits");
+    }
+}
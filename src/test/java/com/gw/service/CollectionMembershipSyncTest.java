@@ -0,0 +1,195 @@
+package com.gw.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.domain.FeedItemChangeSet;
+import com.gw.domain.FeedItemChangeType;
+import com.gw.domain.FeedItemDao;
+import com.gw.domain.PredefinedCollection;
+import com.gw.services.FeedItemService;
+import com.gw.services.LogService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.CustomCollection;
+import com.gw.services.sync.CollectionManagementService;
+import com.gw.services.sync.SyncConfigurationService;
+
+import static com.gw.service.TestFeedItems.listedWatch;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that CollectionManagementService sends membership changes per collection,
+ * only the difference between the desired and applied collection masks, and that
+ * unapplied collections are picked up again by the next run.
+ */
+public class CollectionMembershipSyncTest {
+
+    private CollectionManagementService service;
+    private ShopifyGraphQLService shopifyGraphQLService;
+    private FeedItemService feedItemService;
+    private LogService logService;
+
+    private static PredefinedCollection brand(String designer) {
+        return new PredefinedCollection() {
+            public String getTitle() { return designer; }
+            public boolean isBrand() { return true; }
+            public boolean accepts(FeedItem feedItem) { return designer.equals(feedItem.getWebDesigner()); }
+        };
+    }
+
+    private static CustomCollection collection(String id, String title) {
+        CustomCollection collection = new CustomCollection();
+        collection.setId(id);
+        collection.setTitle(title);
+        return collection;
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        PredefinedCollection[] collections = { brand("Rolex"), brand("Omega") };
+        Map<PredefinedCollection, CustomCollection> mappings = new LinkedHashMap<>();
+        mappings.put(collections[0], collection("10", "Rolex"));
+        mappings.put(collections[1], collection("20", "Omega"));
+        SyncConfigurationService syncConfigurationService = mock(SyncConfigurationService.class);
+        when(syncConfigurationService.getPredefinedCollections()).thenReturn(collections);
+        when(syncConfigurationService.getCollectionMappings()).thenReturn(mappings);
+        feedItemService = mock(FeedItemService.class);
+        logService = mock(LogService.class);
+
+        shopifyGraphQLService = mock(ShopifyGraphQLService.class);
+        when(shopifyGraphQLService.getCollectionIdsForProducts(anyList())).thenReturn(Map.of(
+            "1", Set.of("20", "99"),
+            "2", Set.of("20"),
+            "3", Set.of()));
+
+        service = new CollectionManagementService();
+        ReflectionTestUtils.setField(service, "shopifyGraphQLService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(service, "syncConfigurationService", syncConfigurationService);
+        ReflectionTestUtils.setField(service, "feedItemService", feedItemService);
+        ReflectionTestUtils.setField(service, "logService", logService);
+    }
+
+    @Test
+    public void batchSendsOneCallPerCollectionAndDirection() throws Exception {
+        FeedItem first = listedWatch("sku-1", "1", "Rolex");
+        service.begin();
+        service.updateProductCollectionsForPipeline(first, "1");
+        service.updateProductCollectionsForPipeline(listedWatch("sku-2", "2", "Omega"), "2");
+        service.updateProductCollectionsForPipeline(listedWatch("sku-3", "3", "Rolex"), "3");
+        verifyNoInteractions(shopifyGraphQLService);
+        service.end();
+
+        verify(shopifyGraphQLService).getCollectionIdsForProducts(List.of("1", "2", "3"));
+        verify(shopifyGraphQLService).removeProductsFromCollection("20", List.of("1"));
+        verify(shopifyGraphQLService).addProductsToCollection("10", List.of("1", "3"));
+        verifyNoMoreInteractions(shopifyGraphQLService);
+        assertEquals(1L, first.getAppliedCollectionMask());
+        verify(feedItemService, times(3)).updateAutonomous(any());
+    }
+
+    @Test
+    public void failedBatchMarksTheAffectedItemsFailed() throws Exception {
+        FeedItem rolex = listedWatch("sku-1", "1", "Rolex");
+        rolex.setStatus(FeedItem.STATUS_UPDATED);
+        FeedItem omega = listedWatch("sku-2", "2", "Omega");
+        omega.setStatus(FeedItem.STATUS_UPDATED);
+        doThrow(new RuntimeException("boom")).when(shopifyGraphQLService).addProductsToCollection(eq("10"), anyList());
+
+        service.begin();
+        service.updateProductCollectionsForPipeline(rolex, "1");
+        service.updateProductCollectionsForPipeline(omega, "2");
+        service.end();
+
+        assertEquals(FeedItem.STATUS_UPDATE_FAILED, rolex.getStatus());
+        assertTrue(rolex.getSystemMessages().contains("'Rolex'"), rolex.getSystemMessages());
+        assertEquals(FeedItem.STATUS_UPDATED, omega.getStatus(), "its collections were all written");
+        verify(feedItemService).updateAutonomous(rolex);
+        verify(feedItemService).updateAutonomous(omega);
+        verify(logService, times(1)).emailError(any(), contains("sku-1"), any(), any());
+    }
+
+    @Test
+    public void batchOfAnotherThreadDoesNotQueueThisThread() throws Exception {
+        CompletableFuture.runAsync(service::begin).get();
+
+        FeedItem item = listedWatch("sku-1", "1", "Rolex");
+        item.setAppliedCollectionMask(2L);
+        service.updateProductCollections(item);
+
+        verify(shopifyGraphQLService).addProductsToCollection("10", List.of("1"));
+        assertEquals(1L, item.getAppliedCollectionMask());
+    }
+
+    @Test
+    public void appliedMaskMatchingDesiredSkipsShopify() throws Exception {
+        FeedItem item = listedWatch("sku-1", "1", "Rolex");
+        item.setAppliedCollectionMask(1L);
+        service.updateProductCollections(item);
+
+        verifyNoInteractions(shopifyGraphQLService);
+        assertEquals(1L, item.getCollectionMask());
+    }
+
+    @Test
+    public void appliedMaskSendsOnlyTheDeltaWithoutReading() throws Exception {
+        FeedItem item = listedWatch("sku-1", "1", "Rolex");
+        item.setAppliedCollectionMask(2L); // in Omega only
+        service.updateProductCollections(item);
+
+        verify(shopifyGraphQLService).removeProductsFromCollection("20", List.of("1"));
+        verify(shopifyGraphQLService).addProductsToCollection("10", List.of("1"));
+        verifyNoMoreInteractions(shopifyGraphQLService);
+        assertEquals(1L, item.getAppliedCollectionMask());
+    }
+
+    @Test
+    public void failedCollectionKeepsItsAppliedBit() throws Exception {
+        FeedItem item = listedWatch("sku-1", "1", "Rolex");
+        item.setAppliedCollectionMask(2L);
+        doThrow(new RuntimeException("boom")).when(shopifyGraphQLService).addProductsToCollection(eq("10"), anyList());
+
+        assertThrows(Exception.class, () -> service.updateProductCollections(item));
+        // Omega removal went through, Rolex addition is retried next time
+        assertEquals(0L, item.getAppliedCollectionMask());
+    }
+
+    @Test
+    public void failedCollectionIsRetriedNextRun() throws Exception {
+        FeedItem inDb = listedWatch("sku-1", "1", "Rolex");
+        inDb.setAppliedCollectionMask(0L);
+        doThrow(new RuntimeException("boom")).when(shopifyGraphQLService).addProductsToCollection(eq("10"), anyList());
+        assertThrows(Exception.class, () -> service.updateProductCollections(inDb));
+
+        // The feed hasn't changed, the unapplied Rolex bit alone brings the item back
+        FeedItemDao feedItemDao = mock(FeedItemDao.class);
+        when(feedItemDao.findByWebTagNumber("sku-1")).thenReturn(inDb);
+        when(feedItemDao.findAll()).thenReturn(List.of(inDb));
+        FeedItemService realFeedItemService = new FeedItemService();
+        ReflectionTestUtils.setField(realFeedItemService, "feedItemDao", feedItemDao);
+        FeedItemChangeSet changeSet = realFeedItemService.compareFeedItemWithDB(false, List.of(listedWatch("sku-1", "1", "Rolex")));
+
+        assertEquals(1, changeSet.getChangedItems().size());
+        assertEquals(Set.of(FeedItemChangeType.COLLECTIONS), changeSet.getChangedItems().get(0).getChangeTypes());
+
+        inDb.setAppliedCollectionMask(1L);
+        assertTrue(realFeedItemService.compareFeedItemWithDB(false, List.of(listedWatch("sku-1", "1", "Rolex"))).getChangedItems().isEmpty());
+    }
+
+    @Test
+    public void matchingProductMakesNoWrites() throws Exception {
+        service.updateProductCollections(listedWatch("sku-2", "2", "Omega"));
+
+        verify(shopifyGraphQLService).getCollectionIdsForProducts(List.of("2"));
+        verifyNoMoreInteractions(shopifyGraphQLService);
+    }
+}
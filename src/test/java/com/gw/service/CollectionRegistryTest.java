@@ -0,0 +1,83 @@
+package com.gw.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.gw.domain.PredefinedCollection;
+import com.gw.domain.keystone.KeyStoneCollections;
+import com.gw.services.shopifyapi.CollectionRegistry;
+import com.gw.services.shopifyapi.objects.CustomCollection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the collection ID / title / PredefinedCollection index.
+ */
+public class CollectionRegistryTest {
+
+    private static CustomCollection collection(String id, String title) {
+        CustomCollection collection = new CustomCollection();
+        collection.setId(id);
+        collection.setTitle(title);
+        return collection;
+    }
+
+    @Test
+    public void resolvesByIdTitleAndPredefinedCollection() {
+        CollectionRegistry registry = new CollectionRegistry();
+        registry.registerAll(Map.of(KeyStoneCollections.ROLEX, collection("10", "Rolex")));
+        registry.register(collection("99", "Summer Sale"));
+
+        assertEquals("Rolex", registry.getTitle("10"));
+        assertEquals("10", registry.getByTitle("Rolex").getId());
+        assertEquals("10", registry.get(KeyStoneCollections.ROLEX).getId());
+        assertEquals(KeyStoneCollections.ROLEX, registry.getPredefined("10"));
+        assertEquals("Summer Sale", registry.getTitle("99"));
+        assertNull(registry.getPredefined("99"));
+        assertEquals("Unknown Collection (ID: 42)", registry.getTitle("42"));
+    }
+
+    @Test
+    public void removedCollectionIsForgotten() {
+        CollectionRegistry registry = new CollectionRegistry();
+        PredefinedCollection[] collections = { KeyStoneCollections.ROLEX, KeyStoneCollections.OMEGA };
+        registry.register(KeyStoneCollections.ROLEX, collection("10", "Rolex"));
+        registry.register(KeyStoneCollections.OMEGA, collection("20", "Omega"));
+        assertTrue(registry.containsAll(collections));
+
+        registry.remove("10");
+
+        assertFalse(registry.containsAll(collections));
+        assertNull(registry.getById("10"));
+        assertNull(registry.getByTitle("Rolex"));
+        assertNull(registry.get(KeyStoneCollections.ROLEX));
+        assertEquals(List.of(KeyStoneCollections.OMEGA), List.copyOf(registry.getMappings(collections).keySet()));
+    }
+
+    @Test
+    public void recreatedCollectionReplacesTheOldId() {
+        CollectionRegistry registry = new CollectionRegistry();
+        registry.register(KeyStoneCollections.ROLEX, collection("10", "Rolex"));
+
+        registry.register(KeyStoneCollections.ROLEX, collection("11", "Rolex"));
+
+        assertEquals("11", registry.get(KeyStoneCollections.ROLEX).getId());
+        assertEquals("11", registry.getByTitle("Rolex").getId());
+        assertNull(registry.getPredefined("10"));
+        assertEquals(KeyStoneCollections.ROLEX, registry.getPredefined("11"));
+    }
+
+    @Test
+    public void listedCollectionRefreshesTitle() {
+        CollectionRegistry registry = new CollectionRegistry();
+        registry.register(KeyStoneCollections.ROLEX, collection("10", "Rolex"));
+
+        registry.register(collection("10", "Rolex Watches"));
+
+        assertEquals("Rolex Watches", registry.get(KeyStoneCollections.ROLEX).getTitle());
+        assertNull(registry.getByTitle("Rolex"));
+        assertEquals("10", registry.getByTitle("Rolex Watches").getId());
+    }
+}
@@ -0,0 +1,90 @@
+package com.gw.service;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import com.gw.domain.FeedItem;
+import com.gw.domain.FeedItemChangeType;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the field-level change classification used to route feed changes
+ * to the minimal set of update pipeline steps.
+ */
+public class FeedItemChangeTypeTest {
+
+    private FeedItem createItem() {
+        FeedItem item = new FeedItem();
+        item.setWebTagNumber("100001");
+        item.setWebStatus("Available");
+        item.setWebPriceKeystone("12500");
+        item.setWebDesigner("Rolex");
+        item.setWebWatchModel("Submariner");
+        item.setWebWatchDial("Black");
+        item.setWebWatchDiameter("40mm");
+        item.setWebMetalType("Steel");
+        item.setWebImagePath1("http://example.com/1.jpg");
+        item.setWebDescriptionShort("Rolex Submariner");
+        return item;
+    }
+
+    @Test
+    public void identicalItemsHaveNoChanges() {
+        FeedItem a = createItem();
+        FeedItem b = createItem();
+        assertTrue(a.getShopifyChangeTypes(b).isEmpty());
+        assertTrue(a.equalsForShopify(b));
+    }
+
+    @Test
+    public void priceOnlyChange() {
+        FeedItem a = createItem();
+        FeedItem b = createItem();
+        b.setWebPriceKeystone("11900");
+        assertEquals(EnumSet.of(FeedItemChangeType.PRICE), a.getShopifyChangeTypes(b));
+    }
+
+    @Test
+    public void ignoredPriceFieldsProduceNoChange() {
+        FeedItem a = createItem();
+        FeedItem b = createItem();
+        b.setWebPriceRetail("99999");
+        b.setWebPriceWholesale("88888");
+        assertTrue(a.getShopifyChangeTypes(b).isEmpty());
+    }
+
+    @Test
+    public void statusOnlyChange() {
+        FeedItem a = createItem();
+        FeedItem b = createItem();
+        b.setWebStatus("SOLD");
+        assertEquals(EnumSet.of(FeedItemChangeType.STATUS), a.getShopifyChangeTypes(b));
+    }
+
+    @Test
+    public void imageOnlyChange() {
+        FeedItem a = createItem();
+        FeedItem b = createItem();
+        b.setWebImagePath2("http://example.com/2.jpg");
+        assertEquals(EnumSet.of(FeedItemChangeType.IMAGES), a.getShopifyChangeTypes(b));
+    }
+
+    @Test
+    public void optionFieldChangeAlsoUpdatesDescriptionAndMetadata() {
+        FeedItem a = createItem();
+        FeedItem b = createItem();
+        b.setWebWatchDial("Blue");
+        assertEquals(EnumSet.of(FeedItemChangeType.OPTIONS, FeedItemChangeType.BASIC_INFO, FeedItemChangeType.METADATA),
+                a.getShopifyChangeTypes(b));
+    }
+
+    @Test
+    public void changeTypesAgreeWithEqualsForShopify() {
+        FeedItem a = createItem();
+        FeedItem b = createItem();
+        b.setWebWatchBezelType("Fluted");
+        assertFalse(a.equalsForShopify(b));
+        assertEquals(EnumSet.of(FeedItemChangeType.METADATA), a.getShopifyChangeTypes(b));
+    }
+}
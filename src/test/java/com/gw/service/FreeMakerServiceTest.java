@@ -0,0 +1,94 @@
+package com.gw.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.FreeMakerService;
+
+import static com.gw.service.TestFeedItems.watchItem;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that FreeMakerService renders each distinct item content only once.
+ */
+public class FreeMakerServiceTest {
+
+    private FreeMakerService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = new FreeMakerService();
+        ReflectionTestUtils.setField(service, "descriptionBodyTemplateFileName", "keystone.ftl");
+        ReflectionTestUtils.setField(service, "renderCacheSize", 100);
+        service.init();
+    }
+
+    @Test
+    public void unchangedItemIsRenderedOnce() throws Exception {
+        String first = service.generateFromTemplate(watchItem("1001", "Rolex", "Submariner"));
+        String second = service.generateFromTemplate(watchItem("1001", "Rolex", "Submariner"));
+
+        assertEquals(first, second);
+        assertTrue(first.contains("Submariner"));
+        assertEquals(1, service.getRenderCount());
+        assertEquals(1, service.getCacheHitCount());
+    }
+
+    @Test
+    public void changedItemIsRenderedAgain() throws Exception {
+        FeedItem item = watchItem("1001", "Rolex", "Submariner");
+        service.generateFromTemplate(item);
+        item.setWebWatchModel("Daytona");
+        String changed = service.generateFromTemplate(item);
+
+        assertTrue(changed.contains("Daytona"));
+        assertEquals(2, service.getRenderCount());
+    }
+
+    @Test
+    public void changedHostingUrlIsRenderedAgain() throws Exception {
+        FeedItem item = watchItem("1001", "Rolex", "Submariner");
+        // Fields ebay-watch.ftl requires
+        item.setWebDescriptionShort("Rolex Submariner");
+        item.setWebStyle("Sport");
+        item.setWebMetalType("Steel");
+        item.setWebNotes("");
+        item.setWebWatchBoxPapers("Box");
+        item.setWebWatchCondition("Excellent");
+        item.setWebWatchDial("Black");
+        item.setWebWatchDiameter("40mm");
+        item.setWebWatchManufacturerReferenceNumber("116610");
+        item.setWebWatchYear("2015");
+        item.setWebWatchStrap("Oyster");
+        item.setCssHostingBaseUrl("http://old.example.com");
+        service.generateFromTemplate("ebay-watch.ftl", item);
+        item.setCssHostingBaseUrl("http://new.example.com");
+        String changed = service.generateFromTemplate("ebay-watch.ftl", item);
+
+        assertTrue(changed.contains("http://new.example.com/newitem.css"));
+        assertFalse(changed.contains("http://old.example.com"));
+        assertEquals(2, service.getRenderCount());
+    }
+
+    @Test
+    public void templatesAreCachedSeparately() throws Exception {
+        FeedItem item = watchItem("1001", "Rolex", "Submariner");
+        service.generateFromTemplate(item);
+        service.generateFromTemplate("shopify.ftl", item);
+
+        assertEquals(2, service.getRenderCount());
+    }
+
+    @Test
+    public void disabledCacheAlwaysRenders() throws Exception {
+        ReflectionTestUtils.setField(service, "renderCacheSize", 0);
+        FeedItem item = watchItem("1001", "Rolex", "Submariner");
+        service.generateFromTemplate(item);
+        service.generateFromTemplate(item);
+
+        assertEquals(2, service.getRenderCount());
+        assertEquals(0, service.getCacheHitCount());
+    }
+}
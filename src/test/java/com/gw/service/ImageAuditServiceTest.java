@@ -0,0 +1,95 @@
+package com.gw.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.FeedItemService;
+import com.gw.services.ImageAuditService;
+import com.gw.services.ImageService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductMediaCount;
+import com.gw.services.sync.ProductImageSyncService;
+
+import static com.gw.service.TestFeedItems.imageItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the ImageAuditService over stubbed media count pages.
+ */
+public class ImageAuditServiceTest {
+
+    private ImageAuditService service;
+    private ShopifyGraphQLService shopifyApiService;
+    private ProductImageSyncService productImageSyncService;
+    private FeedItem complete;
+    private FeedItem missingTwo;
+    private FeedItem extra;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        complete = imageItem("1001", 2);
+        missingTwo = imageItem("1002", 3);
+        extra = imageItem("1003", 1);
+
+        shopifyApiService = mock(ShopifyGraphQLService.class);
+        doAnswer(inv -> {
+            Consumer<List<ProductMediaCount>> consumer = inv.getArgument(1);
+            consumer.accept(List.of(new ProductMediaCount("1", "1001", 2), new ProductMediaCount("2", "1002", 1)));
+            consumer.accept(List.of(new ProductMediaCount("3", "1003", 2), new ProductMediaCount("4", null, 0),
+                new ProductMediaCount("5", "9999", 1)));
+            return null;
+        }).when(shopifyApiService).streamProductMediaCounts(anyInt(), any(Consumer.class));
+
+        FeedItemService feedItemService = mock(FeedItemService.class);
+        when(feedItemService.getFeedItemBySkuMap()).thenReturn(Map.of("1001", complete, "1002", missingTwo, "1003", extra));
+
+        ImageService imageService = mock(ImageService.class);
+        when(imageService.handleImageProcessing(any(), anyString())).thenReturn(ImageService.ImageProcessingResult.success());
+        productImageSyncService = mock(ProductImageSyncService.class);
+
+        service = new ImageAuditService();
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+        ReflectionTestUtils.setField(service, "concurrency", 2);
+        ReflectionTestUtils.setField(service, "repairConcurrency", 2);
+        ReflectionTestUtils.setField(service, "shopifyApiService", shopifyApiService);
+        ReflectionTestUtils.setField(service, "feedItemService", feedItemService);
+        ReflectionTestUtils.setField(service, "imageService", imageService);
+        ReflectionTestUtils.setField(service, "productImageSyncService", productImageSyncService);
+    }
+
+    @Test
+    public void reportsMismatchesWithoutRepairing() throws Exception {
+        ImageAuditService.ImageAuditReport report = service.audit(false);
+
+        assertEquals(3, report.getProductsAnalyzed());
+        assertEquals(1, report.getProductsWithCorrectImages());
+        assertEquals(1, report.getProductsWithoutSku());
+        assertEquals(1, report.getProductsWithoutFeedItem());
+        assertEquals(1, report.getMissingImages().size());
+        assertEquals("1002", report.getMissingImages().get(0).getSku());
+        assertEquals(2, report.getMissingImages().get(0).getMissing());
+        assertEquals(1, report.getExtraImages().size());
+        assertEquals(6, report.getTotalExpectedImages());
+        assertEquals(5, report.getTotalActualImages());
+        verifyNoInteractions(productImageSyncService);
+    }
+
+    @Test
+    public void repairsOnlyProductsWithMissingImages() throws Exception {
+        ImageAuditService.ImageAuditReport report = service.audit(true);
+
+        verify(productImageSyncService).syncImages(missingTwo, "2", true);
+        verifyNoMoreInteractions(productImageSyncService);
+        assertEquals(1, report.getRepaired());
+        assertEquals(0, report.getRepairFailed());
+    }
+}
@@ -0,0 +1,107 @@
+package com.gw.service;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.services.image.ImageDownloader;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the ImageDownloader against a local stub image server.
+ */
+public class ImageDownloaderTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final byte[] IMAGE = "not really a jpeg".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private ImageDownloader downloader;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/image.jpg", exchange -> {
+            requests.incrementAndGet();
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", "Sun, 18 Oct 2026 09:15:00 GMT");
+            exchange.sendResponseHeaders(200, IMAGE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(IMAGE);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/image.jpg";
+
+        downloader = new ImageDownloader();
+        ReflectionTestUtils.setField(downloader, "concurrency", 2);
+        ReflectionTestUtils.setField(downloader, "maxPerHost", 2);
+        ReflectionTestUtils.setField(downloader, "timeoutMs", 5000);
+        downloader.init();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        downloader.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsWithSingleRequestAndKeepsValidators() throws Exception {
+        File target = tempDir.resolve("1001-1.jpg").toFile();
+
+        ImageDownloader.Result result = downloader.submit(url, target, null, null).join();
+
+        assertEquals(1, requests.get());
+        assertTrue(result.isModified());
+        assertArrayEquals(IMAGE, Files.readAllBytes(target.toPath()));
+        assertEquals(ETAG, result.getEtag());
+        assertEquals("Sun, 18 Oct 2026 09:15:00 GMT", result.getLastModified());
+        assertNotNull(result.getSha256());
+    }
+
+    @Test
+    public void notModifiedKeepsLocalFile() throws Exception {
+        File target = tempDir.resolve("1001-1.jpg").toFile();
+        Files.write(target.toPath(), IMAGE);
+
+        ImageDownloader.Result result = downloader.download(url, target, ETAG, null);
+
+        assertEquals(1, requests.get());
+        assertFalse(result.isModified());
+        assertEquals(ETAG, result.getEtag());
+        assertArrayEquals(IMAGE, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void validatorsIgnoredWhenTargetMissing() throws Exception {
+        File target = tempDir.resolve("1001-2.jpg").toFile();
+
+        ImageDownloader.Result result = downloader.download(url, target, ETAG, null);
+
+        assertTrue(result.isModified());
+        assertTrue(target.exists());
+    }
+}
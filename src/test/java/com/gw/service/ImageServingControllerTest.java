@@ -0,0 +1,112 @@
+package com.gw.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.gw.services.image.ImageServingController;
+import com.gw.services.image.ImageTypeDetector;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Exercises the embedded image endpoint with MockMvc on a temporary image store.
+ */
+public class ImageServingControllerTest {
+
+    private static final byte[] IMAGE = "0123456789abcdefghij".getBytes();
+
+    @TempDir
+    Path tempDir;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.write(tempDir.resolve("1001-1.jpg"), IMAGE);
+
+        ImageServingController controller = new ImageServingController();
+        ReflectionTestUtils.setField(controller, "imageStore", tempDir.toString());
+        ReflectionTestUtils.setField(controller, "maxAgeSeconds", 3600L);
+        ReflectionTestUtils.setField(controller, "imageTypeDetector", new ImageTypeDetector());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void servesImageWithValidators() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/images/watches/1001-1.jpg")).andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(IMAGE, response.getContentAsByteArray());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals(IMAGE.length, response.getContentLength());
+        assertNotNull(response.getHeader("ETag"));
+        assertFalse(response.getHeader("ETag").startsWith("W/"));
+        assertNotNull(response.getHeader("Last-Modified"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+    }
+
+    @Test
+    public void servesStoredPngAsPng() throws Exception {
+        byte[] png = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 0 };
+        Files.write(tempDir.resolve("1001-2.jpg"), png);
+
+        MockHttpServletResponse response = mockMvc.perform(get("/images/watches/1001-2.jpg")).andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("image/png", response.getContentType());
+    }
+
+    @Test
+    public void answersNotModifiedForCurrentEtag() throws Exception {
+        String etag = mockMvc.perform(get("/images/watches/1001-1.jpg")).andReturn().getResponse().getHeader("ETag");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/images/watches/1001-1.jpg")
+            .header("If-None-Match", etag)).andReturn().getResponse();
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void servesByteRanges() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/images/watches/1001-1.jpg")
+            .header("Range", "bytes=5-9")).andReturn().getResponse();
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 5-9/20", response.getHeader("Content-Range"));
+        assertEquals("56789", response.getContentAsString());
+
+        response = mockMvc.perform(get("/images/watches/1001-1.jpg")
+            .header("Range", "bytes=-3")).andReturn().getResponse();
+        assertEquals("hij", response.getContentAsString());
+
+        response = mockMvc.perform(get("/images/watches/1001-1.jpg")
+            .header("Range", "bytes=50-")).andReturn().getResponse();
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    public void staleIfRangeGetsWholeImage() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/images/watches/1001-1.jpg")
+            .header("Range", "bytes=5-9").header("If-Range", "\"stale\"")).andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(IMAGE, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void rejectsUnknownAndUnsafeNames() throws Exception {
+        assertEquals(404, mockMvc.perform(get("/images/watches/1001-9.jpg")).andReturn().getResponse().getStatus());
+        assertEquals(404, mockMvc.perform(get("/images/watches/..%2F1001-1.jpg")).andReturn().getResponse().getStatus());
+        assertEquals(404, mockMvc.perform(get("/images/watches/1001-1.png")).andReturn().getResponse().getStatus());
+    }
+}
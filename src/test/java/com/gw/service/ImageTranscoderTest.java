@@ -0,0 +1,104 @@
+package com.gw.service;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.services.image.ImageTranscoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the ImageTranscoder on generated images and checks the output size and quality search.
+ */
+public class ImageTranscoderTest {
+
+    private static final long MAX_BYTES = 100 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private ImageTranscoder transcoder;
+
+    @BeforeEach
+    public void setUp() {
+        transcoder = new ImageTranscoder();
+        ReflectionTestUtils.setField(transcoder, "maxBytes", MAX_BYTES);
+        ReflectionTestUtils.setField(transcoder, "maxEdge", 0);
+        ReflectionTestUtils.setField(transcoder, "minQuality", 0.1f);
+        ReflectionTestUtils.setField(transcoder, "maxQuality", 0.9f);
+        ReflectionTestUtils.setField(transcoder, "searchSteps", 6);
+        ReflectionTestUtils.setField(transcoder, "threads", 2);
+        transcoder.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transcoder.shutdown();
+    }
+
+    private File noisyImage(String name, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Gradient plus noise, compresses like a photo rather than pure noise
+                int base = (x + y) * 255 / (width + height);
+                image.setRGB(x, y, ((base + random.nextInt(40)) & 0xff) << 16 | (base & 0xff) << 8 | (random.nextInt(60) & 0xff));
+            }
+        }
+        File file = tempDir.resolve(name).toFile();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    @Test
+    public void shrinksLargeImageUnderTarget() throws Exception {
+        File file = noisyImage("1001-1.jpg", 800, 800);
+        long originalBytes = file.length();
+        assertTrue(originalBytes > MAX_BYTES);
+
+        ImageTranscoder.Result result = transcoder.submit(file).join();
+
+        assertTrue(result.isTranscoded());
+        assertTrue(file.length() <= MAX_BYTES);
+        assertEquals(file.length(), result.getFinalBytes());
+        assertEquals(originalBytes - file.length(), result.getBytesSaved());
+        assertNotNull(result.getSha256());
+        BufferedImage decoded = ImageIO.read(file);
+        assertEquals(800, decoded.getWidth());
+        assertEquals(1, transcoder.getTranscodedCount());
+    }
+
+    @Test
+    public void downscalesToMaxEdge() throws Exception {
+        ReflectionTestUtils.setField(transcoder, "maxEdge", 400);
+        File file = noisyImage("1001-2.jpg", 1000, 500);
+
+        transcoder.transcode(file);
+
+        BufferedImage decoded = ImageIO.read(file);
+        assertEquals(400, decoded.getWidth());
+        assertEquals(200, decoded.getHeight());
+    }
+
+    @Test
+    public void leavesSmallImageAlone() throws Exception {
+        File file = noisyImage("1001-3.jpg", 50, 50);
+        long originalBytes = file.length();
+
+        ImageTranscoder.Result result = transcoder.transcode(file);
+
+        assertFalse(result.isTranscoded());
+        assertEquals(originalBytes, file.length());
+    }
+}
@@ -0,0 +1,61 @@
+package com.gw.service;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.gw.services.image.ImageTypeDetector;
+import com.gw.services.image.ImageTypeDetector.Route;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies magic byte detection and the format route chosen for each image type.
+ */
+public class ImageTypeDetectorTest {
+
+    private final ImageTypeDetector detector = new ImageTypeDetector();
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] isoBox(String brand) {
+        byte[] header = new byte[16];
+        byte[] ftyp = ("ftyp" + brand).getBytes(StandardCharsets.US_ASCII);
+        header[3] = 0x18;
+        System.arraycopy(ftyp, 0, header, 4, ftyp.length);
+        return header;
+    }
+
+    @Test
+    public void detectsFeedFormats() {
+        assertEquals(ImageTypeDetector.JPEG, detector.detect(bytes(0xFF, 0xD8, 0xFF, 0xE0, 0, 0x10)));
+        assertEquals(ImageTypeDetector.PNG, detector.detect(bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)));
+        assertEquals(ImageTypeDetector.GIF, detector.detect("GIF89a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(ImageTypeDetector.WEBP, detector.detect("RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(ImageTypeDetector.HEIC, detector.detect(isoBox("heic")));
+        assertEquals(ImageTypeDetector.HEIF, detector.detect(isoBox("mif1")));
+    }
+
+    @Test
+    public void fallsBackToTikaForOtherContent() {
+        String mimeType = detector.detect("<html><body>Not found</body></html>".getBytes(StandardCharsets.US_ASCII));
+        assertEquals("text/html", mimeType);
+        assertEquals(Route.REJECT, ImageTypeDetector.route(mimeType));
+    }
+
+    @Test
+    public void routesByType() {
+        assertEquals(Route.PASSTHROUGH, ImageTypeDetector.route(ImageTypeDetector.JPEG));
+        assertEquals(Route.PASSTHROUGH, ImageTypeDetector.route(ImageTypeDetector.PNG));
+        assertEquals(Route.CONVERT, ImageTypeDetector.route(ImageTypeDetector.HEIC));
+        assertEquals(Route.CONVERT, ImageTypeDetector.route(ImageTypeDetector.HEIF));
+        assertEquals(Route.REJECT, ImageTypeDetector.route("application/octet-stream"));
+        assertEquals(Route.REJECT, ImageTypeDetector.route(null));
+    }
+}
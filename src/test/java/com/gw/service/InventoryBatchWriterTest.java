@@ -0,0 +1,185 @@
+package com.gw.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.InventoryLevel;
+import com.gw.services.sync.InventoryBatchWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies when the InventoryBatchWriter flushes, that quantity errors of a multi-item
+ * inventorySetQuantities call fail only the SKU they belong to and that batches of
+ * different threads don't mix.
+ */
+public class InventoryBatchWriterTest {
+
+    private InventoryBatchWriter writer;
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    private static List<InventoryLevel> levels(String inventoryItemId, int locations) {
+        List<InventoryLevel> levels = new ArrayList<>();
+        for (int i = 0; i < locations; i++) {
+            InventoryLevel level = new InventoryLevel();
+            level.setInventoryItemId(inventoryItemId);
+            level.setLocationId("loc-" + i);
+            level.setAvailable("0");
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        shopifyGraphQLService = mock(ShopifyGraphQLService.class);
+        when(shopifyGraphQLService.setInventoryQuantities(anyList())).thenReturn(Map.of());
+
+        writer = new InventoryBatchWriter();
+        ReflectionTestUtils.setField(writer, "shopifyGraphQLService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(writer, "batchSize", 4);
+        ReflectionTestUtils.setField(writer, "flushLatencyMs", 60_000L);
+    }
+
+    @Test
+    public void writesOutsideBatchAreSentImmediately() throws Exception {
+        CompletableFuture<Void> result = writer.write("A", levels("1", 2));
+
+        assertTrue(result.isDone());
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(anyList());
+    }
+
+    @Test
+    public void flushesWhenBatchSizeIsReached() throws Exception {
+        writer.begin();
+        CompletableFuture<Void> first = writer.write("A", levels("1", 2));
+        verify(shopifyGraphQLService, never()).setInventoryQuantities(anyList());
+        assertFalse(first.isDone());
+
+        CompletableFuture<Void> second = writer.write("B", levels("2", 2));
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(argThat(list -> list.size() == 4));
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+
+        assertTrue(writer.end().isEmpty());
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(anyList());
+    }
+
+    @Test
+    public void flushesWhenOldestWriteExceedsLatency() throws Exception {
+        ReflectionTestUtils.setField(writer, "flushLatencyMs", 50L);
+        writer.begin();
+        CompletableFuture<Void> result = writer.write("A", levels("1", 1));
+
+        writer.flushIfDue();
+        assertFalse(result.isDone());
+
+        Thread.sleep(100);
+        writer.flushIfDue();
+        assertTrue(result.isDone());
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(anyList());
+
+        assertTrue(writer.end().isEmpty());
+    }
+
+    @Test
+    public void mapsQuantityErrorsBackToTheirSku() throws Exception {
+        // Levels are sent in write order: A -> 0,1  B -> 2  C -> 3,4
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        when(shopifyGraphQLService.setInventoryQuantities(anyList())).thenReturn(Map.of(
+            2, "Location not found",
+            4, "Quantity invalid")).thenReturn(Map.of());
+
+        writer.begin();
+        CompletableFuture<Void> a = writer.write("A", levels("1", 2));
+        CompletableFuture<Void> b = writer.write("B", levels("2", 1));
+        CompletableFuture<Void> c = writer.write("C", levels("3", 2));
+        Map<String, Throwable> failures = writer.end();
+
+        // Nothing of a rejected call is applied, A is sent again on its own
+        verify(shopifyGraphQLService, times(2)).setInventoryQuantities(anyList());
+        verify(shopifyGraphQLService).setInventoryQuantities(argThat(list -> list.size() == 2));
+        assertTrue(a.isDone());
+        assertFalse(a.isCompletedExceptionally());
+        assertTrue(b.isCompletedExceptionally());
+        assertTrue(c.isCompletedExceptionally());
+        assertEquals(List.of("B", "C"), new ArrayList<>(failures.keySet()));
+        assertTrue(failures.get("B").getMessage().contains("Location not found"));
+        assertTrue(failures.get("C").getMessage().contains("Quantity invalid"));
+    }
+
+    @Test
+    public void unattributedErrorsFailEveryWrite() throws Exception {
+        when(shopifyGraphQLService.setInventoryQuantities(anyList())).thenReturn(Map.of(7, "Out of range"));
+
+        writer.begin();
+        writer.write("A", levels("1", 1));
+        writer.write("B", levels("2", 1));
+        Map<String, Throwable> failures = writer.end();
+
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(anyList());
+        assertEquals(List.of("A", "B"), new ArrayList<>(failures.keySet()));
+    }
+
+    @Test
+    public void batchesOfOtherThreadsAreIndependent() throws Exception {
+        // Stubbed up front, the other thread may flush any time after mainEnded
+        when(shopifyGraphQLService.setInventoryQuantities(anyList())).thenAnswer(inv -> {
+            List<InventoryLevel> sent = inv.getArgument(0);
+            return "1".equals(sent.get(0).getInventoryItemId()) ? Map.of(0, "Location not found") : Map.of();
+        });
+        CountDownLatch otherBegun = new CountDownLatch(1);
+        CountDownLatch mainEnded = new CountDownLatch(1);
+        CompletableFuture<Map<String, Throwable>> other = CompletableFuture.supplyAsync(() -> {
+            writer.begin();
+            writer.write("X", levels("9", 1));
+            otherBegun.countDown();
+            try {
+                mainEnded.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return writer.end();
+        });
+        otherBegun.await();
+
+        writer.begin();
+        CompletableFuture<Void> a = writer.write("A", levels("1", 1));
+        Map<String, Throwable> failures = writer.end();
+        mainEnded.countDown();
+
+        // The open batch of the other thread neither keeps this end() from flushing nor gets flushed by it
+        assertTrue(a.isCompletedExceptionally());
+        assertEquals(List.of("A"), new ArrayList<>(failures.keySet()));
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(argThat(list ->
+            list.size() == 1 && "1".equals(list.get(0).getInventoryItemId())));
+
+        assertTrue(other.get(5, TimeUnit.SECONDS).isEmpty());
+        verify(shopifyGraphQLService, times(2)).setInventoryQuantities(anyList());
+    }
+
+    @Test
+    public void failedCallFailsEveryWriteOfTheBatch() throws Exception {
+        when(shopifyGraphQLService.setInventoryQuantities(anyList())).thenThrow(new RuntimeException("Throttled"));
+
+        writer.begin();
+        writer.write("A", levels("1", 1));
+        writer.write("B", levels("2", 1));
+        Map<String, Throwable> failures = writer.end();
+
+        assertEquals(2, failures.size());
+        assertEquals("Throttled", failures.get("A").getMessage());
+        assertEquals("Throttled", failures.get("B").getMessage());
+    }
+}
@@ -0,0 +1,108 @@
+package com.gw.service;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.ImageService;
+import com.gw.services.image.ImageManifest;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.Image;
+import com.gw.services.sync.ProductImageSyncService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that ProductImageSyncService only uploads and deletes the media that changed.
+ */
+public class ProductImageSyncServiceTest {
+
+    private ProductImageSyncService service;
+    private ShopifyGraphQLService shopifyGraphQLService;
+    private ImageService imageService;
+    private FeedItem item;
+
+    @BeforeEach
+    public void setUp() {
+        shopifyGraphQLService = mock(ShopifyGraphQLService.class);
+        imageService = mock(ImageService.class);
+        when(imageService.getExternalImagePathByCSS(anyString(), anyInt())).thenAnswer(
+            inv -> "http://css/" + inv.getArgument(0) + "-" + inv.getArgument(1) + ".jpg");
+        when(imageService.getCorrectedImageUrl(anyString())).thenAnswer(inv -> inv.getArgument(0));
+
+        service = new ProductImageSyncService();
+        ReflectionTestUtils.setField(service, "shopifyGraphQLService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(service, "imageService", imageService);
+
+        item = new FeedItem();
+        item.setWebTagNumber("1001");
+    }
+
+    private ImageManifest.Entry uploaded(ImageManifest manifest, int slot, String sha256, String mediaId) {
+        ImageManifest.Entry entry = manifest.putSlot(slot, "http://src/" + slot + ".jpg", sha256);
+        entry.setMediaId(mediaId);
+        entry.setMediaKey(sha256);
+        return entry;
+    }
+
+    private Image media(String id) {
+        Image image = new Image();
+        image.setId(id);
+        return image;
+    }
+
+    @Test
+    public void unchangedImagesMakeNoCalls() throws Exception {
+        ImageManifest manifest = new ImageManifest("1001");
+        uploaded(manifest, 1, "aaa", "m1");
+        uploaded(manifest, 2, "bbb", "m2");
+        when(imageService.getImageManifest(item)).thenReturn(manifest);
+        when(shopifyGraphQLService.getImagesByProduct("555")).thenReturn(List.of(media("m1"), media("m2")));
+
+        service.syncImages(item, "555", true);
+
+        verify(shopifyGraphQLService, never()).addImagesToProduct(anyString(), anyList());
+        verify(shopifyGraphQLService, never()).deleteMediaByIds(anyString(), anyList());
+        verify(shopifyGraphQLService, never()).reorderMedia(anyString(), anyList());
+    }
+
+    @Test
+    public void changedSlotIsReplacedAndReordered() throws Exception {
+        ImageManifest manifest = new ImageManifest("1001");
+        uploaded(manifest, 1, "aaa", "m1");
+        uploaded(manifest, 2, "bbb", "m2").setSha256("ccc");
+        when(imageService.getImageManifest(item)).thenReturn(manifest);
+        when(shopifyGraphQLService.getImagesByProduct("555")).thenReturn(List.of(media("m1"), media("m2")));
+        when(shopifyGraphQLService.addImagesToProduct(eq("555"), anyList())).thenReturn(List.of("m3"));
+
+        service.syncImages(item, "555", true);
+
+        verify(shopifyGraphQLService).deleteMediaByIds("555", List.of("m2"));
+        verify(shopifyGraphQLService).addImagesToProduct(eq("555"), argThat(images -> images.size() == 1));
+        verify(shopifyGraphQLService).reorderMedia("555", List.of("m1", "m3"));
+        verify(imageService).saveImageManifest(manifest);
+        assertEquals("m3", manifest.getSlot(2).getMediaId());
+        assertTrue(manifest.getSlot(2).isUploaded());
+    }
+
+    @Test
+    public void newProductUploadsAllSlots() throws Exception {
+        ImageManifest manifest = new ImageManifest("1001");
+        manifest.putSlot(1, "http://src/1.jpg", "aaa");
+        manifest.putSlot(2, "http://src/2.jpg", "bbb");
+        when(imageService.getImageManifest(item)).thenReturn(manifest);
+        when(shopifyGraphQLService.addImagesToProduct(eq("555"), anyList())).thenReturn(List.of("m1", "m2"));
+
+        service.syncImages(item, "555", false);
+
+        verify(shopifyGraphQLService, never()).getImagesByProduct(anyString());
+        verify(shopifyGraphQLService, never()).reorderMedia(anyString(), anyList());
+        assertEquals("m1", manifest.getSlot(1).getMediaId());
+        assertEquals("m2", manifest.getSlot(2).getMediaId());
+    }
+}
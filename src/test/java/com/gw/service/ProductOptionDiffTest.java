@@ -0,0 +1,89 @@
+package com.gw.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.gw.services.shopifyapi.ProductOptionDiff;
+import com.gw.services.shopifyapi.objects.Option;
+
+import static com.gw.service.TestFeedItems.optionItem;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that ProductOptionDiff only asks for the option changes that are needed.
+ */
+public class ProductOptionDiffTest {
+
+    private static Option option(String id, String name, int position, String value, String valueId) {
+        Option option = new Option();
+        option.setId(id);
+        option.setName(name);
+        option.setPosition(String.valueOf(position));
+        option.setValues(List.of(value));
+        option.setValueIds(valueId == null ? List.of() : List.of(valueId));
+        return option;
+    }
+
+    private final List<Option> current = List.of(
+        option("1", "Color", 1, "Black", "11"),
+        option("2", "Size", 2, "40mm", "21"),
+        option("3", "Material", 3, "Steel", "31"));
+
+    @Test
+    public void unchangedOptionsNeedNoMutation() {
+        assertTrue(ProductOptionDiff.compute(current, optionItem("Black", "40mm", "Steel")).isEmpty());
+    }
+
+    @Test
+    public void changedValueIsRenamedInPlace() {
+        ProductOptionDiff diff = ProductOptionDiff.compute(current, optionItem("Blue", "40mm", "Steel"));
+
+        assertTrue(diff.getOptionIdsToDelete().isEmpty());
+        assertTrue(diff.getOptionsToCreate().isEmpty());
+        assertEquals(1, diff.getOptionsToUpdate().size());
+        ProductOptionDiff.OptionUpdate update = diff.getOptionsToUpdate().get(0);
+        assertEquals("gid://shopify/ProductOption/1", update.getOption().get("id"));
+        assertFalse(update.getOption().containsKey("position"));
+        assertEquals(List.of(Map.of("id", "gid://shopify/ProductOptionValue/11", "name", "Blue")), update.getValuesToUpdate());
+    }
+
+    @Test
+    public void removedAndAddedOptions() {
+        List<Option> colorAndMaterial = List.of(option("1", "Color", 1, "Black", "11"), option("3", "Material", 2, "Steel", "31"));
+
+        ProductOptionDiff removed = ProductOptionDiff.compute(colorAndMaterial, optionItem("Black", null, null));
+        assertEquals(List.of("gid://shopify/ProductOption/3"), removed.getOptionIdsToDelete());
+        assertTrue(removed.getOptionsToUpdate().isEmpty());
+        assertTrue(removed.getOptionsToCreate().isEmpty());
+
+        ProductOptionDiff added = ProductOptionDiff.compute(colorAndMaterial, optionItem("Black", "40mm", "Steel"));
+        assertTrue(added.getOptionIdsToDelete().isEmpty());
+        assertTrue(added.getOptionsToUpdate().isEmpty());
+        assertEquals(1, added.getOptionsToCreate().size());
+        assertEquals("Size", added.getOptionsToCreate().get(0).get("name"));
+        assertEquals(2, added.getOptionsToCreate().get(0).get("position"));
+    }
+
+    @Test
+    public void defaultTitleOptionIsReplacedOnlyWhenOptionsAreWanted() {
+        List<Option> defaultOnly = List.of(option("9", "Title", 1, "Default Title", "91"));
+
+        assertTrue(ProductOptionDiff.compute(defaultOnly, optionItem(null, null, null)).isEmpty());
+
+        ProductOptionDiff diff = ProductOptionDiff.compute(defaultOnly, optionItem("Black", null, "Steel"));
+        assertEquals(List.of("gid://shopify/ProductOption/9"), diff.getOptionIdsToDelete());
+        assertEquals(2, diff.getOptionsToCreate().size());
+    }
+
+    @Test
+    public void outOfOrderOptionIsMoved() {
+        List<Option> swapped = List.of(option("2", "Size", 1, "40mm", "21"), option("1", "Color", 2, "Black", "11"));
+
+        ProductOptionDiff diff = ProductOptionDiff.compute(swapped, optionItem("Black", "40mm", null));
+
+        assertEquals(2, diff.getOptionsToUpdate().size());
+        assertTrue(diff.getOptionsToUpdate().stream().allMatch(update -> update.getValuesToUpdate().isEmpty()));
+    }
+}
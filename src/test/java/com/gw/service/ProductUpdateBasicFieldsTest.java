@@ -0,0 +1,104 @@
+package com.gw.service;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.domain.FeedItemChangeType;
+import com.gw.services.product.ProductCreationService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.Metafield;
+import com.gw.services.shopifyapi.objects.Product;
+import com.gw.services.sync.ProductUpdatePipeline;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that the update pipeline skips productUpdate when the basic fields digest is unchanged.
+ */
+public class ProductUpdateBasicFieldsTest {
+
+    private ProductUpdatePipeline pipeline;
+    private ShopifyGraphQLService shopifyGraphQLService;
+    private Product existing;
+    private FeedItem item;
+    private String title;
+
+    @BeforeEach
+    public void setUp() {
+        shopifyGraphQLService = mock(ShopifyGraphQLService.class);
+        ProductCreationService productCreationService = mock(ProductCreationService.class);
+        doAnswer(inv -> {
+            Product product = inv.getArgument(0);
+            product.setTitle(title);
+            product.setBodyHtml("<p>Rolex   Submariner</p>\n");
+            product.setVendor("Rolex");
+            product.setTags("Rolex, Submariner");
+            return null;
+        }).when(productCreationService).setBasicProductInfo(any(), any());
+
+        pipeline = new ProductUpdatePipeline();
+        ReflectionTestUtils.setField(pipeline, "shopifyGraphQLService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(pipeline, "productCreationService", productCreationService);
+
+        existing = new Product();
+        existing.setId("555");
+        when(shopifyGraphQLService.getProductByProductId("555")).thenReturn(existing);
+
+        item = new FeedItem();
+        item.setWebTagNumber("1001");
+        item.setShopifyItemId("555");
+        title = "Rolex Submariner";
+    }
+
+    private Product runBasicUpdate() throws Exception {
+        assertTrue(pipeline.executeUpdate(item, EnumSet.of(FeedItemChangeType.BASIC_INFO)).isSuccess());
+        ArgumentCaptor<Product> sent = ArgumentCaptor.forClass(Product.class);
+        verify(shopifyGraphQLService, atMost(1)).updateProduct(sent.capture());
+        return sent.getAllValues().isEmpty() ? null : sent.getValue();
+    }
+
+    private Metafield storedDigest(Product sent) {
+        return sent.getMetafields().stream().filter(m -> "basic_fields_digest".equals(m.getKey())).findFirst().orElseThrow();
+    }
+
+    @Test
+    public void firstUpdateWritesFieldsWithDigest() throws Exception {
+        Product sent = runBasicUpdate();
+
+        assertNotNull(sent);
+        assertEquals("Rolex Submariner", sent.getTitle());
+        assertEquals(64, storedDigest(sent).getValue().length());
+    }
+
+    @Test
+    public void unchangedFieldsSkipUpdate() throws Exception {
+        Product sent = runBasicUpdate();
+        when(shopifyGraphQLService.getProductMetafieldValue("555", "keystone", "basic_fields_digest"))
+            .thenReturn(storedDigest(sent).getValue());
+        clearInvocations(shopifyGraphQLService);
+
+        assertNull(runBasicUpdate());
+        verify(shopifyGraphQLService, never()).updateProduct(any());
+    }
+
+    @Test
+    public void changedTitleIsUpdated() throws Exception {
+        Product sent = runBasicUpdate();
+        when(shopifyGraphQLService.getProductMetafieldValue("555", "keystone", "basic_fields_digest"))
+            .thenReturn(storedDigest(sent).getValue());
+        clearInvocations(shopifyGraphQLService);
+        title = "Rolex Submariner Date";
+
+        Product resent = runBasicUpdate();
+        assertNotNull(resent);
+        assertEquals("Rolex Submariner Date", resent.getTitle());
+        assertNotEquals(storedDigest(sent).getValue(), storedDigest(resent).getValue());
+    }
+}
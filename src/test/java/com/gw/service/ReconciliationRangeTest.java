@@ -0,0 +1,282 @@
+package com.gw.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.domain.ListingKey;
+import com.gw.domain.SkuMerkleTree;
+import com.gw.services.FeedItemService;
+import com.gw.services.IFeedService;
+import com.gw.services.ReconciliationService;
+import com.gw.services.ReconciliationService.ProductDiscrepancy;
+import com.gw.services.ReconciliationService.ReconciliationAnalysis;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductMediaCount;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductSku;
+import com.gw.services.shopifyapi.SkuIdIndex;
+import com.gw.services.shopifyapi.objects.Product;
+import com.gw.services.shopifyapi.objects.Variant;
+
+import static com.gw.service.TestFeedItems.feedItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies the SKU range hashes and that reconciliation analysis only looks into the
+ * ranges where Shopify and the DB differ. Sources are read concurrently and a missing
+ * one makes the analysis incomplete.
+ */
+public class ReconciliationRangeTest {
+
+    private ReconciliationService service;
+    private ShopifyGraphQLService shopifyGraphQLService;
+    private FeedItemService feedItemService;
+    private IFeedService feedService;
+    private List<ProductMediaCount> shopify;
+    private List<ListingKey> db;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        shopify = new ArrayList<>();
+        db = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            shopify.add(new ProductMediaCount("p" + i, "sku" + i, 3, "Watch " + i));
+            db.add(new ListingKey("sku" + i, "p" + i, 3));
+        }
+
+        shopifyGraphQLService = mock(ShopifyGraphQLService.class);
+        doAnswer(invocation -> {
+            Consumer<List<ProductMediaCount>> consumer = invocation.getArgument(1);
+            for (int start = 0; start < shopify.size(); start += 250) {
+                consumer.accept(shopify.subList(start, Math.min(shopify.size(), start + 250)));
+            }
+            return null;
+        }).when(shopifyGraphQLService).streamProductMediaCounts(anyInt(), any(Consumer.class));
+        feedItemService = mock(FeedItemService.class);
+        when(feedItemService.getListingKeys()).thenAnswer(invocation -> db);
+        feedService = mock(IFeedService.class);
+        when(feedService.getItemsFromFeed()).thenAnswer(invocation ->
+            db.stream().map(key -> feedItem(key.getSku())).toList());
+
+        service = new ReconciliationService();
+        ReflectionTestUtils.setField(service, "shopifyApiService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(service, "feedItemService", feedItemService);
+        ReflectionTestUtils.setField(service, "feedService", feedService);
+        ReflectionTestUtils.setField(service, "merkleEnabled", true);
+        ReflectionTestUtils.setField(service, "merkleDepth", 6);
+        ReflectionTestUtils.setField(service, "maxToDeleteCount", 100);
+        ReflectionTestUtils.setField(service, "sourceTimeoutSeconds", 30L);
+        ReflectionTestUtils.setField(service, "analysisTimeoutSeconds", 30L);
+    }
+
+    @Test
+    public void treeFindsOnlyTheChangedRanges() {
+        SkuMerkleTree left = new SkuMerkleTree(6);
+        SkuMerkleTree right = new SkuMerkleTree(6);
+        for (int i = 0; i < 1000; i++) {
+            left.add(new ListingKey("sku" + i, "p" + i, 2));
+        }
+        // Other order, same entries
+        for (int i = 999; i >= 0; i--) {
+            right.add(new ListingKey("sku" + i, i == 42 ? "other" : "p" + i, 2));
+        }
+
+        assertEquals(List.of(right.rangeOf("sku42")), left.diff(right));
+        assertTrue(left.getLastComparisons() <= 2 * 6 + 1, "one path down the tree");
+
+        right.add(new ListingKey("sku42", "p42", 2));
+        left.add(new ListingKey("sku42", "other", 2));
+        assertEquals(List.of(), left.diff(right), "same entries, added in another order");
+        left.add(new ListingKey("sku42", "p42", 2));
+        assertEquals(List.of(right.rangeOf("sku42")), left.diff(right), "a duplicate entry is a difference");
+    }
+
+    @Test
+    public void catalogInSyncComparesNoEntries() {
+        ReconciliationAnalysis analysis = service.analyzeDiscrepancies();
+
+        assertFalse(analysis.hasDiscrepancies());
+        assertEquals(0, analysis.getDifferingRangeCount());
+        assertEquals(64, analysis.getRangeCount());
+        assertEquals(500, analysis.getTotalProductsInShopify());
+        verify(feedItemService, never()).getFeedItemBySkuMap();
+        verify(feedItemService, never()).findByWebTagNumber(anyString());
+        verify(shopifyGraphQLService, never()).getAllProducts();
+        verify(shopifyGraphQLService, never()).unlistDupeListings();
+    }
+
+    @Test
+    public void differingRangesAreReportedEntryByEntry() throws Exception {
+        shopify.set(10, new ProductMediaCount("p10", "sku10", 1, "Watch 10"));
+        shopify.set(20, new ProductMediaCount("p20-new", "sku20", 3, "Watch 20"));
+        shopify.add(new ProductMediaCount("p30-dupe", "sku30", 3, "Watch 30"));
+        shopify.add(new ProductMediaCount("p900", "sku900", 3, "Not in DB"));
+        shopify.add(new ProductMediaCount("p901", null, 0, "No SKU"));
+        db.remove(40);
+        db.add(new ListingKey("sku1000", "p1000", 2));
+        FeedItem sold = feedItem("sku1000");
+        sold.setWebDescriptionShort("Sold watch");
+        when(feedItemService.findByWebTagNumber("sku1000")).thenReturn(sold);
+        when(feedService.getItemsFromFeed()).thenReturn(List.of(feedItem("sku1"), feedItem("sku2000")));
+
+        ReconciliationAnalysis analysis = service.analyzeDiscrepancies();
+
+        assertEquals(List.of("IMAGE_COUNT_MISMATCH:sku10"), describe(analysis.getImageCountMismatches()));
+        assertEquals(List.of("MISMATCHED_SHOPIFY_ID:sku20"), describe(analysis.getMismatchedShopifyIds()));
+        assertEquals(List.of("EXTRA_IN_DB:sku1000"), describe(analysis.getExtraInDB()));
+        assertEquals("Sold watch", analysis.getExtraInDB().get(0).getDetails().get("title"));
+        List<String> extraInShopify = describe(analysis.getExtraInShopify());
+        assertEquals(4, extraInShopify.size(), extraInShopify.toString());
+        assertTrue(extraInShopify.containsAll(List.of(
+            "EXTRA_IN_SHOPIFY:sku30", "EXTRA_IN_SHOPIFY:sku40", "EXTRA_IN_SHOPIFY:sku900", "EXTRA_IN_SHOPIFY:null")));
+        assertTrue(analysis.getDifferingRangeCount() < analysis.getRangeCount());
+        verify(feedItemService, times(1)).findByWebTagNumber(anyString());
+
+        assertEquals(1, analysis.getNewInFeedCount());
+        assertEquals(499, analysis.getMissingFromFeedCount());
+    }
+
+    @Test
+    public void sourcesAreReadConcurrently() throws Exception {
+        when(feedItemService.getListingKeys()).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return db;
+        });
+        when(feedService.getItemsFromFeed()).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return db.stream().map(key -> feedItem(key.getSku())).toList();
+        });
+
+        long start = System.currentTimeMillis();
+        ReconciliationAnalysis analysis = service.analyzeDiscrepancies();
+
+        assertTrue(analysis.isComplete());
+        assertFalse(analysis.hasDiscrepancies());
+        assertTrue(System.currentTimeMillis() - start < 950, "DB and feed waited for together");
+    }
+
+    @Test
+    public void missingSourceMakesAnalysisIncomplete() {
+        ReflectionTestUtils.setField(service, "sourceTimeoutSeconds", 1L);
+        when(feedItemService.getListingKeys()).thenAnswer(invocation -> {
+            Thread.sleep(10_000);
+            return db;
+        });
+        shopify.set(10, new ProductMediaCount("p10", "sku10", 1, "Watch 10"));
+
+        ReconciliationAnalysis analysis = service.analyzeDiscrepancies();
+
+        assertFalse(analysis.isComplete());
+        assertFalse(analysis.hasDiscrepancies(), "nothing compared against a missing source");
+        assertTrue(analysis.getErrors().get(0).startsWith("DB items"), analysis.getErrors().toString());
+        assertEquals(500, analysis.getTotalProductsInShopify());
+
+        when(feedItemService.getListingKeys()).thenThrow(new IllegalStateException("DB down"));
+        assertFalse(service.performReconciliation(true).isSuccess(), "not even forced on an incomplete analysis");
+        verify(shopifyGraphQLService, never()).deleteProductByIdOrLogFailure(anyString());
+    }
+
+    @Test
+    public void slowSourceLeavesThePhasesTheirOwnTime() {
+        ReflectionTestUtils.setField(service, "sourceTimeoutSeconds", 1L);
+        ReflectionTestUtils.setField(service, "analysisTimeoutSeconds", 1L);
+        when(feedItemService.getListingKeys()).thenAnswer(invocation -> {
+            Thread.sleep(700);
+            return db;
+        });
+        when(feedItemService.findByWebTagNumber("sku40")).thenAnswer(invocation -> {
+            Thread.sleep(600);
+            return feedItem("sku40");
+        });
+        shopify.remove(40);
+
+        ReconciliationAnalysis analysis = service.analyzeDiscrepancies();
+
+        assertTrue(analysis.isComplete(), analysis.getErrors().toString());
+        assertEquals(List.of("EXTRA_IN_DB:sku40"), describe(analysis.getExtraInDB()));
+    }
+
+    @Test
+    public void reconciliationWorksFromTheSkuIndex() throws Exception {
+        shopify.add(new ProductMediaCount("p900", "sku900", 3, "Not in DB"));
+        db.remove(40);
+        SkuIdIndex index = new SkuIdIndex();
+        shopify.forEach(product -> index.add(new ProductSku(product.getProductId(), product.getSku(), null)));
+        when(shopifyGraphQLService.unlistDupeListingIds()).thenReturn(index);
+        Map<String, FeedItem> dbBySku = new HashMap<>();
+        for (ListingKey key : db) {
+            FeedItem item = feedItem(key.getSku());
+            item.setShopifyItemId(key.getShopifyId());
+            dbBySku.put(key.getSku(), item);
+        }
+        FeedItem notListed = feedItem("sku1000");
+        dbBySku.put("sku1000", notListed);
+        when(feedItemService.getFeedItemBySkuMap()).thenReturn(dbBySku);
+
+        assertTrue(service.performReconciliation(true).isSuccess());
+
+        verify(shopifyGraphQLService).deleteProductByIdOrLogFailure("p900");
+        verify(shopifyGraphQLService).deleteProductByIdOrLogFailure("p40");
+        verify(shopifyGraphQLService, times(2)).deleteProductByIdOrLogFailure(anyString());
+        verify(feedItemService).deleteAutonomous(notListed);
+        verify(feedItemService, never()).updateAutonomous(any());
+        verify(shopifyGraphQLService, never()).unlistDupeListings();
+    }
+
+    @Test
+    public void fullScanReportsDuplicatesWithoutDeleting() throws Exception {
+        ReflectionTestUtils.setField(service, "merkleEnabled", false);
+        List<Product> products = new ArrayList<>();
+        Map<String, FeedItem> dbBySku = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            products.add(product("p" + i, "sku" + i));
+            dbBySku.put("sku" + i, feedItem("sku" + i));
+        }
+        products.add(product("p9", "sku1"));
+        products.add(product("p10", null));
+        when(shopifyGraphQLService.getAllProducts()).thenReturn(products);
+        when(feedItemService.getFeedItemBySkuMap()).thenReturn(dbBySku);
+        // Image counts come from the media counts, like in the range analysis
+        shopify.clear();
+        shopify.add(new ProductMediaCount("p0", "sku0", 12, "Watch 0"));
+        shopify.add(new ProductMediaCount("p1", "sku1", 0, "Watch 1"));
+        shopify.add(new ProductMediaCount("p2", "sku2", 0, "Watch 2"));
+
+        ReconciliationAnalysis analysis = service.analyzeDiscrepancies();
+
+        assertTrue(analysis.isComplete(), analysis.getErrors().toString());
+        assertEquals(3, analysis.getTotalProductsInShopify());
+        assertEquals(List.of("EXTRA_IN_SHOPIFY:sku1", "EXTRA_IN_SHOPIFY:null"), describe(analysis.getExtraInShopify()));
+        assertEquals("p1", analysis.getExtraInShopify().get(0).getDetails().get("keptProductId"));
+        assertEquals("p9", analysis.getExtraInShopify().get(0).getShopifyId());
+        assertEquals(List.of("IMAGE_COUNT_MISMATCH:sku0"), describe(analysis.getImageCountMismatches()));
+        assertEquals(12, analysis.getImageCountMismatches().get(0).getDetails().get("shopifyImageCount"));
+        verify(shopifyGraphQLService, never()).unlistDupeListings();
+        verify(shopifyGraphQLService, never()).unlistDupeListingIds();
+        verify(shopifyGraphQLService, never()).deleteProductByIdOrLogFailure(anyString());
+    }
+
+    private static Product product(String id, String sku) {
+        Variant variant = new Variant();
+        variant.setSku(sku);
+        Product product = new Product();
+        product.setId(id);
+        product.setTitle("Watch " + id);
+        product.setVariants(List.of(variant));
+        return product;
+    }
+
+    private static List<String> describe(List<ProductDiscrepancy> discrepancies) {
+        return discrepancies.stream().map(d -> d.getDiscrepancyType() + ":" + d.getSku()).toList();
+    }
+}
@@ -0,0 +1,119 @@
+package com.gw.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.services.shopifyapi.ShopifyCostThrottle;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.ShopifyStagedUploader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs staged image uploads against a local stub of the Shopify GraphQL endpoint and
+ * the staged upload storage.
+ */
+public class ShopifyStagedUploaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private String baseUrl;
+    private final List<String> graphQLRequests = new CopyOnWriteArrayList<>();
+    private final List<String> uploads = new CopyOnWriteArrayList<>();
+    private ShopifyStagedUploader uploader;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/admin/api/2025-04/graphql.json", exchange -> {
+            graphQLRequests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            respond(exchange, 200, """
+                {"data":{"stagedUploadsCreate":{"stagedTargets":[
+                  {"url":"%1$s/upload","resourceUrl":"%1$s/upload/a","parameters":[{"name":"key","value":"tmp/a.jpg"},{"name":"policy","value":"p"}]},
+                  {"url":"%1$s/upload","resourceUrl":"%1$s/upload/b","parameters":[{"name":"key","value":"tmp/b.jpg"},{"name":"policy","value":"p"}]}
+                ],"userErrors":[]}}}
+                """.formatted(baseUrl));
+        });
+        server.createContext("/upload", exchange -> {
+            uploads.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1));
+            respond(exchange, 204, null);
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        ShopifyGraphQLService shopifyGraphQLService = new ShopifyGraphQLService();
+        ReflectionTestUtils.setField(shopifyGraphQLService, "shopifyStoreUrl", baseUrl);
+        ReflectionTestUtils.setField(shopifyGraphQLService, "apiVersion", "2025-04");
+        ReflectionTestUtils.setField(shopifyGraphQLService, "shopifyAccessToken", "test-token");
+        ReflectionTestUtils.setField(shopifyGraphQLService, "costThrottle", new ShopifyCostThrottle());
+
+        uploader = new ShopifyStagedUploader();
+        ReflectionTestUtils.setField(uploader, "shopifyGraphQLService", shopifyGraphQLService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void uploadsLocalFilesToStagedTargets() throws Exception {
+        File first = tempDir.resolve("1001-1.jpg").toFile();
+        File second = tempDir.resolve("1001-2.jpg").toFile();
+        Files.writeString(first.toPath(), "first image bytes");
+        Files.writeString(second.toPath(), "second image bytes");
+
+        List<String> resourceUrls = uploader.upload(List.of(first, second), List.of("image/jpeg", "image/png"));
+
+        assertEquals(List.of(baseUrl + "/upload/a", baseUrl + "/upload/b"), resourceUrls);
+        assertEquals(1, graphQLRequests.size());
+        assertTrue(graphQLRequests.get(0).contains("\"filename\":\"1001-1.jpg\""));
+        assertTrue(graphQLRequests.get(0).contains("\"mimeType\":\"image/jpeg\""));
+        // A PNG stored under the local .jpg name is staged with its own type and extension
+        assertTrue(graphQLRequests.get(0).contains("\"filename\":\"1001-2.png\""));
+        assertTrue(graphQLRequests.get(0).contains("\"mimeType\":\"image/png\""));
+
+        assertEquals(2, uploads.size());
+        String firstForm = uploads.get(0);
+        assertTrue(firstForm.contains("tmp/a.jpg"));
+        assertTrue(firstForm.contains("first image bytes"));
+        assertTrue(firstForm.contains("Content-Type: image/jpeg"));
+        // Policy parameters must come before the file
+        assertTrue(firstForm.indexOf("name=\"key\"") < firstForm.indexOf("name=\"file\""));
+        String secondForm = uploads.get(1);
+        assertTrue(secondForm.contains("second image bytes"));
+        assertTrue(secondForm.contains("filename=\"1001-2.png\""));
+        assertTrue(secondForm.contains("Content-Type: image/png"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.gw.service;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.gw.services.shopifyapi.ShopifyGraphQLService.ProductSku;
+import com.gw.services.shopifyapi.SkuIdIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the single pass SKU -> product ID index used for duplicate sweeps.
+ */
+public class SkuIdIndexTest {
+
+    @Test
+    public void firstProductOfASkuIsKept() {
+        SkuIdIndex index = new SkuIdIndex();
+        index.addAll(List.of(
+            new ProductSku("1", "A", "2026-01-01T00:00:00Z"),
+            new ProductSku("2", "B", "2026-01-02T00:00:00Z")));
+        index.addAll(List.of(
+            new ProductSku("3", "A", "2026-02-01T00:00:00Z"),
+            new ProductSku("4", "A", "2026-03-01T00:00:00Z")));
+
+        assertEquals(2, index.size());
+        assertEquals("1", index.getId("A"));
+        assertEquals("A", index.getSku("1"));
+        assertEquals("2026-01-01T00:00:00Z", index.getUpdatedAt("A"));
+        assertNull(index.getSku("3"));
+        assertEquals(List.of("3", "4"), index.getDuplicates().stream().map(ProductSku::getProductId).toList());
+    }
+
+    @Test
+    public void productsWithoutSkuAreNotIndexed() {
+        SkuIdIndex index = new SkuIdIndex();
+
+        assertFalse(index.add(new ProductSku("1", null, null)));
+        assertFalse(index.add(new ProductSku("2", "", null)));
+        assertTrue(index.add(new ProductSku("3", "C", null)));
+
+        assertEquals(2, index.getWithoutSku().size());
+        assertTrue(index.getDuplicates().isEmpty());
+        assertFalse(index.containsSku(""));
+        assertTrue(index.containsSku("C"));
+    }
+}
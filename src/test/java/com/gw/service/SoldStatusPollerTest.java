@@ -0,0 +1,122 @@
+package com.gw.service;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.FeedItem;
+import com.gw.services.FeedItemService;
+import com.gw.services.SoldStatusPoller;
+import com.gw.services.sync.SoldStatusService;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the SoldStatusPoller against a local stub of the FileMaker XML endpoint.
+ */
+public class SoldStatusPollerTest {
+
+    private HttpServer server;
+    private final AtomicReference<String> response = new AtomicReference<>();
+    private SoldStatusPoller poller;
+    private FeedItemService feedItemService;
+    private SoldStatusService soldStatusService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/fmi/xml/fmresultset.xml", exchange -> {
+            byte[] body = response.get().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        feedItemService = mock(FeedItemService.class);
+        soldStatusService = mock(SoldStatusService.class);
+
+        poller = new SoldStatusPoller();
+        ReflectionTestUtils.setField(poller, "enabled", true);
+        ReflectionTestUtils.setField(poller, "soldStatusUrl",
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/fmi/xml/fmresultset.xml?-db=DEG&-lay=WEB_STATUS&-findall");
+        ReflectionTestUtils.setField(poller, "stampField", "web_modified_timestamp");
+        ReflectionTestUtils.setField(poller, "stampFormat", "MM/dd/yyyy HH:mm:ss");
+        ReflectionTestUtils.setField(poller, "zone", "America/Los_Angeles");
+        ReflectionTestUtils.setField(poller, "feedItemService", feedItemService);
+        ReflectionTestUtils.setField(poller, "soldStatusService", soldStatusService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private String layout(String... skuAndStatus) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        xml.append("<fmresultset xmlns=\"http://www.filemaker.com/xml/fmresultset\" version=\"1.0\">");
+        xml.append("<resultset count=\"").append(skuAndStatus.length / 2).append("\">");
+        for (int i = 0; i < skuAndStatus.length; i += 2) {
+            xml.append("<record record-id=\"").append(i).append("\">");
+            xml.append("<field name=\"web_tag_number\"><data>").append(skuAndStatus[i]).append("</data></field>");
+            xml.append("<field name=\"web_status\"><data>").append(skuAndStatus[i + 1]).append("</data></field>");
+            xml.append("<field name=\"web_modified_timestamp\"><data>10/18/2026 09:15:00</data></field>");
+            xml.append("</record>");
+        }
+        xml.append("</resultset></fmresultset>");
+        return xml.toString();
+    }
+
+    @Test
+    public void firstPollOnlyRecordsState() throws Exception {
+        response.set(layout("1001", "Available", "1002", "SOLD"));
+        assertTrue(poller.fetchNewlySold().isEmpty());
+    }
+
+    @Test
+    public void detectsTransitionToSold() throws Exception {
+        response.set(layout("1001", "Available", "1002", "Available"));
+        poller.fetchNewlySold();
+
+        response.set(layout("1001", "SOLD", "1002", "Available"));
+        List<SoldStatusPoller.StatusRecord> sold = poller.fetchNewlySold();
+        assertEquals(1, sold.size());
+        assertEquals("1001", sold.get(0).getWebTagNumber());
+
+        // Same state again - no new transitions
+        assertTrue(poller.fetchNewlySold().isEmpty());
+    }
+
+    @Test
+    public void pollZeroesInventoryAndRecordsStatus() throws Exception {
+        FeedItem item = new FeedItem();
+        item.setWebTagNumber("1001");
+        item.setWebStatus("Available");
+        item.setShopifyItemId("555");
+        when(feedItemService.findByWebTagNumber("1001")).thenReturn(item);
+        when(soldStatusService.zeroInventory(anyList(), anyLong())).thenReturn(Set.of("1001"));
+
+        response.set(layout("1001", "Available"));
+        poller.poll();
+        verify(soldStatusService, never()).zeroInventory(anyList(), anyLong());
+
+        response.set(layout("1001", "SOLD"));
+        poller.poll();
+        verify(soldStatusService).zeroInventory(eq(List.of(item)), anyLong());
+        verify(feedItemService).updateWebStatusAutonomous("1001", "SOLD");
+        verify(feedItemService, never()).updateAutonomous(any());
+    }
+}
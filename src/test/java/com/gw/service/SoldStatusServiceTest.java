@@ -0,0 +1,104 @@
+package com.gw.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.ShopifyGraphQLService.InventoryLevelsBySku;
+import com.gw.services.shopifyapi.objects.InventoryLevel;
+import com.gw.services.sync.InventoryBatchWriter;
+import com.gw.services.sync.SoldStatusService;
+
+import static com.gw.service.TestFeedItems.listedItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the sold hot lane: inventory lookups per batch of SKUs, zero writes for the
+ * locations still in stock and which SKUs end up confirmed at 0.
+ */
+public class SoldStatusServiceTest {
+
+    private SoldStatusService service;
+    private ShopifyGraphQLService shopifyGraphQLService;
+
+    private static InventoryLevelsBySku levels(String sku, String productId, String... available) {
+        List<InventoryLevel> levels = new ArrayList<>();
+        for (int i = 0; i < available.length; i++) {
+            InventoryLevel level = new InventoryLevel();
+            level.setInventoryItemId("inv-" + sku);
+            level.setLocationId("loc-" + i);
+            level.setAvailable(available[i]);
+            levels.add(level);
+        }
+        return new InventoryLevelsBySku(sku, productId, levels);
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        shopifyGraphQLService = mock(ShopifyGraphQLService.class);
+        when(shopifyGraphQLService.setInventoryQuantities(anyList())).thenReturn(Map.of());
+
+        InventoryBatchWriter inventoryBatchWriter = new InventoryBatchWriter();
+        ReflectionTestUtils.setField(inventoryBatchWriter, "shopifyGraphQLService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(inventoryBatchWriter, "batchSize", 250);
+        ReflectionTestUtils.setField(inventoryBatchWriter, "flushLatencyMs", 60_000L);
+
+        service = new SoldStatusService();
+        ReflectionTestUtils.setField(service, "shopifyGraphQLService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(service, "inventoryBatchWriter", inventoryBatchWriter);
+        ReflectionTestUtils.setField(service, "lookupBatchSize", 2);
+    }
+
+    @Test
+    public void zeroesStockedLocationsInOneBatchedWrite() throws Exception {
+        when(shopifyGraphQLService.getInventoryLevelsBySkus(List.of("A", "B"))).thenReturn(Map.of(
+            "A", levels("A", "1", "1", "0"),
+            "B", levels("B", "2", "0")));
+        when(shopifyGraphQLService.getInventoryLevelsBySkus(List.of("C"))).thenReturn(Map.of(
+            "C", levels("C", "3", "1", "2")));
+
+        Set<String> zeroed = service.zeroInventory(
+            List.of(listedItem("A", "1"), listedItem("B", "2"), listedItem("C", "3")), System.currentTimeMillis());
+
+        assertEquals(Set.of("A", "B", "C"), zeroed);
+        verify(shopifyGraphQLService, times(2)).getInventoryLevelsBySkus(anyList());
+        // B is already at 0; only the stocked locations of A and C are written, in one call
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(argThat(levels ->
+            levels.size() == 3 && levels.stream().allMatch(level -> "0".equals(level.getAvailable()))));
+        assertEquals(2, service.getLatencyStats().getCount());
+    }
+
+    @Test
+    public void skipsVariantsOfOtherProductsAndFailedWrites() throws Exception {
+        when(shopifyGraphQLService.getInventoryLevelsBySkus(List.of("A", "B"))).thenReturn(Map.of(
+            "A", levels("A", "1", "1"),
+            "B", levels("B", "99", "1")));
+        when(shopifyGraphQLService.setInventoryQuantities(anyList())).thenReturn(Map.of(0, "Location not found"));
+
+        Set<String> zeroed = service.zeroInventory(List.of(listedItem("A", "1"), listedItem("B", "2")), System.currentTimeMillis());
+
+        assertTrue(zeroed.isEmpty());
+        verify(shopifyGraphQLService, times(1)).setInventoryQuantities(argThat(levels -> levels.size() == 1));
+        assertEquals(0, service.getLatencyStats().getCount());
+    }
+
+    @Test
+    public void lookupFailureLeavesTheOtherBatchesAlone() throws Exception {
+        when(shopifyGraphQLService.getInventoryLevelsBySkus(List.of("A", "B"))).thenThrow(new RuntimeException("Throttled"));
+        when(shopifyGraphQLService.getInventoryLevelsBySkus(List.of("C"))).thenReturn(Map.of(
+            "C", levels("C", "3", "1")));
+
+        Set<String> zeroed = service.zeroInventory(
+            List.of(listedItem("A", "1"), listedItem("B", "2"), listedItem("C", "3")), System.currentTimeMillis());
+
+        assertEquals(Set.of("C"), zeroed);
+    }
+}
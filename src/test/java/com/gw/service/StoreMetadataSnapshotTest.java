@@ -0,0 +1,139 @@
+package com.gw.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gw.domain.EbayMetafieldDefinition;
+import com.gw.domain.PredefinedCollection;
+import com.gw.domain.StoreMetadataSnapshot;
+import com.gw.domain.StoreMetadataSnapshotDao;
+import com.gw.domain.keystone.KeyStoneCollections;
+import com.gw.services.shopifyapi.CollectionRegistry;
+import com.gw.services.shopifyapi.ShopifyGraphQLService;
+import com.gw.services.shopifyapi.objects.CustomCollection;
+import com.gw.services.shopifyapi.objects.Location;
+import com.gw.services.sync.StoreMetadataSnapshotService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that the store metadata snapshot is reused only while the store and the
+ * required configuration are unchanged.
+ */
+public class StoreMetadataSnapshotTest {
+
+    private static final PredefinedCollection[] COLLECTIONS = { KeyStoneCollections.ROLEX, KeyStoneCollections.OMEGA };
+
+    private StoreMetadataSnapshotService service;
+    private ShopifyGraphQLService shopifyGraphQLService;
+    private StoreMetadataSnapshotDao snapshotDao;
+    private CollectionRegistry registry;
+    // What the store answers to nodes(), by GID
+    private Map<String, String> storeLabels;
+
+    private static CustomCollection collection(String id, String title) {
+        CustomCollection collection = new CustomCollection();
+        collection.setId(id);
+        collection.setTitle(title);
+        return collection;
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        storeLabels = new HashMap<>();
+        storeLabels.put("gid://shopify/Collection/10", "Rolex");
+        storeLabels.put("gid://shopify/Collection/20", "Omega");
+        storeLabels.put("gid://shopify/Location/7", "Shop");
+        storeLabels.put("gid://shopify/Publication/3", "Online Store");
+        storeLabels.put("count:locations", "1");
+        storeLabels.put("count:publications", "1");
+        List<Map<String, String>> definitions = new ArrayList<>();
+        int id = 100;
+        for (String key : EbayMetafieldDefinition.getAllKeys()) {
+            definitions.add(Map.of("id", String.valueOf(id), "key", key, "namespace", "ebay"));
+            storeLabels.put("gid://shopify/MetafieldDefinition/" + id++, "ebay." + key);
+        }
+
+        Location location = new Location();
+        location.setId("7");
+        location.setName("Shop");
+        shopifyGraphQLService = mock(ShopifyGraphQLService.class);
+        when(shopifyGraphQLService.getStoreUrl()).thenReturn("https://test.myshopify.com");
+        when(shopifyGraphQLService.getMetafieldDefinitions("ebay")).thenReturn(definitions);
+        when(shopifyGraphQLService.getAllLocations()).thenReturn(List.of(location));
+        when(shopifyGraphQLService.getAllPublications()).thenReturn(List.of(Map.of("id", "3", "name", "Online Store")));
+        when(shopifyGraphQLService.getStoreMetadataLabels(anyList())).thenAnswer(invocation -> {
+            Map<String, String> labels = new LinkedHashMap<>();
+            for (String gid : invocation.<List<String>>getArgument(0)) {
+                if (storeLabels.containsKey(gid)) {
+                    labels.put(gid, storeLabels.get(gid));
+                }
+            }
+            labels.put("count:locations", storeLabels.get("count:locations"));
+            labels.put("count:publications", storeLabels.get("count:publications"));
+            return labels;
+        });
+
+        snapshotDao = mock(StoreMetadataSnapshotDao.class);
+        registry = new CollectionRegistry();
+        service = new StoreMetadataSnapshotService();
+        ReflectionTestUtils.setField(service, "snapshotDao", snapshotDao);
+        ReflectionTestUtils.setField(service, "shopifyGraphQLService", shopifyGraphQLService);
+        ReflectionTestUtils.setField(service, "collectionRegistry", registry);
+        ReflectionTestUtils.setField(service, "enabled", true);
+
+        Map<PredefinedCollection, CustomCollection> mappings = new LinkedHashMap<>();
+        mappings.put(KeyStoneCollections.ROLEX, collection("10", "Rolex"));
+        mappings.put(KeyStoneCollections.OMEGA, collection("20", "Omega"));
+        service.capture(mappings, COLLECTIONS);
+        ArgumentCaptor<StoreMetadataSnapshot> saved = ArgumentCaptor.forClass(StoreMetadataSnapshot.class);
+        verify(snapshotDao).save(saved.capture());
+        when(snapshotDao.find("https://test.myshopify.com")).thenReturn(saved.getValue());
+    }
+
+    @Test
+    public void unchangedStoreRestoresFromSnapshot() {
+        Map<PredefinedCollection, CustomCollection> restored = service.restore(COLLECTIONS);
+
+        assertNotNull(restored);
+        assertEquals("10", restored.get(KeyStoneCollections.ROLEX).getId());
+        assertEquals("20", restored.get(KeyStoneCollections.OMEGA).getId());
+        assertEquals("Omega", registry.getTitle("20"));
+        verify(shopifyGraphQLService).primeMetadataCache(eq(ShopifyGraphQLService.LOCATIONS_CACHE), eq("all"), anyList());
+        verify(shopifyGraphQLService).primeMetadataCache(eq(ShopifyGraphQLService.PUBLICATIONS_CACHE), eq("all"), anyList());
+        verify(shopifyGraphQLService, never()).getAllCustomCollections();
+    }
+
+    @Test
+    public void renamedOrDeletedObjectInvalidatesSnapshot() {
+        storeLabels.put("gid://shopify/Collection/10", "Rolex Watches");
+        assertNull(service.restore(COLLECTIONS));
+
+        storeLabels.put("gid://shopify/Collection/10", "Rolex");
+        storeLabels.remove("gid://shopify/MetafieldDefinition/100");
+        assertNull(service.restore(COLLECTIONS));
+    }
+
+    @Test
+    public void addedLocationInvalidatesSnapshot() {
+        storeLabels.put("count:locations", "2");
+
+        assertNull(service.restore(COLLECTIONS));
+    }
+
+    @Test
+    public void otherRequiredCollectionsIgnoreSnapshot() {
+        assertNull(service.restore(new PredefinedCollection[] { KeyStoneCollections.ROLEX }));
+        assertNull(service.restore(new PredefinedCollection[] { KeyStoneCollections.OMEGA, KeyStoneCollections.ROLEX }));
+    }
+}
@@ -0,0 +1,83 @@
+package com.gw.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gw.services.shopifyapi.TaxonomyIndex;
+import com.gw.services.shopifyapi.TaxonomyIndex.Category;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the local product taxonomy index: lookups, search and the index file.
+ */
+public class TaxonomyIndexTest {
+
+    private static final String GID = "gid://shopify/TaxonomyCategory/";
+
+    private static TaxonomyIndex index() {
+        return new TaxonomyIndex("2025-04", System.currentTimeMillis(), List.of(
+            new Category(GID + "aa", "Apparel & Accessories", "Apparel & Accessories", null, 1, false),
+            new Category(GID + "aa-6", "Jewelry", "Apparel & Accessories > Jewelry", GID + "aa", 2, false),
+            new Category(GID + "aa-6-11", "Watches", "Apparel & Accessories > Jewelry > Watches", GID + "aa-6", 3, true),
+            new Category(GID + "aa-6-12", "Watch Accessories", "Apparel & Accessories > Jewelry > Watch Accessories", GID + "aa-6", 3, false),
+            new Category(GID + "aa-6-12-1", "Watch Straps", "Apparel & Accessories > Jewelry > Watch Accessories > Watch Straps", GID + "aa-6-12", 4, true),
+            new Category(GID + "hg", "Home & Garden", "Home & Garden", null, 1, false),
+            new Category(GID + "hg-1", "Clocks", "Home & Garden > Clocks", GID + "hg", 2, true)));
+    }
+
+    @Test
+    public void resolvesParentsChildrenAndRoots() {
+        TaxonomyIndex index = index();
+
+        assertEquals(7, index.size());
+        assertEquals(List.of(GID + "aa", GID + "hg"), index.getRoots().stream().map(Category::getId).toList());
+        assertEquals(List.of("Watches", "Watch Accessories"), index.getChildren(GID + "aa-6").stream().map(Category::getName).toList());
+        assertEquals("Jewelry", index.getParent(GID + "aa-6-11").getName());
+        assertNull(index.getParent(GID + "aa"));
+        assertTrue(index.get(GID + "aa").isRoot());
+        assertEquals(List.of(), index.getChildren(GID + "unknown"));
+        assertEquals(List.of(GID + "aa-6-11"), index.getIdsByName("WATCHES"));
+    }
+
+    @Test
+    public void searchPrefersExactThenShallowMatches() {
+        TaxonomyIndex index = index();
+
+        assertEquals(GID + "aa-6-11", index.search("watches").getId());
+        assertEquals(GID + "aa-6-11", index.search("Watch").getId(), "same depth, shortest name wins");
+        assertEquals(GID + "aa", index.search("accessories").getId(), "least deep name match wins");
+        assertEquals(GID + "aa-6-11", index.search("Jewelry > Watches").getId(), "full name match");
+        assertNull(index.search("NonExistentCategory12345"));
+        assertNull(index.search(" "));
+    }
+
+    @Test
+    public void indexFileRoundTrip(@TempDir Path dir) throws Exception {
+        TaxonomyIndex index = index();
+        File file = dir.resolve("taxonomy/taxonomy-index.json").toFile();
+
+        index.write(file);
+        TaxonomyIndex read = TaxonomyIndex.read(file);
+
+        assertEquals("2025-04", read.getApiVersion());
+        assertEquals(index.getDownloadedAt(), read.getDownloadedAt());
+        assertEquals(index.size(), read.size());
+        assertEquals("Watch Straps", read.getChildren(GID + "aa-6-12").get(0).getName());
+        assertEquals(4, read.get(GID + "aa-6-12-1").getLevel());
+    }
+
+    @Test
+    public void otherFormatVersionIsRejected(@TempDir Path dir) throws Exception {
+        File file = dir.resolve("taxonomy-index.json").toFile();
+        Files.writeString(file.toPath(), "{\"formatVersion\": 0, \"apiVersion\": \"2025-04\", \"categories\": []}");
+
+        assertThrows(IOException.class, () -> TaxonomyIndex.read(file));
+    }
+}
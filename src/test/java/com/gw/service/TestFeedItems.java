@@ -0,0 +1,63 @@
+package com.gw.service;
+
+import com.gw.domain.FeedItem;
+
+/**
+ * FeedItems for unit tests. Only the identifying fields are set, tests set whatever
+ * else they look at on the returned item.
+ */
+final class TestFeedItems {
+
+    private TestFeedItems() {
+    }
+
+    static FeedItem feedItem(String sku) {
+        FeedItem item = new FeedItem();
+        item.setWebTagNumber(sku);
+        return item;
+    }
+
+    /**
+     * Item that was published to Shopify as the given product
+     */
+    static FeedItem listedItem(String sku, String shopifyItemId) {
+        FeedItem item = feedItem(sku);
+        item.setShopifyItemId(shopifyItemId);
+        return item;
+    }
+
+    /**
+     * Item whose dial, diameter and metal become the Color, Size and Material options
+     */
+    static FeedItem optionItem(String dial, String diameter, String metal) {
+        FeedItem item = new FeedItem();
+        item.setWebWatchDial(dial);
+        item.setWebWatchDiameter(diameter);
+        item.setWebMetalType(metal);
+        return item;
+    }
+
+    /**
+     * Item with the given number of source image paths, 1 to 3
+     */
+    static FeedItem imageItem(String sku, int images) {
+        FeedItem item = feedItem(sku);
+        if (images > 0) item.setWebImagePath1("http://src/" + sku + "-1.jpg");
+        if (images > 1) item.setWebImagePath2("http://src/" + sku + "-2.jpg");
+        if (images > 2) item.setWebImagePath3("http://src/" + sku + "-3.jpg");
+        return item;
+    }
+
+    static FeedItem watchItem(String sku, String designer, String model) {
+        FeedItem item = feedItem(sku);
+        item.setWebDesigner(designer);
+        item.setWebWatchModel(model);
+        return item;
+    }
+
+    static FeedItem listedWatch(String sku, String shopifyItemId, String designer) {
+        FeedItem item = listedItem(sku, shopifyItemId);
+        item.setWebDesigner(designer);
+        return item;
+    }
+}
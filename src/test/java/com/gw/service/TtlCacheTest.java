@@ -0,0 +1,143 @@
+package com.gw.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import com.gw.services.shopifyapi.TtlCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies expiry, size bound, statistics and single loading of the metadata cache.
+ */
+public class TtlCacheTest {
+
+    @Test
+    public void entryExpiresAfterTtl() {
+        AtomicLong now = new AtomicLong(1000);
+        TtlCache cache = new TtlCache("test", 500, 10, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        now.addAndGet(499);
+        assertEquals("v1", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        now.addAndGet(1);
+        assertEquals("v2", cache.get("k", () -> "v" + loads.incrementAndGet()));
+
+        TtlCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(2, stats.getLoads());
+        assertEquals(1, stats.getEvictions());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        TtlCache cache = new TtlCache("test", 60_000, 2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        TtlCache cache = new TtlCache("test", 60_000, 10);
+
+        Cache.ValueRetrievalException e = assertThrows(Cache.ValueRetrievalException.class,
+            () -> cache.get("k", () -> { throw new IllegalStateException("store down"); }));
+        assertEquals("store down", e.getCause().getMessage());
+        assertEquals(List.of("ok"), cache.get("k", () -> List.of("ok")));
+        assertEquals(1, cache.getStats().getLoadFailures());
+        assertEquals(1, cache.getStats().getLoads());
+    }
+
+    @Test
+    public void nullValueIsCached() {
+        TtlCache cache = new TtlCache("test", 60_000, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("k", () -> { loads.incrementAndGet(); return null; }));
+        assertNull(cache.get("k", () -> { loads.incrementAndGet(); return null; }));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void concurrentReadersLoadOnce() throws Exception {
+        TtlCache cache = new TtlCache("test", 60_000, 10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get("k", () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(50);
+                        return "loaded";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().getLoads());
+    }
+
+    @Test
+    public void waitingReaderSharesTheFailedLoad() throws Exception {
+        TtlCache cache = new TtlCache("test", 60_000, 10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.get("k", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await();
+                throw new IllegalStateException("store down");
+            }));
+            loading.await();
+            Future<String> second = executor.submit(() -> cache.get("k", () -> {
+                loads.incrementAndGet();
+                return "loaded";
+            }));
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<String> result : List.of(first, second)) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(Cache.ValueRetrievalException.class, e.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals("loaded", cache.get("k", () -> "loaded"), "a new load after the failed one is done");
+    }
+}